@@ -0,0 +1,81 @@
+package engine;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.DrawManager.SpriteType;
+import entity.Entity;
+import screen.Screen;
+
+/**
+ * Drawing of a single entity into the back buffer, for each sprite.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class DrawManagerBenchmark {
+
+	/** Sprite drawn, every type when not given. */
+	@Param
+	public SpriteType spriteType;
+
+	/** Draw manager, drawing into its back buffer. */
+	private DrawManager drawManager;
+	/** Entity drawn. */
+	private Entity entity;
+
+	/**
+	 * Entity showing any sprite.
+	 */
+	private static final class SpriteEntity extends Entity {
+
+		/**
+		 * Constructor.
+		 *
+		 * @param spriteType
+		 *            Sprite shown.
+		 */
+		private SpriteEntity(final SpriteType spriteType) {
+			super(0, 0, 16 * 2, 8 * 2, Color.GREEN);
+			this.spriteType = spriteType;
+		}
+	}
+
+	/**
+	 * Loads the resources and prepares a back buffer.
+	 */
+	@Setup
+	public void setUp() {
+		Core.getLogger().setLevel(Level.WARNING);
+		EngineContext context = new EngineContext();
+		this.drawManager = context.getDrawManager();
+		this.drawManager.initDrawing(new Screen(context, Core.WIDTH,
+				Core.HEIGHT, Core.FPS));
+		this.entity = new SpriteEntity(this.spriteType);
+	}
+
+	/**
+	 * Draws the entity.
+	 */
+	@Benchmark
+	public void drawEntity() {
+		this.drawManager.drawEntity(this.entity, Core.WIDTH / 2,
+				Core.HEIGHT / 2);
+	}
+}
@@ -0,0 +1,86 @@
+package engine;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.DrawManager.SpriteType;
+
+/**
+ * Loading of the resources of the game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class FileManagerBenchmark {
+
+	/** File manager loading the resources. */
+	private FileManager fileManager;
+
+	/**
+	 * Creates the file manager.
+	 */
+	@Setup
+	public void setUp() {
+		Core.getLogger().setLevel(Level.WARNING);
+		this.fileManager = new EngineContext().getFileManager();
+	}
+
+	/**
+	 * Loads every sprite.
+	 *
+	 * @return Sprites loaded.
+	 * @throws IOException
+	 *             In case of loading problems.
+	 */
+	@Benchmark
+	public Map<SpriteType, boolean[][]> loadSprite() throws IOException {
+		Map<SpriteType, boolean[][]> sprites = DrawManager.newSpriteMap();
+		this.fileManager.loadSprite(sprites);
+		return sprites;
+	}
+
+	/**
+	 * Loads the font, at its regular size.
+	 *
+	 * @return Font loaded.
+	 * @throws IOException
+	 *             In case of loading problems.
+	 * @throws FontFormatException
+	 *             In case the font is invalid.
+	 */
+	@Benchmark
+	public Font loadFont() throws IOException, FontFormatException {
+		return this.fileManager.loadFont(14f);
+	}
+
+	/**
+	 * Loads the high scores.
+	 *
+	 * @return Scores loaded.
+	 * @throws IOException
+	 *             In case of loading problems.
+	 */
+	@Benchmark
+	public List<Score> loadHighScores() throws IOException {
+		return this.fileManager.loadHighScores();
+	}
+}
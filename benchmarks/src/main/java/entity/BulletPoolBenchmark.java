@@ -0,0 +1,93 @@
+package entity;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telemetry.Metrics;
+
+/**
+ * Bullets taken from and returned to a pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BulletPoolBenchmark {
+
+	/**
+	 * Pool holding a batch of bullets between invocations.
+	 */
+	@State(Scope.Thread)
+	public static class Batch {
+
+		/** Bullets taken and returned at once, like in a frame. */
+		@Param({ "1", "16", "256" })
+		public int size;
+
+		/** Pool of the bullets. */
+		private BulletPool pool;
+		/** Bullets taken, reused between invocations. */
+		private Set<Bullet> fired;
+
+		/**
+		 * Fills the pool with a batch of bullets.
+		 */
+		@Setup
+		public void setUp() {
+			this.pool = new BulletPool(new Metrics());
+			this.fired = new LinkedHashSet<Bullet>();
+			getAndRecycle(this);
+		}
+	}
+
+	/**
+	 * Takes a batch of bullets from the pool and returns them.
+	 *
+	 * @param batch
+	 *            Pool and size of the batch.
+	 * @return Pool, holding the batch again.
+	 */
+	@Benchmark
+	public BulletPool getBulletAndRecycle(final Batch batch) {
+		return getAndRecycle(batch);
+	}
+
+	/**
+	 * Takes a bullet from an empty pool, creating it.
+	 *
+	 * @return Bullet created.
+	 */
+	@Benchmark
+	public Bullet getBulletFromEmptyPool() {
+		return new BulletPool(new Metrics()).getBullet(100, 100, -2);
+	}
+
+	/**
+	 * Takes a batch of bullets from a pool and returns them.
+	 *
+	 * @param batch
+	 *            Pool and size of the batch.
+	 * @return Pool, holding the batch again.
+	 */
+	private static BulletPool getAndRecycle(final Batch batch) {
+		for (int i = 0; i < batch.size; i++)
+			batch.fired.add(batch.pool.getBullet(i, 100, -2));
+		batch.pool.recycle(batch.fired);
+		batch.fired.clear();
+		return batch.pool;
+	}
+}
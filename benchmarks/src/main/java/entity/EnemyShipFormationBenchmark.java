@@ -0,0 +1,158 @@
+package entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import engine.Core;
+import engine.EngineContext;
+import engine.GameRandom;
+import engine.GameSettings;
+import engine.TickClock;
+import screen.Screen;
+
+/**
+ * Movement, destruction and iteration of enemy formations, from the 8x7
+ * of the game to far larger ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EnemyShipFormationBenchmark {
+
+	/** Seed of the formations. */
+	private static final long SEED = 42;
+
+	/**
+	 * Formation kept between invocations.
+	 */
+	@State(Scope.Thread)
+	public static class Formation {
+
+		/** Ships wide and high. */
+		@Param({ "8x7", "16x14", "32x28", "64x56" })
+		public String size;
+
+		/** Clock of the formation, a frame per update. */
+		private TickClock clock;
+		/** Formation benchmarked. */
+		private EnemyShipFormation formation;
+
+		/**
+		 * Creates the formation.
+		 */
+		@Setup
+		public void setUp() {
+			this.clock = new TickClock(Core.FPS);
+			this.formation = newFormation(this.size, this.clock);
+		}
+	}
+
+	/**
+	 * New formation for each invocation, to destroy it.
+	 */
+	@State(Scope.Thread)
+	public static class FreshFormation {
+
+		/** Ships wide and high. */
+		@Param({ "8x7", "16x14", "32x28", "64x56" })
+		public String size;
+
+		/** Formation benchmarked. */
+		private EnemyShipFormation formation;
+		/** Every ship of the formation. */
+		private List<EnemyShip> ships;
+
+		/**
+		 * Creates the formation, untimed.
+		 */
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setUp() {
+			this.formation = newFormation(this.size,
+					new TickClock(Core.FPS));
+			this.ships = new ArrayList<EnemyShip>();
+			for (EnemyShip ship : this.formation)
+				this.ships.add(ship);
+		}
+	}
+
+	/**
+	 * Updates the formation for a frame.
+	 *
+	 * @param state
+	 *            Formation updated.
+	 */
+	@Benchmark
+	public void update(final Formation state) {
+		state.clock.tick();
+		state.formation.update();
+	}
+
+	/**
+	 * Goes through every ship of the formation.
+	 *
+	 * @param state
+	 *            Formation iterated.
+	 * @param blackhole
+	 *            Consumer of the ships.
+	 */
+	@Benchmark
+	public void iterator(final Formation state, final Blackhole blackhole) {
+		for (EnemyShip ship : state.formation)
+			blackhole.consume(ship);
+	}
+
+	/**
+	 * Destroys every ship of a new formation, one at a time.
+	 *
+	 * @param state
+	 *            Formation destroyed.
+	 * @return Ships left, none.
+	 */
+	@Benchmark
+	public int destroyAll(final FreshFormation state) {
+		for (EnemyShip ship : state.ships)
+			state.formation.destroy(ship);
+		return state.formation.getShipCount();
+	}
+
+	/**
+	 * Creates a formation on a screen of the game.
+	 *
+	 * @param size
+	 *            Ships wide and high, as in 8x7.
+	 * @param clock
+	 *            Clock of the cooldowns of the formation.
+	 * @return Formation attached to a screen.
+	 */
+	private static EnemyShipFormation newFormation(final String size,
+			final TickClock clock) {
+		Core.getLogger().setLevel(Level.WARNING);
+		String[] dimensions = size.split("x");
+		EngineContext context = new EngineContext();
+		context.setTimeSource(clock);
+		EnemyShipFormation formation = new EnemyShipFormation(context,
+				new GameSettings(Integer.parseInt(dimensions[0]),
+						Integer.parseInt(dimensions[1]), 60, 2000),
+				new GameRandom(SEED));
+		formation.attach(new Screen(context, Core.WIDTH, Core.HEIGHT,
+				Core.FPS));
+		return formation;
+	}
+}
@@ -0,0 +1,114 @@
+package screen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.Core;
+import engine.EngineContext;
+import engine.GameRandom;
+import engine.GameSettings;
+import engine.GameState;
+import engine.Snapshot;
+import engine.TickClock;
+
+/**
+ * Collision checks and drawing of a whole game screen, with formations far
+ * larger than the 8x7 of the game and heavy fire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class GameScreenBenchmark {
+
+	/** Seed of the screens. */
+	private static final long SEED = 42;
+	/** Position of the bullets in the y-axis, above every ship. */
+	private static final int BULLET_Y = -100;
+
+	/** Ships wide and high. */
+	@Param({ "8x7", "16x14", "32x28", "64x56" })
+	public String formation;
+
+	/** Bullets on screen, half of them shot by the player. */
+	@Param({ "16", "128", "1024" })
+	public int bullets;
+
+	/** Screen benchmarked. */
+	private GameScreen screen;
+
+	/**
+	 * Creates a screen with the formation and the bullets. The bullets are
+	 * out of reach of every ship, so collision checks change nothing and
+	 * every invocation does the same work.
+	 */
+	@Setup
+	public void setUp() {
+		Core.getLogger().setLevel(Level.WARNING);
+		String[] dimensions = this.formation.split("x");
+		GameSettings settings = new GameSettings(
+				Integer.parseInt(dimensions[0]),
+				Integer.parseInt(dimensions[1]), 60, 2000);
+		EngineContext context = new EngineContext();
+
+		GameScreen level = newScreen(context, settings);
+		level.initialize();
+		Snapshot snapshot = new Snapshot();
+		level.saveState(snapshot);
+		for (int i = 0; i < this.bullets; i++)
+			snapshot.addBullet(i * 7 % Core.WIDTH, BULLET_Y,
+					i % 2 == 0 ? -2 : 2);
+
+		this.screen = newScreen(context, settings);
+		this.screen.resumeFrom(snapshot);
+		this.screen.initialize();
+	}
+
+	/**
+	 * Checks the collisions of every bullet.
+	 */
+	@Benchmark
+	public void manageCollisions() {
+		this.screen.manageCollisions();
+	}
+
+	/**
+	 * Draws the screen into the back buffer.
+	 */
+	@Benchmark
+	public void draw() {
+		this.screen.draw();
+	}
+
+	/**
+	 * Creates the screen of the first level.
+	 *
+	 * @param context
+	 *            Context of the game, without a frame.
+	 * @param settings
+	 *            Settings of the level.
+	 * @return Screen, not initialized.
+	 */
+	private static GameScreen newScreen(final EngineContext context,
+			final GameSettings settings) {
+		TickClock clock = new TickClock(Core.FPS);
+		context.setTimeSource(clock);
+		return new GameScreen(context, new GameState(1, 0, Core.MAX_LIVES,
+				0, 0), settings, false, new GameRandom(SEED), clock,
+				Core.WIDTH, Core.HEIGHT, Core.FPS);
+	}
+}
@@ -0,0 +1,275 @@
+package engine;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Hands log records to a background thread that formats and writes them,
+ * so logging costs the game thread no formatting and no I/O.
+ *
+ * Records go through a ring of preallocated slots: a thread publishing a
+ * record claims the next slot, stores the record and marks the slot as
+ * filled; nothing else is allocated or locked. The writer thread drains
+ * every filled slot, formats the records (parameters included, so
+ * messages logged with parameters are only built here) and writes the
+ * batch to its outputs with a single flush. When the ring is full, the
+ * overflow policy decides between waiting and dropping the record; drops
+ * are counted and reported in the log.
+ */
+public final class AsyncLogHandler extends Handler {
+
+	/** Default slots of the ring. */
+	public static final int DEFAULT_CAPACITY = 8192;
+	/** Time the writer sleeps when there is nothing to write. */
+	private static final long IDLE_NANOS = 1000000;
+	/** Time a publisher sleeps while waiting for a free slot. */
+	private static final long FULL_NANOS = 100000;
+	/** Characters formatted before a batch is written during a burst. */
+	private static final int BATCH_CHARS = 1 << 15;
+
+	/**
+	 * What to do with a record when the ring is full.
+	 */
+	public enum OverflowPolicy {
+		/** Wait for a free slot, nothing is lost. */
+		BLOCK,
+		/** Drop the record, the game thread never waits. */
+		DROP,
+		/** Drop records below warning, wait for the rest. */
+		DROP_BELOW_WARNING
+	}
+
+	/** Records published, by slot. */
+	private final LogRecord[] slots;
+	/** Sequence number of the record in each slot, once filled. */
+	private final AtomicLongArray filled;
+	/** Mask of the slot index of a sequence number. */
+	private final int mask;
+	/** What to do with a record when the ring is full. */
+	private final OverflowPolicy policy;
+	/** Destinations of the formatted records. */
+	private final Writer[] outputs;
+	/** Sequence number of the next slot to claim. */
+	private final AtomicLong tail;
+	/** Sequence number of the next slot to format, read by publishers. */
+	private final AtomicLong head;
+	/** Sequence number of the next record not yet written and flushed. */
+	private final AtomicLong written;
+	/** Records dropped because the ring was full. */
+	private final AtomicLong dropped;
+	/** Thread formatting and writing the records. */
+	private final Thread writer;
+	/** Batch of formatted records, reused by the writer. */
+	private final StringBuilder batch;
+	/** If the handler was closed. */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor, starts the writer thread.
+	 *
+	 * @param capacity
+	 *            Slots of the ring, rounded up to a power of two.
+	 * @param policy
+	 *            What to do with a record when the ring is full.
+	 * @param formatter
+	 *            Formatter of the records.
+	 * @param outputs
+	 *            Destinations of the formatted records.
+	 */
+	public AsyncLogHandler(final int capacity, final OverflowPolicy policy,
+			final Formatter formatter, final Writer... outputs) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.slots = new LogRecord[size];
+		this.filled = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			this.filled.set(i, -1);
+		this.mask = size - 1;
+		this.policy = policy;
+		this.outputs = outputs;
+		this.tail = new AtomicLong();
+		this.head = new AtomicLong();
+		this.written = new AtomicLong();
+		this.dropped = new AtomicLong();
+		this.batch = new StringBuilder(BATCH_CHARS * 2);
+		setFormatter(formatter);
+
+		this.writer = new Thread(this::drain, "log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Output to the standard error of the process. Closing the handler only
+	 * flushes it, so the process can still write there afterwards.
+	 *
+	 * @return Writer of the standard error.
+	 */
+	public static Writer standardError() {
+		return new FilterWriter(new OutputStreamWriter(System.err)) {
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * Queues a record for the writer thread.
+	 *
+	 * @param record
+	 *            Record to log.
+	 */
+	@Override
+	public void publish(final LogRecord record) {
+		if (this.closed || !isLoggable(record))
+			return;
+		long sequence;
+		while (true) {
+			sequence = this.tail.get();
+			if (sequence - this.head.get() >= this.slots.length) {
+				if (this.policy == OverflowPolicy.DROP
+						|| (this.policy == OverflowPolicy.DROP_BELOW_WARNING
+						&& record.getLevel().intValue()
+								< Level.WARNING.intValue())) {
+					this.dropped.incrementAndGet();
+					return;
+				}
+				LockSupport.parkNanos(FULL_NANOS);
+				continue;
+			}
+			if (this.tail.compareAndSet(sequence, sequence + 1))
+				break;
+		}
+		int slot = (int) sequence & this.mask;
+		this.slots[slot] = record;
+		this.filled.lazySet(slot, sequence);
+	}
+
+	/**
+	 * Waits until every record published so far is written and flushed.
+	 */
+	@Override
+	public void flush() {
+		long target = this.tail.get();
+		while (this.written.get() < target && this.writer.isAlive())
+			LockSupport.parkNanos(IDLE_NANOS);
+	}
+
+	/**
+	 * Writes the pending records, stops the writer thread and closes the
+	 * outputs.
+	 */
+	@Override
+	public void close() {
+		flush();
+		this.closed = true;
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Writer output : this.outputs)
+			try {
+				output.close();
+			} catch (IOException e) {
+				reportError(null, e, ErrorManager.CLOSE_FAILURE);
+			}
+	}
+
+	/**
+	 * Getter for the records dropped because the ring was full.
+	 *
+	 * @return Number of records dropped.
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Getter for the records published but not yet formatted.
+	 *
+	 * @return Number of records in the ring.
+	 */
+	public long getQueueDepth() {
+		return Math.max(0, this.tail.get() - this.head.get());
+	}
+
+	/**
+	 * Body of the writer thread: formats every filled slot into a batch,
+	 * writes it and sleeps briefly when there is nothing left.
+	 */
+	private void drain() {
+		long sequence = this.head.get();
+		long reportedDrops = 0;
+		while (true) {
+			int slot = (int) sequence & this.mask;
+			if (this.filled.get(slot) == sequence) {
+				LogRecord record = this.slots[slot];
+				this.slots[slot] = null;
+				append(record);
+				sequence++;
+				this.head.lazySet(sequence);
+				// Keeps batches bounded while a burst goes on.
+				if (this.batch.length() < BATCH_CHARS)
+					continue;
+			}
+
+			long drops = this.dropped.get();
+			if (drops != reportedDrops) {
+				append(new LogRecord(Level.WARNING, (drops - reportedDrops)
+						+ " log records dropped, the log buffer was full."));
+				reportedDrops = drops;
+			}
+			if (this.batch.length() > 0)
+				write();
+			this.written.lazySet(sequence);
+
+			// A claimed slot is filled right away, so it is worth waiting for.
+			if (this.tail.get() != sequence) {
+				Thread.yield();
+				continue;
+			}
+			if (this.closed)
+				return;
+			LockSupport.parkNanos(IDLE_NANOS);
+		}
+	}
+
+	/**
+	 * Formats a record into the batch.
+	 *
+	 * @param record
+	 *            Record to format.
+	 */
+	private void append(final LogRecord record) {
+		try {
+			this.batch.append(getFormatter().format(record));
+		} catch (RuntimeException e) {
+			reportError(null, e, ErrorManager.FORMAT_FAILURE);
+		}
+	}
+
+	/**
+	 * Writes the batch to every output and flushes them.
+	 */
+	private void write() {
+		for (Writer output : this.outputs)
+			try {
+				output.append(this.batch);
+				output.flush();
+			} catch (IOException e) {
+				reportError(null, e, ErrorManager.WRITE_FAILURE);
+			}
+		this.batch.setLength(0);
+	}
+}
@@ -0,0 +1,152 @@
+package engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import screen.GameScreen;
+
+/**
+ * Saves the game in progress every few seconds, so a restarted game can
+ * resume it. Snapshots are taken on the game thread into one of two reused
+ * snapshots, and encoded and written on a background thread: first to a
+ * temporary file, then renamed over the saved game, so a crash never leaves
+ * a half written save. If the writer is still busy when a snapshot is due,
+ * it is skipped.
+ */
+public final class Autosaver {
+
+	/** Default frames between snapshots, five seconds. */
+	public static final int DEFAULT_INTERVAL = 5 * Core.FPS;
+	/** Snapshots reused between the game and the writer threads. */
+	private static final int SNAPSHOTS = 2;
+	/** Seconds to wait for pending writes when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+
+	/** Saved game file. */
+	private final File file;
+	/** Temporary file written before replacing the saved game. */
+	private final File temporaryFile;
+	/** Frames between snapshots. */
+	private final int interval;
+	/** Thread writing the snapshots to disk. */
+	private final ExecutorService writer;
+	/** Snapshots not being written, ready to be taken. */
+	private final BlockingQueue<Snapshot> free;
+	/** Application logger. */
+	private final Logger logger;
+	/** Screen of the last snapshot. */
+	private GameScreen lastScreen;
+	/** Frames since the last snapshot. */
+	private int frames;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            Saved game file.
+	 * @param interval
+	 *            Frames between snapshots.
+	 */
+	public Autosaver(final File file, final int interval) {
+		this.file = file;
+		this.temporaryFile = new File(file.getPath() + ".tmp");
+		this.interval = interval;
+		this.logger = Core.getLogger();
+		this.free = new ArrayBlockingQueue<Snapshot>(SNAPSHOTS);
+		for (int i = 0; i < SNAPSHOTS; i++)
+			this.free.add(new Snapshot());
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "autosave-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Called by the game screen after every update, takes a snapshot when
+	 * one is due: on the first frame of a level and every interval frames.
+	 *
+	 * @param screen
+	 *            Game screen being played.
+	 */
+	public void update(final GameScreen screen) {
+		this.frames++;
+		if (screen == this.lastScreen && this.frames < this.interval)
+			return;
+
+		final Snapshot snapshot = this.free.poll();
+		if (snapshot == null)
+			return;
+		this.lastScreen = screen;
+		this.frames = 0;
+		screen.saveState(snapshot);
+		this.writer.execute(() -> {
+			write(snapshot);
+			this.free.add(snapshot);
+		});
+	}
+
+	/**
+	 * Deletes the saved game once the session is over, after any pending
+	 * write.
+	 */
+	public void discard() {
+		this.lastScreen = null;
+		this.writer.execute(() -> {
+			if (this.file.exists() && !this.file.delete())
+				this.logger.warning("Couldn't delete saved game!");
+		});
+	}
+
+	/**
+	 * Waits for the pending writes and stops the writer thread.
+	 */
+	public void close() {
+		this.writer.shutdown();
+		try {
+			if (!this.writer.awaitTermination(CLOSE_TIMEOUT,
+					TimeUnit.SECONDS))
+				this.logger.warning("Saved game not fully written.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes a snapshot to the temporary file, forces it to disk and renames
+	 * it over the saved game.
+	 *
+	 * @param snapshot
+	 *            Snapshot to write.
+	 */
+	private void write(final Snapshot snapshot) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+			snapshot.write(new DataOutputStream(bytes));
+
+			FileOutputStream output = new FileOutputStream(this.temporaryFile);
+			try {
+				bytes.writeTo(output);
+				output.getFD().sync();
+			} finally {
+				output.close();
+			}
+			Files.move(this.temporaryFile.toPath(), this.file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			this.logger.warning("Couldn't save game!");
+		}
+	}
+}
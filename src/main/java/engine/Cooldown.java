@@ -16,6 +16,10 @@ public class Cooldown {
 	private int duration;
 	/** Beginning time. */
 	private long time;
+	/** Source of the variation between durations. */
+	private GameRandom random;
+	/** Source of the current time. */
+	private TimeSource timeSource;
 
 	/**
 	 * Constructor, established the time until the action can be performed
@@ -23,9 +27,12 @@ public class Cooldown {
 	 * 
 	 * @param milliseconds
 	 *            Time until cooldown period is finished.
+	 * @param timeSource
+	 *            Source of the current time.
 	 */
-	protected Cooldown(final int milliseconds) {
+	protected Cooldown(final int milliseconds, final TimeSource timeSource) {
 		this.milliseconds = milliseconds;
+		this.timeSource = timeSource;
 		this.variance = 0;
 		this.duration = milliseconds;
 		this.time = 0;
@@ -39,10 +46,17 @@ public class Cooldown {
 	 *            Time until cooldown period is finished.
 	 * @param variance
 	 *            Variance in the cooldown period.
+	 * @param random
+	 *            Random source of the session.
+	 * @param timeSource
+	 *            Source of the current time.
 	 */
-	protected Cooldown(final int milliseconds, final int variance) {
+	protected Cooldown(final int milliseconds, final int variance,
+			final GameRandom random, final TimeSource timeSource) {
 		this.milliseconds = milliseconds;
+		this.timeSource = timeSource;
 		this.variance = variance;
+		this.random = random;
 		this.time = 0;
 	}
 
@@ -53,19 +67,56 @@ public class Cooldown {
 	 */
 	public final boolean checkFinished() {
 		if ((this.time == 0)
-				|| this.time + this.duration < System.currentTimeMillis())
+				|| this.time + this.duration < this.timeSource
+						.currentTimeMillis())
 			return true;
 		return false;
 	}
 
+	/**
+	 * Returns the time left until the cooldown is finished, to save it.
+	 * 
+	 * @return Milliseconds left, negative once finished.
+	 */
+	public final int getRemaining() {
+		if (this.time == 0)
+			return -1;
+		long remaining = this.time + this.duration
+				- this.timeSource.currentTimeMillis();
+		return (int) Math.max(-1, remaining);
+	}
+
+	/**
+	 * Getter for the duration of the current run.
+	 * 
+	 * @return Duration in milliseconds.
+	 */
+	public final int getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Restores a saved cooldown, finishing it after the time left.
+	 * 
+	 * @param remaining
+	 *            Milliseconds left, negative if finished.
+	 * @param runDuration
+	 *            Duration of the saved run.
+	 */
+	public final void restore(final int remaining, final int runDuration) {
+		this.duration = runDuration;
+		this.time = this.timeSource.currentTimeMillis() + remaining
+				- runDuration;
+	}
+
 	/**
 	 * Restarts the cooldown.
 	 */
 	public final void reset() {
-		this.time = System.currentTimeMillis();
+		this.time = this.timeSource.currentTimeMillis();
 		if (this.variance != 0)
 			this.duration = (this.milliseconds - this.variance)
-					+ (int) (Math.random()
+					+ (int) (this.random.nextDouble()
 							* (this.milliseconds + this.variance));
 	}
 }
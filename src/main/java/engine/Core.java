@@ -1,14 +1,27 @@
 package engine;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.ConsoleHandler;
-import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import replay.ReplayPlayer;
+import replay.ReplayRecorder;
 import screen.*;
+import simulation.Autopilot;
+import simulation.MacroBenchmark;
+import telemetry.EventJournal;
+import telemetry.FlightRecording;
+import telemetry.LevelMetrics;
+import telemetry.MetricsServer;
+import telemetry.SessionStore;
 
 /**
  * Implements core game logic.
@@ -19,18 +32,18 @@ import screen.*;
 public final class Core {
 
 	/** Width of current screen. */
-	private static final int WIDTH = 448;
+	public static final int WIDTH = 448;
 	/** Height of current screen. */
-	private static final int HEIGHT = 520;
+	public static final int HEIGHT = 520;
 	/** Max fps of current screen. */
-	private static final int FPS = 60;
+	public static final int FPS = 60;
 
 	/** Max lives. */
-	private static final int MAX_LIVES = 3;
+	public static final int MAX_LIVES = 3;
 	/** Levels between extra life. */
-	private static final int EXTRA_LIFE_FRECUENCY = 3;
+	public static final int EXTRA_LIFE_FRECUENCY = 3;
 	/** Total number of levels. */
-	private static final int NUM_LEVELS = 7;
+	public static final int NUM_LEVELS = 7;
 	
 	/** Difficulty settings for level 1. */
 	private static final GameSettings SETTINGS_LEVEL_1 =
@@ -56,37 +69,117 @@ public final class Core {
 	
 	/** Frame to draw the screen on. */
 	private static Frame frame;
-	/** Screen currently shown. */
-	private static Screen currentScreen;
+	/** Screen currently shown, read by the engine monitor. */
+	private static volatile Screen currentScreen;
 	/** Difficulty settings list. */
 	private static List<GameSettings> gameSettings;
 	/** Application logger. */
 	private static final Logger LOGGER = Logger.getLogger(Core.class
 			.getSimpleName());
-	/** Logger handler for printing to disk. */
+	/** Logger handler printing to disk and console from its own thread. */
 	private static Handler fileHandler;
-	/** Logger handler for printing to console. */
-	private static ConsoleHandler consoleHandler;
+	/** Context of the game shown on the frame. */
+	private static EngineContext context;
+	/** Saves the game in progress, null when not saved. */
+	private static Autosaver autosaver;
+	/** Store the metrics of every level played are appended to. */
+	private static SessionStore sessionStore;
+	/** Journal of the gameplay events, null if it couldn't be mapped. */
+	private static EventJournal eventJournal;
+	/** Flight recording of the game, null if not recorded. */
+	private static FlightRecording flightRecording;
+	/** Server of the metrics on localhost, null if not served. */
+	private static MetricsServer metricsServer;
+	/** Watchdog of the frames shown, null if not watched. */
+	private static StallWatchdog stallWatchdog;
+	/** Sampling profiler of the game thread. */
+	private static SamplingProfiler samplingProfiler;
 
 
 	/**
 	 * Test implementation.
 	 * 
 	 * @param args
-	 *            Program args, ignored.
+	 *            Program args: --seed n to fix the seed of the game sessions,
+	 *            --record dir to record every session in a directory,
+	 *            --replay file to play back a recorded session, with --fast
+	 *            to play it as fast as possible, --autopilot tier (easy,
+	 *            normal or hard) to let the autopilot play the sessions,
+	 *            --no-resume to start over instead of resuming a saved
+	 *            game, --jfr file to take a flight recording with the
+	 *            game settings, --metrics port to serve the metrics on
+	 *            localhost for Prometheus, --stall-threshold ms to report
+	 *            the frames taking longer, 0 to not watch them, and
+	 *            --stall-sample ms for the time between the stack samples
+	 *            of a stalled frame, --sample-profile to sample the game
+	 *            thread from the start, as F4 does during a game,
+	 *            --sample-rate hz for the samples taken per second, and
+	 *            --benchmark n to play the campaign headless n times with
+	 *            the autopilot, normal by default, and print how fast it
+	 *            ran as JSON, after --benchmark-warmup n unmeasured ones.
 	 */
 	public static void main(final String[] args) {
+		Long seed = null;
+		File recordDirectory = null;
+		File replayFile = null;
+		boolean fast = false;
+		Autopilot.Tier autopilotTier = null;
+		boolean resume = true;
+		File jfrFile = null;
+		int metricsPort = -1;
+		long stallThreshold = StallWatchdog.DEFAULT_THRESHOLD_MILLIS;
+		long stallSample = StallWatchdog.DEFAULT_SAMPLE_MILLIS;
+		boolean sampleProfile = false;
+		int sampleRate = SamplingProfiler.DEFAULT_RATE;
+		int benchmarkIterations = 0;
+		int benchmarkWarmup = MacroBenchmark.DEFAULT_WARMUP;
+		for (int i = 0; i < args.length; i++) {
+			if ("--seed".equals(args[i]) && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else if ("--record".equals(args[i]) && i + 1 < args.length)
+				recordDirectory = new File(args[++i]);
+			else if ("--replay".equals(args[i]) && i + 1 < args.length)
+				replayFile = new File(args[++i]);
+			else if ("--fast".equals(args[i]))
+				fast = true;
+			else if ("--autopilot".equals(args[i]) && i + 1 < args.length)
+				autopilotTier = Autopilot.Tier.valueOf(args[++i].toUpperCase());
+			else if ("--no-resume".equals(args[i]))
+				resume = false;
+			else if ("--jfr".equals(args[i]) && i + 1 < args.length)
+				jfrFile = new File(args[++i]);
+			else if ("--metrics".equals(args[i]) && i + 1 < args.length)
+				metricsPort = Integer.parseInt(args[++i]);
+			else if ("--stall-threshold".equals(args[i])
+					&& i + 1 < args.length)
+				stallThreshold = Long.parseLong(args[++i]);
+			else if ("--stall-sample".equals(args[i]) && i + 1 < args.length)
+				stallSample = Long.parseLong(args[++i]);
+			else if ("--sample-profile".equals(args[i]))
+				sampleProfile = true;
+			else if ("--sample-rate".equals(args[i]) && i + 1 < args.length)
+				sampleRate = Integer.parseInt(args[++i]);
+			else if ("--benchmark".equals(args[i]) && i + 1 < args.length)
+				benchmarkIterations = Integer.parseInt(args[++i]);
+			else if ("--benchmark-warmup".equals(args[i])
+					&& i + 1 < args.length)
+				benchmarkWarmup = Integer.parseInt(args[++i]);
+		}
+
 		try {
 			LOGGER.setUseParentHandlers(false);
 
-			fileHandler = new FileHandler("log");
-			fileHandler.setFormatter(new MinimalFormatter());
-
-			consoleHandler = new ConsoleHandler();
-			consoleHandler.setFormatter(new MinimalFormatter());
+			// Only warnings and errors wait when the log can't keep up.
+			fileHandler = new AsyncLogHandler(
+					AsyncLogHandler.DEFAULT_CAPACITY,
+					AsyncLogHandler.OverflowPolicy.DROP_BELOW_WARNING,
+					new MinimalFormatter(),
+					new RollingLogFile(new File("log"),
+							RollingLogFile.DEFAULT_LIMIT,
+							RollingLogFile.DEFAULT_ARCHIVES),
+					AsyncLogHandler.standardError());
 
 			LOGGER.addHandler(fileHandler);
-			LOGGER.addHandler(consoleHandler);
 			LOGGER.setLevel(Level.ALL);
 
 		} catch (Exception e) {
@@ -94,30 +187,140 @@ public final class Core {
 			e.printStackTrace();
 		}
 
-		frame = new Frame(WIDTH, HEIGHT);
-		DrawManager.getInstance().setFrame(frame);
+		// Nothing else is started, so only the game is measured.
+		if (benchmarkIterations > 0) {
+			LOGGER.setLevel(Level.WARNING);
+			MacroBenchmark benchmark = new MacroBenchmark(
+					seed == null ? 0 : seed, autopilotTier == null
+							? Autopilot.Tier.NORMAL : autopilotTier,
+					benchmarkIterations, benchmarkWarmup);
+			benchmark.run();
+			System.out.println(benchmark.toJson());
+			fileHandler.flush();
+			fileHandler.close();
+			System.exit(0);
+		}
+
+		// Started before the resources are loaded, to record their loading.
+		if (jfrFile != null)
+			try {
+				flightRecording = new FlightRecording(jfrFile);
+				LOGGER.info("Recording flight to " + jfrFile + ".");
+			} catch (IOException e) {
+				LOGGER.warning("Couldn't start flight recording!");
+			}
+
+		context = new EngineContext();
+		// Only the game played is served, not the simulated ones.
+		if (metricsPort >= 0)
+			try {
+				metricsServer = new MetricsServer(metricsPort,
+						context.getMetrics());
+				LOGGER.info("Serving metrics on port "
+						+ metricsServer.getPort() + ".");
+			} catch (IOException e) {
+				LOGGER.warning("Couldn't serve metrics on port " + metricsPort
+						+ "!");
+			}
+		frame = new Frame(WIDTH, HEIGHT, context.getInputManager());
+		context.getDrawManager().setFrame(frame);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					new EngineMonitor(context, fileHandler),
+					new ObjectName(EngineMonitor.OBJECT_NAME));
+		} catch (JMException e) {
+			LOGGER.warning("Couldn't register engine monitor!");
+		}
+		if (stallThreshold > 0)
+			try {
+				stallWatchdog = new StallWatchdog(stallThreshold, stallSample,
+						context.getFileManager().getStallsFile(), LOGGER);
+				context.setStallWatchdog(stallWatchdog);
+			} catch (IOException e) {
+				LOGGER.warning("Couldn't find stall report file!");
+			}
+		samplingProfiler = new SamplingProfiler(sampleRate,
+				context.getFileManager(), LOGGER);
+		context.setSamplingProfiler(samplingProfiler);
+		if (sampleProfile)
+			samplingProfiler.start(Thread.currentThread());
 		int width = frame.getWidth();
 		int height = frame.getHeight();
 
-		gameSettings = new ArrayList<GameSettings>();
-		gameSettings.add(SETTINGS_LEVEL_1);
-		gameSettings.add(SETTINGS_LEVEL_2);
-		gameSettings.add(SETTINGS_LEVEL_3);
-		gameSettings.add(SETTINGS_LEVEL_4);
-		gameSettings.add(SETTINGS_LEVEL_5);
-		gameSettings.add(SETTINGS_LEVEL_6);
-		gameSettings.add(SETTINGS_LEVEL_7);
-		
+		gameSettings = getDefaultGameSettings();
+		// Loaded once, score screens only read the table in memory.
+		context.getHighScoreTable().getHighScores();
+		context.getLeaderboard().getCount(context.getDifficulty());
+
+		if (replayFile != null) {
+			try {
+				ReplayPlayer player = new ReplayPlayer(replayFile);
+				LOGGER.info("Replaying " + replayFile + ".");
+				GameState gameState = playGame(
+						new GameRandom(player.getSeed()), player, null, null,
+						player.getFps(), !fast);
+				LOGGER.info("Replay finished with a score of "
+						+ gameState.getScore() + ".");
+			} catch (IOException e) {
+				LOGGER.warning("Couldn't load replay " + replayFile + "!");
+			}
+			samplingProfiler.close();
+			if (stallWatchdog != null)
+				stallWatchdog.close();
+			if (metricsServer != null)
+				metricsServer.stop();
+			if (flightRecording != null)
+				flightRecording.stop();
+			fileHandler.flush();
+			fileHandler.close();
+			System.exit(0);
+		}
+
+		try {
+			sessionStore = new SessionStore(context.getFileManager()
+					.getSessionsFile());
+		} catch (IOException e) {
+			LOGGER.warning("Couldn't find session metrics file!");
+		}
+		try {
+			File eventsFile = context.getFileManager().getEventsFile();
+			try {
+				eventJournal = EventJournal.open(eventsFile,
+						EventJournal.DEFAULT_CAPACITY);
+			} catch (IOException e) {
+				// Another game on this machine journals there.
+				eventsFile = context.getFileManager().getEventsFile(
+						ProcessHandle.current().pid());
+				eventJournal = EventJournal.open(eventsFile,
+						EventJournal.DEFAULT_CAPACITY);
+			}
+			LOGGER.info("Journaling events to " + eventsFile + ".");
+		} catch (IOException e) {
+			LOGGER.warning("Couldn't open event journal!");
+		}
+
+		// Games in progress are saved, to resume them after a restart.
+		Snapshot resumeState = null;
+		try {
+			File saveFile = context.getFileManager().getSaveFile();
+			autosaver = new Autosaver(saveFile, Autosaver.DEFAULT_INTERVAL);
+			if (resume && saveFile.exists()) {
+				resumeState = Snapshot.load(saveFile);
+				LOGGER.info("Resuming saved game at level "
+						+ resumeState.level + ".");
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Couldn't load saved game!");
+		}
+
 		GameState gameState;
 
-		int returnCode = 1;
+		int returnCode = resumeState != null ? 2 : 1;
 		do {
-			gameState = new GameState(1, 0, MAX_LIVES, 0, 0);
-
 			switch (returnCode) {
 			case 1:
 				// Main menu.
-				currentScreen = new TitleScreen(width, height, FPS);
+				currentScreen = new TitleScreen(context, width, height, FPS);
 				LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
 						+ " title screen at " + FPS + " fps.");
 				returnCode = frame.setScreen(currentScreen);
@@ -125,30 +328,36 @@ public final class Core {
 				break;
 			case 2:
 				// Game & score.
-				do {
-					// One extra live every few levels.
-					boolean bonusLife = gameState.getLevel()
-							% EXTRA_LIFE_FRECUENCY == 0
-							&& gameState.getLivesRemaining() < MAX_LIVES;
-					
-					currentScreen = new GameScreen(gameState,
-							gameSettings.get(gameState.getLevel() - 1),
-							bonusLife, width, height, FPS);
-					LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
-							+ " game screen at " + FPS + " fps.");
-					frame.setScreen(currentScreen);
-					LOGGER.info("Closing game screen.");
+				GameRandom random;
+				if (resumeState != null)
+					random = new GameRandom(resumeState.seed);
+				else
+					random = new GameRandom(seed != null ? seed
+							: GameRandom.newSeed());
+				Autopilot autopilot = null;
+				InputSource inputSource = context.getInputManager();
+				if (autopilotTier != null) {
+					autopilot = new Autopilot(autopilotTier);
+					inputSource = autopilot;
+				}
+				ReplayRecorder recorder = null;
+				// Replays start from the seed, resumed games can't be recorded.
+				if (recordDirectory != null && resumeState == null) {
+					try {
+						recorder = ReplayRecorder.inDirectory(inputSource,
+								recordDirectory, random.getSeed(), FPS);
+					} catch (IOException e) {
+						LOGGER.warning("Couldn't record game session!");
+					}
+				}
 
-					gameState = ((GameScreen) currentScreen).getGameState();
-
-					gameState = new GameState(gameState.getLevel() + 1,
-							gameState.getScore(),
-							gameState.getLivesRemaining(),
-							gameState.getBulletsShot(),
-							gameState.getShipsDestroyed());
-
-				} while (gameState.getLivesRemaining() > 0
-						&& gameState.getLevel() <= NUM_LEVELS);
+				// A saved game goes on at the frame rate it was saved at.
+				gameState = playGame(random, recorder != null ? recorder
+						: inputSource, autopilot, resumeState,
+						resumeState != null ? resumeState.fps : FPS, true);
+				resumeState = null;
+				if (recorder != null)
+					recorder.close();
 
 				LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
 						+ " score screen at " + FPS + " fps, with a score of "
@@ -156,20 +365,20 @@ public final class Core {
 						+ gameState.getLivesRemaining() + " lives remaining, "
 						+ gameState.getBulletsShot() + " bullets shot and "
 						+ gameState.getShipsDestroyed() + " ships destroyed.");
-				currentScreen = new ScoreScreen(width, height, FPS, gameState);
+				currentScreen = new ScoreScreen(context, width, height, FPS, gameState);
 				returnCode = frame.setScreen(currentScreen);
 				LOGGER.info("Closing score screen.");
 				break;
 			case 3:
 				// High scores.
-				currentScreen = new HighScoreScreen(width, height, FPS);
+				currentScreen = new HighScoreScreen(context, width, height, FPS);
 				LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
 						+ " high score screen at " + FPS + " fps.");
 				returnCode = frame.setScreen(currentScreen);
 				LOGGER.info("Closing high score screen.");
 				break;
 				case 4:
-					currentScreen = new DifficultyLevelScreen(width, height, FPS);
+					currentScreen = new DifficultyLevelScreen(context, width, height, FPS);
 					LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
 							+ " high score screen at " + FPS + " fps.");
 					returnCode = frame.setScreen(currentScreen);
@@ -180,75 +389,157 @@ public final class Core {
 
 		} while (returnCode != 0);
 
+		if (autosaver != null)
+			autosaver.close();
+		context.getHighScoreTable().close();
+		context.getLeaderboard().close();
+		if (sessionStore != null)
+			sessionStore.close();
+		if (eventJournal != null)
+			try {
+				eventJournal.close();
+			} catch (IOException e) {
+				LOGGER.warning("Couldn't write event journal!");
+			}
+		samplingProfiler.close();
+		if (stallWatchdog != null)
+			stallWatchdog.close();
+		if (metricsServer != null)
+			metricsServer.stop();
+		if (flightRecording != null)
+			flightRecording.stop();
 		fileHandler.flush();
 		fileHandler.close();
 		System.exit(0);
 	}
 
 	/**
-	 * Constructor, not called.
-	 */
-	private Core() {
-	}
-
-	/**
-	 * Controls access to the logger.
+	 * Plays a game session, from the first level until the player loses or
+	 * clears every level.
 	 * 
-	 * @return Application logger.
+	 * @param random
+	 *            Random source of the session.
+	 * @param inputSource
+	 *            Source of the keys pressed.
+	 * @param autopilot
+	 *            Autopilot playing the session, null if not used.
+	 * @param resumeState
+	 *            Saved game to resume, null to start from the first level.
+	 * @param clockFps
+	 *            Frames per second of game time.
+	 * @param frameLimited
+	 *            If the game is shown at its frame rate, instead of as fast
+	 *            as possible.
+	 * @return Game state at the end of the session.
 	 */
-	public static Logger getLogger() {
-		return LOGGER;
-	}
+	private static GameState playGame(final GameRandom random,
+			final InputSource inputSource, final Autopilot autopilot,
+			final Snapshot resumeState, final int clockFps,
+			final boolean frameLimited) {
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		TickClock clock = new TickClock(clockFps);
+		GameState gameState = resumeState != null ? resumeState
+				.getGameState() : new GameState(1, 0, MAX_LIVES, 0, 0);
+		Snapshot resumeLevel = resumeState;
+		LatencyHistogram frameTimes = new LatencyHistogram();
+		LevelMetrics levelMetrics = new LevelMetrics();
 
-	/**
-	 * Controls access to the drawing manager.
-	 * 
-	 * @return Application draw manager.
-	 */
-	public static DrawManager getDrawManager() {
-		return DrawManager.getInstance();
+		LOGGER.info("Starting game session with seed " + random.getSeed()
+				+ ".");
+		context.setTimeSource(clock);
+		if (eventJournal != null)
+			eventJournal.write(clock.getTicks(),
+					EventJournal.EventType.SESSION_START, 0, 0, 0,
+					random.getSeed());
+		do {
+			// One extra live every few levels, already counted when resuming.
+			boolean bonusLife = resumeLevel == null
+					&& gameState.getLevel() % EXTRA_LIFE_FRECUENCY == 0
+					&& gameState.getLivesRemaining() < MAX_LIVES;
+
+			GameScreen gameScreen = new GameScreen(context, gameState,
+					gameSettings.get(gameState.getLevel() - 1),
+					bonusLife, random, clock, width, height, FPS);
+			gameScreen.setInputSource(inputSource);
+			gameScreen.setFrameLimited(frameLimited);
+			if (autopilot != null)
+				autopilot.setScreen(gameScreen);
+			if (resumeLevel != null)
+				gameScreen.resumeFrom(resumeLevel);
+			resumeLevel = null;
+			gameScreen.setAutosaver(autosaver);
+			frameTimes.reset();
+			gameScreen.setFrameTimes(frameTimes);
+			gameScreen.setEventJournal(eventJournal);
+			long levelStart = clock.getTicks();
+			currentScreen = gameScreen;
+			LOGGER.info("Starting " + WIDTH + "x" + HEIGHT
+					+ " game screen at " + FPS + " fps.");
+			frame.setScreen(currentScreen);
+			LOGGER.info("Closing game screen.");
+
+			if (sessionStore != null) {
+				levelMetrics.measure(random.getSeed(), context.getDifficulty(),
+						gameState, gameScreen, clock.getTicks() - levelStart,
+						frameTimes);
+				sessionStore.append(levelMetrics);
+			}
+			gameState = gameScreen.getGameState();
+
+			gameState = new GameState(gameState.getLevel() + 1,
+					gameState.getScore(),
+					gameState.getLivesRemaining(),
+					gameState.getBulletsShot(),
+					gameState.getShipsDestroyed());
+
+		} while (gameState.getLivesRemaining() > 0
+				&& gameState.getLevel() <= NUM_LEVELS);
+		context.setTimeSource(TimeSource.SYSTEM);
+		if (autosaver != null)
+			autosaver.discard();
+
+		return gameState;
 	}
 
 	/**
-	 * Controls access to the input manager.
-	 * 
-	 * @return Application input manager.
+	 * Constructor, not called.
 	 */
-	public static InputManager getInputManager() {
-		return InputManager.getInstance();
+	private Core() {
 	}
 
 	/**
-	 * Controls access to the file manager.
+	 * Returns the difficulty settings of every level of the game.
 	 * 
-	 * @return Application file manager.
+	 * @return Difficulty settings list, one per level.
 	 */
-	public static FileManager getFileManager() {
-		return FileManager.getInstance();
+	public static List<GameSettings> getDefaultGameSettings() {
+		List<GameSettings> settings = new ArrayList<GameSettings>();
+		settings.add(SETTINGS_LEVEL_1);
+		settings.add(SETTINGS_LEVEL_2);
+		settings.add(SETTINGS_LEVEL_3);
+		settings.add(SETTINGS_LEVEL_4);
+		settings.add(SETTINGS_LEVEL_5);
+		settings.add(SETTINGS_LEVEL_6);
+		settings.add(SETTINGS_LEVEL_7);
+		return settings;
 	}
 
 	/**
-	 * Controls creation of new cooldowns.
+	 * Controls access to the logger.
 	 * 
-	 * @param milliseconds
-	 *            Duration of the cooldown.
-	 * @return A new cooldown.
+	 * @return Application logger.
 	 */
-	public static Cooldown getCooldown(final int milliseconds) {
-		return new Cooldown(milliseconds);
+	public static Logger getLogger() {
+		return LOGGER;
 	}
 
 	/**
-	 * Controls creation of new cooldowns with variance.
+	 * Controls access to the screen shown on the frame, from any thread.
 	 * 
-	 * @param milliseconds
-	 *            Duration of the cooldown.
-	 * @param variance
-	 *            Variation in the cooldown duration.
-	 * @return A new cooldown with variance.
+	 * @return Screen currently shown, null before the first one.
 	 */
-	public static Cooldown getVariableCooldown(final int milliseconds,
-			final int variance) {
-		return new Cooldown(milliseconds, variance);
+	static Screen getCurrentScreen() {
+		return currentScreen;
 	}
-}
\ No newline at end of file
+}
@@ -5,6 +5,8 @@ import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.LinkedHashMap;
@@ -12,7 +14,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
-import screen.DifficultyLevelScreen;
 import screen.Screen;
 import entity.Entity;
 import entity.Ship;
@@ -25,30 +26,57 @@ import entity.Ship;
  */
 public final class DrawManager {
 
-	/** Singleton instance of the class. */
-	private static DrawManager instance;
+	/**
+	 * Trade-off between drawing speed and quality.
+	 */
+	public enum RenderMode {
+		/** Default rendering, without antialiasing. */
+		SPEED,
+		/** Antialiased shapes and text, rendered for quality. */
+		QUALITY
+	}
+
+	/** Context of the game drawn. */
+	private EngineContext context;
 	/** Current frame. */
-	private static Frame frame;
-	/** FileManager instance. */
-	private static FileManager fileManager;
-	/** Application logger. */
-	private static Logger logger;
+	private Frame frame;
 	/** Graphics context. */
-	private static Graphics graphics;
+	private Graphics graphics;
 	/** Buffer Graphics. */
-	private static Graphics backBufferGraphics;
+	private Graphics backBufferGraphics;
 	/** Buffer image. */
-	private static BufferedImage backBuffer;
-	/** Normal sized font. */
-	private static Font fontRegular;
+	private BufferedImage backBuffer;
 	/** Normal sized font properties. */
-	private static FontMetrics fontRegularMetrics;
-	/** Big sized font. */
-	private static Font fontBig;
+	private FontMetrics fontRegularMetrics;
 	/** Big sized font properties. */
-	private static FontMetrics fontBigMetrics;
-
-	/** Sprite types mapped to their images. */
+	private FontMetrics fontBigMetrics;
+	/** Ship drawn as the lives counter. */
+	private Ship lifeShip;
+	/** Cells of the profiler overlay, label and times of each row. */
+	private String[][] profilerCells;
+	/** Window of the profiler the overlay cells were built from. */
+	private long profilerWindow;
+	/** Trade-off between drawing speed and quality, set from any thread. */
+	private volatile RenderMode renderMode = RenderMode.SPEED;
+
+	/** Background of the profiler overlay, translucent. */
+	private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+	/** Left side of the profiler overlay. */
+	private static final int OVERLAY_X = 10;
+	/** Upper side of the profiler overlay, under the score line. */
+	private static final int OVERLAY_Y = 45;
+	/** Position of each column of the profiler overlay. */
+	private static final int[] OVERLAY_COLUMNS = { 0, 120, 170, 220 };
+	/** Height of a row of the profiler overlay. */
+	private static final int OVERLAY_ROW = 12;
+
+	/** Normal sized font, shared by every draw manager. */
+	private static Font fontRegular;
+	/** Big sized font, shared by every draw manager. */
+	private static Font fontBig;
+	/** Small sized font, for the profiler overlay. */
+	private static Font fontSmall;
+	/** Sprite types mapped to their images, shared by every draw manager. */
 	private static Map<SpriteType, boolean[][]> spriteMap;
 
 	/** Sprite types. */
@@ -80,35 +108,66 @@ public final class DrawManager {
 	};
 
 	/**
-	 * Private constructor.
+	 * Constructor, loads the shared resources the first time.
+	 * 
+	 * @param context
+	 *            Context of the game drawn.
+	 */
+	DrawManager(final EngineContext context) {
+		this.context = context;
+		loadResources(context.getFileManager(), context.getLogger());
+	}
+
+	/**
+	 * Creates the empty sprites, in the order of the graphics file.
+	 * Package-private for the benchmarks.
+	 * 
+	 * @return Empty sprite of each type, to be loaded.
 	 */
-	private DrawManager() {
-		fileManager = Core.getFileManager();
-		logger = Core.getLogger();
+	static Map<SpriteType, boolean[][]> newSpriteMap() {
+		Map<SpriteType, boolean[][]> sprites =
+				new LinkedHashMap<SpriteType, boolean[][]>();
+
+		sprites.put(SpriteType.Ship, new boolean[13][8]);
+		sprites.put(SpriteType.ShipDestroyed, new boolean[13][8]);
+		sprites.put(SpriteType.Bullet, new boolean[3][5]);
+		sprites.put(SpriteType.EnemyBullet, new boolean[3][5]);
+		sprites.put(SpriteType.EnemyShipA1, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipA2, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipB1, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipB2, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipC1, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipC2, new boolean[12][8]);
+		sprites.put(SpriteType.EnemyShipSpecial, new boolean[16][7]);
+		sprites.put(SpriteType.Explosion, new boolean[13][7]);
+		return sprites;
+	}
+
+	/**
+	 * Loads the sprites and fonts, once for every draw manager. They are not
+	 * modified after loading, so all the games in the JVM can share them.
+	 * 
+	 * @param fileManager
+	 *            File manager to load the resources with.
+	 * @param logger
+	 *            Application logger.
+	 */
+	private static synchronized void loadResources(
+			final FileManager fileManager, final Logger logger) {
+		if (spriteMap != null)
+			return;
 		logger.info("Started loading resources.");
 
 		try {
-			spriteMap = new LinkedHashMap<SpriteType, boolean[][]>();
-
-			spriteMap.put(SpriteType.Ship, new boolean[13][8]);
-			spriteMap.put(SpriteType.ShipDestroyed, new boolean[13][8]);
-			spriteMap.put(SpriteType.Bullet, new boolean[3][5]);
-			spriteMap.put(SpriteType.EnemyBullet, new boolean[3][5]);
-			spriteMap.put(SpriteType.EnemyShipA1, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipA2, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipB1, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipB2, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipC1, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipC2, new boolean[12][8]);
-			spriteMap.put(SpriteType.EnemyShipSpecial, new boolean[16][7]);
-			spriteMap.put(SpriteType.Explosion, new boolean[13][7]);
-
-			fileManager.loadSprite(spriteMap);
+			Map<SpriteType, boolean[][]> sprites = newSpriteMap();
+			fileManager.loadSprite(sprites);
+			spriteMap = sprites;
 			logger.info("Finished loading the sprites.");
 
 			// Font loading.
 			fontRegular = fileManager.loadFont(14f);
 			fontBig = fileManager.loadFont(24f);
+			fontSmall = fileManager.loadFont(10f);
 			logger.info("Finished loading the fonts.");
 
 		} catch (IOException e) {
@@ -119,29 +178,39 @@ public final class DrawManager {
 	}
 
 	/**
-	 * Returns shared instance of DrawManager.
+	 * Sets the frame to draw the image on.
 	 * 
-	 * @return Shared instance of DrawManager.
+	 * @param currentFrame
+	 *            Frame to draw on.
 	 */
-	protected static DrawManager getInstance() {
-		if (instance == null)
-			instance = new DrawManager();
-		return instance;
+	public void setFrame(final Frame currentFrame) {
+		this.frame = currentFrame;
 	}
 
 	/**
-	 * Sets the frame to draw the image on.
+	 * Getter for the trade-off between drawing speed and quality.
 	 * 
-	 * @param currentFrame
-	 *            Frame to draw on.
+	 * @return Rendering mode.
 	 */
-	public void setFrame(final Frame currentFrame) {
-		frame = currentFrame;
+	public RenderMode getRenderMode() {
+		return this.renderMode;
+	}
+
+	/**
+	 * Setter for the trade-off between drawing speed and quality, from any
+	 * thread; it applies from the next frame drawn.
+	 * 
+	 * @param renderMode
+	 *            Rendering mode.
+	 */
+	public void setRenderMode(final RenderMode renderMode) {
+		this.renderMode = renderMode;
 	}
 
 	/**
 	 * First part of the drawing process. Initialices buffers, draws the
-	 * background and prepares the images.
+	 * background and prepares the images. Without a frame, as when screens
+	 * are simulated headless, only the back buffer is drawn.
 	 * 
 	 * @param screen
 	 *            Screen to draw in.
@@ -150,8 +219,18 @@ public final class DrawManager {
 		backBuffer = new BufferedImage(screen.getWidth(), screen.getHeight(),
 				BufferedImage.TYPE_INT_RGB);
 
-		graphics = frame.getGraphics();
+		if (frame != null)
+			graphics = frame.getGraphics();
 		backBufferGraphics = backBuffer.getGraphics();
+		if (renderMode == RenderMode.QUALITY) {
+			Graphics2D graphics2D = (Graphics2D) backBufferGraphics;
+			graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+					RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			graphics2D.setRenderingHint(RenderingHints.KEY_RENDERING,
+					RenderingHints.VALUE_RENDER_QUALITY);
+		}
 
 		backBufferGraphics.setColor(Color.BLACK);
 		backBufferGraphics
@@ -171,8 +250,12 @@ public final class DrawManager {
 	 *            Screen to draw on.
 	 */
 	public void completeDrawing(final Screen screen) {
-		graphics.drawImage(backBuffer, frame.getInsets().left,
-				frame.getInsets().top, frame);
+		if (frame != null) {
+			graphics.drawImage(backBuffer, frame.getInsets().left,
+					frame.getInsets().top, frame);
+			graphics.dispose();
+		}
+		backBufferGraphics.dispose();
 	}
 
 	/**
@@ -242,14 +325,7 @@ public final class DrawManager {
 	 * 점수에 난이도를 표시함.
 	 */
 	public void drawScore(final Screen screen, final int score) {
-		String difficult ="";
-		if(DifficultyLevelScreen.getOption()==2){
-			difficult +="Easy";
-		}else if(DifficultyLevelScreen.getOption()==3){
-			difficult+="Normal";
-		}else{
-			difficult+="Hard";
-		}
+		String difficult = difficultyName(this.context.getDifficulty());
 		backBufferGraphics.setFont(fontRegular);
 		backBufferGraphics.setColor(Color.WHITE);
 		String scoreString = difficult+" "+String.format("%04d", score);
@@ -268,9 +344,10 @@ public final class DrawManager {
 		backBufferGraphics.setFont(fontRegular);
 		backBufferGraphics.setColor(Color.WHITE);
 		backBufferGraphics.drawString(Integer.toString(lives), 20, 25);
-		Ship dummyShip = new Ship(0, 0);
+		if (this.lifeShip == null)
+			this.lifeShip = new Ship(this.context, 0, 0);
 		for (int i = 0; i < lives; i++)
-			drawEntity(dummyShip, 40 + 35 * i, 10);
+			drawEntity(this.lifeShip, 40 + 35 * i, 10);
 	}
 
 	/**
@@ -432,6 +509,29 @@ public final class DrawManager {
 				/ height + fontRegularMetrics.getHeight() * 6);
 	}
 
+	/**
+	 * Draws the rank of the score among every score of the difficulty.
+	 * 
+	 * @param screen
+	 *            Screen to draw on.
+	 * @param rank
+	 *            Rank of the score, 1 for the best.
+	 * @param total
+	 *            Number of scores ranked, this one included.
+	 * @param isNewRecord
+	 *            If the score is a new high score.
+	 */
+	public void drawRank(final Screen screen, final int rank,
+			final int total, final boolean isNewRecord) {
+		String rankString = String.format("rank %,d of %,d", rank, total);
+
+		int height = isNewRecord ? 4 : 2;
+
+		backBufferGraphics.setColor(Color.WHITE);
+		drawCenteredRegularString(screen, rankString, screen.getHeight()
+				/ height + fontRegularMetrics.getHeight() * 8);
+	}
+
 	/**
 	 * Draws interactive characters for name input.
 	 * 
@@ -529,6 +629,21 @@ public final class DrawManager {
 				screen.getHeight() / 5);
 	}
 
+	/**
+	 * Name of a difficulty option, as shown in the difficulty menu.
+	 * 
+	 * @param difficulty
+	 *            Difficulty option.
+	 * @return Name of the difficulty.
+	 */
+	private static String difficultyName(final int difficulty) {
+		if (difficulty == 2)
+			return "Easy";
+		if (difficulty == 3)
+			return "Normal";
+		return "Hard";
+	}
+
 	/**
 	 * Draws high scores.
 	 * 
@@ -552,6 +667,56 @@ public final class DrawManager {
 		}
 	}
 
+	/**
+	 * Draws the time spent on each phase of the frames over the game: the
+	 * median, 99th percentile and maximum of the last window of the
+	 * profiler, in microseconds, and the entities on screen. The times are
+	 * only formatted when a new window is completed.
+	 * 
+	 * @param screen
+	 *            Screen to draw on.
+	 * @param profiler
+	 *            Profiler of the screen.
+	 */
+	public void drawProfiler(final Screen screen,
+			final FrameProfiler profiler) {
+		FrameProfiler.Phase[] phases = FrameProfiler.Phase.values();
+		if (this.profilerCells == null
+				|| this.profilerWindow != profiler.getWindows()) {
+			this.profilerCells = new String[phases.length + 2][];
+			this.profilerCells[0] = new String[] { "phase (us)", "p50", "p99",
+					"max" };
+			for (int i = 0; i <= phases.length; i++) {
+				FrameProfiler.Phase phase = i < phases.length ? phases[i]
+						: null;
+				this.profilerCells[i + 1] = new String[] {
+						phase == null ? "frame"
+								: phase.name().toLowerCase().replace('_', ' '),
+						Long.toString(profiler.getMedianNanos(phase) / 1000),
+						Long.toString(profiler.getP99Nanos(phase) / 1000),
+						Long.toString(profiler.getMaxNanos(phase) / 1000) };
+			}
+			this.profilerWindow = profiler.getWindows();
+		}
+
+		int rows = this.profilerCells.length + 1;
+		backBufferGraphics.setColor(OVERLAY_BACKGROUND);
+		backBufferGraphics.fillRect(OVERLAY_X - 4, OVERLAY_Y - OVERLAY_ROW,
+				OVERLAY_COLUMNS[OVERLAY_COLUMNS.length - 1] + 50,
+				rows * OVERLAY_ROW + 6);
+		backBufferGraphics.setFont(fontSmall);
+		backBufferGraphics.setColor(Color.GREEN);
+		for (int row = 0; row < this.profilerCells.length; row++)
+			for (int column = 0; column < OVERLAY_COLUMNS.length; column++)
+				backBufferGraphics.drawString(this.profilerCells[row][column],
+						OVERLAY_X + OVERLAY_COLUMNS[column], OVERLAY_Y + row
+								* OVERLAY_ROW);
+		backBufferGraphics.drawString("bullets " + profiler.getBullets()
+				+ " (max " + profiler.getMaxBullets() + ")  enemies "
+				+ profiler.getEnemies(), OVERLAY_X, OVERLAY_Y
+				+ this.profilerCells.length * OVERLAY_ROW);
+	}
+
 	/**
 	 * Draws a centered string on regular font.
 	 * 
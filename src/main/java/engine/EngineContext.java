@@ -0,0 +1,326 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import entity.BulletPool;
+import telemetry.Metrics;
+
+/**
+ * Groups the managers, pools and settings used by a single game instance.
+ * 
+ * Screens, entities and formations get everything they share through their
+ * context instead of static singletons, so independent games can run on
+ * different threads of the same JVM. A context is not thread-safe, it
+ * belongs to the thread running its game.
+ */
+public final class EngineContext {
+
+	/** Difficulty option selected when the game starts, easy. */
+	public static final int DEFAULT_DIFFICULTY = 2;
+
+	/** Application logger, shared by every context. */
+	private final Logger logger;
+	/** Metrics of the game, served only for the game played. */
+	private final Metrics metrics;
+	/** File manager of the game. */
+	private final FileManager fileManager;
+	/** High scores of the game, kept in memory. */
+	private final HighScoreTable highScoreTable;
+	/** Every score of the game by difficulty, null until used. */
+	private Leaderboard leaderboard;
+	/** Input manager of the game. */
+	private final InputManager inputManager;
+	/** Draw manager of the game. */
+	private final DrawManager drawManager;
+	/** Pool of recyclable bullets. */
+	private final BulletPool bulletPool;
+	/** Source of the time read by new cooldowns. */
+	private TimeSource timeSource;
+	/** Difficulty option selected by the player. */
+	private int difficulty;
+	/** Profiler of the game screens shown, null until first enabled. */
+	private FrameProfiler frameProfiler;
+	/** If the game screens shown are profiled, with the overlay. */
+	private volatile boolean profilerEnabled;
+	/** Frame rate and entities of the screens shown, for monitoring. */
+	private final FrameStats frameStats;
+	/** Frames per second the screens shown run at, 0 for their own. */
+	private volatile int targetFps;
+	/** Watchdog of the frames of the screens shown, null if not watched. */
+	private StallWatchdog stallWatchdog;
+	/** Sampling profiler of the game thread, null if not available. */
+	private SamplingProfiler samplingProfiler;
+
+	/**
+	 * Constructor, creates the managers of a new game instance.
+	 */
+	public EngineContext() {
+		this.logger = Core.getLogger();
+		this.metrics = new Metrics();
+		this.fileManager = new FileManager(this.logger);
+		this.highScoreTable = new HighScoreTable(this.fileManager,
+				this.logger, this.metrics);
+		this.inputManager = new InputManager();
+		this.drawManager = new DrawManager(this);
+		this.bulletPool = new BulletPool(this.metrics);
+		this.timeSource = TimeSource.SYSTEM;
+		this.difficulty = DEFAULT_DIFFICULTY;
+		this.frameStats = new FrameStats(this.metrics);
+	}
+
+	/**
+	 * Controls access to the logger.
+	 * 
+	 * @return Application logger.
+	 */
+	public Logger getLogger() {
+		return this.logger;
+	}
+
+	/**
+	 * Controls access to the metrics, counted apart from the other games
+	 * of the process.
+	 * 
+	 * @return Metrics of the game.
+	 */
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Controls access to the file manager.
+	 * 
+	 * @return File manager of the game.
+	 */
+	public FileManager getFileManager() {
+		return this.fileManager;
+	}
+
+	/**
+	 * Controls access to the high scores.
+	 * 
+	 * @return High score table of the game.
+	 */
+	public HighScoreTable getHighScoreTable() {
+		return this.highScoreTable;
+	}
+
+	/**
+	 * Controls access to the leaderboard, created the first time it is
+	 * used.
+	 * 
+	 * @return Leaderboard of the game.
+	 */
+	public Leaderboard getLeaderboard() {
+		if (this.leaderboard == null) {
+			File file;
+			try {
+				file = this.fileManager.getLeaderboardFile();
+			} catch (IOException e) {
+				this.logger.warning("Couldn't find leaderboard file!");
+				file = new File("leaderboard");
+			}
+			this.leaderboard = new Leaderboard(file, this.logger);
+		}
+		return this.leaderboard;
+	}
+
+	/**
+	 * Controls access to the input manager.
+	 * 
+	 * @return Input manager of the game.
+	 */
+	public InputManager getInputManager() {
+		return this.inputManager;
+	}
+
+	/**
+	 * Controls access to the drawing manager.
+	 * 
+	 * @return Draw manager of the game.
+	 */
+	public DrawManager getDrawManager() {
+		return this.drawManager;
+	}
+
+	/**
+	 * Controls access to the bullet pool.
+	 * 
+	 * @return Pool of recyclable bullets of the game.
+	 */
+	public BulletPool getBulletPool() {
+		return this.bulletPool;
+	}
+
+	/**
+	 * Getter for the source of the time read by new cooldowns.
+	 * 
+	 * @return Current time source.
+	 */
+	public TimeSource getTimeSource() {
+		return this.timeSource;
+	}
+
+	/**
+	 * Sets the source of the time read by new cooldowns.
+	 * 
+	 * @param timeSource
+	 *            Clock of the game session, or TimeSource.SYSTEM.
+	 */
+	public void setTimeSource(final TimeSource timeSource) {
+		this.timeSource = timeSource;
+	}
+
+	/**
+	 * Getter for the difficulty option selected by the player.
+	 * 
+	 * @return Difficulty option.
+	 */
+	public int getDifficulty() {
+		return this.difficulty;
+	}
+
+	/**
+	 * Setter for the difficulty option selected by the player.
+	 * 
+	 * @param difficulty
+	 *            New difficulty option.
+	 */
+	public void setDifficulty(final int difficulty) {
+		this.difficulty = difficulty;
+	}
+
+	/**
+	 * Checks if the game screens shown are profiled, and the profiler
+	 * overlay drawn.
+	 * 
+	 * @return True if profiling is enabled.
+	 */
+	public boolean isProfilerEnabled() {
+		return this.profilerEnabled;
+	}
+
+	/**
+	 * Enables or disables the profiling of the game screens shown. Unlike
+	 * the rest of the context, it can be called from any thread; the game
+	 * picks it up on its next frame.
+	 * 
+	 * @param profilerEnabled
+	 *            True to profile the frames and draw the overlay.
+	 */
+	public void setProfilerEnabled(final boolean profilerEnabled) {
+		this.profilerEnabled = profilerEnabled;
+	}
+
+	/**
+	 * Getter for the frame rate the screens shown run at.
+	 * 
+	 * @return Frames per second, 0 if each screen runs at its own.
+	 */
+	public int getTargetFps() {
+		return this.targetFps;
+	}
+
+	/**
+	 * Setter for the frame rate the screens shown run at. Like the profiler
+	 * setting, it can be called from any thread. Game time advances by
+	 * frame, so it changes the speed of the game along with its
+	 * smoothness.
+	 * 
+	 * @param targetFps
+	 *            Frames per second, 0 to let each screen run at its own.
+	 */
+	public void setTargetFps(final int targetFps) {
+		this.targetFps = targetFps;
+	}
+
+	/**
+	 * Getter for the watchdog of the frames of the screens shown.
+	 * 
+	 * @return Stall watchdog, null if the frames aren't watched.
+	 */
+	public StallWatchdog getStallWatchdog() {
+		return this.stallWatchdog;
+	}
+
+	/**
+	 * Setter for the watchdog of the frames of the screens shown, taken by
+	 * the screens created afterwards.
+	 * 
+	 * @param stallWatchdog
+	 *            Stall watchdog, null to stop watching new screens.
+	 */
+	public void setStallWatchdog(final StallWatchdog stallWatchdog) {
+		this.stallWatchdog = stallWatchdog;
+	}
+
+	/**
+	 * Getter for the sampling profiler of the game thread.
+	 * 
+	 * @return Sampling profiler, null if the game can't be sampled.
+	 */
+	public SamplingProfiler getSamplingProfiler() {
+		return this.samplingProfiler;
+	}
+
+	/**
+	 * Setter for the sampling profiler of the game thread, started and
+	 * stopped from the game screens.
+	 * 
+	 * @param samplingProfiler
+	 *            Sampling profiler, null if the game can't be sampled.
+	 */
+	public void setSamplingProfiler(final SamplingProfiler samplingProfiler) {
+		this.samplingProfiler = samplingProfiler;
+	}
+
+	/**
+	 * Controls access to the frame rate and entities of the screens shown.
+	 * 
+	 * @return Frame statistics of the game.
+	 */
+	public FrameStats getFrameStats() {
+		return this.frameStats;
+	}
+
+	/**
+	 * Controls access to the profiler of the game screens shown, created
+	 * the first time it is used and kept between levels.
+	 * 
+	 * @return Frame profiler of the game.
+	 */
+	public FrameProfiler getFrameProfiler() {
+		if (this.frameProfiler == null)
+			this.frameProfiler = new FrameProfiler();
+		return this.frameProfiler;
+	}
+
+	/**
+	 * Controls creation of new cooldowns.
+	 * 
+	 * @param milliseconds
+	 *            Duration of the cooldown.
+	 * @return A new cooldown.
+	 */
+	public Cooldown getCooldown(final int milliseconds) {
+		return new Cooldown(milliseconds, this.timeSource);
+	}
+
+	/**
+	 * Controls creation of new cooldowns with variance.
+	 * 
+	 * @param milliseconds
+	 *            Duration of the cooldown.
+	 * @param variance
+	 *            Variation in the cooldown duration.
+	 * @param random
+	 *            Random source of the session.
+	 * @return A new cooldown with variance.
+	 */
+	public Cooldown getVariableCooldown(final int milliseconds,
+			final int variance, final GameRandom random) {
+		return new Cooldown(milliseconds, variance, random, this.timeSource);
+	}
+}
@@ -0,0 +1,146 @@
+package engine;
+
+import java.util.logging.Handler;
+
+import engine.DrawManager.RenderMode;
+import screen.Screen;
+
+/**
+ * Engine monitor, exposing the state of the game shown on the frame through
+ * JMX and applying the settings tuned from a JMX client. Every attribute is
+ * read from values the game publishes for other threads, so monitoring
+ * never stops the game thread.
+ */
+public final class EngineMonitor implements EngineMonitorMBean {
+
+	/** Name the monitor is registered with. */
+	public static final String OBJECT_NAME = "invaders:type=Engine";
+	/** Nanoseconds in a millisecond. */
+	private static final double NANOS_PER_MILLI = 1e6;
+	/** Highest frame rate accepted as target. */
+	private static final int MAX_FPS = 1000;
+
+	/** Context of the game monitored. */
+	private final EngineContext context;
+	/** Logger handler, to read its queue. */
+	private final Handler logHandler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context
+	 *            Context of the game monitored.
+	 * @param logHandler
+	 *            Logger handler of the application.
+	 */
+	public EngineMonitor(final EngineContext context,
+			final Handler logHandler) {
+		this.context = context;
+		this.logHandler = logHandler;
+	}
+
+	@Override
+	public String getCurrentScreen() {
+		Screen screen = Core.getCurrentScreen();
+		return screen == null ? "" : screen.getClass().getSimpleName();
+	}
+
+	@Override
+	public double getFpsAchieved() {
+		return this.context.getFrameStats().getFps();
+	}
+
+	@Override
+	public double getFrameTimeP50Millis() {
+		return this.context.getFrameStats().getMedianNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFrameTimeP99Millis() {
+		return this.context.getFrameStats().getP99Nanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getFrameTimeMaxMillis() {
+		return this.context.getFrameStats().getMaxNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public int getEnemyCount() {
+		return this.context.getFrameStats().getEnemies();
+	}
+
+	@Override
+	public int getBulletCount() {
+		return this.context.getFrameStats().getBullets();
+	}
+
+	@Override
+	public int getBulletPoolSize() {
+		return this.context.getBulletPool().size();
+	}
+
+	@Override
+	public long getLogQueueDepth() {
+		if (this.logHandler instanceof AsyncLogHandler)
+			return ((AsyncLogHandler) this.logHandler).getQueueDepth();
+		return 0;
+	}
+
+	@Override
+	public long getLogRecordsDropped() {
+		if (this.logHandler instanceof AsyncLogHandler)
+			return ((AsyncLogHandler) this.logHandler).getDropped();
+		return 0;
+	}
+
+	@Override
+	public double getScoreWriteMillis() {
+		return this.context.getHighScoreTable().getLastSaveNanos()
+				/ NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getScoreWriteMaxMillis() {
+		return this.context.getHighScoreTable().getMaxSaveNanos()
+				/ NANOS_PER_MILLI;
+	}
+
+	@Override
+	public int getTargetFps() {
+		int targetFps = this.context.getTargetFps();
+		return targetFps > 0 ? targetFps : Core.FPS;
+	}
+
+	@Override
+	public void setTargetFps(final int targetFps) {
+		if (targetFps < 1 || targetFps > MAX_FPS)
+			throw new IllegalArgumentException(
+					"Target FPS must be between 1 and " + MAX_FPS + ".");
+		this.context.setTargetFps(targetFps);
+		this.context.getLogger().info("Target FPS set to " + targetFps + ".");
+	}
+
+	@Override
+	public boolean isProfilerEnabled() {
+		return this.context.isProfilerEnabled();
+	}
+
+	@Override
+	public void setProfilerEnabled(final boolean profilerEnabled) {
+		this.context.setProfilerEnabled(profilerEnabled);
+	}
+
+	@Override
+	public String getRenderMode() {
+		return this.context.getDrawManager().getRenderMode().name();
+	}
+
+	@Override
+	public void setRenderMode(final String renderMode) {
+		this.context.getDrawManager().setRenderMode(
+				RenderMode.valueOf(renderMode.trim().toUpperCase()));
+		this.context.getLogger().info("Render mode set to " + renderMode
+				+ ".");
+	}
+}
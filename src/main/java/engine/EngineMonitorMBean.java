@@ -0,0 +1,138 @@
+package engine;
+
+/**
+ * Management interface of the engine, registered as invaders:type=Engine
+ * so cabinets can be watched and tuned from a JMX client.
+ */
+public interface EngineMonitorMBean {
+
+	/**
+	 * Getter for the screen shown.
+	 *
+	 * @return Class of the screen, empty before the first one.
+	 */
+	String getCurrentScreen();
+
+	/**
+	 * Getter for the frame rate achieved in the last second.
+	 *
+	 * @return Frames per second.
+	 */
+	double getFpsAchieved();
+
+	/**
+	 * Getter for the median frame time in the last second.
+	 *
+	 * @return Median frame time, in milliseconds.
+	 */
+	double getFrameTimeP50Millis();
+
+	/**
+	 * Getter for the 99th percentile frame time in the last second.
+	 *
+	 * @return 99th percentile frame time, in milliseconds.
+	 */
+	double getFrameTimeP99Millis();
+
+	/**
+	 * Getter for the longest frame time in the last second.
+	 *
+	 * @return Maximum frame time, in milliseconds.
+	 */
+	double getFrameTimeMaxMillis();
+
+	/**
+	 * Getter for the enemy ships on screen.
+	 *
+	 * @return Number of enemy ships in the last game frame.
+	 */
+	int getEnemyCount();
+
+	/**
+	 * Getter for the bullets on screen.
+	 *
+	 * @return Number of bullets in the last game frame.
+	 */
+	int getBulletCount();
+
+	/**
+	 * Getter for the bullets kept for reuse.
+	 *
+	 * @return Size of the bullet pool.
+	 */
+	int getBulletPoolSize();
+
+	/**
+	 * Getter for the log records waiting to be written.
+	 *
+	 * @return Depth of the log queue, 0 if not logged asynchronously.
+	 */
+	long getLogQueueDepth();
+
+	/**
+	 * Getter for the log records dropped because the queue was full.
+	 *
+	 * @return Records dropped.
+	 */
+	long getLogRecordsDropped();
+
+	/**
+	 * Getter for the time the last high score save took.
+	 *
+	 * @return Write latency, in milliseconds.
+	 */
+	double getScoreWriteMillis();
+
+	/**
+	 * Getter for the longest time a high score save took.
+	 *
+	 * @return Maximum write latency, in milliseconds.
+	 */
+	double getScoreWriteMaxMillis();
+
+	/**
+	 * Getter for the frame rate the screens are paced at.
+	 *
+	 * @return Target frames per second.
+	 */
+	int getTargetFps();
+
+	/**
+	 * Setter for the frame rate the screens are paced at. Game time
+	 * advances by frame, so it also changes the speed of the game.
+	 *
+	 * @param targetFps
+	 *            Target frames per second, from 1 to 1000.
+	 */
+	void setTargetFps(int targetFps);
+
+	/**
+	 * Checks if the game screens are profiled, with the overlay.
+	 *
+	 * @return True if profiling.
+	 */
+	boolean isProfilerEnabled();
+
+	/**
+	 * Enables or disables profiling of the game screens and the overlay.
+	 *
+	 * @param profilerEnabled
+	 *            True to profile.
+	 */
+	void setProfilerEnabled(boolean profilerEnabled);
+
+	/**
+	 * Getter for the rendering mode.
+	 *
+	 * @return SPEED or QUALITY.
+	 */
+	String getRenderMode();
+
+	/**
+	 * Setter for the rendering mode.
+	 *
+	 * @param renderMode
+	 *            SPEED or QUALITY.
+	 */
+	void setRenderMode(String renderMode);
+}
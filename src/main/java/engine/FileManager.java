@@ -11,10 +11,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -22,6 +27,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import engine.DrawManager.SpriteType;
+import telemetry.ResourceEvent;
 
 /**
  * Manages files used in the application.
@@ -31,29 +37,23 @@ import engine.DrawManager.SpriteType;
  */
 public final class FileManager {
 
-	/** Singleton instance of the class. */
-	private static FileManager instance;
-	/** Application logger. */
-	private static Logger logger;
-	/** Max number of high scores. */
-	private static final int MAX_SCORES = 7;
+	/** Time in the names of the sampling profiles. */
+	private static final DateTimeFormatter PROFILE_TIME = DateTimeFormatter
+			.ofPattern("yyyyMMdd-HHmmss-SSS");
 
-	/**
-	 * private constructor.
-	 */
-	private FileManager() {
-		logger = Core.getLogger();
-	}
+	/** Application logger. */
+	private Logger logger;
+	/** File the high scores are kept in, null for the default one. */
+	private File scoresFile;
 
 	/**
-	 * Returns shared instance of FileManager.
+	 * Constructor, only called by the engine context.
 	 * 
-	 * @return Shared instance of FileManager.
+	 * @param logger
+	 *            Application logger.
 	 */
-	protected static FileManager getInstance() {
-		if (instance == null)
-			instance = new FileManager();
-		return instance;
+	FileManager(final Logger logger) {
+		this.logger = logger;
 	}
 
 	/**
@@ -68,6 +68,8 @@ public final class FileManager {
 	public void loadSprite(final Map<SpriteType, boolean[][]> spriteMap)
 			throws IOException {
 		InputStream inputStream = null;
+		ResourceEvent event = new ResourceEvent();
+		event.begin();
 
 		try {
 			inputStream = DrawManager.class.getClassLoader()
@@ -92,9 +94,11 @@ public final class FileManager {
 			}
 			if (inputStream != null)
 				inputStream.close();
+			event.succeeded = true;
 		} finally {
 			if (inputStream != null)
 				inputStream.close();
+			commit(event, "loadSprite", "graphics", spriteMap.size());
 		}
 	}
 
@@ -113,6 +117,8 @@ public final class FileManager {
 			FontFormatException {
 		InputStream inputStream = null;
 		Font font;
+		ResourceEvent event = new ResourceEvent();
+		event.begin();
 
 		try {
 			// Font loading.
@@ -120,9 +126,11 @@ public final class FileManager {
 					.getResourceAsStream("font.ttf");
 			font = Font.createFont(Font.TRUETYPE_FONT, inputStream).deriveFont(
 					size);
+			event.succeeded = true;
 		} finally {
 			if (inputStream != null)
 				inputStream.close();
+			commit(event, "loadFont", "font.ttf", 1);
 		}
 
 		return font;
@@ -164,6 +172,156 @@ public final class FileManager {
 		return highScores;
 	}
 
+	/**
+	 * Sets the file the high scores are kept in, instead of the one next to
+	 * the game, so simulated players don't touch the real scores.
+	 * 
+	 * @param scoresFile
+	 *            High scores file, null for the default one.
+	 */
+	public void setScoresFile(final File scoresFile) {
+		this.scoresFile = scoresFile;
+	}
+
+	/**
+	 * Returns the file the high scores are kept in, by default the scores
+	 * file next to the game.
+	 * 
+	 * @return High scores file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	private File getScoresFile() throws IOException {
+		if (this.scoresFile != null)
+			return this.scoresFile;
+		return getGameFile("scores");
+	}
+
+	/**
+	 * Returns the file the high scores shared by every game process are
+	 * kept in, next to the high scores file.
+	 * 
+	 * @return Shared high scores file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getSharedScoresFile() throws IOException {
+		return new File(getScoresFile().getPath() + ".shared");
+	}
+
+	/**
+	 * Returns the file every score is kept in, next to the high scores file.
+	 * 
+	 * @return Leaderboard file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getLeaderboardFile() throws IOException {
+		if (this.scoresFile != null)
+			return new File(this.scoresFile.getPath() + ".leaderboard");
+		return getGameFile("leaderboard");
+	}
+
+	/**
+	 * Returns the file the metrics of every level played are stored in,
+	 * next to the game.
+	 * 
+	 * @return Session store file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getSessionsFile() throws IOException {
+		return getGameFile("sessions");
+	}
+
+	/**
+	 * Returns the file the gameplay events are journaled in, next to the
+	 * game.
+	 * 
+	 * @return Event journal file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getEventsFile() throws IOException {
+		return getGameFile("events");
+	}
+
+	/**
+	 * Returns a file for the gameplay events of a single process, next to
+	 * the game, for when another game holds the events file.
+	 * 
+	 * @param pid
+	 *            Process identifier.
+	 * @return Event journal file of the process.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getEventsFile(final long pid) throws IOException {
+		return getGameFile("events-" + pid);
+	}
+
+	/**
+	 * Returns the file the frame stall reports are appended to, next to the
+	 * game.
+	 * 
+	 * @return Stall report file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getStallsFile() throws IOException {
+		return getGameFile("stalls");
+	}
+
+	/**
+	 * Returns the file the game in progress is saved to, next to the game.
+	 * 
+	 * @return Saved game file.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	public File getSaveFile() throws IOException {
+		return getGameFile("autosave");
+	}
+
+	/**
+	 * Creates a new file for a sampling profile, next to the game, named
+	 * after the time it is written. Profiles written in the same
+	 * millisecond are numbered, so none overwrites another.
+	 * 
+	 * @return Collapsed stacks file, empty.
+	 * @throws IOException
+	 *             In case the location of the game can't be read, or the
+	 *             file can't be created.
+	 */
+	public File getProfileFile() throws IOException {
+		String name = "profile-" + LocalDateTime.now().format(PROFILE_TIME);
+		File file = getGameFile(name + ".collapsed");
+		for (int i = 1; !file.createNewFile(); i++)
+			file = getGameFile(name + "-" + i + ".collapsed");
+		return file;
+	}
+
+	/**
+	 * Returns a file in the directory of the game.
+	 * 
+	 * @param name
+	 *            Name of the file.
+	 * @return File next to the game.
+	 * @throws IOException
+	 *             In case the location of the game can't be read.
+	 */
+	private File getGameFile(final String name) throws IOException {
+		String jarPath = FileManager.class.getProtectionDomain()
+				.getCodeSource().getLocation().getPath();
+		jarPath = URLDecoder.decode(jarPath, "UTF-8");
+
+		String path = new File(jarPath).getParent();
+		path += File.separator;
+		path += name;
+
+		return new File(path);
+	}
+
 	/**
 	 * Loads high scores from file, and returns a sorted list of pairs score -
 	 * value.
@@ -177,17 +335,13 @@ public final class FileManager {
 		List<Score> highScores = new ArrayList<Score>();
 		InputStream inputStream = null;
 		BufferedReader bufferedReader = null;
+		ResourceEvent event = new ResourceEvent();
+		event.begin();
+		String resource = "scores";
 
 		try {
-			String jarPath = FileManager.class.getProtectionDomain()
-					.getCodeSource().getLocation().getPath();
-			jarPath = URLDecoder.decode(jarPath, "UTF-8");
-
-			String scoresPath = new File(jarPath).getParent();
-			scoresPath += File.separator;
-			scoresPath += "scores";
-
-			File scoresFile = new File(scoresPath);
+			File scoresFile = getScoresFile();
+			resource = scoresFile.getPath();
 			inputStream = new FileInputStream(scoresFile);
 			bufferedReader = new BufferedReader(new InputStreamReader(
 					inputStream, Charset.forName("UTF-8")));
@@ -204,14 +358,17 @@ public final class FileManager {
 				name = bufferedReader.readLine();
 				score = bufferedReader.readLine();
 			}
+			event.succeeded = true;
 
 		} catch (FileNotFoundException e) {
 			// loads default if there's no user scores.
 			logger.info("Loading default high scores.");
 			highScores = loadDefaultHighScores();
+			event.succeeded = true;
 		} finally {
 			if (bufferedReader != null)
 				bufferedReader.close();
+			commit(event, "loadHighScores", resource, highScores.size());
 		}
 
 		Collections.sort(highScores);
@@ -219,33 +376,27 @@ public final class FileManager {
 	}
 
 	/**
-	 * Saves user high scores to disk.
+	 * Saves user high scores to disk. They are written to a temporary file,
+	 * forced to disk and renamed over the scores file, so a crash never
+	 * leaves it half written.
 	 * 
 	 * @param highScores
 	 *            High scores to save.
 	 * @throws IOException
-	 *             In case of loading problems.
+	 *             In case of saving problems.
 	 */
 	public void saveHighScores(final List<Score> highScores) 
 			throws IOException {
-		OutputStream outputStream = null;
+		File scoresFile = getScoresFile();
+		File temporaryFile = new File(scoresFile.getPath() + ".tmp");
+		FileOutputStream outputStream = null;
 		BufferedWriter bufferedWriter = null;
+		ResourceEvent event = new ResourceEvent();
+		event.begin();
+		boolean written = false;
 
 		try {
-			String jarPath = FileManager.class.getProtectionDomain()
-					.getCodeSource().getLocation().getPath();
-			jarPath = URLDecoder.decode(jarPath, "UTF-8");
-
-			String scoresPath = new File(jarPath).getParent();
-			scoresPath += File.separator;
-			scoresPath += "scores";
-
-			File scoresFile = new File(scoresPath);
-
-			if (!scoresFile.exists())
-				scoresFile.createNewFile();
-
-			outputStream = new FileOutputStream(scoresFile);
+			outputStream = new FileOutputStream(temporaryFile);
 			bufferedWriter = new BufferedWriter(new OutputStreamWriter(
 					outputStream, Charset.forName("UTF-8")));
 
@@ -254,7 +405,7 @@ public final class FileManager {
 			// Saves 7 or less scores.
 			int savedCount = 0;
 			for (Score score : highScores) {
-				if (savedCount >= MAX_SCORES)
+				if (savedCount >= HighScoreTable.MAX_SCORES)
 					break;
 				bufferedWriter.write(score.getName());
 				bufferedWriter.newLine();
@@ -262,10 +413,69 @@ public final class FileManager {
 				bufferedWriter.newLine();
 				savedCount++;
 			}
+			bufferedWriter.flush();
+			outputStream.getFD().sync();
+			written = true;
 
 		} finally {
 			if (bufferedWriter != null)
 				bufferedWriter.close();
+			else if (outputStream != null)
+				outputStream.close();
+			if (!written)
+				commit(event, "saveHighScores", scoresFile.getPath(),
+						Math.min(highScores.size(),
+								HighScoreTable.MAX_SCORES));
+		}
+
+		try {
+			Files.move(temporaryFile.toPath(), scoresFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			syncDirectory(scoresFile.getAbsoluteFile().getParentFile());
+			event.succeeded = true;
+		} finally {
+			commit(event, "saveHighScores", scoresFile.getPath(),
+					Math.min(highScores.size(), HighScoreTable.MAX_SCORES));
 		}
 	}
+
+	/**
+	 * Writes a directory to disk, so a file just renamed into it keeps its
+	 * new name after a power failure. Does nothing where directories can't
+	 * be opened, as on Windows.
+	 * 
+	 * @param directory
+	 *            Directory to write.
+	 */
+	private void syncDirectory(final File directory) {
+		try (FileChannel channel = FileChannel.open(directory.toPath(),
+				StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			logger.fine("Couldn't sync directory " + directory + ".");
+		}
+	}
+
+	/**
+	 * Ends the flight recorder event of a resource loaded or saved.
+	 * 
+	 * @param event
+	 *            Event begun with the operation.
+	 * @param operation
+	 *            Name of the operation.
+	 * @param resource
+	 *            Resource or file read or written.
+	 * @param items
+	 *            Items read or written.
+	 */
+	private static void commit(final ResourceEvent event,
+			final String operation, final String resource, final int items) {
+		if (!event.shouldCommit())
+			return;
+		event.operation = operation;
+		event.resource = resource;
+		event.items = items;
+		event.commit();
+	}
 }
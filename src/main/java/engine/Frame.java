@@ -5,6 +5,7 @@ import java.awt.Insets;
 import javax.swing.JFrame;
 
 import screen.Screen;
+import telemetry.ScreenEvent;
 
 /**
  * Implements a frame to show screens on.
@@ -29,8 +30,11 @@ public class Frame extends JFrame {
 	 *            Frame width.
 	 * @param height
 	 *            Frame height.
+	 * @param inputManager
+	 *            Input manager receiving the key events.
 	 */
-	public Frame(final int width, final int height) {
+	public Frame(final int width, final int height,
+			final InputManager inputManager) {
 		setSize(width, height);
 		setResizable(false);
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -43,7 +47,7 @@ public class Frame extends JFrame {
 		this.height = height - insets.top + insets.bottom;
 		setTitle("Invaders");
 
-		addKeyListener(Core.getInputManager());
+		addKeyListener(inputManager);
 	}
 
 	/**
@@ -54,9 +58,15 @@ public class Frame extends JFrame {
 	 * @return Return code of the finished screen.
 	 */
 	public final int setScreen(final Screen screen) {
+		ScreenEvent event = new ScreenEvent();
+		event.begin();
 		currentScreen = screen;
 		currentScreen.initialize();
-		return currentScreen.run();
+		int returnCode = currentScreen.run();
+		event.screen = screen.getClass().getSimpleName();
+		event.returnCode = returnCode;
+		event.commit();
+		return returnCode;
 	}
 
 	/**
@@ -0,0 +1,297 @@
+package engine;
+
+import jdk.jfr.EventType;
+import telemetry.PhaseEvent;
+
+/**
+ * Measures the time spent on each phase of the game screen updates.
+ * 
+ * Besides the totals, the time of each phase in every frame is counted in
+ * a histogram for a window of frames; once the window is over its median,
+ * 99th percentile and maximum are kept for display and a new one starts.
+ * The game screen only calls it when profiling is enabled, so it costs
+ * nothing otherwise. Not thread-safe, each screen owns its own instance.
+ */
+public final class FrameProfiler {
+
+	/** Phases of a game screen update. */
+	public enum Phase {
+		/** Reading the keys, moving the ship and shooting. */
+		INPUT,
+		/** Bonus ship movement and player ship update. */
+		SHIPS,
+		/** Enemy formation movement. */
+		FORMATION_UPDATE,
+		/** Enemy formation shooting. */
+		FORMATION_SHOOT,
+		/** Collisions between bullets and ships. */
+		COLLISIONS,
+		/** Bullet movement and removal. */
+		CLEAN_BULLETS,
+		/** Drawing the frame. */
+		DRAW,
+		/** Showing the frame drawn on screen. */
+		COMPLETE_DRAWING,
+		/** Waiting before the next frame, to keep the frame rate. */
+		SLEEP
+	}
+
+	/** Phases, by ordinal. */
+	private static final Phase[] PHASES = Phase.values();
+	/** Default frames of a window, a second of game. */
+	public static final int DEFAULT_WINDOW = Core.FPS;
+	/** Flight recorder settings of the phase events. */
+	private static final EventType PHASE_EVENTS = EventType
+			.getEventType(PhaseEvent.class);
+
+	/** Time spent on each phase, in nanoseconds. */
+	private final long[] totalNanos;
+	/** Frames measured. */
+	private long frames;
+	/** Frames of each window. */
+	private final int window;
+	/** Time spent on each phase in the current frame. */
+	private final long[] frameNanos;
+	/** Time of each phase per frame in the current window. */
+	private final LatencyHistogram[] windowNanos;
+	/** Time of the whole frame in the current window. */
+	private final LatencyHistogram windowFrameNanos;
+	/** Median time of each phase, then of the frame, last window. */
+	private final long[] medianNanos;
+	/** 99th percentile of each phase, then of the frame, last window. */
+	private final long[] p99Nanos;
+	/** Maximum time of each phase, then of the frame, last window. */
+	private final long[] maxNanos;
+	/** Windows completed. */
+	private long windows;
+	/** Bullets on screen in the last frame. */
+	private int bullets;
+	/** Enemy ships on screen in the last frame. */
+	private int enemies;
+	/** Most bullets on screen in the current window. */
+	private int windowMaxBullets;
+	/** Most bullets on screen in the last window. */
+	private int maxBullets;
+
+	/**
+	 * Constructor, starts with no measures and windows of a second.
+	 */
+	public FrameProfiler() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Constructor, starts with no measures.
+	 * 
+	 * @param window
+	 *            Frames of each window the percentiles are computed over.
+	 */
+	public FrameProfiler(final int window) {
+		this.totalNanos = new long[PHASES.length];
+		this.window = Math.max(1, window);
+		this.frameNanos = new long[PHASES.length];
+		this.windowNanos = new LatencyHistogram[PHASES.length];
+		for (int i = 0; i < PHASES.length; i++)
+			this.windowNanos[i] = new LatencyHistogram();
+		this.windowFrameNanos = new LatencyHistogram();
+		this.medianNanos = new long[PHASES.length + 1];
+		this.p99Nanos = new long[PHASES.length + 1];
+		this.maxNanos = new long[PHASES.length + 1];
+	}
+
+	/**
+	 * Adds the time elapsed since the end of the previous phase.
+	 * 
+	 * @param phase
+	 *            Phase just finished.
+	 * @param start
+	 *            Time the phase started, from System.nanoTime.
+	 * @return Time the phase finished, start of the next one.
+	 */
+	public long lap(final Phase phase, final long start) {
+		long now = System.nanoTime();
+		this.totalNanos[phase.ordinal()] += now - start;
+		this.frameNanos[phase.ordinal()] += now - start;
+		if (PHASE_EVENTS.isEnabled()) {
+			PhaseEvent event = new PhaseEvent();
+			event.phase = phase.name();
+			event.phaseDuration = now - start;
+			event.commit();
+		}
+		return now;
+	}
+
+	/**
+	 * Checks if a flight recording is taking the phase events, which
+	 * profiles the game screens shown even without the overlay.
+	 * 
+	 * @return True if phase events are recorded.
+	 */
+	public static boolean isRecorded() {
+		return PHASE_EVENTS.isEnabled();
+	}
+
+	/**
+	 * Counts the entities on screen in the current frame.
+	 * 
+	 * @param bullets
+	 *            Bullets on screen.
+	 * @param enemies
+	 *            Enemy ships on screen.
+	 */
+	public void countEntities(final int bullets, final int enemies) {
+		this.bullets = bullets;
+		this.enemies = enemies;
+		this.windowMaxBullets = Math.max(this.windowMaxBullets, bullets);
+	}
+
+	/**
+	 * Marks the end of a frame. The time waited after it counts in the next
+	 * one.
+	 */
+	public void endFrame() {
+		this.frames++;
+		long frameTotal = 0;
+		for (int i = 0; i < PHASES.length; i++) {
+			this.windowNanos[i].record(this.frameNanos[i]);
+			frameTotal += this.frameNanos[i];
+			this.frameNanos[i] = 0;
+		}
+		this.windowFrameNanos.record(frameTotal);
+		if (this.windowFrameNanos.getCount() < this.window)
+			return;
+
+		for (int i = 0; i <= PHASES.length; i++) {
+			LatencyHistogram histogram = i < PHASES.length
+					? this.windowNanos[i] : this.windowFrameNanos;
+			this.medianNanos[i] = histogram.getPercentile(50);
+			this.p99Nanos[i] = histogram.getPercentile(99);
+			this.maxNanos[i] = histogram.getMax();
+			histogram.reset();
+		}
+		this.maxBullets = this.windowMaxBullets;
+		this.windowMaxBullets = 0;
+		this.windows++;
+	}
+
+	/**
+	 * Getter for the median time of a phase per frame in the last window.
+	 * 
+	 * @param phase
+	 *            Phase to check, null for the whole frame.
+	 * @return Median time, in nanoseconds.
+	 */
+	public long getMedianNanos(final Phase phase) {
+		return this.medianNanos[phase == null ? PHASES.length
+				: phase.ordinal()];
+	}
+
+	/**
+	 * Getter for the 99th percentile of the time of a phase per frame in
+	 * the last window.
+	 * 
+	 * @param phase
+	 *            Phase to check, null for the whole frame.
+	 * @return 99th percentile, in nanoseconds.
+	 */
+	public long getP99Nanos(final Phase phase) {
+		return this.p99Nanos[phase == null ? PHASES.length
+				: phase.ordinal()];
+	}
+
+	/**
+	 * Getter for the longest time of a phase in a frame of the last window.
+	 * 
+	 * @param phase
+	 *            Phase to check, null for the whole frame.
+	 * @return Maximum time, in nanoseconds.
+	 */
+	public long getMaxNanos(final Phase phase) {
+		return this.maxNanos[phase == null ? PHASES.length
+				: phase.ordinal()];
+	}
+
+	/**
+	 * Getter for the windows completed, which changes whenever the
+	 * percentiles do.
+	 * 
+	 * @return Number of windows.
+	 */
+	public long getWindows() {
+		return this.windows;
+	}
+
+	/**
+	 * Getter for the bullets on screen in the last frame.
+	 * 
+	 * @return Number of bullets.
+	 */
+	public int getBullets() {
+		return this.bullets;
+	}
+
+	/**
+	 * Getter for the most bullets on screen in a frame of the last window.
+	 * 
+	 * @return Number of bullets.
+	 */
+	public int getMaxBullets() {
+		return this.maxBullets;
+	}
+
+	/**
+	 * Getter for the enemy ships on screen in the last frame.
+	 * 
+	 * @return Number of enemy ships.
+	 */
+	public int getEnemies() {
+		return this.enemies;
+	}
+
+	/**
+	 * Getter for the time spent on a phase.
+	 * 
+	 * @param phase
+	 *            Phase to check.
+	 * @return Total time spent on the phase, in nanoseconds.
+	 */
+	public long getTotalNanos(final Phase phase) {
+		return this.totalNanos[phase.ordinal()];
+	}
+
+	/**
+	 * Getter for the frames measured.
+	 * 
+	 * @return Number of frames.
+	 */
+	public long getFrames() {
+		return this.frames;
+	}
+
+	/**
+	 * Adds the measures of another profiler to this one.
+	 * 
+	 * @param other
+	 *            Profiler to add.
+	 */
+	public void add(final FrameProfiler other) {
+		for (int i = 0; i < this.totalNanos.length; i++)
+			this.totalNanos[i] += other.totalNanos[i];
+		this.frames += other.frames;
+	}
+
+	/**
+	 * Summarizes the average time per frame of each phase.
+	 * 
+	 * @return One line per phase.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder output = new StringBuilder();
+		for (Phase phase : PHASES)
+			output.append(String.format("%-17s %10.3f us/frame%n", phase,
+					this.frames == 0 ? 0 : this.totalNanos[phase.ordinal()]
+							/ 1000.0 / this.frames));
+		return output.toString();
+	}
+}
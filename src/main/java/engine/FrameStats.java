@@ -0,0 +1,144 @@
+package engine;
+
+import telemetry.Metrics;
+
+/**
+ * Frame rate and frame times of the screens shown, over the last second,
+ * for monitoring from other threads. The game thread records every frame;
+ * once a second has passed the rate and percentiles are published and a
+ * new second starts. Readers only see published values.
+ */
+public final class FrameStats {
+
+	/** Length of the window the values are computed over. */
+	private static final long WINDOW_NANOS = 1000000000L;
+
+	/** Metrics of the game, counting every frame. */
+	private final Metrics metrics;
+	/** Time between frames in the current window. */
+	private final LatencyHistogram frameTimes;
+	/** Start of the current window, 0 before the first frame. */
+	private long windowStart;
+	/** End of the last frame, 0 before the first. */
+	private long lastFrame;
+
+	/** Frames per second achieved in the last window. */
+	private volatile double fps;
+	/** Median time between frames in the last window, in nanoseconds. */
+	private volatile long medianNanos;
+	/** 99th percentile of the time between frames, in nanoseconds. */
+	private volatile long p99Nanos;
+	/** Longest time between frames in the last window, in nanoseconds. */
+	private volatile long maxNanos;
+	/** Bullets on screen in the last game frame. */
+	private volatile int bullets;
+	/** Enemy ships on screen in the last game frame. */
+	private volatile int enemies;
+
+	/**
+	 * Constructor, starts with no frames.
+	 *
+	 * @param metrics
+	 *            Metrics of the game, counting every frame.
+	 */
+	public FrameStats(final Metrics metrics) {
+		this.metrics = metrics;
+		this.frameTimes = new LatencyHistogram();
+	}
+
+	/**
+	 * Records the end of a frame, from the game thread, also in the
+	 * metrics of the game.
+	 *
+	 * @param now
+	 *            Time the frame ended, from System.nanoTime.
+	 */
+	public void frame(final long now) {
+		if (this.lastFrame == 0) {
+			this.windowStart = now;
+		} else {
+			this.frameTimes.record(now - this.lastFrame);
+			this.metrics.getFrameTime().observeNanos(now - this.lastFrame);
+		}
+		this.metrics.getFrames().increment();
+		this.lastFrame = now;
+
+		long elapsed = now - this.windowStart;
+		if (elapsed < WINDOW_NANOS)
+			return;
+		this.fps = this.frameTimes.getCount() * 1e9 / elapsed;
+		this.medianNanos = this.frameTimes.getPercentile(50);
+		this.p99Nanos = this.frameTimes.getPercentile(99);
+		this.maxNanos = this.frameTimes.getMax();
+		this.frameTimes.reset();
+		this.windowStart = now;
+	}
+
+	/**
+	 * Records the entities on screen in a game frame, from the game thread.
+	 *
+	 * @param bullets
+	 *            Bullets on screen.
+	 * @param enemies
+	 *            Enemy ships on screen.
+	 */
+	public void countEntities(final int bullets, final int enemies) {
+		this.bullets = bullets;
+		this.enemies = enemies;
+	}
+
+	/**
+	 * Getter for the frame rate achieved in the last second.
+	 *
+	 * @return Frames per second.
+	 */
+	public double getFps() {
+		return this.fps;
+	}
+
+	/**
+	 * Getter for the median time between frames in the last second.
+	 *
+	 * @return Median frame time, in nanoseconds.
+	 */
+	public long getMedianNanos() {
+		return this.medianNanos;
+	}
+
+	/**
+	 * Getter for the 99th percentile of the time between frames in the
+	 * last second.
+	 *
+	 * @return 99th percentile frame time, in nanoseconds.
+	 */
+	public long getP99Nanos() {
+		return this.p99Nanos;
+	}
+
+	/**
+	 * Getter for the longest time between frames in the last second.
+	 *
+	 * @return Maximum frame time, in nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return this.maxNanos;
+	}
+
+	/**
+	 * Getter for the bullets on screen in the last game frame.
+	 *
+	 * @return Number of bullets.
+	 */
+	public int getBullets() {
+		return this.bullets;
+	}
+
+	/**
+	 * Getter for the enemy ships on screen in the last game frame.
+	 *
+	 * @return Number of enemy ships.
+	 */
+	public int getEnemies() {
+		return this.enemies;
+	}
+}
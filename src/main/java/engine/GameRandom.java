@@ -0,0 +1,125 @@
+package engine;
+
+/**
+ * Implements the random number source of a game session.
+ *
+ * Uses the same SplitMix64 algorithm as SplittableRandom, but keeps its
+ * state accessible so sessions can be reproduced, saved and resumed. Every
+ * random decision of a session comes from a single instance, seeded when the
+ * session starts. Not thread-safe, each session owns its own instance.
+ */
+public final class GameRandom {
+
+	/** Odd constant added to the state on each step, golden ratio based. */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/** Scale from 53 random bits to a double in [0, 1). */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	/** Seed the session was started with. */
+	private final long seed;
+	/** Current state of the generator. */
+	private long state;
+
+	/**
+	 * Constructor, starts the sequence from a given seed.
+	 *
+	 * @param seed
+	 *            Seed of the session.
+	 */
+	public GameRandom(final long seed) {
+		this.seed = seed;
+		this.state = seed;
+	}
+
+	/**
+	 * Creates a seed for a new session.
+	 *
+	 * @return Seed based on the current time.
+	 */
+	public static long newSeed() {
+		return mix(System.nanoTime() ^ System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the next random 64 bits.
+	 *
+	 * @return Random long.
+	 */
+	public long nextLong() {
+		this.state += GOLDEN_GAMMA;
+		return mix(this.state);
+	}
+
+	/**
+	 * Returns a random integer between 0 (inclusive) and bound (exclusive).
+	 *
+	 * @param bound
+	 *            Upper bound, must be positive.
+	 * @return Random integer.
+	 */
+	public int nextInt(final int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("Bound must be positive.");
+		return (int) ((nextLong() >>> 33) * bound >>> 31);
+	}
+
+	/**
+	 * Returns a random double between 0 (inclusive) and 1 (exclusive).
+	 *
+	 * @return Random double.
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * Creates an independent generator, derived from this one.
+	 *
+	 * @return New generator.
+	 */
+	public GameRandom split() {
+		return new GameRandom(nextLong());
+	}
+
+	/**
+	 * Getter for the seed the session was started with.
+	 *
+	 * @return Session seed.
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Getter for the current state, to save the generator.
+	 *
+	 * @return Generator state.
+	 */
+	public long getState() {
+		return this.state;
+	}
+
+	/**
+	 * Setter for the current state, to restore a saved generator.
+	 *
+	 * @param state
+	 *            Generator state.
+	 */
+	public void setState(final long state) {
+		this.state = state;
+	}
+
+	/**
+	 * Scrambles the bits of a state, MurmurHash3 finalizer variant.
+	 *
+	 * @param value
+	 *            Value to scramble.
+	 * @return Scrambled value.
+	 */
+	private static long mix(final long value) {
+		long z = value;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -8,6 +8,9 @@ package engine;
  */
 public class GameSettings {
 
+	/** Default number of entities above which collisions run in parallel. */
+	public static final int DEFAULT_PARALLEL_COLLISION_THRESHOLD = 512;
+
 	/** Width of the level's enemy formation. */
 	private int formationWidth;
 	/** Height of the level's enemy formation. */
@@ -16,6 +19,8 @@ public class GameSettings {
 	private int baseSpeed;
 	/** Frequency of enemy shootings, +/- 30%. */
 	private int shootingFrecuency;
+	/** Bullets plus enemies on screen above which collisions are parallel. */
+	private int parallelCollisionThreshold;
 
 	/**
 	 * Constructor.
@@ -31,10 +36,33 @@ public class GameSettings {
 	 */
 	public GameSettings(final int formationWidth, final int formationHeight,
 			final int baseSpeed, final int shootingFrecuency) {
+		this(formationWidth, formationHeight, baseSpeed, shootingFrecuency,
+				DEFAULT_PARALLEL_COLLISION_THRESHOLD);
+	}
+
+	/**
+	 * Constructor, for custom settings with large formations or heavy fire.
+	 * 
+	 * @param formationWidth
+	 *            Width of the level's enemy formation.
+	 * @param formationHeight
+	 *            Height of the level's enemy formation.
+	 * @param baseSpeed
+	 *            Speed of the enemies.
+	 * @param shootingFrecuency
+	 *            Frecuency of enemy shootings, +/- 30%.
+	 * @param parallelCollisionThreshold
+	 *            Number of bullets plus enemies above which collisions are
+	 *            checked in parallel.
+	 */
+	public GameSettings(final int formationWidth, final int formationHeight,
+			final int baseSpeed, final int shootingFrecuency,
+			final int parallelCollisionThreshold) {
 		this.formationWidth = formationWidth;
 		this.formationHeight = formationHeight;
 		this.baseSpeed = baseSpeed;
 		this.shootingFrecuency = shootingFrecuency;
+		this.parallelCollisionThreshold = parallelCollisionThreshold;
 	}
 
 	/**
@@ -65,4 +93,11 @@ public class GameSettings {
 		return shootingFrecuency;
 	}
 
+	/**
+	 * @return the parallelCollisionThreshold
+	 */
+	public final int getParallelCollisionThreshold() {
+		return parallelCollisionThreshold;
+	}
+
 }
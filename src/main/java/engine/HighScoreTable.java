@@ -0,0 +1,308 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import telemetry.Metrics;
+
+/**
+ * Keeps the high scores, opened the first time they are needed. They live
+ * in a memory mapped file shared by every game process on the machine, so
+ * screens read the current table of all of them without parsing anything,
+ * and new scores are inserted in place. Inserting them, which waits for
+ * the other processes to release the file, and forcing the changes to disk
+ * are left to a background thread, so screens never wait for either; the
+ * scores not inserted yet are merged into the table read meanwhile. Scores
+ * submitted while a save is pending are written together by that save.
+ *
+ * A new shared file starts with the scores of the scores file. If the
+ * shared file can't be opened, the table is kept in memory and saved to the
+ * scores file instead.
+ */
+public final class HighScoreTable {
+
+	/** Max number of high scores. */
+	public static final int MAX_SCORES = 7;
+	/** Seconds to wait for pending saves when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+
+	/** File manager reading and writing the scores file. */
+	private final FileManager fileManager;
+	/** Application logger. */
+	private final Logger logger;
+	/** Metrics of the game, timing the loads and saves. */
+	private final Metrics metrics;
+	/** If a save is queued and hasn't started yet. */
+	private final AtomicBoolean savePending;
+	/** If the table was opened. */
+	private boolean loaded;
+	/** High scores shared with the other processes, null if not shared. */
+	private SharedScoreFile sharedScores;
+	/** High scores, sorted, when not shared. */
+	private List<Score> highScores;
+	/** Scores submitted and not yet inserted in the shared table. */
+	private final List<Score> pendingScores;
+	/** Thread saving the scores, created on the first submission. */
+	private ExecutorService writer;
+	/** Time the last save took, in nanoseconds. */
+	private volatile long lastSaveNanos;
+	/** Longest time a save took, in nanoseconds. */
+	private volatile long maxSaveNanos;
+
+	/**
+	 * Constructor, only called by the engine context.
+	 *
+	 * @param fileManager
+	 *            File manager reading and writing the scores file.
+	 * @param logger
+	 *            Application logger.
+	 * @param metrics
+	 *            Metrics of the game, timing the loads and saves.
+	 */
+	HighScoreTable(final FileManager fileManager, final Logger logger,
+			final Metrics metrics) {
+		this.fileManager = fileManager;
+		this.logger = logger;
+		this.metrics = metrics;
+		this.savePending = new AtomicBoolean();
+		this.pendingScores = new ArrayList<Score>();
+	}
+
+	/**
+	 * Returns the high scores, opening them if they weren't yet.
+	 *
+	 * @return Sorted copy of the high scores.
+	 */
+	public synchronized List<Score> getHighScores() {
+		load();
+		if (this.sharedScores != null) {
+			List<Score> scores = this.sharedScores.read();
+			if (!this.pendingScores.isEmpty()) {
+				scores.addAll(this.pendingScores);
+				Collections.sort(scores);
+				while (scores.size() > MAX_SCORES)
+					scores.remove(scores.size() - 1);
+			}
+			return scores;
+		}
+		return new ArrayList<Score>(this.highScores);
+	}
+
+	/**
+	 * Checks if a score would enter the table.
+	 *
+	 * @param score
+	 *            Score obtained.
+	 * @return True if the score is a new high score.
+	 */
+	public synchronized boolean isHighScore(final int score) {
+		List<Score> scores = getHighScores();
+		return scores.size() < MAX_SCORES
+				|| scores.get(scores.size() - 1).getScore() < score;
+	}
+
+	/**
+	 * Adds a score to the table and queues a save, unless one is already
+	 * queued.
+	 *
+	 * @param score
+	 *            New high score.
+	 */
+	public synchronized void submit(final Score score) {
+		load();
+		if (this.sharedScores != null) {
+			this.pendingScores.add(score);
+		} else {
+			this.highScores.add(score);
+			Collections.sort(this.highScores);
+			if (this.highScores.size() > MAX_SCORES)
+				this.highScores.remove(this.highScores.size() - 1);
+		}
+
+		if (this.writer == null)
+			this.writer = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "scores-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		if (this.savePending.compareAndSet(false, true))
+			this.writer.execute(this::save);
+	}
+
+	/**
+	 * Retries the scores a failed save left pending, waits for the pending
+	 * saves and stops the writer thread.
+	 */
+	public void close() {
+		ExecutorService writer;
+		synchronized (this) {
+			writer = this.writer;
+			this.writer = null;
+			// Scores a failed save left behind get a last try.
+			if (writer != null && !this.pendingScores.isEmpty()
+					&& this.savePending.compareAndSet(false, true))
+				writer.execute(this::save);
+		}
+		if (writer != null) {
+			writer.shutdown();
+			try {
+				if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+					this.logger.warning("High scores not fully saved.");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			if (this.sharedScores != null) {
+				try {
+					this.sharedScores.close();
+				} catch (IOException e) {
+					this.logger.warning("Couldn't close shared high scores!");
+				}
+				this.sharedScores = null;
+				this.loaded = false;
+			}
+		}
+	}
+
+	/**
+	 * Opens the high scores the first time they are needed, timing it.
+	 */
+	private void load() {
+		if (this.loaded)
+			return;
+		this.loaded = true;
+		long start = System.nanoTime();
+		try {
+			open();
+		} finally {
+			this.metrics.getScoreLoadTime().observeNanos(
+					System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Opens the shared high scores, creating them from the scores file if
+	 * they don't exist, or loads the scores file if they can't be shared.
+	 */
+	private void open() {
+		List<Score> fileScores = null;
+		try {
+			File sharedFile = this.fileManager.getSharedScoresFile();
+			if (!sharedFile.exists())
+				fileScores = loadScoresFile();
+			this.sharedScores = SharedScoreFile.open(sharedFile, MAX_SCORES,
+					fileScores != null ? fileScores
+							: new ArrayList<Score>());
+		} catch (IOException e) {
+			this.logger.warning("Couldn't open shared high scores!");
+			this.highScores = fileScores != null ? fileScores
+					: loadScoresFile();
+		}
+	}
+
+	/**
+	 * Getter for the time the last save took, from any thread.
+	 *
+	 * @return Write latency of the scores, in nanoseconds, 0 before the
+	 *         first save.
+	 */
+	public long getLastSaveNanos() {
+		return this.lastSaveNanos;
+	}
+
+	/**
+	 * Getter for the longest time a save took, from any thread.
+	 *
+	 * @return Maximum write latency of the scores, in nanoseconds.
+	 */
+	public long getMaxSaveNanos() {
+		return this.maxSaveNanos;
+	}
+
+	/**
+	 * Loads the scores file.
+	 *
+	 * @return Sorted high scores, empty if they can't be loaded.
+	 */
+	private List<Score> loadScoresFile() {
+		try {
+			return this.fileManager.loadHighScores();
+		} catch (NumberFormatException | IOException e) {
+			this.logger.warning("Couldn't load high scores!");
+			return new ArrayList<Score>();
+		}
+	}
+
+	/**
+	 * Writes the table on the writer thread, timing the write.
+	 */
+	private void save() {
+		// Scores submitted from now on need another save.
+		this.savePending.set(false);
+		long start = System.nanoTime();
+		try {
+			write();
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			this.lastSaveNanos = elapsed;
+			this.metrics.getScoreSaves().increment();
+			this.metrics.getScoreSaveTime().observeNanos(elapsed);
+			if (elapsed > this.maxSaveNanos)
+				this.maxSaveNanos = elapsed;
+		}
+	}
+
+	/**
+	 * Inserts the pending scores in the shared table and forces it to disk,
+	 * or saves the table to the scores file when not shared. Scores that
+	 * can't be inserted are saved to the scores file, and inserted by the
+	 * next save.
+	 */
+	private void write() {
+		SharedScoreFile sharedScores;
+		List<Score> pending = null;
+		List<Score> highScores = null;
+		synchronized (this) {
+			sharedScores = this.sharedScores;
+			if (sharedScores == null)
+				highScores = getHighScores();
+			else
+				pending = new ArrayList<Score>(this.pendingScores);
+		}
+		if (sharedScores != null) {
+			boolean inserted = true;
+			// Inserted without holding the table, screens keep reading it.
+			for (Score score : pending) {
+				try {
+					sharedScores.insert(score);
+				} catch (IOException e) {
+					this.logger.warning("Couldn't update shared high scores!");
+					inserted = false;
+					break;
+				}
+				synchronized (this) {
+					this.pendingScores.remove(score);
+				}
+			}
+			sharedScores.force();
+			if (inserted)
+				return;
+			// Still pending for the next save, kept in the scores file too.
+			highScores = getHighScores();
+		}
+		try {
+			this.fileManager.saveHighScores(highScores);
+		} catch (IOException e) {
+			this.logger.warning("Couldn't save high scores!");
+		}
+	}
+}
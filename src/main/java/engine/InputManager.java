@@ -9,33 +9,20 @@ import java.awt.event.KeyListener;
  * @author <a href="mailto:RobertoIA1987@gmail.com">Roberto Izquierdo Amo</a>
  * 
  */
-public final class InputManager implements KeyListener {
+public final class InputManager implements KeyListener, InputSource {
 
 	/** Number of recognised keys. */
 	private static final int NUM_KEYS = 256;
 	/** Array with the jeys marked as pressed or not. */
-	private static boolean[] keys;
-	/** Singleton instance of the class. */
-	private static InputManager instance;
+	private boolean[] keys;
 
 	/**
-	 * Private constructor.
+	 * Constructor, only called by the engine context.
 	 */
-	private InputManager() {
+	InputManager() {
 		keys = new boolean[NUM_KEYS];
 	}
 
-	/**
-	 * Returns shared instance of InputManager.
-	 * 
-	 * @return Shared instance of InputManager.
-	 */
-	protected static InputManager getInstance() {
-		if (instance == null)
-			instance = new InputManager();
-		return instance;
-	}
-
 	/**
 	 * Returns true if the provided key is currently pressed.
 	 * 
@@ -47,6 +34,40 @@ public final class InputManager implements KeyListener {
 		return keys[keyCode];
 	}
 
+	/**
+	 * Changes the state of a key without a key event, for simulated players.
+	 * 
+	 * @param keyCode
+	 *            Key number to change.
+	 * @param pressed
+	 *            New key state.
+	 */
+	public void setKeyDown(final int keyCode, final boolean pressed) {
+		if (keyCode >= 0 && keyCode < NUM_KEYS)
+			keys[keyCode] = pressed;
+	}
+
+	/**
+	 * Returns the game keys currently pressed.
+	 * 
+	 * @return Mask of the pressed keys.
+	 */
+	@Override
+	public int pollKeys() {
+		int mask = 0;
+		if (keys[KeyEvent.VK_LEFT])
+			mask |= KEY_LEFT;
+		if (keys[KeyEvent.VK_RIGHT])
+			mask |= KEY_RIGHT;
+		if (keys[KeyEvent.VK_A])
+			mask |= KEY_A;
+		if (keys[KeyEvent.VK_D])
+			mask |= KEY_D;
+		if (keys[KeyEvent.VK_SPACE])
+			mask |= KEY_SPACE;
+		return mask;
+	}
+
 	/**
 	 * Changes the state of the key to pressed.
 	 * 
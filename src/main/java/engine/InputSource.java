@@ -0,0 +1,25 @@
+package engine;
+
+/**
+ * Source of the keys read by the game screen on each frame.
+ */
+public interface InputSource {
+
+	/** Left arrow key. */
+	int KEY_LEFT = 1;
+	/** Right arrow key. */
+	int KEY_RIGHT = 1 << 1;
+	/** A key, moves left. */
+	int KEY_A = 1 << 2;
+	/** D key, moves right. */
+	int KEY_D = 1 << 3;
+	/** Space key, shoots. */
+	int KEY_SPACE = 1 << 4;
+
+	/**
+	 * Returns the keys pressed this frame. Called exactly once per frame.
+	 * 
+	 * @return Mask of the KEY_ constants currently pressed.
+	 */
+	int pollKeys();
+}
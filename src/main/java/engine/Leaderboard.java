@@ -0,0 +1,505 @@
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Keeps every score ever submitted, by difficulty, to rank new scores among
+ * all of them and list the best ones.
+ *
+ * Each difficulty counts its scores in a Fenwick tree indexed by score, so
+ * the number of better scores, and with it the rank of any score, is a
+ * logarithmic query however many scores there are; the tree doubles when a
+ * score doesn't fit. Only the best scores are kept with their names, sorted,
+ * to list the top of the board. On disk the board is an append only file of
+ * fixed size records, one per score, written in the background; a record
+ * cut by a crash is dropped when loading.
+ *
+ * Games sharing the file append to it in turns, each under a lock of the
+ * file and at its end as it is then, so none cuts the records of another.
+ * A file that can't be loaded is never written: it is renamed aside, with a
+ * .bak suffix, and a new board started.
+ */
+public final class Leaderboard {
+
+	/** Best scores kept with their names, per difficulty. */
+	public static final int TOP_CAPACITY = 100;
+	/** Highest score a board counts, keeps its tree to a few MB. */
+	public static final int MAX_SCORE = 999999;
+	/** Identifies leaderboard files. */
+	private static final int MAGIC = 0x4C444244;
+	/** Version of the file format. */
+	private static final int VERSION = 1;
+	/** Size of the file header, magic and version. */
+	private static final int HEADER_SIZE = 8;
+	/** Size of a record: difficulty, score and name. */
+	private static final int RECORD_SIZE = 9;
+	/** Difficulty options, as selected in the difficulty screen. */
+	private static final int DIFFICULTIES = 4;
+	/** Initial scores counted by each tree, grown when needed. */
+	private static final int INITIAL_SCORES = 1 << 14;
+	/** Seconds to wait for pending saves when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+	/** Suffix of a file renamed aside because it couldn't be loaded. */
+	private static final String BACKUP_SUFFIX = ".bak";
+
+	/**
+	 * Scores of a single difficulty.
+	 */
+	private static final class Board {
+
+		/** Fenwick tree, counts of scores by score plus one. */
+		private int[] tree;
+		/** Scores submitted. */
+		private int count;
+		/** Best scores, descending. */
+		private final int[] topScores;
+		/** Names of the best scores, packed. */
+		private final int[] topNames;
+		/** Best scores kept. */
+		private int topSize;
+
+		/**
+		 * Constructor.
+		 */
+		Board() {
+			this.tree = new int[INITIAL_SCORES + 1];
+			this.topScores = new int[TOP_CAPACITY];
+			this.topNames = new int[TOP_CAPACITY];
+		}
+
+		/**
+		 * Counts a new score and keeps it if it is among the best. Equal
+		 * scores are listed in submission order.
+		 *
+		 * @param score
+		 *            Score, from 0 to MAX_SCORE.
+		 * @param name
+		 *            Packed name of the player.
+		 */
+		void add(final int score, final int name) {
+			if (!isValid(score))
+				throw new IllegalArgumentException("Score out of range "
+						+ score + ".");
+			while (score + 1 >= this.tree.length)
+				grow();
+			for (int i = score + 1; i < this.tree.length; i += i & -i)
+				this.tree[i]++;
+			this.count++;
+
+			int position = this.topSize;
+			while (position > 0 && this.topScores[position - 1] < score)
+				position--;
+			if (position == TOP_CAPACITY)
+				return;
+			int moved = Math.min(this.topSize, TOP_CAPACITY - 1) - position;
+			System.arraycopy(this.topScores, position, this.topScores,
+					position + 1, moved);
+			System.arraycopy(this.topNames, position, this.topNames,
+					position + 1, moved);
+			this.topScores[position] = score;
+			this.topNames[position] = name;
+			this.topSize = Math.min(this.topSize + 1, TOP_CAPACITY);
+		}
+
+		/**
+		 * Counts the scores higher than a given one.
+		 *
+		 * @param score
+		 *            Score, not negative.
+		 * @return Number of higher scores.
+		 */
+		int countHigher(final int score) {
+			if (score + 1 >= this.tree.length)
+				return 0;
+			int atMost = 0;
+			for (int i = score + 1; i > 0; i -= i & -i)
+				atMost += this.tree[i];
+			return this.count - atMost;
+		}
+
+		/**
+		 * Doubles the scores counted. The tree size is a power of two, so the
+		 * existing nodes stay valid and the new root covers them all.
+		 */
+		private void grow() {
+			int size = this.tree.length - 1;
+			int[] grown = new int[size * 2 + 1];
+			System.arraycopy(this.tree, 0, grown, 0, this.tree.length);
+			grown[size * 2] = this.tree[size];
+			this.tree = grown;
+		}
+	}
+
+	/** Leaderboard file. */
+	private final File file;
+	/** Application logger. */
+	private final Logger logger;
+	/** Scores of each difficulty, null until loaded. */
+	private Board[] boards;
+	/** If the file couldn't be loaded nor renamed aside, so not saved. */
+	private volatile boolean unwritable;
+	/** Records submitted and not yet saved. */
+	private ByteArrayOutputStream pending;
+	/** If a save is queued and hasn't started yet. */
+	private final AtomicBoolean savePending;
+	/** Thread saving the records, created on the first submission. */
+	private ExecutorService writer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            Leaderboard file.
+	 * @param logger
+	 *            Application logger.
+	 */
+	public Leaderboard(final File file, final Logger logger) {
+		this.file = file;
+		this.logger = logger;
+		this.pending = new ByteArrayOutputStream();
+		this.savePending = new AtomicBoolean();
+	}
+
+	/**
+	 * Adds a score to the board of a difficulty, and queues it to be saved.
+	 *
+	 * @param difficulty
+	 *            Difficulty option the score was obtained at.
+	 * @param score
+	 *            Score obtained.
+	 */
+	public synchronized void submit(final int difficulty, final Score score) {
+		int points = Math.max(0, score.getScore());
+		if (!isValid(points)) {
+			this.logger.warning("Score " + points
+					+ " out of the leaderboard's range, not kept.");
+			return;
+		}
+		int name = packName(score.getName());
+		getBoard(difficulty).add(points, name);
+
+		DataOutputStream output = new DataOutputStream(this.pending);
+		try {
+			output.writeByte(difficulty);
+			output.writeInt(points);
+			output.writeInt(name);
+		} catch (IOException e) {
+			// Writing to memory doesn't fail.
+		}
+
+		if (this.writer == null)
+			this.writer = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "leaderboard-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		if (this.savePending.compareAndSet(false, true))
+			this.writer.execute(this::save);
+	}
+
+	/**
+	 * Returns the rank a score has, or would have, among the scores of a
+	 * difficulty. Equal scores share their rank.
+	 *
+	 * @param difficulty
+	 *            Difficulty option.
+	 * @param score
+	 *            Score to rank.
+	 * @return Rank, 1 for the best score.
+	 */
+	public synchronized int getRank(final int difficulty, final int score) {
+		return getBoard(difficulty).countHigher(Math.max(0, score)) + 1;
+	}
+
+	/**
+	 * Returns the number of scores submitted at a difficulty.
+	 *
+	 * @param difficulty
+	 *            Difficulty option.
+	 * @return Number of scores.
+	 */
+	public synchronized int getCount(final int difficulty) {
+		return getBoard(difficulty).count;
+	}
+
+	/**
+	 * Returns the best scores of a difficulty.
+	 *
+	 * @param difficulty
+	 *            Difficulty option.
+	 * @param size
+	 *            Scores to return, up to TOP_CAPACITY.
+	 * @return Best scores, descending.
+	 */
+	public synchronized List<Score> getTop(final int difficulty,
+			final int size) {
+		Board board = getBoard(difficulty);
+		int top = Math.min(size, board.topSize);
+		List<Score> scores = new ArrayList<Score>(top);
+		for (int i = 0; i < top; i++)
+			scores.add(new Score(unpackName(board.topNames[i]),
+					board.topScores[i]));
+		return scores;
+	}
+
+	/**
+	 * Waits for the pending saves and stops the writer thread.
+	 */
+	public void close() {
+		ExecutorService writer;
+		synchronized (this) {
+			writer = this.writer;
+			this.writer = null;
+		}
+		if (writer == null)
+			return;
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+				this.logger.warning("Leaderboard not fully saved.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the board of a difficulty, loading the file if it wasn't yet.
+	 *
+	 * @param difficulty
+	 *            Difficulty option.
+	 * @return Scores of the difficulty.
+	 */
+	private Board getBoard(final int difficulty) {
+		if (difficulty < 0 || difficulty >= DIFFICULTIES)
+			throw new IllegalArgumentException("Unknown difficulty "
+					+ difficulty + ".");
+		if (this.boards == null)
+			load();
+		return this.boards[difficulty];
+	}
+
+	/**
+	 * Reads every record of the file into the boards, renaming the file
+	 * aside if it can't be read.
+	 */
+	private void load() {
+		this.boards = new Board[DIFFICULTIES];
+		for (int i = 0; i < DIFFICULTIES; i++)
+			this.boards[i] = new Board();
+
+		DataInputStream input = null;
+		int loaded = 0;
+		int rejected = 0;
+		boolean failed = false;
+		try {
+			input = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(this.file), 1 << 16));
+			try {
+				if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+					this.logger.warning("Unknown leaderboard format!");
+					failed = true;
+				}
+			} catch (EOFException e) {
+				// An empty file is a new board; a cut header isn't one.
+				failed = this.file.length() > 0;
+				if (failed)
+					this.logger.warning("Unknown leaderboard format!");
+				return;
+			}
+			while (!failed) {
+				int difficulty = input.readUnsignedByte();
+				int score = input.readInt();
+				int name = input.readInt();
+				// Skipped, kept in the file: only whole records are cut.
+				if (difficulty < DIFFICULTIES && isValid(score))
+					this.boards[difficulty].add(score, name);
+				else
+					rejected++;
+				loaded++;
+			}
+		} catch (FileNotFoundException e) {
+			this.logger.info("Starting a new leaderboard.");
+		} catch (EOFException e) {
+			this.logger.info("Loaded leaderboard of " + loaded + " scores.");
+		} catch (IOException e) {
+			this.logger.warning("Couldn't load leaderboard!");
+			failed = true;
+		} finally {
+			if (input != null)
+				try {
+					input.close();
+				} catch (IOException e) {
+					this.logger.warning("Couldn't close leaderboard!");
+				}
+			if (failed)
+				moveAside();
+		}
+		if (rejected > 0)
+			this.logger.warning("Skipped " + rejected
+					+ " corrupt leaderboard records.");
+	}
+
+	/**
+	 * Renames aside a file that couldn't be loaded, starting a new board
+	 * in its place, or stops saving if it can't be renamed.
+	 */
+	private void moveAside() {
+		for (int i = 0; i < DIFFICULTIES; i++)
+			this.boards[i] = new Board();
+		File backup = new File(this.file.getPath() + BACKUP_SUFFIX);
+		for (int i = 1; backup.exists(); i++)
+			backup = new File(this.file.getPath() + BACKUP_SUFFIX + "." + i);
+		try {
+			Files.move(this.file.toPath(), backup.toPath());
+			this.logger.warning(this.file + " couldn't be loaded, moved to "
+					+ backup + ".");
+		} catch (IOException e) {
+			this.unwritable = true;
+			this.logger.warning(this.file + " couldn't be loaded nor moved,"
+					+ " the leaderboard won't be saved!");
+		}
+	}
+
+	/**
+	 * Appends the pending records to the file and forces them to disk, on
+	 * the writer thread. A record cut by a crash at the end of the file is
+	 * overwritten.
+	 */
+	private void save() {
+		// Records submitted from now on need another save.
+		this.savePending.set(false);
+		if (this.unwritable)
+			return;
+		byte[] records;
+		synchronized (this) {
+			records = this.pending.toByteArray();
+			this.pending.reset();
+		}
+		if (records.length == 0)
+			return;
+
+		try {
+			// File locks are held by the process: its boards take turns.
+			synchronized (Leaderboard.class) {
+				append(records);
+			}
+		} catch (IOException e) {
+			this.logger.warning("Couldn't save leaderboard!");
+			retry(records);
+		}
+	}
+
+	/**
+	 * Appends records at the end of the file under a lock of the file, so
+	 * other games wait to append meanwhile, and forces them to disk.
+	 *
+	 * @param records
+	 *            Records to append.
+	 * @throws IOException
+	 *             In case of writing problems, or if the file isn't a
+	 *             leaderboard.
+	 */
+	private void append(final byte[] records) throws IOException {
+		RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+		try {
+			// Released when the file is closed.
+			output.getChannel().lock();
+			long length = output.length();
+			long offset;
+			if (length < HEADER_SIZE) {
+				// New, or its header cut while being created.
+				output.setLength(0);
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				offset = HEADER_SIZE;
+			} else {
+				output.seek(0);
+				if (output.readInt() != MAGIC || output.readInt() != VERSION)
+					throw new IOException(this.file
+							+ " isn't a leaderboard.");
+				offset = length - (length - HEADER_SIZE) % RECORD_SIZE;
+				if (offset < length)
+					output.setLength(offset);
+			}
+			output.seek(offset);
+			output.write(records);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Puts back records that couldn't be saved, to be saved with the next
+	 * submission.
+	 *
+	 * @param records
+	 *            Records not saved.
+	 */
+	private synchronized void retry(final byte[] records) {
+		byte[] newer = this.pending.toByteArray();
+		this.pending.reset();
+		this.pending.write(records, 0, records.length);
+		this.pending.write(newer, 0, newer.length);
+	}
+
+	/**
+	 * Checks if a score can be counted by a board.
+	 *
+	 * @param score
+	 *            Score.
+	 * @return True if the score is from 0 to MAX_SCORE.
+	 */
+	static boolean isValid(final int score) {
+		return score >= 0 && score <= MAX_SCORE;
+	}
+
+	/**
+	 * Packs a name of up to four ASCII characters into an integer.
+	 *
+	 * @param name
+	 *            Player name, three letters.
+	 * @return Packed name.
+	 */
+	static int packName(final String name) {
+		int packed = 0;
+		for (int i = 0; i < 4; i++)
+			packed = packed << 8 | (i < name.length() ? name.charAt(i) & 0xFF
+					: 0);
+		return packed;
+	}
+
+	/**
+	 * Unpacks a name packed by packName.
+	 *
+	 * @param packed
+	 *            Packed name.
+	 * @return Player name.
+	 */
+	static String unpackName(final int packed) {
+		StringBuilder name = new StringBuilder(4);
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			char c = (char) (packed >>> shift & 0xFF);
+			if (c != 0)
+				name.append(c);
+		}
+		return name.toString();
+	}
+}
@@ -1,8 +1,8 @@
 package engine;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 
@@ -15,18 +15,51 @@ import java.util.logging.LogRecord;
 public class MinimalFormatter extends Formatter {
 
 	/** Format for the date. */
-	private static final DateFormat FORMAT = new SimpleDateFormat("h:mm:ss");
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter
+			.ofPattern("h:mm:ss").withZone(ZoneId.systemDefault());
 	/** System line separator. */
 	private static final String LINE_SEPARATOR = System
 			.getProperty("line.separator");
 
+	/**
+	 * Time of the last record formatted, truncated to the second, with its
+	 * text. Immutable, so it can be shared between threads.
+	 */
+	private static final class Timestamp {
+		/** Second since the epoch. */
+		private final long second;
+		/** Formatted time. */
+		private final String text;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param second
+		 *            Second since the epoch.
+		 */
+		private Timestamp(final long second) {
+			this.second = second;
+			this.text = FORMAT.format(Instant.ofEpochSecond(second));
+		}
+	}
+
+	/** Last timestamp formatted, records of the same second reuse it. */
+	private volatile Timestamp timestamp = new Timestamp(0);
+
 	@Override
 	public final String format(final LogRecord logRecord) {
+		long second = Math.floorDiv(logRecord.getMillis(), 1000);
+		Timestamp current = this.timestamp;
+		if (current.second != second) {
+			current = new Timestamp(second);
+			this.timestamp = current;
+		}
 
+		// Parameters are only filled in here, by the thread writing the log.
 		StringBuilder output = new StringBuilder().append("[")
 				.append(logRecord.getLevel()).append('|')
-				.append(FORMAT.format(new Date(logRecord.getMillis())))
-				.append("]: ").append(logRecord.getMessage()).append(' ')
+				.append(current.text)
+				.append("]: ").append(formatMessage(logRecord)).append(' ')
 				.append(LINE_SEPARATOR);
 
 		return output.toString();
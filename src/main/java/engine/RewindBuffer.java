@@ -0,0 +1,433 @@
+package engine;
+
+import screen.GameScreen;
+
+/**
+ * Keeps the last frames of a level in memory, to go back to any of them.
+ *
+ * Every few frames a full snapshot is kept as a keyframe; the frames in
+ * between only keep what changed since the previous one: the single valued
+ * fields that changed (positions, formation offset, cooldowns, counters),
+ * the formation mask words that changed, and the bullets that appeared or
+ * disappeared, since the rest just moved at their speed. Keyframes and
+ * deltas live in rings sized when the buffer is created, so memory stays
+ * bounded, and going back to a frame replays at most a keyframe interval of
+ * deltas.
+ */
+public final class RewindBuffer {
+
+	/** Default frames kept, ten seconds. */
+	public static final int DEFAULT_CAPACITY = 10 * Core.FPS;
+	/** Default frames between keyframes, half a second. */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = Core.FPS / 2;
+	/** Initial size of each delta, grown when needed. */
+	private static final int DELTA_SIZE = 64;
+
+	/** Frames kept, a multiple of the keyframe interval. */
+	private final int capacity;
+	/** Frames between keyframes. */
+	private final int keyframeInterval;
+	/** Full snapshots, one every keyframe interval. */
+	private final Snapshot[] keyframes;
+	/** Changes of each frame since the previous one. */
+	private final byte[][] deltas;
+	/** State of the last frame recorded, as rebuilt from the deltas. */
+	private final Snapshot previous;
+	/** State of the frame being recorded. */
+	private final Snapshot current;
+	/** Single valued fields of the previous frame. */
+	private final int[] previousScalars;
+	/** Single valued fields of the frame being recorded or rebuilt. */
+	private final int[] currentScalars;
+	/** Bullets of the previous frame matched to a current one. */
+	private boolean[] matched;
+	/** Delta being written or read. */
+	private byte[] delta;
+	/** Position in the delta being written or read. */
+	private int position;
+	/** Screen of the level being recorded. */
+	private GameScreen screen;
+	/** If the next screen recorded resumes the last frame rewound to. */
+	private boolean resuming;
+	/** Frame of the level the recording started at. */
+	private long firstTick;
+	/** Frames recorded since the recording started. */
+	private long recorded;
+
+	/**
+	 * Constructor, allocates the rings.
+	 *
+	 * @param capacity
+	 *            Frames to keep, rounded up to a multiple of the keyframe
+	 *            interval.
+	 * @param keyframeInterval
+	 *            Frames between keyframes.
+	 */
+	public RewindBuffer(final int capacity, final int keyframeInterval) {
+		this.keyframeInterval = keyframeInterval;
+		int keyframeCount = (capacity + keyframeInterval - 1)
+				/ keyframeInterval;
+		this.capacity = keyframeCount * keyframeInterval;
+		this.keyframes = new Snapshot[keyframeCount];
+		for (int i = 0; i < keyframeCount; i++)
+			this.keyframes[i] = new Snapshot();
+		this.deltas = new byte[this.capacity][];
+		for (int i = 0; i < this.capacity; i++)
+			this.deltas[i] = new byte[DELTA_SIZE];
+		this.previous = new Snapshot();
+		this.current = new Snapshot();
+		this.previousScalars = new int[Snapshot.SCALARS];
+		this.currentScalars = new int[Snapshot.SCALARS];
+		this.matched = new boolean[16];
+	}
+
+	/**
+	 * Records the current frame of a level. A new level starts a new
+	 * recording.
+	 *
+	 * @param gameScreen
+	 *            Game screen, after its update.
+	 */
+	public void record(final GameScreen gameScreen) {
+		if (gameScreen != this.screen && !this.resuming)
+			clear();
+		this.resuming = false;
+		this.screen = gameScreen;
+		gameScreen.saveState(this.current);
+		if (this.recorded == 0)
+			this.firstTick = this.current.ticks;
+
+		long index = this.recorded++;
+		if (index % this.keyframeInterval == 0) {
+			this.keyframes[keyframeSlot(index)].copyFrom(this.current);
+			this.previous.copyFrom(this.current);
+		} else {
+			int slot = (int) (index % this.capacity);
+			encode(slot);
+			// Keep the previous frame as the deltas rebuild it, with the
+			// bullets in the same order.
+			this.delta = this.deltas[slot];
+			this.position = 0;
+			apply(this.previous);
+		}
+	}
+
+	/**
+	 * Forgets every frame recorded.
+	 */
+	public void clear() {
+		this.screen = null;
+		this.resuming = false;
+		this.recorded = 0;
+	}
+
+	/**
+	 * Getter for the oldest frame that can be rebuilt.
+	 *
+	 * @return Session frame, -1 if nothing was recorded.
+	 */
+	public long getOldestTick() {
+		if (this.recorded == 0)
+			return -1;
+		return this.firstTick + oldestIndex();
+	}
+
+	/**
+	 * Getter for the newest frame recorded.
+	 *
+	 * @return Session frame, -1 if nothing was recorded.
+	 */
+	public long getNewestTick() {
+		if (this.recorded == 0)
+			return -1;
+		return this.firstTick + this.recorded - 1;
+	}
+
+	/**
+	 * Rebuilds a recorded frame, from its keyframe and the deltas after it.
+	 *
+	 * @param tick
+	 *            Session frame to rebuild.
+	 * @param snapshot
+	 *            Snapshot to write the frame to.
+	 * @return False if the frame is no longer, or not yet, recorded.
+	 */
+	public boolean seek(final long tick, final Snapshot snapshot) {
+		long index = tick - this.firstTick;
+		if (this.recorded == 0 || index < oldestIndex()
+				|| index >= this.recorded)
+			return false;
+
+		long keyframe = index - index % this.keyframeInterval;
+		snapshot.copyFrom(this.keyframes[keyframeSlot(keyframe)]);
+		for (long i = keyframe + 1; i <= index; i++) {
+			this.delta = this.deltas[(int) (i % this.capacity)];
+			this.position = 0;
+			apply(snapshot);
+		}
+		return true;
+	}
+
+	/**
+	 * Goes back to a recorded frame, forgetting the frames after it. The
+	 * next screen recorded continues the recording, so it must resume the
+	 * frame rebuilt.
+	 *
+	 * @param tick
+	 *            Session frame to go back to.
+	 * @param snapshot
+	 *            Snapshot to write the frame to.
+	 * @return False if the frame is no longer, or not yet, recorded.
+	 */
+	public boolean rewind(final long tick, final Snapshot snapshot) {
+		if (!seek(tick, snapshot))
+			return false;
+		this.recorded = tick - this.firstTick + 1;
+		this.previous.copyFrom(snapshot);
+		this.screen = null;
+		this.resuming = true;
+		return true;
+	}
+
+	/**
+	 * Index of the oldest frame whose keyframe and deltas are still kept.
+	 *
+	 * @return Index since the recording started.
+	 */
+	private long oldestIndex() {
+		long newestKeyframe = (this.recorded - 1) / this.keyframeInterval;
+		long oldestKeyframe = Math.max(0, newestKeyframe
+				- this.keyframes.length + 1);
+		return oldestKeyframe * this.keyframeInterval;
+	}
+
+	/**
+	 * Slot of the keyframe of a frame.
+	 *
+	 * @param index
+	 *            Index of a keyframe since the recording started.
+	 * @return Slot in the keyframe ring.
+	 */
+	private int keyframeSlot(final long index) {
+		return (int) (index / this.keyframeInterval % this.keyframes.length);
+	}
+
+	/**
+	 * Writes the changes from the previous frame to the current one: changed
+	 * fields, changed mask words, bullets that disappeared and bullets that
+	 * appeared.
+	 *
+	 * @param slot
+	 *            Slot of the delta in the ring.
+	 */
+	private void encode(final int slot) {
+		this.delta = this.deltas[slot];
+		this.position = 0;
+
+		this.previous.writeScalars(this.previousScalars);
+		this.current.writeScalars(this.currentScalars);
+		int changed = 0;
+		for (int i = 0; i < Snapshot.SCALARS; i++)
+			if (this.previousScalars[i] != this.currentScalars[i])
+				changed++;
+		writeVarInt(changed);
+		for (int i = 0; i < Snapshot.SCALARS; i++)
+			if (this.previousScalars[i] != this.currentScalars[i]) {
+				writeVarInt(i);
+				writeVarInt(zigZag(this.currentScalars[i]
+						- this.previousScalars[i]));
+			}
+
+		// Formation size only changes between levels, new recording.
+		int maskChanges = 0;
+		for (int i = 0; i < this.current.maskWords; i++)
+			if (this.previous.presentMask[i] != this.current.presentMask[i]
+					|| this.previous.aliveMask[i] != this.current.aliveMask[i])
+				maskChanges++;
+		writeVarInt(maskChanges);
+		for (int i = 0; i < this.current.maskWords; i++)
+			if (this.previous.presentMask[i] != this.current.presentMask[i]
+					|| this.previous.aliveMask[i] != this.current.aliveMask[i]) {
+				writeVarInt(i);
+				writeLong(this.current.presentMask[i]);
+				writeLong(this.current.aliveMask[i]);
+			}
+
+		// Bullets of the previous frame, moved one frame, that are still
+		// there; the rest disappeared.
+		if (this.matched.length < this.previous.bulletCount
+				+ this.current.bulletCount)
+			this.matched = new boolean[(this.previous.bulletCount
+					+ this.current.bulletCount) * 2];
+		int previousCount = this.previous.bulletCount;
+		for (int i = 0; i < previousCount + this.current.bulletCount; i++)
+			this.matched[i] = false;
+		int kept = 0;
+		for (int j = 0; j < this.current.bulletCount; j++)
+			for (int i = 0; i < previousCount; i++)
+				if (!this.matched[i]
+						&& this.previous.bulletX[i] == this.current.bulletX[j]
+						&& this.previous.bulletY[i]
+								+ this.previous.bulletSpeed[i]
+								== this.current.bulletY[j]
+						&& this.previous.bulletSpeed[i]
+								== this.current.bulletSpeed[j]) {
+					this.matched[i] = true;
+					this.matched[previousCount + j] = true;
+					kept++;
+					break;
+				}
+		writeVarInt(previousCount - kept);
+		for (int i = 0; i < previousCount; i++)
+			if (!this.matched[i])
+				writeVarInt(i);
+		writeVarInt(this.current.bulletCount - kept);
+		for (int j = 0; j < this.current.bulletCount; j++)
+			if (!this.matched[previousCount + j]) {
+				writeVarInt(zigZag(this.current.bulletX[j]));
+				writeVarInt(zigZag(this.current.bulletY[j]));
+				writeVarInt(zigZag(this.current.bulletSpeed[j]));
+			}
+	}
+
+	/**
+	 * Applies the delta being read to the previous frame.
+	 *
+	 * @param snapshot
+	 *            Previous frame, becomes the next one.
+	 */
+	private void apply(final Snapshot snapshot) {
+		snapshot.writeScalars(this.currentScalars);
+		int changed = readVarInt();
+		for (int n = 0; n < changed; n++) {
+			int i = readVarInt();
+			this.currentScalars[i] += unZigZag(readVarInt());
+		}
+		snapshot.readScalars(this.currentScalars);
+
+		int maskChanges = readVarInt();
+		for (int n = 0; n < maskChanges; n++) {
+			int i = readVarInt();
+			snapshot.presentMask[i] = readLong();
+			snapshot.aliveMask[i] = readLong();
+		}
+
+		// Removed bullets come in ascending order, the rest are compacted
+		// and moved one frame.
+		int removed = readVarInt();
+		int nextRemoved = removed > 0 ? readVarInt() : -1;
+		int count = 0;
+		for (int i = 0; i < snapshot.bulletCount; i++) {
+			if (i == nextRemoved) {
+				removed--;
+				nextRemoved = removed > 0 ? readVarInt() : -1;
+				continue;
+			}
+			snapshot.bulletX[count] = snapshot.bulletX[i];
+			snapshot.bulletY[count] = snapshot.bulletY[i]
+					+ snapshot.bulletSpeed[i];
+			snapshot.bulletSpeed[count] = snapshot.bulletSpeed[i];
+			count++;
+		}
+		snapshot.bulletCount = count;
+		int added = readVarInt();
+		for (int n = 0; n < added; n++)
+			snapshot.addBullet(unZigZag(readVarInt()),
+					unZigZag(readVarInt()), unZigZag(readVarInt()));
+	}
+
+	/**
+	 * Writes a non negative integer using 7 bits per byte, growing the
+	 * delta if needed.
+	 *
+	 * @param value
+	 *            Value to write.
+	 */
+	private void writeVarInt(final int value) {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		writeByte(remaining);
+	}
+
+	/**
+	 * Writes a long, eight bytes.
+	 *
+	 * @param value
+	 *            Value to write.
+	 */
+	private void writeLong(final long value) {
+		for (int shift = 56; shift >= 0; shift -= 8)
+			writeByte((int) (value >>> shift));
+	}
+
+	/**
+	 * Writes a byte, growing the delta if needed.
+	 *
+	 * @param value
+	 *            Value to write, only the lowest 8 bits are kept.
+	 */
+	private void writeByte(final int value) {
+		if (this.position == this.delta.length) {
+			byte[] grown = new byte[this.delta.length * 2];
+			System.arraycopy(this.delta, 0, grown, 0, this.position);
+			this.delta = grown;
+			this.deltas[(int) ((this.recorded - 1) % this.capacity)] = grown;
+		}
+		this.delta[this.position++] = (byte) value;
+	}
+
+	/**
+	 * Reads an integer written by writeVarInt.
+	 *
+	 * @return Value read.
+	 */
+	private int readVarInt() {
+		int value = 0;
+		int shift = 0;
+		int read;
+		do {
+			read = this.delta[this.position++];
+			value |= (read & 0x7F) << shift;
+			shift += 7;
+		} while ((read & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Reads a long written by writeLong.
+	 *
+	 * @return Value read.
+	 */
+	private long readLong() {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = value << 8 | (this.delta[this.position++] & 0xFF);
+		return value;
+	}
+
+	/**
+	 * Maps signed integers to non negative ones, small values to small
+	 * values.
+	 *
+	 * @param value
+	 *            Signed value.
+	 * @return Encoded value.
+	 */
+	private static int zigZag(final int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Reverses zigZag.
+	 *
+	 * @param value
+	 *            Encoded value.
+	 * @return Signed value.
+	 */
+	private static int unZigZag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,159 @@
+package engine;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log file that rolls over once it reaches a size: the full file is
+ * compressed into the first archive, older archives move one place down and
+ * the oldest is deleted. A log left by a previous run is archived the same
+ * way when the file is opened. Not thread-safe, meant to be written by a
+ * single log writer thread.
+ */
+public final class RollingLogFile extends Writer {
+
+	/** Default size a file rolls over at, 1 MB. */
+	public static final long DEFAULT_LIMIT = 1 << 20;
+	/** Default compressed archives kept. */
+	public static final int DEFAULT_ARCHIVES = 5;
+	/** Suffix of the compressed archives. */
+	private static final String ARCHIVE_SUFFIX = ".gz";
+
+	/** Current log file. */
+	private final File file;
+	/** Size a file rolls over at, in bytes. */
+	private final long limit;
+	/** Compressed archives kept. */
+	private final int archives;
+	/** Writer of the current file. */
+	private Writer output;
+	/** Characters written to the current file, close to its bytes. */
+	private long written;
+
+	/**
+	 * Constructor, archives a previous log and opens a new one.
+	 *
+	 * @param file
+	 *            Log file.
+	 * @param limit
+	 *            Size a file rolls over at, in bytes.
+	 * @param archives
+	 *            Compressed archives kept.
+	 * @throws IOException
+	 *             In case the file can't be opened.
+	 */
+	public RollingLogFile(final File file, final long limit,
+			final int archives) throws IOException {
+		this.file = file;
+		this.limit = limit;
+		this.archives = archives;
+		if (file.length() > 0)
+			archive();
+		open();
+	}
+
+	@Override
+	public void write(final char[] buffer, final int offset, final int length)
+			throws IOException {
+		if (this.written > 0 && this.written + length > this.limit)
+			roll();
+		this.output.write(buffer, offset, length);
+		this.written += length;
+	}
+
+	@Override
+	public void write(final String string, final int offset, final int length)
+			throws IOException {
+		if (this.written > 0 && this.written + length > this.limit)
+			roll();
+		this.output.write(string, offset, length);
+		this.written += length;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.output.close();
+	}
+
+	/**
+	 * Closes the current file, archives it and opens a new one.
+	 *
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	private void roll() throws IOException {
+		this.output.close();
+		archive();
+		open();
+	}
+
+	/**
+	 * Opens a new, empty, current file.
+	 *
+	 * @throws IOException
+	 *             In case the file can't be opened.
+	 */
+	private void open() throws IOException {
+		this.output = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(this.file), Charset.forName("UTF-8")));
+		this.written = 0;
+	}
+
+	/**
+	 * Moves the archives one place down and compresses the current file
+	 * into the first one.
+	 *
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	private void archive() throws IOException {
+		File oldest = archiveFile(this.archives);
+		if (oldest.exists() && !oldest.delete())
+			throw new IOException("Couldn't delete " + oldest);
+		for (int i = this.archives - 1; i >= 1; i--) {
+			File archive = archiveFile(i);
+			if (archive.exists() && !archive.renameTo(archiveFile(i + 1)))
+				throw new IOException("Couldn't rename " + archive);
+		}
+
+		InputStream input = new FileInputStream(this.file);
+		OutputStream output = null;
+		try {
+			output = new GZIPOutputStream(new FileOutputStream(
+					archiveFile(1)));
+			byte[] buffer = new byte[1 << 14];
+			int read;
+			while ((read = input.read(buffer)) > 0)
+				output.write(buffer, 0, read);
+		} finally {
+			input.close();
+			if (output != null)
+				output.close();
+		}
+	}
+
+	/**
+	 * Returns the file of an archive.
+	 *
+	 * @param index
+	 *            Archive number, 1 for the newest.
+	 * @return Archive file.
+	 */
+	private File archiveFile(final int index) {
+		return new File(this.file.getPath() + "." + index + ARCHIVE_SUFFIX);
+	}
+}
@@ -0,0 +1,330 @@
+package engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Samples the stack of the game thread from a thread of its own, to find
+ * where frames spend their time on machines without profiling tools.
+ *
+ * Samples are merged into a trie of frames as they are taken: each node is
+ * a method called from its parent's, counting the samples that ended in
+ * it. Method names are stored once, nodes only keep their number, and
+ * frames are looked up by class and method without building their name.
+ * When stopped, the sampling thread writes the trie as collapsed stacks,
+ * one line per distinct stack with its samples, the text flame graph tools
+ * read. The game thread is only paused by the virtual machine while its
+ * stack is copied.
+ */
+public final class SamplingProfiler {
+
+	/** Default samples per second. */
+	public static final int DEFAULT_RATE = 100;
+	/** Seconds to wait for the profile to be written when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+
+	/**
+	 * Class and method of a stack frame, to look up its number without
+	 * building its name. A single key is reused for the lookups; only the
+	 * methods seen for the first time get a key of their own.
+	 */
+	private static final class MethodKey {
+
+		/** Name of the class. */
+		private String className;
+		/** Name of the method. */
+		private String methodName;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param className
+		 *            Name of the class.
+		 * @param methodName
+		 *            Name of the method.
+		 */
+		private MethodKey(final String className, final String methodName) {
+			this.className = className;
+			this.methodName = methodName;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.className.hashCode() * 31
+					+ this.methodName.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof MethodKey))
+				return false;
+			MethodKey key = (MethodKey) other;
+			return this.className.equals(key.className)
+					&& this.methodName.equals(key.methodName);
+		}
+	}
+
+	/**
+	 * Method called from the method of its parent node.
+	 */
+	private static final class Node {
+
+		/** Node without children, shared by the leaves. */
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		/** Number of the method. */
+		private final int frame;
+		/** Samples that ended in this call. */
+		private long samples;
+		/** Methods called from this one. */
+		private Node[] children;
+		/** Children in use. */
+		private int childCount;
+
+		/**
+		 * Constructor, without calls.
+		 *
+		 * @param frame
+		 *            Number of the method.
+		 */
+		private Node(final int frame) {
+			this.frame = frame;
+			this.children = NO_CHILDREN;
+		}
+
+		/**
+		 * Returns the call of a method from this one, added if new. Most
+		 * methods call few others, so they are searched in order.
+		 *
+		 * @param frame
+		 *            Number of the method called.
+		 * @return Node of the call.
+		 */
+		private Node child(final int frame) {
+			for (int i = 0; i < this.childCount; i++)
+				if (this.children[i].frame == frame)
+					return this.children[i];
+			if (this.childCount == this.children.length)
+				this.children = Arrays.copyOf(this.children,
+						Math.max(2, this.childCount * 2));
+			Node child = new Node(frame);
+			this.children[this.childCount++] = child;
+			return child;
+		}
+	}
+
+	/** Time between samples, in nanoseconds. */
+	private final long intervalNanos;
+	/** File manager naming the profiles. */
+	private final FileManager fileManager;
+	/** Application logger. */
+	private final Logger logger;
+	/** Thread taking the samples of the current profile, null if none. */
+	private volatile Thread sampler;
+	/** Threads of the profiles taken, until they are written. */
+	private final List<Thread> samplers;
+
+	/**
+	 * Constructor, not sampling until started.
+	 *
+	 * @param rate
+	 *            Samples per second.
+	 * @param fileManager
+	 *            File manager naming the profiles.
+	 * @param logger
+	 *            Application logger.
+	 */
+	public SamplingProfiler(final int rate, final FileManager fileManager,
+			final Logger logger) {
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+		this.fileManager = fileManager;
+		this.logger = logger;
+		this.samplers = new ArrayList<Thread>();
+	}
+
+	/**
+	 * Checks if a profile is being taken.
+	 *
+	 * @return True if sampling.
+	 */
+	public boolean isRunning() {
+		return this.sampler != null;
+	}
+
+	/**
+	 * Starts a new profile of a thread, unless one is being taken.
+	 *
+	 * @param target
+	 *            Thread sampled.
+	 */
+	public synchronized void start(final Thread target) {
+		if (this.sampler != null)
+			return;
+		Thread thread = new Thread(() -> sample(target), "sampling-profiler");
+		thread.setDaemon(true);
+		this.sampler = thread;
+		this.samplers.add(thread);
+		thread.start();
+		this.logger.info("Sampling profiler started.");
+	}
+
+	/**
+	 * Stops the current profile, which is written by the sampling thread.
+	 */
+	public synchronized void stop() {
+		this.sampler = null;
+	}
+
+	/**
+	 * Stops the current profile and waits until every profile taken is
+	 * written.
+	 */
+	public void close() {
+		List<Thread> pending;
+		synchronized (this) {
+			this.sampler = null;
+			pending = new ArrayList<Thread>(this.samplers);
+		}
+		long deadline = System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT);
+		try {
+			for (Thread thread : pending) {
+				long wait = deadline - System.nanoTime();
+				if (wait <= 0)
+					break;
+				TimeUnit.NANOSECONDS.timedJoin(thread, wait);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Body of the sampling thread: samples the target until stopped, then
+	 * writes the profile.
+	 *
+	 * @param target
+	 *            Thread sampled.
+	 */
+	private void sample(final Thread target) {
+		Map<MethodKey, Integer> frameNumbers =
+				new HashMap<MethodKey, Integer>();
+		List<String> frameNames = new ArrayList<String>();
+		MethodKey lookup = new MethodKey("", "");
+		Node root = new Node(-1);
+		long samples = 0;
+
+		long next = System.nanoTime();
+		// Runs until another profile, or none, is the current one.
+		while (this.sampler == Thread.currentThread() && target.isAlive()) {
+			StackTraceElement[] stack = target.getStackTrace();
+			Node node = root;
+			// Outermost call first, as collapsed stacks are written.
+			for (int i = stack.length - 1; i >= 0; i--) {
+				lookup.className = stack[i].getClassName();
+				lookup.methodName = stack[i].getMethodName();
+				Integer frame = frameNumbers.get(lookup);
+				if (frame == null) {
+					frame = frameNames.size();
+					frameNumbers.put(new MethodKey(lookup.className,
+							lookup.methodName), frame);
+					frameNames.add(lookup.className + "."
+							+ lookup.methodName);
+				}
+				node = node.child(frame);
+			}
+			if (node != root) {
+				node.samples++;
+				samples++;
+			}
+
+			next += this.intervalNanos;
+			long wait = next - System.nanoTime();
+			if (wait > 0)
+				LockSupport.parkNanos(wait);
+			else
+				next = System.nanoTime();
+		}
+
+		synchronized (this) {
+			if (this.sampler == Thread.currentThread())
+				this.sampler = null;
+		}
+		try {
+			write(root, frameNames, samples);
+		} finally {
+			synchronized (this) {
+				this.samplers.remove(Thread.currentThread());
+			}
+		}
+	}
+
+	/**
+	 * Writes a profile as collapsed stacks to a new profile file.
+	 *
+	 * @param root
+	 *            Root of the trie, without a method.
+	 * @param frameNames
+	 *            Names of the methods, by number.
+	 * @param samples
+	 *            Samples taken.
+	 */
+	private void write(final Node root, final List<String> frameNames,
+			final long samples) {
+		File file = null;
+		try {
+			file = this.fileManager.getProfileFile();
+			try (Writer output = new OutputStreamWriter(new FileOutputStream(
+					file), Charset.forName("UTF-8"))) {
+				StringBuilder line = new StringBuilder();
+				for (int i = 0; i < root.childCount; i++)
+					collapse(root.children[i], frameNames, line, output);
+			}
+			this.logger.info("Sampling profiler stopped, " + samples
+					+ " samples written to " + file + ".");
+		} catch (IOException e) {
+			this.logger.warning("Couldn't write sampling profile!");
+		}
+	}
+
+	/**
+	 * Writes the stacks through a node, depth first.
+	 *
+	 * @param node
+	 *            Node written.
+	 * @param frameNames
+	 *            Names of the methods, by number.
+	 * @param line
+	 *            Stack of the parent of the node, restored when done.
+	 * @param output
+	 *            Destination of the stacks.
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	private static void collapse(final Node node,
+			final List<String> frameNames, final StringBuilder line,
+			final Writer output) throws IOException {
+		int parentLength = line.length();
+		if (parentLength > 0)
+			line.append(';');
+		line.append(frameNames.get(node.frame));
+		if (node.samples > 0)
+			output.append(line).append(' ')
+					.append(Long.toString(node.samples)).append('\n');
+		for (int i = 0; i < node.childCount; i++)
+			collapse(node.children[i], frameNames, line, output);
+		line.setLength(parentLength);
+	}
+}
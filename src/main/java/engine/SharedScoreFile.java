@@ -0,0 +1,314 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * High score table in a memory mapped file, shared by every game process
+ * running on the same machine.
+ *
+ * The file is a small header followed by two areas, each a count and
+ * fixed size records, name and score, sorted descending; the header tells
+ * which area is the table. Writers take an exclusive lock on the file, so
+ * processes update it one at a time, write the new table in the other area
+ * and then switch to it, making the sequence number of the header odd
+ * meanwhile. Readers don't lock: they copy the records straight from the
+ * mapping and retry if the sequence number changed meanwhile, as another
+ * update may have reused the area they read. The table read is never the
+ * one being written, so if a writer dies in the middle of an update only
+ * the other area is left half written: its lock is released, readers keep
+ * reading the table as it was, and the next writer overwrites the area.
+ */
+public final class SharedScoreFile {
+
+	/** Identifies shared score files. */
+	private static final int MAGIC = 0x53434F52;
+	/** Version of the file format. */
+	private static final int VERSION = 2;
+	/** Position of the magic number. */
+	private static final int MAGIC_OFFSET = 0;
+	/** Position of the version. */
+	private static final int VERSION_OFFSET = 4;
+	/** Position of the sequence number, odd while being written. */
+	private static final int SEQUENCE_OFFSET = 8;
+	/** Position of the area holding the table, 0 or 1. */
+	private static final int ACTIVE_OFFSET = 12;
+	/** Position of the maximum number of scores. */
+	private static final int CAPACITY_OFFSET = 16;
+	/** Size of the header, the areas start after it. */
+	private static final int HEADER_SIZE = 24;
+	/** Size of the start of an area, its count and padding. */
+	private static final int AREA_HEADER_SIZE = 8;
+	/** Size of a record, packed name and score. */
+	private static final int RECORD_SIZE = 8;
+	/**
+	 * Taken around the file lock, which a process can only hold once even
+	 * if several games in it opened the file.
+	 */
+	private static final Object PROCESS_LOCK = new Object();
+	/** Ordered access to the ints of the mapping. */
+	private static final VarHandle INTS = MethodHandles
+			.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	/** Channel of the file, used for the locks. */
+	private final FileChannel channel;
+	/** Mapping of the whole file. */
+	private final MappedByteBuffer buffer;
+	/** Maximum number of scores. */
+	private final int capacity;
+	/** Packed names read, reused between reads. */
+	private final int[] names;
+	/** Scores read, reused between reads. */
+	private final int[] scores;
+
+	/**
+	 * Constructor, maps an open file.
+	 *
+	 * @param channel
+	 *            Channel of the file.
+	 * @param buffer
+	 *            Mapping of the whole file.
+	 * @param capacity
+	 *            Maximum number of scores.
+	 */
+	private SharedScoreFile(final FileChannel channel,
+			final MappedByteBuffer buffer, final int capacity) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.names = new int[capacity];
+		this.scores = new int[capacity];
+	}
+
+	/**
+	 * Opens a shared score file, creating it if no process did yet.
+	 *
+	 * @param file
+	 *            Shared score file.
+	 * @param capacity
+	 *            Maximum number of scores of a new file.
+	 * @param initialScores
+	 *            Scores of a new file, ignored if it already exists.
+	 * @return Mapped file.
+	 * @throws IOException
+	 *             In case of opening problems, or if the file isn't a shared
+	 *             score file.
+	 */
+	public static SharedScoreFile open(final File file, final int capacity,
+			final List<Score> initialScores) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		try {
+			synchronized (PROCESS_LOCK) {
+				FileLock lock = channel.lock();
+				try {
+					return map(channel, capacity, initialScores);
+				} finally {
+					lock.release();
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps a locked file, writing its header and initial scores if it is
+	 * new.
+	 *
+	 * @param channel
+	 *            Channel of the file, locked.
+	 * @param capacity
+	 *            Maximum number of scores of a new file.
+	 * @param initialScores
+	 *            Scores of a new file.
+	 * @return Mapped file.
+	 * @throws IOException
+	 *             In case of mapping problems, or if the file isn't a shared
+	 *             score file.
+	 */
+	private static SharedScoreFile map(final FileChannel channel,
+			final int capacity, final List<Score> initialScores)
+			throws IOException {
+		// The header may be missing if its creator died writing it.
+		boolean created = channel.size() < HEADER_SIZE;
+		int fileCapacity = capacity;
+		if (!created) {
+			MappedByteBuffer header = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			created = header.getInt(MAGIC_OFFSET) == 0;
+			if (!created) {
+				if (header.getInt(MAGIC_OFFSET) != MAGIC
+						|| header.getInt(VERSION_OFFSET) != VERSION)
+					throw new IOException("Unknown shared scores format.");
+				fileCapacity = header.getInt(CAPACITY_OFFSET);
+			}
+		}
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+				0, HEADER_SIZE + 2L * areaSize(fileCapacity));
+		SharedScoreFile scoreFile = new SharedScoreFile(channel, buffer,
+				fileCapacity);
+		if (created) {
+			buffer.putInt(VERSION_OFFSET, VERSION);
+			buffer.putInt(CAPACITY_OFFSET, fileCapacity);
+			buffer.putInt(SEQUENCE_OFFSET, 0);
+			buffer.putInt(ACTIVE_OFFSET, 0);
+			buffer.putInt(HEADER_SIZE, 0);
+			for (Score score : initialScores)
+				scoreFile.insertLocked(score);
+			// Written last, the file is only valid once complete.
+			buffer.putInt(MAGIC_OFFSET, MAGIC);
+			buffer.force();
+		}
+		return scoreFile;
+	}
+
+	/**
+	 * Reads the scores, as they are at some point during the call. Never
+	 * waits for writers.
+	 *
+	 * @return High scores, descending.
+	 */
+	public synchronized List<Score> read() {
+		int count;
+		while (true) {
+			int sequence = (int) INTS.getAcquire(this.buffer, SEQUENCE_OFFSET);
+			int area = areaOffset((int) INTS.getAcquire(this.buffer,
+					ACTIVE_OFFSET));
+			count = Math.max(0, Math.min(this.capacity,
+					this.buffer.getInt(area)));
+			for (int i = 0; i < count; i++) {
+				int offset = area + AREA_HEADER_SIZE + i * RECORD_SIZE;
+				this.names[i] = this.buffer.getInt(offset);
+				this.scores[i] = this.buffer.getInt(offset + 4);
+			}
+			VarHandle.acquireFence();
+			if ((int) INTS.getOpaque(this.buffer,
+					SEQUENCE_OFFSET) == sequence)
+				break;
+			Thread.onSpinWait();
+		}
+
+		List<Score> highScores = new ArrayList<Score>(count);
+		for (int i = 0; i < count; i++)
+			highScores.add(new Score(Leaderboard.unpackName(this.names[i]),
+					this.scores[i]));
+		return highScores;
+	}
+
+	/**
+	 * Adds a score to the table, if it is among the best, for every process.
+	 * Waits for other processes updating the file, but not for readers.
+	 *
+	 * @param score
+	 *            New score.
+	 * @throws IOException
+	 *             In case the file can't be locked.
+	 */
+	public void insert(final Score score) throws IOException {
+		synchronized (PROCESS_LOCK) {
+			FileLock lock = this.channel.lock();
+			try {
+				insertLocked(score);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Forces the changes of the mapping to disk.
+	 */
+	public void force() {
+		this.buffer.force();
+	}
+
+	/**
+	 * Closes the file. The mapping is released once no longer referenced.
+	 *
+	 * @throws IOException
+	 *             In case of closing problems.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Adds a score to the table, holding the file lock, by writing the new
+	 * table in the other area and switching to it. Equal scores are listed
+	 * in submission order.
+	 *
+	 * @param score
+	 *            New score.
+	 */
+	private void insertLocked(final Score score) {
+		int sequence = this.buffer.getInt(SEQUENCE_OFFSET);
+		// Still odd if a writer died while updating; only its area is lost.
+		int writing = sequence + ((sequence & 1) == 0 ? 1 : 2);
+		INTS.setOpaque(this.buffer, SEQUENCE_OFFSET, writing);
+		VarHandle.storeStoreFence();
+
+		int active = this.buffer.getInt(ACTIVE_OFFSET) & 1;
+		int from = areaOffset(active);
+		int to = areaOffset(active ^ 1);
+		int count = Math.max(0, Math.min(this.capacity,
+				this.buffer.getInt(from)));
+		int position = count;
+		while (position > 0 && this.buffer.getInt(from + AREA_HEADER_SIZE
+				+ (position - 1) * RECORD_SIZE + 4) < score.getScore())
+			position--;
+		if (position < this.capacity) {
+			int newCount = Math.min(count + 1, this.capacity);
+			for (int i = 0; i < newCount; i++) {
+				int offset = to + AREA_HEADER_SIZE + i * RECORD_SIZE;
+				if (i == position) {
+					this.buffer.putInt(offset, Leaderboard.packName(
+							score.getName()));
+					this.buffer.putInt(offset + 4, score.getScore());
+				} else {
+					int old = i < position ? i : i - 1;
+					this.buffer.putLong(offset, this.buffer.getLong(from
+							+ AREA_HEADER_SIZE + old * RECORD_SIZE));
+				}
+			}
+			this.buffer.putInt(to, newCount);
+			INTS.setRelease(this.buffer, ACTIVE_OFFSET, active ^ 1);
+		}
+
+		INTS.setRelease(this.buffer, SEQUENCE_OFFSET, writing + 1);
+	}
+
+	/**
+	 * Finds an area of the mapping.
+	 *
+	 * @param area
+	 *            Area, 0 or 1.
+	 * @return Position of the area.
+	 */
+	private int areaOffset(final int area) {
+		return HEADER_SIZE + (area & 1) * areaSize(this.capacity);
+	}
+
+	/**
+	 * Computes the size of an area.
+	 *
+	 * @param capacity
+	 *            Maximum number of scores.
+	 * @return Bytes of an area, its count and records.
+	 */
+	private static int areaSize(final int capacity) {
+		return AREA_HEADER_SIZE + capacity * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,478 @@
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Complete state of a game session in the middle of a level, enough to
+ * resume it: session clock and random state, game state, player ship, bonus
+ * ship, formation, bullets and every cooldown running. Cooldowns are kept
+ * as the time left until they finish.
+ *
+ * Snapshots are reused: taking one only copies primitives into arrays that
+ * grow when needed, so the game thread can take them every few seconds
+ * without allocating. The binary form is written and read by the owner of
+ * the snapshot, usually on a background thread.
+ */
+public final class Snapshot {
+
+	/** Identifies snapshot files, "SISS". */
+	public static final int MAGIC = 0x53495353;
+	/** Current version of the format. */
+	public static final int VERSION = 1;
+	/** Cooldown not created yet. */
+	public static final int NOT_CREATED = Integer.MIN_VALUE;
+	/** Direction not set yet. */
+	public static final int NO_DIRECTION = -1;
+	/** Integers written by writeScalars. */
+	public static final int SCALARS = 30;
+	/** Most frames per second of game time a saved game may have. */
+	public static final int MAX_FPS = 1000;
+	/** Most columns or rows of a saved formation. */
+	public static final int MAX_FORMATION_SIDE = 256;
+	/** Most bullets of a saved game. */
+	public static final int MAX_BULLETS = 4096;
+
+	/** Seed of the session. */
+	public long seed;
+	/** State of the random source of the session. */
+	public long randomState;
+	/** Frames elapsed since the session started. */
+	public long ticks;
+	/** Frames per second of game time. */
+	public int fps;
+
+	/** Current level. */
+	public int level;
+	/** Current score. */
+	public int score;
+	/** Lives remaining. */
+	public int lives;
+	/** Bullets shot until now. */
+	public int bulletsShot;
+	/** Ships destroyed until now. */
+	public int shipsDestroyed;
+	/** If a bonus life was awarded this level. */
+	public boolean bonusLife;
+	/** If the level is over. */
+	public boolean levelFinished;
+	/** Milliseconds since the level started. */
+	public int levelElapsed;
+	/** Time left of the countdown before the level starts. */
+	public int inputDelayRemaining;
+	/** Time left before leaving the finished level. */
+	public int screenFinishedRemaining;
+
+	/** Position of the player's ship in the x-axis. */
+	public int shipX;
+	/** Time left until the player can shoot again. */
+	public int shipShootingRemaining;
+	/** Time left of the player's ship explosion. */
+	public int shipDestructionRemaining;
+
+	/** If the bonus ship is on screen. */
+	public boolean specialPresent;
+	/** If the bonus ship on screen is exploding. */
+	public boolean specialDestroyed;
+	/** Position of the bonus ship in the x-axis. */
+	public int specialX;
+	/** Time left until the next bonus ship. */
+	public int specialRemaining;
+	/** Duration of the current wait for the bonus ship. */
+	public int specialDuration;
+	/** Time left of the bonus ship explosion. */
+	public int specialExplosionRemaining;
+
+	/** Columns of the formation. */
+	public int formationWidth;
+	/** Rows of the formation. */
+	public int formationHeight;
+	/** Words used in each formation mask. */
+	public int maskWords;
+	/** Formation ships still shown, alive or exploding. */
+	public long[] presentMask;
+	/** Formation ships alive. */
+	public long[] aliveMask;
+	/** Distance the formation moved in the x-axis. */
+	public int offsetX;
+	/** Distance the formation moved in the y-axis. */
+	public int offsetY;
+	/** Current direction of the formation. */
+	public int direction;
+	/** Previous direction of the formation, or NO_DIRECTION. */
+	public int previousDirection;
+	/** Frames since the formation last moved. */
+	public int movementInterval;
+	/** Time left until the formation shoots, or NOT_CREATED. */
+	public int formationShootingRemaining;
+	/** Duration of the current wait between formation shots. */
+	public int formationShootingDuration;
+
+	/** Bullets on screen. */
+	public int bulletCount;
+	/** Position of the bullets in the x-axis. */
+	public int[] bulletX;
+	/** Position of the bullets in the y-axis. */
+	public int[] bulletY;
+	/** Speed of the bullets, positive when shot by enemies. */
+	public int[] bulletSpeed;
+
+	/** Buffer of the single valued fields, used when copying. */
+	private final int[] scalars = new int[SCALARS];
+
+	/**
+	 * Constructor, with room for a few bullets.
+	 */
+	public Snapshot() {
+		this.presentMask = new long[1];
+		this.aliveMask = new long[1];
+		this.bulletX = new int[16];
+		this.bulletY = new int[16];
+		this.bulletSpeed = new int[16];
+	}
+
+	/**
+	 * Makes room for a formation, clearing its masks.
+	 *
+	 * @param width
+	 *            Columns of the formation.
+	 * @param height
+	 *            Rows of the formation.
+	 */
+	public void setFormationSize(final int width, final int height) {
+		this.formationWidth = width;
+		this.formationHeight = height;
+		this.maskWords = (width * height + 63) / 64;
+		if (this.presentMask.length < this.maskWords) {
+			this.presentMask = new long[this.maskWords];
+			this.aliveMask = new long[this.maskWords];
+		}
+		for (int i = 0; i < this.maskWords; i++) {
+			this.presentMask[i] = 0;
+			this.aliveMask[i] = 0;
+		}
+	}
+
+	/**
+	 * Adds a bullet, making room for it if needed.
+	 *
+	 * @param x
+	 *            Position of the bullet in the x-axis.
+	 * @param y
+	 *            Position of the bullet in the y-axis.
+	 * @param speed
+	 *            Speed of the bullet.
+	 */
+	public void addBullet(final int x, final int y, final int speed) {
+		if (this.bulletCount == this.bulletX.length) {
+			int capacity = this.bulletCount * 2;
+			int[] grownX = new int[capacity];
+			int[] grownY = new int[capacity];
+			int[] grownSpeed = new int[capacity];
+			System.arraycopy(this.bulletX, 0, grownX, 0, this.bulletCount);
+			System.arraycopy(this.bulletY, 0, grownY, 0, this.bulletCount);
+			System.arraycopy(this.bulletSpeed, 0, grownSpeed, 0,
+					this.bulletCount);
+			this.bulletX = grownX;
+			this.bulletY = grownY;
+			this.bulletSpeed = grownSpeed;
+		}
+		this.bulletX[this.bulletCount] = x;
+		this.bulletY[this.bulletCount] = y;
+		this.bulletSpeed[this.bulletCount] = speed;
+		this.bulletCount++;
+	}
+
+	/**
+	 * Copies another snapshot into this one.
+	 *
+	 * @param other
+	 *            Snapshot to copy.
+	 */
+	public void copyFrom(final Snapshot other) {
+		other.writeScalars(this.scalars);
+		readScalars(this.scalars);
+		setFormationSize(other.formationWidth, other.formationHeight);
+		System.arraycopy(other.presentMask, 0, this.presentMask, 0,
+				this.maskWords);
+		System.arraycopy(other.aliveMask, 0, this.aliveMask, 0,
+				this.maskWords);
+		this.bulletCount = 0;
+		for (int i = 0; i < other.bulletCount; i++)
+			addBullet(other.bulletX[i], other.bulletY[i],
+					other.bulletSpeed[i]);
+	}
+
+	/**
+	 * Writes every single valued field, not the masks nor the bullets, as
+	 * integers: longs take two, flags are packed in one.
+	 *
+	 * @param values
+	 *            Array of at least SCALARS integers to write to.
+	 */
+	public void writeScalars(final int[] values) {
+		int i = 0;
+		values[i++] = (int) (this.seed >>> 32);
+		values[i++] = (int) this.seed;
+		values[i++] = (int) (this.randomState >>> 32);
+		values[i++] = (int) this.randomState;
+		values[i++] = (int) (this.ticks >>> 32);
+		values[i++] = (int) this.ticks;
+		values[i++] = this.fps;
+		values[i++] = this.level;
+		values[i++] = this.score;
+		values[i++] = this.lives;
+		values[i++] = this.bulletsShot;
+		values[i++] = this.shipsDestroyed;
+		values[i++] = this.levelElapsed;
+		values[i++] = this.inputDelayRemaining;
+		values[i++] = this.screenFinishedRemaining;
+		values[i++] = this.shipX;
+		values[i++] = this.shipShootingRemaining;
+		values[i++] = this.shipDestructionRemaining;
+		values[i++] = this.specialX;
+		values[i++] = this.specialRemaining;
+		values[i++] = this.specialDuration;
+		values[i++] = this.specialExplosionRemaining;
+		values[i++] = this.offsetX;
+		values[i++] = this.offsetY;
+		values[i++] = this.direction;
+		values[i++] = this.previousDirection;
+		values[i++] = this.movementInterval;
+		values[i++] = this.formationShootingRemaining;
+		values[i++] = this.formationShootingDuration;
+		values[i++] = (this.bonusLife ? 1 : 0) | (this.levelFinished ? 2 : 0)
+				| (this.specialPresent ? 4 : 0) | (this.specialDestroyed ? 8 : 0);
+	}
+
+	/**
+	 * Reads the single valued fields written by writeScalars.
+	 *
+	 * @param values
+	 *            Array to read from.
+	 */
+	public void readScalars(final int[] values) {
+		int i = 0;
+		this.seed = (long) values[i++] << 32 | values[i++] & 0xFFFFFFFFL;
+		this.randomState = (long) values[i++] << 32 | values[i++] & 0xFFFFFFFFL;
+		this.ticks = (long) values[i++] << 32 | values[i++] & 0xFFFFFFFFL;
+		this.fps = values[i++];
+		this.level = values[i++];
+		this.score = values[i++];
+		this.lives = values[i++];
+		this.bulletsShot = values[i++];
+		this.shipsDestroyed = values[i++];
+		this.levelElapsed = values[i++];
+		this.inputDelayRemaining = values[i++];
+		this.screenFinishedRemaining = values[i++];
+		this.shipX = values[i++];
+		this.shipShootingRemaining = values[i++];
+		this.shipDestructionRemaining = values[i++];
+		this.specialX = values[i++];
+		this.specialRemaining = values[i++];
+		this.specialDuration = values[i++];
+		this.specialExplosionRemaining = values[i++];
+		this.offsetX = values[i++];
+		this.offsetY = values[i++];
+		this.direction = values[i++];
+		this.previousDirection = values[i++];
+		this.movementInterval = values[i++];
+		this.formationShootingRemaining = values[i++];
+		this.formationShootingDuration = values[i++];
+		int flags = values[i++];
+		this.bonusLife = (flags & 1) != 0;
+		this.levelFinished = (flags & 2) != 0;
+		this.specialPresent = (flags & 4) != 0;
+		this.specialDestroyed = (flags & 8) != 0;
+	}
+
+	/**
+	 * Writes the snapshot in its binary form: a header (magic, version)
+	 * followed by every field, positions as shorts and flags as bytes.
+	 *
+	 * @param output
+	 *            Stream to write to.
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	public void write(final DataOutput output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeLong(this.seed);
+		output.writeLong(this.randomState);
+		output.writeLong(this.ticks);
+		output.writeShort(this.fps);
+
+		output.writeShort(this.level);
+		output.writeInt(this.score);
+		output.writeByte(this.lives);
+		output.writeInt(this.bulletsShot);
+		output.writeInt(this.shipsDestroyed);
+		output.writeByte((this.bonusLife ? 1 : 0)
+				| (this.levelFinished ? 2 : 0)
+				| (this.specialPresent ? 4 : 0)
+				| (this.specialDestroyed ? 8 : 0));
+		output.writeInt(this.levelElapsed);
+		output.writeInt(this.inputDelayRemaining);
+		output.writeInt(this.screenFinishedRemaining);
+
+		output.writeShort(this.shipX);
+		output.writeInt(this.shipShootingRemaining);
+		output.writeInt(this.shipDestructionRemaining);
+
+		output.writeShort(this.specialX);
+		output.writeInt(this.specialRemaining);
+		output.writeInt(this.specialDuration);
+		output.writeInt(this.specialExplosionRemaining);
+
+		output.writeShort(this.formationWidth);
+		output.writeShort(this.formationHeight);
+		for (int i = 0; i < this.maskWords; i++)
+			output.writeLong(this.presentMask[i]);
+		for (int i = 0; i < this.maskWords; i++)
+			output.writeLong(this.aliveMask[i]);
+		output.writeShort(this.offsetX);
+		output.writeShort(this.offsetY);
+		output.writeByte(this.direction);
+		output.writeByte(this.previousDirection);
+		output.writeShort(this.movementInterval);
+		output.writeInt(this.formationShootingRemaining);
+		output.writeInt(this.formationShootingDuration);
+
+		output.writeShort(this.bulletCount);
+		for (int i = 0; i < this.bulletCount; i++) {
+			output.writeShort(this.bulletX[i]);
+			output.writeShort(this.bulletY[i]);
+			output.writeByte(this.bulletSpeed[i]);
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by write, replacing the contents of this one.
+	 *
+	 * @param input
+	 *            Stream to read from.
+	 * @throws IOException
+	 *             If the stream is not a snapshot of a known version, or
+	 *             its sizes are out of range.
+	 */
+	public void read(final DataInput input) throws IOException {
+		if (input.readInt() != MAGIC)
+			throw new IOException("Not a saved game.");
+		int version = input.readShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported saved game version "
+					+ version + ".");
+		this.seed = input.readLong();
+		this.randomState = input.readLong();
+		this.ticks = input.readLong();
+		this.fps = checkRange(input.readShort(), 1, MAX_FPS, "frame rate");
+
+		this.level = input.readShort();
+		this.score = input.readInt();
+		this.lives = input.readByte();
+		this.bulletsShot = input.readInt();
+		this.shipsDestroyed = input.readInt();
+		int flags = input.readByte();
+		this.bonusLife = (flags & 1) != 0;
+		this.levelFinished = (flags & 2) != 0;
+		this.specialPresent = (flags & 4) != 0;
+		this.specialDestroyed = (flags & 8) != 0;
+		this.levelElapsed = input.readInt();
+		this.inputDelayRemaining = input.readInt();
+		this.screenFinishedRemaining = input.readInt();
+
+		this.shipX = input.readShort();
+		this.shipShootingRemaining = input.readInt();
+		this.shipDestructionRemaining = input.readInt();
+
+		this.specialX = input.readShort();
+		this.specialRemaining = input.readInt();
+		this.specialDuration = input.readInt();
+		this.specialExplosionRemaining = input.readInt();
+
+		// Checked before anything is allocated for them.
+		int width = checkRange(input.readShort(), 0, MAX_FORMATION_SIDE,
+				"formation width");
+		int height = checkRange(input.readShort(), 0, MAX_FORMATION_SIDE,
+				"formation height");
+		setFormationSize(width, height);
+		for (int i = 0; i < this.maskWords; i++)
+			this.presentMask[i] = input.readLong();
+		for (int i = 0; i < this.maskWords; i++)
+			this.aliveMask[i] = input.readLong();
+		this.offsetX = input.readShort();
+		this.offsetY = input.readShort();
+		this.direction = input.readByte();
+		this.previousDirection = input.readByte();
+		this.movementInterval = input.readShort();
+		this.formationShootingRemaining = input.readInt();
+		this.formationShootingDuration = input.readInt();
+
+		int bullets = checkRange(input.readShort(), 0, MAX_BULLETS,
+				"bullet count");
+		this.bulletCount = 0;
+		for (int i = 0; i < bullets; i++)
+			addBullet(input.readShort(), input.readShort(), input.readByte());
+	}
+
+	/**
+	 * Checks a value read from a saved game.
+	 *
+	 * @param value
+	 *            Value read.
+	 * @param min
+	 *            Lowest valid value.
+	 * @param max
+	 *            Highest valid value.
+	 * @param name
+	 *            Name of the value, for the error.
+	 * @return The value.
+	 * @throws IOException
+	 *             If the value is out of range.
+	 */
+	private static int checkRange(final int value, final int min,
+			final int max, final String name) throws IOException {
+		if (value < min || value > max)
+			throw new IOException("Corrupt saved game, " + name + " "
+					+ value + ".");
+		return value;
+	}
+
+	/**
+	 * Loads a snapshot from a file.
+	 *
+	 * @param file
+	 *            Saved game file.
+	 * @return Snapshot read.
+	 * @throws IOException
+	 *             If the file can't be read or is not a saved game.
+	 */
+	public static Snapshot load(final File file) throws IOException {
+		Snapshot snapshot = new Snapshot();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			snapshot.read(input);
+		} finally {
+			input.close();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Game state of the snapshot, to continue the session once the level
+	 * is over.
+	 *
+	 * @return Game state at the time of the snapshot.
+	 */
+	public GameState getGameState() {
+		return new GameState(this.level, this.score, this.lives,
+				this.bulletsShot, this.shipsDestroyed);
+	}
+}
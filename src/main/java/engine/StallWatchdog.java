@@ -0,0 +1,405 @@
+package engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import engine.FrameProfiler.Phase;
+import screen.Screen;
+
+/**
+ * Watches the frames of the screens shown and reports the ones that stall.
+ *
+ * The game thread only leaves a heartbeat: when each frame starts and
+ * which phase of the game screen update it last completed, with ordered
+ * stores and no locks. A watcher thread polls the heartbeat; once a frame
+ * runs past the threshold it samples the stack of the game thread until
+ * the frame ends, then appends a report to the stall file with the
+ * samples, the phase of each one and the garbage collections during the
+ * frame, and logs a warning. Everything but the heartbeat happens on the
+ * watcher thread, so the game thread never waits for it.
+ */
+public final class StallWatchdog {
+
+	/** Default time a frame may take before it is a stall. */
+	public static final long DEFAULT_THRESHOLD_MILLIS = 100;
+	/** Default time between samples of a stalled frame. */
+	public static final long DEFAULT_SAMPLE_MILLIS = 20;
+	/** Most samples taken of a stall. */
+	private static final int MAX_SAMPLES = 32;
+	/** Garbage collections kept to find the ones during a stall. */
+	private static final int GC_HISTORY = 64;
+	/** Phase recorded before the first phase of a frame completes. */
+	private static final int NO_PHASE = -1;
+	/** Phases, by ordinal. */
+	private static final Phase[] PHASES = Phase.values();
+	/** Nanoseconds in a millisecond. */
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	/**
+	 * Stack of the game thread taken during a stall.
+	 */
+	private static final class Sample {
+
+		/** Time since the frame started, in milliseconds. */
+		private final long offsetMillis;
+		/** Last phase completed, NO_PHASE if none. */
+		private final int phase;
+		/** Stack of the game thread. */
+		private final StackTraceElement[] stack;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param offsetMillis
+		 *            Time since the frame started, in milliseconds.
+		 * @param phase
+		 *            Last phase completed.
+		 * @param stack
+		 *            Stack of the game thread.
+		 */
+		private Sample(final long offsetMillis, final int phase,
+				final StackTraceElement[] stack) {
+			this.offsetMillis = offsetMillis;
+			this.phase = phase;
+			this.stack = stack;
+		}
+	}
+
+	/**
+	 * Garbage collection that ended, from its notification.
+	 */
+	private static final class Collection {
+
+		/** Collector that ran. */
+		private final String collector;
+		/** Cause of the collection. */
+		private final String cause;
+		/** Start of the collection, in milliseconds since the epoch. */
+		private final long startMillis;
+		/** Duration of the collection, in milliseconds. */
+		private final long durationMillis;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param collector
+		 *            Collector that ran.
+		 * @param cause
+		 *            Cause of the collection.
+		 * @param startMillis
+		 *            Start, in milliseconds since the epoch.
+		 * @param durationMillis
+		 *            Duration, in milliseconds.
+		 */
+		private Collection(final String collector, final String cause,
+				final long startMillis, final long durationMillis) {
+			this.collector = collector;
+			this.cause = cause;
+			this.startMillis = startMillis;
+			this.durationMillis = durationMillis;
+		}
+	}
+
+	/** Time a frame may take before it is a stall, in nanoseconds. */
+	private final long thresholdNanos;
+	/** Time between polls and samples, in nanoseconds. */
+	private final long sampleNanos;
+	/** File the reports are appended to. */
+	private final File reportFile;
+	/** Application logger. */
+	private final Logger logger;
+	/** Frames started so far. */
+	private final AtomicLong frames;
+	/** Start of the frame running, 0 between screens. */
+	private final AtomicLong frameStart;
+	/** Last phase of the game screen update completed in the frame. */
+	private final AtomicInteger phase;
+	/** Garbage collections that ended most recently, oldest first. */
+	private final Deque<Collection> collections;
+	/** Collectors listened to, removed when closed. */
+	private final List<NotificationEmitter> emitters;
+	/** Listener of the collections, the same for every collector. */
+	private final NotificationListener listener;
+	/** Screen of the frame running, published by frames. */
+	private Screen screen;
+	/** Thread running the frames. */
+	private volatile Thread gameThread;
+	/** Thread watching the frames. */
+	private final Thread watcher;
+	/** If the watchdog was closed. */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor, starts watching.
+	 *
+	 * @param thresholdMillis
+	 *            Time a frame may take before it is a stall.
+	 * @param sampleMillis
+	 *            Time between polls of the heartbeat and between samples of
+	 *            a stall.
+	 * @param reportFile
+	 *            File the reports are appended to.
+	 * @param logger
+	 *            Application logger.
+	 */
+	public StallWatchdog(final long thresholdMillis, final long sampleMillis,
+			final File reportFile, final Logger logger) {
+		this.thresholdNanos = thresholdMillis * NANOS_PER_MILLI;
+		this.sampleNanos = Math.max(1, sampleMillis) * NANOS_PER_MILLI;
+		this.reportFile = reportFile;
+		this.logger = logger;
+		this.frames = new AtomicLong();
+		this.frameStart = new AtomicLong();
+		this.phase = new AtomicInteger(NO_PHASE);
+		this.collections = new ArrayDeque<Collection>(GC_HISTORY);
+
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		this.emitters = new ArrayList<NotificationEmitter>();
+		this.listener = (notification, handback) -> collected(notification,
+				jvmStart);
+		for (GarbageCollectorMXBean collector : ManagementFactory
+				.getGarbageCollectorMXBeans())
+			if (collector instanceof NotificationEmitter) {
+				NotificationEmitter emitter = (NotificationEmitter) collector;
+				emitter.addNotificationListener(this.listener, null, null);
+				this.emitters.add(emitter);
+			}
+
+		this.watcher = new Thread(this::watch, "stall-watchdog");
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+
+	/**
+	 * Marks the start of a frame, from the game thread.
+	 *
+	 * @param current
+	 *            Screen the frame belongs to.
+	 */
+	public void beginFrame(final Screen current) {
+		Thread thread = Thread.currentThread();
+		if (this.gameThread != thread)
+			this.gameThread = thread;
+		this.screen = current;
+		this.phase.lazySet(NO_PHASE);
+		this.frameStart.lazySet(System.nanoTime());
+		this.frames.lazySet(this.frames.get() + 1);
+	}
+
+	/**
+	 * Marks a phase of the game screen update as completed, from the game
+	 * thread.
+	 *
+	 * @param completed
+	 *            Phase completed.
+	 */
+	public void endPhase(final Phase completed) {
+		this.phase.lazySet(completed.ordinal());
+	}
+
+	/**
+	 * Marks the end of the frames of a screen, from the game thread; the
+	 * time until the next screen runs is not watched.
+	 */
+	public void endFrames() {
+		this.frameStart.lazySet(0);
+	}
+
+	/**
+	 * Stops watching, and listening to the collectors.
+	 */
+	public void close() {
+		this.closed = true;
+		this.watcher.interrupt();
+		for (NotificationEmitter emitter : this.emitters)
+			try {
+				emitter.removeNotificationListener(this.listener);
+			} catch (ListenerNotFoundException e) {
+				// Not listening to it anymore.
+			}
+		this.emitters.clear();
+	}
+
+	/**
+	 * Body of the watcher thread: polls the heartbeat and reports the
+	 * frames that run past the threshold.
+	 */
+	private void watch() {
+		long reported = 0;
+		while (!this.closed) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(this.sampleNanos);
+			} catch (InterruptedException e) {
+				return;
+			}
+			// Read in the opposite order they are written.
+			long frame = this.frames.get();
+			long start = this.frameStart.get();
+			Thread thread = this.gameThread;
+			if (start == 0 || frame == reported || thread == null
+					|| System.nanoTime() - start < this.thresholdNanos)
+				continue;
+			reported = frame;
+			try {
+				report(frame, start, thread);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Samples a stalled frame until it ends and reports it.
+	 *
+	 * @param frame
+	 *            Number of the frame stalled.
+	 * @param start
+	 *            Start of the frame.
+	 * @param thread
+	 *            Thread running the frame.
+	 * @throws InterruptedException
+	 *             If the watchdog is closed meanwhile.
+	 */
+	private void report(final long frame, final long start,
+			final Thread thread) throws InterruptedException {
+		Screen stalled = this.screen;
+		long startMillis = System.currentTimeMillis()
+				- (System.nanoTime() - start) / NANOS_PER_MILLI;
+		List<Sample> samples = new ArrayList<Sample>();
+		boolean ended;
+		long elapsed;
+		while (true) {
+			int lastPhase = this.phase.get();
+			StackTraceElement[] stack = thread.getStackTrace();
+			elapsed = System.nanoTime() - start;
+			ended = this.frames.get() != frame;
+			if (ended)
+				break;
+			samples.add(new Sample(elapsed / NANOS_PER_MILLI, lastPhase,
+					stack));
+			if (samples.size() >= MAX_SAMPLES)
+				break;
+			TimeUnit.NANOSECONDS.sleep(this.sampleNanos);
+		}
+		long durationMillis = elapsed / NANOS_PER_MILLI;
+		// Collections are notified once over, wait for the last one.
+		TimeUnit.NANOSECONDS.sleep(this.sampleNanos);
+		List<Collection> gcs = collectionsBetween(startMillis, startMillis
+				+ durationMillis);
+
+		String screenName = stalled == null ? "screen" : stalled.getClass()
+				.getSimpleName();
+		StringBuilder text = new StringBuilder();
+		text.append("Frame ").append(frame).append(" of ").append(screenName)
+				.append(" started at ")
+				.append(Instant.ofEpochMilli(startMillis));
+		if (ended)
+			text.append(" took ").append(durationMillis).append(" ms");
+		else
+			text.append(" ran for ").append(durationMillis)
+					.append(" ms, still running");
+		text.append(", threshold ")
+				.append(this.thresholdNanos / NANOS_PER_MILLI).append(" ms.\n");
+		long gcMillis = 0;
+		for (Collection gc : gcs)
+			gcMillis += gc.durationMillis;
+		text.append(gcs.size()).append(" garbage collections, ")
+				.append(gcMillis).append(" ms.\n");
+		for (Collection gc : gcs)
+			text.append("\t").append(gc.collector).append(" (")
+					.append(gc.cause).append(") at +")
+					.append(Math.max(0, gc.startMillis - startMillis))
+					.append(" ms, ")
+					.append(gc.durationMillis).append(" ms\n");
+		for (Sample sample : samples) {
+			text.append("Sample at +").append(sample.offsetMillis)
+					.append(" ms, ").append(sample.phase == NO_PHASE
+							? "no phase completed"
+							: "after " + PHASES[sample.phase]).append(":\n");
+			for (StackTraceElement element : sample.stack)
+				text.append("\tat ").append(element).append('\n');
+		}
+		text.append('\n');
+
+		try (Writer output = new OutputStreamWriter(new FileOutputStream(
+				this.reportFile, true), Charset.forName("UTF-8"))) {
+			output.write(text.toString());
+		} catch (IOException e) {
+			this.logger.warning("Couldn't write stall report!");
+		}
+		this.logger.warning("Frame of " + screenName + " stalled for "
+				+ durationMillis + " ms, reported in " + this.reportFile
+				+ ".");
+	}
+
+	/**
+	 * Keeps a garbage collection that ended, from its notification.
+	 *
+	 * @param notification
+	 *            Notification of a collector.
+	 * @param jvmStart
+	 *            Start of the virtual machine, in milliseconds since the
+	 *            epoch.
+	 */
+	private void collected(final Notification notification,
+			final long jvmStart) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+				.equals(notification.getType()))
+			return;
+		GarbageCollectionNotificationInfo info =
+				GarbageCollectionNotificationInfo.from(
+						(CompositeData) notification.getUserData());
+		Collection collection = new Collection(info.getGcName(),
+				info.getGcCause(), jvmStart + info.getGcInfo().getStartTime(),
+				info.getGcInfo().getDuration());
+		synchronized (this.collections) {
+			if (this.collections.size() == GC_HISTORY)
+				this.collections.removeFirst();
+			this.collections.addLast(collection);
+		}
+	}
+
+	/**
+	 * Returns the garbage collections that overlap a time span.
+	 *
+	 * @param fromMillis
+	 *            Start of the span, in milliseconds since the epoch.
+	 * @param toMillis
+	 *            End of the span, in milliseconds since the epoch.
+	 * @return Collections during the span, oldest first.
+	 */
+	private List<Collection> collectionsBetween(final long fromMillis,
+			final long toMillis) {
+		List<Collection> during = new ArrayList<Collection>();
+		synchronized (this.collections) {
+			for (Collection gc : this.collections)
+				if (gc.startMillis <= toMillis
+						&& gc.startMillis + gc.durationMillis >= fromMillis)
+					during.add(gc);
+		}
+		return during;
+	}
+}
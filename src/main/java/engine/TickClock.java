@@ -0,0 +1,73 @@
+package engine;
+
+/**
+ * Game session clock, advanced once per game screen update instead of
+ * following the wall clock. Game time only depends on the number of frames
+ * played, so a session can be reproduced from its seed and inputs.
+ */
+public final class TickClock implements TimeSource {
+
+	/** Time the session starts at, cooldowns treat zero as never reset. */
+	private static final long START_TIME = 1;
+
+	/** Frames per second the session is simulated at. */
+	private final int fps;
+	/** Frames elapsed since the session started. */
+	private long ticks;
+
+	/**
+	 * Constructor, starts the clock.
+	 * 
+	 * @param fps
+	 *            Frames per second the session is simulated at.
+	 */
+	public TickClock(final int fps) {
+		this.fps = fps;
+		this.ticks = 0;
+	}
+
+	/**
+	 * Advances the clock one frame.
+	 */
+	public void tick() {
+		this.ticks++;
+	}
+
+	/**
+	 * Returns the game time, rounded down to the millisecond.
+	 * 
+	 * @return Current game time in milliseconds.
+	 */
+	@Override
+	public long currentTimeMillis() {
+		return START_TIME + this.ticks * 1000 / this.fps;
+	}
+
+	/**
+	 * Getter for the frames elapsed since the session started.
+	 * 
+	 * @return Elapsed frames.
+	 */
+	public long getTicks() {
+		return this.ticks;
+	}
+
+	/**
+	 * Moves the clock to a frame of the session, to resume a saved game.
+	 * 
+	 * @param ticks
+	 *            Frames elapsed since the session started.
+	 */
+	public void setTicks(final long ticks) {
+		this.ticks = ticks;
+	}
+
+	/**
+	 * Getter for the frames per second the session is simulated at.
+	 * 
+	 * @return Frames per second.
+	 */
+	public int getFps() {
+		return this.fps;
+	}
+}
@@ -0,0 +1,22 @@
+package engine;
+
+/**
+ * Source of the time read by cooldowns.
+ */
+public interface TimeSource {
+
+	/** Wall clock time, used outside game sessions. */
+	TimeSource SYSTEM = new TimeSource() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * Returns the current time.
+	 * 
+	 * @return Current time in milliseconds.
+	 */
+	long currentTimeMillis();
+}
@@ -1,10 +1,13 @@
 package entity;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
+import telemetry.Metrics;
+
 /**
- * Implements a pool of recyclable bullets.
+ * Implements a pool of recyclable bullets. Each game has its own pool, taken
+ * from its engine context.
  * 
  * @author <a href="mailto:RobertoIA1987@gmail.com">Roberto Izquierdo Amo</a>
  * 
@@ -12,13 +15,19 @@ import java.util.Set;
 public final class BulletPool {
 
 	/** Set of already created bullets. */
-	private static Set<Bullet> pool = new HashSet<Bullet>();
+	private Set<Bullet> pool;
+	/** Metrics of the game the pool belongs to. */
+	private final Metrics metrics;
 
 	/**
-	 * Constructor, not called.
+	 * Constructor, starts with an empty pool.
+	 * 
+	 * @param metrics
+	 *            Metrics of the game the pool belongs to.
 	 */
-	private BulletPool() {
-
+	public BulletPool(final Metrics metrics) {
+		this.pool = new LinkedHashSet<Bullet>();
+		this.metrics = metrics;
 	}
 
 	/**
@@ -34,7 +43,7 @@ public final class BulletPool {
 	 *            on direction - positive is down.
 	 * @return Requested bullet.
 	 */
-	public static Bullet getBullet(final int positionX,
+	public Bullet getBullet(final int positionX,
 			final int positionY, final int speed) {
 		Bullet bullet;
 		if (!pool.isEmpty()) {
@@ -48,6 +57,7 @@ public final class BulletPool {
 			bullet = new Bullet(positionX, positionY, speed);
 			bullet.setPositionX(positionX - bullet.getWidth() / 2);
 		}
+		this.metrics.getBulletsSpawned().increment();
 		return bullet;
 	}
 
@@ -57,7 +67,17 @@ public final class BulletPool {
 	 * @param bullet
 	 *            Bullets to recycle.
 	 */
-	public static void recycle(final Set<Bullet> bullet) {
+	public void recycle(final Set<Bullet> bullet) {
 		pool.addAll(bullet);
+		this.metrics.getBulletsRecycled().add(bullet.size());
+	}
+
+	/**
+	 * Returns the number of bullets available for reuse.
+	 * 
+	 * @return Size of the pool.
+	 */
+	public int size() {
+		return pool.size();
 	}
 }
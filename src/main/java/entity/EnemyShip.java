@@ -3,8 +3,8 @@ package entity;
 import java.awt.Color;
 
 import engine.Cooldown;
-import engine.Core;
 import engine.DrawManager.SpriteType;
+import engine.EngineContext;
 
 /**
  * Implements a enemy ship, to be destroyed by the player.
@@ -29,10 +29,14 @@ public class EnemyShip extends Entity {
 	private boolean isDestroyed;
 	/** Values of the ship, in points, when destroyed. */
 	private int pointValue;
+	/** Place of the ship in its formation when created, -1 if none. */
+	private int formationIndex;
 
 	/**
 	 * Constructor, establishes the ship's properties.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param positionX
 	 *            Initial position of the ship in the X axis.
 	 * @param positionY
@@ -40,13 +44,14 @@ public class EnemyShip extends Entity {
 	 * @param spriteType
 	 *            Sprite type, image corresponding to the ship.
 	 */
-	public EnemyShip(final int positionX, final int positionY,
-			final SpriteType spriteType) {
+	public EnemyShip(final EngineContext context, final int positionX,
+			final int positionY, final SpriteType spriteType) {
 		super(positionX, positionY, 12 * 2, 8 * 2, Color.WHITE);
 
 		this.spriteType = spriteType;
-		this.animationCooldown = Core.getCooldown(500);
+		this.animationCooldown = context.getCooldown(500);
 		this.isDestroyed = false;
+		this.formationIndex = -1;
 
 		switch (this.spriteType) {
 		case EnemyShipA1:
@@ -77,6 +82,7 @@ public class EnemyShip extends Entity {
 		this.spriteType = SpriteType.EnemyShipSpecial;
 		this.isDestroyed = false;
 		this.pointValue = BONUS_TYPE_POINTS;
+		this.formationIndex = -1;
 	}
 
 	/**
@@ -88,6 +94,26 @@ public class EnemyShip extends Entity {
 		return this.pointValue;
 	}
 
+	/**
+	 * Getter for the place of the ship in its formation when created,
+	 * column by column, which identifies it during the level.
+	 * 
+	 * @return Index of the ship, -1 if not in a formation.
+	 */
+	public final int getFormationIndex() {
+		return this.formationIndex;
+	}
+
+	/**
+	 * Setter for the place of the ship in its formation when created.
+	 * 
+	 * @param formationIndex
+	 *            Index of the ship.
+	 */
+	public final void setFormationIndex(final int formationIndex) {
+		this.formationIndex = formationIndex;
+	}
+
 	/**
 	 * Moves the ship the specified distance.
 	 * 
@@ -5,14 +5,17 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import screen.Screen;
 import engine.Cooldown;
-import engine.Core;
 import engine.DrawManager;
 import engine.DrawManager.SpriteType;
+import engine.EngineContext;
+import engine.GameRandom;
 import engine.GameSettings;
+import engine.Snapshot;
 
 /**
  * Groups enemy ships into a formation that moves together.
@@ -49,12 +52,16 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	/** Minimum speed allowed. */
 	private static final int MINIMUM_SPEED = 10;
 
+	/** Context of the game. */
+	private EngineContext context;
 	/** DrawManager instance. */
 	private DrawManager drawManager;
 	/** Application logger. */
 	private Logger logger;
 	/** Screen to draw ships on. */
 	private Screen screen;
+	/** Random source of the game session. */
+	private GameRandom random;
 
 	/** List of enemy ships forming the formation. */
 	private List<List<EnemyShip>> enemyShips;
@@ -94,6 +101,10 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	private List<EnemyShip> shooters;
 	/** Number of not destroyed ships. */
 	private int shipCount;
+	/** Distance moved in the x-axis since the formation was created. */
+	private int offsetX;
+	/** Distance moved in the y-axis since the formation was created. */
+	private int offsetY;
 
 	/** Directions the formation can move. */
 	private enum Direction {
@@ -108,12 +119,19 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	/**
 	 * Constructor, sets the initial conditions.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param gameSettings
 	 *            Current game settings.
+	 * @param random
+	 *            Random source of the game session.
 	 */
-	public EnemyShipFormation(final GameSettings gameSettings) {
-		this.drawManager = Core.getDrawManager();
-		this.logger = Core.getLogger();
+	public EnemyShipFormation(final EngineContext context,
+			final GameSettings gameSettings, final GameRandom random) {
+		this.context = context;
+		this.drawManager = context.getDrawManager();
+		this.logger = context.getLogger();
+		this.random = random;
 		this.enemyShips = new ArrayList<List<EnemyShip>>();
 		this.currentDirection = Direction.RIGHT;
 		this.movementInterval = 0;
@@ -129,8 +147,9 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 		this.shooters = new ArrayList<EnemyShip>();
 		SpriteType spriteType;
 
-		this.logger.info("Initializing " + nShipsWide + "x" + nShipsHigh
-				+ " ship formation in (" + positionX + "," + positionY + ")");
+		this.logger.log(Level.INFO, "Initializing {0}x{1} ship formation in"
+				+ " ({2},{3})", new Object[] { this.nShipsWide,
+				this.nShipsHigh, this.positionX, this.positionY });
 
 		// Each sub-list is a column on the formation.
 		for (int i = 0; i < this.nShipsWide; i++)
@@ -146,10 +165,12 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 				else
 					spriteType = SpriteType.EnemyShipA1;
 
-				column.add(new EnemyShip((SEPARATION_DISTANCE 
-						* this.enemyShips.indexOf(column))
+				EnemyShip enemyShip = new EnemyShip(this.context,
+						(SEPARATION_DISTANCE * this.enemyShips.indexOf(column))
 								+ positionX, (SEPARATION_DISTANCE * i)
-								+ positionY, spriteType));
+								+ positionY, spriteType);
+				enemyShip.setFormationIndex(this.shipCount);
+				column.add(enemyShip);
 				this.shipCount++;
 			}
 		}
@@ -191,8 +212,8 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	 */
 	public final void update() {
 		if(this.shootingCooldown == null) {
-			this.shootingCooldown = Core.getVariableCooldown(shootingInterval,
-					shootingVariance);
+			this.shootingCooldown = this.context.getVariableCooldown(
+					shootingInterval, shootingVariance, this.random);
 			this.shootingCooldown.reset();
 		}
 		
@@ -257,20 +278,23 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 
 			positionX += movementX;
 			positionY += movementY;
-
-			// Cleans explosions.
-			List<EnemyShip> destroyed;
-			for (List<EnemyShip> column : this.enemyShips) {
-				destroyed = new ArrayList<EnemyShip>();
-				for (EnemyShip ship : column) {
-					if (ship != null && ship.isDestroyed()) {
-						destroyed.add(ship);
-						this.logger.info("Removed enemy "
-								+ column.indexOf(ship) + " from column "
-								+ this.enemyShips.indexOf(column));
-					}
+			offsetX += movementX;
+			offsetY += movementY;
+
+			// Cleans explosions, in place and by index.
+			for (int c = 0; c < this.enemyShips.size(); c++) {
+				List<EnemyShip> column = this.enemyShips.get(c);
+				int kept = 0;
+				for (int i = 0; i < column.size(); i++) {
+					EnemyShip ship = column.get(i);
+					if (ship.isDestroyed())
+						this.logger.log(Level.INFO, "Removed enemy {0} from"
+								+ " column {1}", new Object[] { i, c });
+					else
+						column.set(kept++, ship);
 				}
-				column.removeAll(destroyed);
+				while (column.size() > kept)
+					column.remove(column.size() - 1);
 			}
 
 			for (List<EnemyShip> column : this.enemyShips)
@@ -303,7 +327,7 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 		}
 		for (int index : emptyColumns) {
 			this.enemyShips.remove(index);
-			logger.info("Removed column " + index);
+			logger.log(Level.INFO, "Removed column {0}", index);
 		}
 
 		int leftMostPoint = 0;
@@ -332,12 +356,12 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	 */
 	public final void shoot(final Set<Bullet> bullets) {
 		// For now, only ships in the bottom row are able to shoot.
-		int index = (int) (Math.random() * this.shooters.size());
+		int index = this.random.nextInt(this.shooters.size());
 		EnemyShip shooter = this.shooters.get(index);
 
 		if (this.shootingCooldown.checkFinished()) {
 			this.shootingCooldown.reset();
-			bullets.add(BulletPool.getBullet(shooter.getPositionX()
+			bullets.add(this.context.getBulletPool().getBullet(shooter.getPositionX()
 					+ shooter.width / 2, shooter.getPositionY(), BULLET_SPEED));
 		}
 	}
@@ -349,24 +373,22 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	 *            Ship to be destroyed.
 	 */
 	public final void destroy(final EnemyShip destroyedShip) {
-		for (List<EnemyShip> column : this.enemyShips)
+		int destroyedShipColumnIndex = -1;
+		for (int c = 0; c < this.enemyShips.size(); c++) {
+			List<EnemyShip> column = this.enemyShips.get(c);
 			for (int i = 0; i < column.size(); i++)
-				if (column.get(i).equals(destroyedShip)) {
-					column.get(i).destroy();
-					this.logger.info("Destroyed ship in ("
-							+ this.enemyShips.indexOf(column) + "," + i + ")");
+				if (column.get(i) == destroyedShip) {
+					destroyedShip.destroy();
+					if (destroyedShipColumnIndex < 0)
+						destroyedShipColumnIndex = c;
+					this.logger.log(Level.INFO, "Destroyed ship in ({0},{1})",
+							new Object[] { c, i });
 				}
+		}
 
 		// Updates the list of ships that can shoot the player.
-		if (this.shooters.contains(destroyedShip)) {
-			int destroyedShipIndex = this.shooters.indexOf(destroyedShip);
-			int destroyedShipColumnIndex = -1;
-
-			for (List<EnemyShip> column : this.enemyShips)
-				if (column.contains(destroyedShip)) {
-					destroyedShipColumnIndex = this.enemyShips.indexOf(column);
-					break;
-				}
+		int destroyedShipIndex = this.shooters.indexOf(destroyedShip);
+		if (destroyedShipIndex >= 0) {
 
 			EnemyShip nextShooter = getNextShooter(this.enemyShips
 					.get(destroyedShipColumnIndex));
@@ -375,8 +397,8 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 				this.shooters.set(destroyedShipIndex, nextShooter);
 			else {
 				this.shooters.remove(destroyedShipIndex);
-				this.logger.info("Shooters list reduced to "
-						+ this.shooters.size() + " members.");
+				this.logger.log(Level.INFO, "Shooters list reduced to {0}"
+						+ " members.", this.shooters.size());
 			}
 		}
 
@@ -402,6 +424,26 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 		return nextShooter;
 	}
 
+	/**
+	 * Getter for the number of ships alive, kept up to date as ships are
+	 * destroyed.
+	 * 
+	 * @return Ships alive in the formation.
+	 */
+	public final int getShipCount() {
+		return this.shipCount;
+	}
+
+	/**
+	 * Getter for the ships in charge of shooting, the lowest alive ship of
+	 * each column.
+	 * 
+	 * @return Ships able to shoot the player.
+	 */
+	public final List<EnemyShip> getShooters() {
+		return this.shooters;
+	}
+
 	/**
 	 * Returns an iterator over the ships in the formation.
 	 * 
@@ -409,7 +451,7 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 	 */
 	@Override
 	public final Iterator<EnemyShip> iterator() {
-		Set<EnemyShip> enemyShipsList = new HashSet<EnemyShip>();
+		List<EnemyShip> enemyShipsList = new ArrayList<EnemyShip>();
 
 		for (List<EnemyShip> column : this.enemyShips)
 			for (EnemyShip enemyShip : column)
@@ -418,6 +460,148 @@ public class EnemyShipFormation implements Iterable<EnemyShip> {
 		return enemyShipsList.iterator();
 	}
 
+	/**
+	 * Marks the ships still alive on a bit mask, one bit per position of the
+	 * original formation, column after column.
+	 * 
+	 * @param mask
+	 *            Mask to write, bit i of the formation is bit i % 64 of
+	 *            word from + i / 64.
+	 * @param from
+	 *            First word of the mask to write.
+	 * @param words
+	 *            Words of the mask reserved for the formation, cleared
+	 *            before writing.
+	 */
+	public final void fillAliveMask(final long[] mask, final int from,
+			final int words) {
+		for (int i = 0; i < words; i++)
+			mask[from + i] = 0;
+		for (List<EnemyShip> column : this.enemyShips)
+			for (EnemyShip enemyShip : column)
+				if (!enemyShip.isDestroyed()) {
+					int bit = positionBit(enemyShip);
+					mask[from + bit / 64] |= 1L << (bit % 64);
+				}
+	}
+
+	/**
+	 * Saves the ships shown and alive, the movement and the shooting
+	 * cooldown of the formation.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to write to.
+	 */
+	public final void saveState(final Snapshot snapshot) {
+		snapshot.setFormationSize(this.nShipsWide, this.nShipsHigh);
+		for (List<EnemyShip> column : this.enemyShips)
+			for (EnemyShip enemyShip : column) {
+				int bit = positionBit(enemyShip);
+				snapshot.presentMask[bit / 64] |= 1L << (bit % 64);
+				if (!enemyShip.isDestroyed())
+					snapshot.aliveMask[bit / 64] |= 1L << (bit % 64);
+			}
+		snapshot.offsetX = this.offsetX;
+		snapshot.offsetY = this.offsetY;
+		snapshot.direction = this.currentDirection.ordinal();
+		snapshot.previousDirection = this.previousDirection == null
+				? Snapshot.NO_DIRECTION : this.previousDirection.ordinal();
+		snapshot.movementInterval = this.movementInterval;
+		if (this.shootingCooldown == null) {
+			snapshot.formationShootingRemaining = Snapshot.NOT_CREATED;
+		} else {
+			snapshot.formationShootingRemaining = this.shootingCooldown
+					.getRemaining();
+			snapshot.formationShootingDuration = this.shootingCooldown
+					.getDuration();
+		}
+	}
+
+	/**
+	 * Restores a saved formation, on a formation just created with the same
+	 * settings and not updated yet.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to read from.
+	 */
+	public final void restoreState(final Snapshot snapshot) {
+		this.shipCount = 0;
+		this.shooters.clear();
+		for (List<EnemyShip> column : this.enemyShips) {
+			Iterator<EnemyShip> iterator = column.iterator();
+			while (iterator.hasNext()) {
+				EnemyShip enemyShip = iterator.next();
+				int bit = positionBit(enemyShip);
+				if ((snapshot.presentMask[bit / 64] & 1L << (bit % 64)) == 0) {
+					iterator.remove();
+					continue;
+				}
+				enemyShip.move(snapshot.offsetX, snapshot.offsetY);
+				if ((snapshot.aliveMask[bit / 64] & 1L << (bit % 64)) != 0)
+					this.shipCount++;
+				else
+					enemyShip.destroy();
+			}
+			// Shooters keep the column order, as when ships are destroyed.
+			EnemyShip shooter = getNextShooter(column);
+			if (shooter != null)
+				this.shooters.add(shooter);
+		}
+
+		this.offsetX = snapshot.offsetX;
+		this.offsetY = snapshot.offsetY;
+		this.positionX = INIT_POS_X + this.offsetX;
+		this.positionY = INIT_POS_Y + this.offsetY;
+		this.currentDirection = Direction.values()[snapshot.direction];
+		this.previousDirection = snapshot.previousDirection
+				== Snapshot.NO_DIRECTION ? null
+				: Direction.values()[snapshot.previousDirection];
+		this.movementInterval = snapshot.movementInterval;
+
+		if (snapshot.formationShootingRemaining != Snapshot.NOT_CREATED) {
+			this.shootingCooldown = this.context.getVariableCooldown(
+					shootingInterval, shootingVariance, this.random);
+			this.shootingCooldown.restore(
+					snapshot.formationShootingRemaining,
+					snapshot.formationShootingDuration);
+		}
+	}
+
+	/**
+	 * Position of a ship in the original formation, column after column.
+	 * 
+	 * @param enemyShip
+	 *            Ship of the formation.
+	 * @return Index of the ship in the original formation.
+	 */
+	private int positionBit(final EnemyShip enemyShip) {
+		int x = (enemyShip.getPositionX() - INIT_POS_X - this.offsetX)
+				/ SEPARATION_DISTANCE;
+		int y = (enemyShip.getPositionY() - INIT_POS_Y - this.offsetY)
+				/ SEPARATION_DISTANCE;
+		return x * this.nShipsHigh + y;
+	}
+
+	/**
+	 * Getter for the distance moved in the x-axis since the formation was
+	 * created.
+	 * 
+	 * @return Horizontal offset.
+	 */
+	public final int getOffsetX() {
+		return this.offsetX;
+	}
+
+	/**
+	 * Getter for the distance moved in the y-axis since the formation was
+	 * created.
+	 * 
+	 * @return Vertical offset.
+	 */
+	public final int getOffsetY() {
+		return this.offsetY;
+	}
+
 	/**
 	 * Checks if there are any ships remaining.
 	 * 
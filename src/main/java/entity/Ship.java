@@ -4,8 +4,9 @@ import java.awt.Color;
 import java.util.Set;
 
 import engine.Cooldown;
-import engine.Core;
 import engine.DrawManager.SpriteType;
+import engine.EngineContext;
+import engine.Snapshot;
 
 /**
  * Implements a ship, to be controlled by the player.
@@ -26,21 +27,27 @@ public class Ship extends Entity {
 	private Cooldown shootingCooldown;
 	/** Time spent inactive between hits. */
 	private Cooldown destructionCooldown;
+	/** Pool the shot bullets are taken from. */
+	private BulletPool bulletPool;
 
 	/**
 	 * Constructor, establishes the ship's properties.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param positionX
 	 *            Initial position of the ship in the X axis.
 	 * @param positionY
 	 *            Initial position of the ship in the Y axis.
 	 */
-	public Ship(final int positionX, final int positionY) {
+	public Ship(final EngineContext context, final int positionX,
+			final int positionY) {
 		super(positionX, positionY, 13 * 2, 8 * 2, Color.GREEN);
 
 		this.spriteType = SpriteType.Ship;
-		this.shootingCooldown = Core.getCooldown(SHOOTING_INTERVAL);
-		this.destructionCooldown = Core.getCooldown(1000);
+		this.shootingCooldown = context.getCooldown(SHOOTING_INTERVAL);
+		this.destructionCooldown = context.getCooldown(1000);
+		this.bulletPool = context.getBulletPool();
 	}
 
 	/**
@@ -69,7 +76,7 @@ public class Ship extends Entity {
 	public final boolean shoot(final Set<Bullet> bullets) {
 		if (this.shootingCooldown.checkFinished()) {
 			this.shootingCooldown.reset();
-			bullets.add(BulletPool.getBullet(positionX + this.width / 2,
+			bullets.add(this.bulletPool.getBullet(positionX + this.width / 2,
 					positionY, BULLET_SPEED));
 			return true;
 		}
@@ -102,6 +109,33 @@ public class Ship extends Entity {
 		return !this.destructionCooldown.checkFinished();
 	}
 
+	/**
+	 * Saves the position and cooldowns of the ship.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to write to.
+	 */
+	public final void saveState(final Snapshot snapshot) {
+		snapshot.shipX = this.positionX;
+		snapshot.shipShootingRemaining = this.shootingCooldown.getRemaining();
+		snapshot.shipDestructionRemaining = this.destructionCooldown
+				.getRemaining();
+	}
+
+	/**
+	 * Restores the position and cooldowns of the ship.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to read from.
+	 */
+	public final void restoreState(final Snapshot snapshot) {
+		this.positionX = snapshot.shipX;
+		this.shootingCooldown.restore(snapshot.shipShootingRemaining,
+				this.shootingCooldown.getDuration());
+		this.destructionCooldown.restore(snapshot.shipDestructionRemaining,
+				this.destructionCooldown.getDuration());
+	}
+
 	/**
 	 * Getter for the ship's speed.
 	 * 
@@ -0,0 +1,73 @@
+package replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binary layout of the replay files.
+ * 
+ * A replay starts with a header (magic, version, seed, frames per second)
+ * followed by runs of frames with the same keys pressed. Each run is the
+ * XOR of its key mask with the previous run's one, in a byte, and the
+ * number of frames it lasts, as a variable length integer. A key held for
+ * several seconds takes two or three bytes.
+ */
+final class ReplayFormat {
+
+	/** Identifies replay files, "SIRP". */
+	static final int MAGIC = 0x53495250;
+	/** Current version of the format. */
+	static final int VERSION = 1;
+	/** Extension of replay files. */
+	static final String EXTENSION = ".replay";
+
+	/**
+	 * Constructor, not called.
+	 */
+	private ReplayFormat() {
+
+	}
+
+	/**
+	 * Writes a non negative integer using 7 bits per byte.
+	 * 
+	 * @param output
+	 *            Stream to write to.
+	 * @param value
+	 *            Value to write.
+	 */
+	static void writeVarInt(final ByteArrayOutputStream output,
+			final int value) {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			output.write((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		output.write(remaining);
+	}
+
+	/**
+	 * Reads an integer written by writeVarInt.
+	 * 
+	 * @param input
+	 *            Stream to read from.
+	 * @return Value read.
+	 * @throws IOException
+	 *             If the stream ends in the middle of the value.
+	 */
+	static int readVarInt(final InputStream input) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = input.read();
+			if (b < 0)
+				throw new EOFException("Truncated replay.");
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
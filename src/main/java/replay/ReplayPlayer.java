@@ -0,0 +1,106 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import engine.InputSource;
+
+/**
+ * Plays back a recorded session, feeding the recorded keys to the game
+ * screen in place of the keyboard.
+ */
+public final class ReplayPlayer implements InputSource {
+
+	/** Seed of the recorded session. */
+	private final long seed;
+	/** Frames per second the session was simulated at. */
+	private final int fps;
+	/** Encoded runs. */
+	private final ByteArrayInputStream runs;
+	/** Keys of the current run. */
+	private int currentMask;
+	/** Frames left in the current run. */
+	private int remaining;
+	/** If every recorded frame has been played. */
+	private boolean finished;
+
+	/**
+	 * Constructor, reads a whole replay file.
+	 * 
+	 * @param file
+	 *            Replay file.
+	 * @throws IOException
+	 *             If the file can't be read or is not a replay.
+	 */
+	public ReplayPlayer(final File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != ReplayFormat.MAGIC)
+				throw new IOException("Not a replay file: " + file);
+			int version = input.readUnsignedShort();
+			if (version != ReplayFormat.VERSION)
+				throw new IOException("Unsupported replay version "
+						+ version);
+			this.seed = input.readLong();
+			this.fps = input.readInt();
+			this.runs = new ByteArrayInputStream(input.readAllBytes());
+		}
+	}
+
+	/**
+	 * Returns the keys recorded for the next frame. Once the recording is
+	 * over, no key is pressed.
+	 * 
+	 * @return Keys pressed this frame.
+	 */
+	@Override
+	public int pollKeys() {
+		if (this.remaining == 0) {
+			int delta = this.runs.read();
+			if (delta < 0) {
+				this.finished = true;
+				return 0;
+			}
+			try {
+				this.currentMask ^= delta;
+				this.remaining = ReplayFormat.readVarInt(this.runs);
+			} catch (IOException e) {
+				this.finished = true;
+				return 0;
+			}
+		}
+		this.remaining--;
+		return this.currentMask;
+	}
+
+	/**
+	 * Getter for the seed of the recorded session.
+	 * 
+	 * @return Session seed.
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Getter for the frames per second of the recorded session.
+	 * 
+	 * @return Frames per second.
+	 */
+	public int getFps() {
+		return this.fps;
+	}
+
+	/**
+	 * Checks if every recorded frame has been played.
+	 * 
+	 * @return True when the recording is over.
+	 */
+	public boolean isFinished() {
+		return this.finished;
+	}
+}
@@ -0,0 +1,172 @@
+package replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import engine.Core;
+import engine.InputSource;
+
+/**
+ * Records the keys read by the game screen on every frame, passing them
+ * through from the real input source. Encoding happens on the game thread
+ * into a small buffer, disk writes on a background thread.
+ */
+public final class ReplayRecorder implements InputSource {
+
+	/** Encoded bytes kept before handing them to the writer thread. */
+	private static final int FLUSH_SIZE = 4096;
+	/** Seconds to wait for pending writes when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+
+	/** Source of the recorded keys. */
+	private final InputSource source;
+	/** Thread writing the replay to disk. */
+	private final ExecutorService writer;
+	/** Replay file stream, only used by the writer thread. */
+	private final DataOutputStream output;
+	/** Application logger. */
+	private final Logger logger;
+	/** Encoded runs not yet handed to the writer. */
+	private ByteArrayOutputStream buffer;
+	/** Keys pressed during the current run. */
+	private int currentMask;
+	/** Frames in the current run. */
+	private int runLength;
+	/** Keys of the last encoded run. */
+	private int encodedMask;
+
+	/**
+	 * Constructor, creates the replay file and writes its header.
+	 * 
+	 * @param source
+	 *            Source of the keys to record.
+	 * @param file
+	 *            Replay file.
+	 * @param seed
+	 *            Seed of the recorded session.
+	 * @param fps
+	 *            Frames per second the session is simulated at.
+	 * @throws IOException
+	 *             If the file can't be created.
+	 */
+	public ReplayRecorder(final InputSource source, final File file,
+			final long seed, final int fps) throws IOException {
+		this.source = source;
+		this.logger = Core.getLogger();
+		this.output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		this.output.writeInt(ReplayFormat.MAGIC);
+		this.output.writeShort(ReplayFormat.VERSION);
+		this.output.writeLong(seed);
+		this.output.writeInt(fps);
+		this.buffer = new ByteArrayOutputStream(FLUSH_SIZE * 2);
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "replay-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates a recorder in a directory, named after the session seed.
+	 * 
+	 * @param source
+	 *            Source of the keys to record.
+	 * @param directory
+	 *            Directory to store the replay in.
+	 * @param seed
+	 *            Seed of the recorded session.
+	 * @param fps
+	 *            Frames per second the session is simulated at.
+	 * @return New recorder.
+	 * @throws IOException
+	 *             If the file can't be created.
+	 */
+	public static ReplayRecorder inDirectory(final InputSource source,
+			final File directory, final long seed, final int fps)
+			throws IOException {
+		directory.mkdirs();
+		return new ReplayRecorder(source, new File(directory,
+				Long.toHexString(seed) + ReplayFormat.EXTENSION), seed, fps);
+	}
+
+	/**
+	 * Reads the keys from the source and records them.
+	 * 
+	 * @return Keys pressed this frame.
+	 */
+	@Override
+	public int pollKeys() {
+		int mask = this.source.pollKeys();
+		if (this.runLength > 0 && mask == this.currentMask) {
+			this.runLength++;
+		} else {
+			encodeRun();
+			this.currentMask = mask;
+			this.runLength = 1;
+		}
+		return mask;
+	}
+
+	/**
+	 * Writes the pending runs and closes the file, waiting for the writer.
+	 */
+	public void close() {
+		encodeRun();
+		flush();
+		this.writer.execute(() -> {
+			try {
+				this.output.close();
+			} catch (IOException e) {
+				this.logger.warning("Couldn't close replay file!");
+			}
+		});
+		this.writer.shutdown();
+		try {
+			if (!this.writer.awaitTermination(CLOSE_TIMEOUT,
+					TimeUnit.SECONDS))
+				this.logger.warning("Replay file not fully written.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Encodes the current run, if any, flushing the buffer when full.
+	 */
+	private void encodeRun() {
+		if (this.runLength == 0)
+			return;
+		this.buffer.write(this.currentMask ^ this.encodedMask);
+		ReplayFormat.writeVarInt(this.buffer, this.runLength);
+		this.encodedMask = this.currentMask;
+		this.runLength = 0;
+		if (this.buffer.size() >= FLUSH_SIZE)
+			flush();
+	}
+
+	/**
+	 * Hands the encoded runs to the writer thread.
+	 */
+	private void flush() {
+		if (this.buffer.size() == 0)
+			return;
+		final ByteArrayOutputStream chunk = this.buffer;
+		this.buffer = new ByteArrayOutputStream(FLUSH_SIZE * 2);
+		this.writer.execute(() -> {
+			try {
+				chunk.writeTo(this.output);
+			} catch (IOException e) {
+				this.logger.warning("Couldn't write replay file!");
+			}
+		});
+	}
+}
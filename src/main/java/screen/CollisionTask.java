@@ -0,0 +1,106 @@
+package screen;
+
+import java.util.concurrent.RecursiveAction;
+
+import entity.Bullet;
+import entity.EnemyShip;
+
+/**
+ * Checks a range of player bullets against the enemy formation, splitting
+ * the range between the threads of a fork-join pool.
+ *
+ * The formation is only read, never modified: every bullet gets the indexes
+ * of the enemies it overlaps, and the game screen applies them afterwards in
+ * bullet order, so the outcome matches the sequential check.
+ */
+final class CollisionTask extends RecursiveAction {
+
+	/** Serial version, tasks are never serialized. */
+	private static final long serialVersionUID = 1L;
+	/** Maximum number of bullets checked by a single task. */
+	private static final int CHUNK_SIZE = 32;
+	/** Result for bullets that do not hit anything. */
+	private static final int[] NO_HITS = new int[0];
+
+	/** Bullets on screen, in the order they are resolved. */
+	private final Bullet[] bullets;
+	/** Enemies in the formation, in the order they are resolved. */
+	private final EnemyShip[] enemies;
+	/** Indexes of the enemies hit by each bullet. */
+	private final int[][] hits;
+	/** First bullet checked by this task. */
+	private final int from;
+	/** Bullet after the last one checked by this task. */
+	private final int to;
+
+	/**
+	 * Constructor, establishes the range of bullets to check.
+	 *
+	 * @param bullets
+	 *            Bullets on screen.
+	 * @param enemies
+	 *            Enemies in the formation.
+	 * @param hits
+	 *            Output, indexes of the enemies hit by each bullet.
+	 * @param from
+	 *            First bullet to check.
+	 * @param to
+	 *            Bullet after the last one to check.
+	 */
+	CollisionTask(final Bullet[] bullets, final EnemyShip[] enemies,
+			final int[][] hits, final int from, final int to) {
+		this.bullets = bullets;
+		this.enemies = enemies;
+		this.hits = hits;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Checks the range, or splits it in two if it is too big.
+	 */
+	@Override
+	protected void compute() {
+		if (this.to - this.from <= CHUNK_SIZE) {
+			for (int i = this.from; i < this.to; i++)
+				this.hits[i] = findHits(this.bullets[i]);
+		} else {
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new CollisionTask(this.bullets, this.enemies,
+					this.hits, this.from, middle), new CollisionTask(
+					this.bullets, this.enemies, this.hits, middle, this.to));
+		}
+	}
+
+	/**
+	 * Finds the enemies a single bullet collides with.
+	 *
+	 * @param bullet
+	 *            Bullet to check.
+	 * @return Indexes of the enemies hit, in ascending order.
+	 */
+	private int[] findHits(final Bullet bullet) {
+		// Enemy bullets are checked against the player by the game screen.
+		if (bullet.getSpeed() > 0)
+			return NO_HITS;
+
+		int[] found = NO_HITS;
+		int count = 0;
+		for (int j = 0; j < this.enemies.length; j++)
+			if (!this.enemies[j].isDestroyed()
+					&& GameScreen.checkCollision(bullet, this.enemies[j])) {
+				if (count == found.length) {
+					int[] grown = new int[Math.max(2, count * 2)];
+					System.arraycopy(found, 0, grown, 0, count);
+					found = grown;
+				}
+				found[count++] = j;
+			}
+
+		if (count == found.length)
+			return found;
+		int[] result = new int[count];
+		System.arraycopy(found, 0, result, 0, count);
+		return result;
+	}
+}
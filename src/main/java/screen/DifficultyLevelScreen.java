@@ -1,7 +1,7 @@
 package screen;
 
 import engine.Cooldown;
-import engine.Core;
+import engine.EngineContext;
 
 import java.awt.event.KeyEvent;
 import java.io.IOException;
@@ -11,11 +11,13 @@ public class DifficultyLevelScreen extends Screen {
 
     /** Time between changes in user selection. */
     private Cooldown selectionCooldown;
-    private static int option =2; //option을 만들어줘서 난이도 선택가능
+    private int option; //option을 만들어줘서 난이도 선택가능
 
     /**
      * Constructor, establishes the properties of the screen.
      *
+     * @param context
+     *            Context of the game.
      * @param width
      *            Screen width.
      * @param height
@@ -23,13 +25,15 @@ public class DifficultyLevelScreen extends Screen {
      * @param fps
      *            Frames per second, frame rate at which the game is run.
      */
-    public DifficultyLevelScreen(final int width, final int height, final int fps) {
-        super(width, height, fps);
+    public DifficultyLevelScreen(final EngineContext context,
+            final int width, final int height, final int fps) {
+        super(context, width, height, fps);
 
         // Defaults to play.
         this.returnCode = 1;
-        this.selectionCooldown = Core.getCooldown(SELECTION_TIME);
+        this.selectionCooldown = this.context.getCooldown(SELECTION_TIME);
         this.selectionCooldown.reset();
+        this.option = context.getDifficulty();
     }
 
     /**
@@ -62,8 +66,10 @@ public class DifficultyLevelScreen extends Screen {
                 nextMenuItem();
                 this.selectionCooldown.reset();
             }
-            if (inputManager.isKeyDown(KeyEvent.VK_SPACE))
+            if (inputManager.isKeyDown(KeyEvent.VK_SPACE)) {
+                this.context.setDifficulty(this.option);
                 this.isRunning = false;
+            }
         }
     }
 
@@ -90,8 +96,4 @@ public class DifficultyLevelScreen extends Screen {
         drawManager.difficultyMenu(this,option);
         drawManager.completeDrawing(this);
     }
-
-    public static final int getOption(){
-        return option;
-    }
 }
@@ -1,19 +1,36 @@
 package screen;
 
 import java.awt.event.KeyEvent;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
 
+import engine.Autosaver;
 import engine.Cooldown;
-import engine.Core;
+import engine.EngineContext;
+import engine.FrameProfiler;
+import engine.FrameProfiler.Phase;
+import engine.GameRandom;
 import engine.GameSettings;
 import engine.GameState;
+import engine.InputSource;
+import engine.LatencyHistogram;
+import engine.RewindBuffer;
+import engine.SamplingProfiler;
+import engine.Snapshot;
+import engine.TickClock;
 import entity.Bullet;
-import entity.BulletPool;
 import entity.EnemyShip;
 import entity.EnemyShipFormation;
 import entity.Entity;
 import entity.Ship;
+import telemetry.CollisionEvent;
+import telemetry.EventJournal;
+import telemetry.EventJournal.EventType;
+import telemetry.FrameEvent;
 
 /**
  * Implements the game screen, where the action happens.
@@ -54,7 +71,7 @@ public class GameScreen extends Screen {
 	private Cooldown enemyShipSpecialExplosionCooldown;
 	/** Time from finishing the level to screen change. */
 	private Cooldown screenFinishedCooldown;
-	/** Set of all bullets fired by on screen ships. */
+	/** Bullets fired by on screen ships, in the order they were fired. */
 	private Set<Bullet> bullets;
 	/** Current score. */
 	private int score;
@@ -70,16 +87,50 @@ public class GameScreen extends Screen {
 	private boolean levelFinished;
 	/** Checks if a bonus life is received. */
 	private boolean bonusLife;
+	/** Random source of the game session. */
+	private GameRandom random;
+	/** Clock of the game session, advanced on each update. */
+	private TickClock clock;
+	/** Source of the keys pressed, the keyboard unless replaying. */
+	private InputSource inputSource;
+	/** If the screen is simulated without drawing. */
+	private boolean headless;
+	/** If the profiler key was down on the previous update. */
+	private boolean profilerKeyDown;
+	/** If the sampling profiler key was down on the previous update. */
+	private boolean samplingKeyDown;
+	/** Time between updates, null when not measured. */
+	private LatencyHistogram frameTimes;
+	/** Time of the last update, from System.nanoTime, 0 before the first. */
+	private long lastUpdateTime;
+	/** Lives lost during the level. */
+	private int livesLost;
+	/** Bonus ships destroyed during the level. */
+	private int bonusShipsDestroyed;
+	/** Saves the game every few seconds, null if not saved. */
+	private Autosaver autosaver;
+	/** Keeps the last frames to go back to, null if not kept. */
+	private RewindBuffer rewindBuffer;
+	/** Journal the gameplay events are written to, null if not written. */
+	private EventJournal eventJournal;
+	/** Saved game to resume when the screen is initialized, if any. */
+	private Snapshot resumeState;
 
 	/**
 	 * Constructor, establishes the properties of the screen.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param gameState
 	 *            Current game state.
 	 * @param gameSettings
 	 *            Current game settings.
-	 * @param bonnusLife
+	 * @param bonusLife
 	 *            Checks if a bonus life is awarded this level.
+	 * @param random
+	 *            Random source of the game session.
+	 * @param clock
+	 *            Clock of the game session.
 	 * @param width
 	 *            Screen width.
 	 * @param height
@@ -87,13 +138,17 @@ public class GameScreen extends Screen {
 	 * @param fps
 	 *            Frames per second, frame rate at which the game is run.
 	 */
-	public GameScreen(final GameState gameState,
+	public GameScreen(final EngineContext context, final GameState gameState,
 			final GameSettings gameSettings, final boolean bonusLife,
-			final int width, final int height, final int fps) {
-		super(width, height, fps);
+			final GameRandom random, final TickClock clock, final int width,
+			final int height, final int fps) {
+		super(context, width, height, fps);
 
 		this.gameSettings = gameSettings;
 		this.bonusLife = bonusLife;
+		this.random = random;
+		this.clock = clock;
+		this.inputSource = this.inputManager;
 		this.level = gameState.getLevel();
 		this.score = gameState.getScore();
 		this.lives = gameState.getLivesRemaining();
@@ -109,22 +164,32 @@ public class GameScreen extends Screen {
 	public final void initialize() {
 		super.initialize();
 
-		enemyShipFormation = new EnemyShipFormation(this.gameSettings);
+		enemyShipFormation = new EnemyShipFormation(this.context,
+				this.gameSettings, this.random);
 		enemyShipFormation.attach(this);
-		this.ship = new Ship(this.width / 2, this.height - 30);
+		this.ship = new Ship(this.context, this.width / 2, this.height - 30);
 		// Appears each 10-30 seconds.
-		this.enemyShipSpecialCooldown = Core.getVariableCooldown(
-				BONUS_SHIP_INTERVAL, BONUS_SHIP_VARIANCE);
+		this.enemyShipSpecialCooldown = this.context.getVariableCooldown(
+				BONUS_SHIP_INTERVAL, BONUS_SHIP_VARIANCE, this.random);
 		this.enemyShipSpecialCooldown.reset();
-		this.enemyShipSpecialExplosionCooldown = Core
+		this.enemyShipSpecialExplosionCooldown = this.context
 				.getCooldown(BONUS_SHIP_EXPLOSION);
-		this.screenFinishedCooldown = Core.getCooldown(SCREEN_CHANGE_INTERVAL);
-		this.bullets = new HashSet<Bullet>();
+		this.screenFinishedCooldown = this.context
+				.getCooldown(SCREEN_CHANGE_INTERVAL);
+		this.bullets = new LinkedHashSet<Bullet>();
 
 		// Special input delay / countdown.
-		this.gameStartTime = System.currentTimeMillis();
-		this.inputDelay = Core.getCooldown(INPUT_DELAY);
+		this.gameStartTime = this.clock.currentTimeMillis();
+		this.inputDelay = this.context.getCooldown(INPUT_DELAY);
 		this.inputDelay.reset();
+
+		this.isRunning = true;
+
+		if (this.resumeState != null) {
+			restoreState(this.resumeState);
+			this.resumeState = null;
+		}
+		journal(EventType.LEVEL_START, this.level, 0, 0, this.score);
 	}
 
 	/**
@@ -134,26 +199,72 @@ public class GameScreen extends Screen {
 	 */
 	public final int run() {
 		super.run();
-
-		this.score += LIFE_SCORE * (this.lives - 1);
-		this.logger.info("Screen cleared with a score of " + this.score);
+		finish();
 
 		return this.returnCode;
 	}
 
+	/**
+	 * Adds the bonus for the lives remaining once the level is over.
+	 */
+	public final void finish() {
+		this.score += LIFE_SCORE * (this.lives - 1);
+		this.logger.log(Level.INFO, "Screen cleared with a score of"
+				+ " {0,number,#}", this.score);
+		journal(EventType.LEVEL_END, this.level, 0, 0, this.score);
+	}
+
 	/**
 	 * Updates the elements on screen and checks for events.
 	 */
 	protected final void update() {
 		super.update();
 
+		if (!this.headless) {
+			// Shown screens follow the profiler setting, toggled with F3.
+			boolean profilerKey = this.inputManager.isKeyDown(KeyEvent.VK_F3);
+			if (profilerKey && !this.profilerKeyDown)
+				this.context.setProfilerEnabled(!this.context
+						.isProfilerEnabled());
+			this.profilerKeyDown = profilerKey;
+			this.profiler = this.context.isProfilerEnabled()
+					|| FrameProfiler.isRecorded() ? this.context
+					.getFrameProfiler() : null;
+
+			// F4 starts sampling the game thread, and stops it.
+			boolean samplingKey = this.inputManager.isKeyDown(KeyEvent.VK_F4);
+			SamplingProfiler sampler = this.context.getSamplingProfiler();
+			if (samplingKey && !this.samplingKeyDown && sampler != null) {
+				if (sampler.isRunning())
+					sampler.stop();
+				else
+					sampler.start(Thread.currentThread());
+			}
+			this.samplingKeyDown = samplingKey;
+		}
+		FrameEvent frameEvent = new FrameEvent();
+		frameEvent.begin();
+
+		long time = 0;
+		if (this.profiler != null)
+			time = System.nanoTime();
+		if (this.frameTimes != null) {
+			long now = System.nanoTime();
+			if (this.lastUpdateTime != 0)
+				this.frameTimes.record(now - this.lastUpdateTime);
+			this.lastUpdateTime = now;
+		}
+
+		this.clock.tick();
+		int keys = this.inputSource.pollKeys();
+
 		if (this.inputDelay.checkFinished() && !this.levelFinished) {
 
 			if (!this.ship.isDestroyed()) {
-				boolean moveRight = inputManager.isKeyDown(KeyEvent.VK_RIGHT)
-						|| inputManager.isKeyDown(KeyEvent.VK_D);
-				boolean moveLeft = inputManager.isKeyDown(KeyEvent.VK_LEFT)
-						|| inputManager.isKeyDown(KeyEvent.VK_A);
+				boolean moveRight = (keys & (InputSource.KEY_RIGHT
+						| InputSource.KEY_D)) != 0;
+				boolean moveLeft = (keys & (InputSource.KEY_LEFT
+						| InputSource.KEY_A)) != 0;
 
 				boolean isRightBorder = this.ship.getPositionX()
 						+ this.ship.getWidth() + this.ship.getSpeed() > this.width - 1;
@@ -166,10 +277,11 @@ public class GameScreen extends Screen {
 				if (moveLeft && !isLeftBorder) {
 					this.ship.moveLeft();
 				}
-				if (inputManager.isKeyDown(KeyEvent.VK_SPACE))
+				if ((keys & InputSource.KEY_SPACE) != 0)
 					if (this.ship.shoot(this.bullets))
 						this.bulletsShot++;
 			}
+			time = lap(Phase.INPUT, time);
 
 			if (this.enemyShipSpecial != null) {
 				if (!this.enemyShipSpecial.isDestroyed())
@@ -183,21 +295,41 @@ public class GameScreen extends Screen {
 				this.enemyShipSpecial = new EnemyShip();
 				this.enemyShipSpecialCooldown.reset();
 				this.logger.info("A special ship appears");
+				journal(EventType.BONUS_SHIP_SPAWNED, -1,
+						this.enemyShipSpecial.getPositionX(),
+						this.enemyShipSpecial.getPositionY(), 0);
 			}
 			if (this.enemyShipSpecial != null
 					&& this.enemyShipSpecial.getPositionX() > this.width) {
+				journal(EventType.BONUS_SHIP_ESCAPED, -1,
+						this.enemyShipSpecial.getPositionX(),
+						this.enemyShipSpecial.getPositionY(), 0);
 				this.enemyShipSpecial = null;
 				this.logger.info("The special ship has escaped");
 			}
 
 			this.ship.update();
+			time = lap(Phase.SHIPS, time);
 			this.enemyShipFormation.update();
+			time = lap(Phase.FORMATION_UPDATE, time);
 			this.enemyShipFormation.shoot(this.bullets);
+			time = lap(Phase.FORMATION_SHOOT, time);
 		}
 
 		manageCollisions();
+		time = lap(Phase.COLLISIONS, time);
 		cleanBullets();
-		draw();
+		time = lap(Phase.CLEAN_BULLETS, time);
+		if (this.profiler != null)
+			this.profiler.countEntities(this.bullets.size(),
+					this.enemyShipFormation.getShipCount());
+		if (!this.headless) {
+			this.context.getFrameStats().countEntities(this.bullets.size(),
+					this.enemyShipFormation.getShipCount());
+			draw();
+		}
+		if (this.profiler != null)
+			this.profiler.endFrame();
 
 		if ((this.enemyShipFormation.isEmpty() || this.lives == 0)
 				&& !this.levelFinished) {
@@ -208,12 +340,28 @@ public class GameScreen extends Screen {
 		if (this.levelFinished && this.screenFinishedCooldown.checkFinished())
 			this.isRunning = false;
 
+		if (this.autosaver != null && this.isRunning)
+			this.autosaver.update(this);
+		if (this.rewindBuffer != null && this.isRunning)
+			this.rewindBuffer.record(this);
+
+		if (frameEvent.shouldCommit()) {
+			frameEvent.tick = this.clock.getTicks();
+			frameEvent.level = this.level;
+			frameEvent.bullets = this.bullets.size();
+			frameEvent.enemies = this.enemyShipFormation.getShipCount();
+			frameEvent.commit();
+		}
 	}
 
 	/**
-	 * Draws the elements associated with the screen.
+	 * Draws the elements associated with the screen. Package-private for
+	 * the benchmarks.
 	 */
-	private void draw() {
+	void draw() {
+		long time = 0;
+		if (this.profiler != null)
+			time = System.nanoTime();
 		drawManager.initDrawing(this);
 
 		drawManager.drawEntity(this.ship, this.ship.getPositionX(),
@@ -237,7 +385,7 @@ public class GameScreen extends Screen {
 		// Countdown to game start.
 		if (!this.inputDelay.checkFinished()) {
 			int countdown = (int) ((INPUT_DELAY
-					- (System.currentTimeMillis()
+					- (this.clock.currentTimeMillis()
 							- this.gameStartTime)) / 1000);
 			drawManager.drawCountDown(this, this.level, countdown,
 					this.bonusLife);
@@ -247,14 +395,36 @@ public class GameScreen extends Screen {
 					/ 12);
 		}
 
+		if (this.profiler != null && this.context.isProfilerEnabled())
+			drawManager.drawProfiler(this, this.profiler);
+		time = lap(Phase.DRAW, time);
 		drawManager.completeDrawing(this);
+		lap(Phase.COMPLETE_DRAWING, time);
+	}
+
+	/**
+	 * Ends a phase of the update, for the profiler and the watchdog of the
+	 * frames, if there are.
+	 * 
+	 * @param phase
+	 *            Phase ended.
+	 * @param time
+	 *            Start of the phase, if profiling.
+	 * @return Start of the next phase, if profiling.
+	 */
+	private long lap(final Phase phase, final long time) {
+		if (this.watchdog != null)
+			this.watchdog.endPhase(phase);
+		if (this.profiler != null)
+			return this.profiler.lap(phase, time);
+		return time;
 	}
 
 	/**
 	 * Cleans bullets that go off screen.
 	 */
 	private void cleanBullets() {
-		Set<Bullet> recyclable = new HashSet<Bullet>();
+		Set<Bullet> recyclable = new LinkedHashSet<Bullet>();
 		for (Bullet bullet : this.bullets) {
 			bullet.update();
 			if (bullet.getPositionY() < SEPARATION_LINE_HEIGHT
@@ -262,46 +432,136 @@ public class GameScreen extends Screen {
 				recyclable.add(bullet);
 		}
 		this.bullets.removeAll(recyclable);
-		BulletPool.recycle(recyclable);
+		this.context.getBulletPool().recycle(recyclable);
 	}
 
 	/**
-	 * Manages collisions between bullets and ships.
+	 * Manages collisions between bullets and ships. Package-private for the
+	 * benchmarks.
 	 */
-	private void manageCollisions() {
-		Set<Bullet> recyclable = new HashSet<Bullet>();
-		for (Bullet bullet : this.bullets)
+	void manageCollisions() {
+		CollisionEvent event = new CollisionEvent();
+		event.begin();
+		int hitsBefore = this.shipsDestroyed + this.livesLost;
+		Set<Bullet> recyclable = new LinkedHashSet<Bullet>();
+		Bullet[] bulletArray = this.bullets.toArray(new Bullet[0]);
+		List<EnemyShip> enemyList = new ArrayList<EnemyShip>();
+		for (EnemyShip enemyShip : this.enemyShipFormation)
+			enemyList.add(enemyShip);
+		EnemyShip[] enemies = enemyList.toArray(new EnemyShip[0]);
+		long checks = 0;
+
+		// Big bullet-hell levels check the formation in parallel.
+		int[][] hits = null;
+		if (bulletArray.length + enemies.length > this.gameSettings
+				.getParallelCollisionThreshold()) {
+			hits = new int[bulletArray.length][];
+			ForkJoinPool.commonPool().invoke(new CollisionTask(bulletArray,
+					enemies, hits, 0, bulletArray.length));
+		}
+
+		for (int i = 0; i < bulletArray.length; i++) {
+			Bullet bullet = bulletArray[i];
 			if (bullet.getSpeed() > 0) {
+				checks++;
 				if (checkCollision(bullet, this.ship) && !this.levelFinished) {
 					recyclable.add(bullet);
 					if (!this.ship.isDestroyed()) {
 						this.ship.destroy();
 						this.lives--;
-						this.logger.info("Hit on player ship, " + this.lives
-								+ " lives remaining.");
+						this.livesLost++;
+						this.logger.log(Level.INFO, "Hit on player ship, {0}"
+								+ " lives remaining.", this.lives);
+						journal(EventType.PLAYER_HIT, 0,
+								this.ship.getPositionX(),
+								this.ship.getPositionY(), this.lives);
 					}
 				}
 			} else {
-				for (EnemyShip enemyShip : this.enemyShipFormation)
-					if (!enemyShip.isDestroyed()
-							&& checkCollision(bullet, enemyShip)) {
-						this.score += enemyShip.getPointValue();
-						this.shipsDestroyed++;
-						this.enemyShipFormation.destroy(enemyShip);
-						recyclable.add(bullet);
-					}
+				checks += enemies.length;
+				if (hits != null) {
+					for (int j : hits[i])
+						if (!enemies[j].isDestroyed())
+							destroyEnemy(enemies[j], bullet, recyclable);
+				} else {
+					for (EnemyShip enemyShip : enemies)
+						if (!enemyShip.isDestroyed()
+								&& checkCollision(bullet, enemyShip))
+							destroyEnemy(enemyShip, bullet, recyclable);
+				}
+				if (this.enemyShipSpecial != null)
+					checks++;
 				if (this.enemyShipSpecial != null
 						&& !this.enemyShipSpecial.isDestroyed()
 						&& checkCollision(bullet, this.enemyShipSpecial)) {
 					this.score += this.enemyShipSpecial.getPointValue();
 					this.shipsDestroyed++;
+					this.bonusShipsDestroyed++;
+					this.context.getMetrics().getShipsDestroyed().increment();
 					this.enemyShipSpecial.destroy();
 					this.enemyShipSpecialExplosionCooldown.reset();
 					recyclable.add(bullet);
+					journal(EventType.BONUS_SHIP_DESTROYED, -1,
+							this.enemyShipSpecial.getPositionX(),
+							this.enemyShipSpecial.getPositionY(),
+							this.enemyShipSpecial.getPointValue());
 				}
 			}
+		}
 		this.bullets.removeAll(recyclable);
-		BulletPool.recycle(recyclable);
+		this.context.getBulletPool().recycle(recyclable);
+		this.context.getMetrics().getCollisionChecks().add(checks);
+
+		if (event.shouldCommit()) {
+			event.bullets = bulletArray.length;
+			event.enemies = enemies.length;
+			event.hits = this.shipsDestroyed + this.livesLost - hitsBefore;
+			event.parallel = hits != null;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Destroys a ship of the formation hit by a player bullet.
+	 * 
+	 * @param enemyShip
+	 *            Ship hit.
+	 * @param bullet
+	 *            Bullet that hit the ship.
+	 * @param recyclable
+	 *            Bullets to remove at the end of the collision check.
+	 */
+	private void destroyEnemy(final EnemyShip enemyShip, final Bullet bullet,
+			final Set<Bullet> recyclable) {
+		this.score += enemyShip.getPointValue();
+		this.shipsDestroyed++;
+		this.context.getMetrics().getShipsDestroyed().increment();
+		this.enemyShipFormation.destroy(enemyShip);
+		recyclable.add(bullet);
+		journal(EventType.SHIP_DESTROYED, enemyShip.getFormationIndex(),
+				enemyShip.getPositionX(), enemyShip.getPositionY(),
+				enemyShip.getPointValue());
+	}
+
+	/**
+	 * Writes a gameplay event to the journal, if there is one.
+	 * 
+	 * @param type
+	 *            Type of the event.
+	 * @param entity
+	 *            Entity involved.
+	 * @param x
+	 *            Position of the event in the x axis.
+	 * @param y
+	 *            Position of the event in the y axis.
+	 * @param value
+	 *            Value of the event.
+	 */
+	private void journal(final EventType type, final int entity, final int x,
+			final int y, final long value) {
+		if (this.eventJournal != null)
+			this.eventJournal.write(this.clock.getTicks(), type, entity, x, y,
+					value);
 	}
 
 	/**
@@ -313,7 +573,7 @@ public class GameScreen extends Screen {
 	 *            Second entity, the ship.
 	 * @return Result of the collision test.
 	 */
-	private boolean checkCollision(final Entity a, final Entity b) {
+	static boolean checkCollision(final Entity a, final Entity b) {
 		// Calculate center point of the entities in both axis.
 		int centerAX = a.getPositionX() + a.getWidth() / 2;
 		int centerAY = a.getPositionY() + a.getHeight() / 2;
@@ -329,6 +589,257 @@ public class GameScreen extends Screen {
 		return distanceX < maxDistanceX && distanceY < maxDistanceY;
 	}
 
+	/**
+	 * Sets the source of the keys pressed, to replay a recorded session.
+	 * 
+	 * @param inputSource
+	 *            New source of the keys.
+	 */
+	public final void setInputSource(final InputSource inputSource) {
+		this.inputSource = inputSource;
+	}
+
+	/**
+	 * Getter for the player's ship.
+	 * 
+	 * @return Player's ship.
+	 */
+	public final Ship getShip() {
+		return this.ship;
+	}
+
+	/**
+	 * Getter for the lives lost during the level.
+	 * 
+	 * @return Lives lost since the screen was initialized.
+	 */
+	public final int getLivesLost() {
+		return this.livesLost;
+	}
+
+	/**
+	 * Getter for the bonus ships destroyed during the level.
+	 * 
+	 * @return Bonus ships destroyed since the screen was initialized.
+	 */
+	public final int getBonusShipsDestroyed() {
+		return this.bonusShipsDestroyed;
+	}
+
+	/**
+	 * Getter for the bonus ship.
+	 * 
+	 * @return Bonus ship, null if it is not on screen.
+	 */
+	public final EnemyShip getEnemyShipSpecial() {
+		return this.enemyShipSpecial;
+	}
+
+	/**
+	 * Getter for the formation of enemy ships.
+	 * 
+	 * @return Enemy formation.
+	 */
+	public final EnemyShipFormation getEnemyShipFormation() {
+		return this.enemyShipFormation;
+	}
+
+	/**
+	 * Getter for the bullets on screen. Must not be modified.
+	 * 
+	 * @return Set of bullets.
+	 */
+	public final Set<Bullet> getBullets() {
+		return this.bullets;
+	}
+
+	/**
+	 * Checks if the level is over, cleared or lost.
+	 * 
+	 * @return True once the level is finished.
+	 */
+	public final boolean isLevelFinished() {
+		return this.levelFinished;
+	}
+
+	/**
+	 * Sets if the screen is simulated without drawing.
+	 * 
+	 * @param headless
+	 *            True to skip drawing.
+	 */
+	public final void setHeadless(final boolean headless) {
+		this.headless = headless;
+	}
+
+	/**
+	 * Sets the profiler measuring the phases of each update, for screens
+	 * simulated headless. Shown screens use the profiler of their context
+	 * while it is enabled.
+	 * 
+	 * @param profiler
+	 *            Profiler to use, null to stop measuring.
+	 */
+	public final void setProfiler(final FrameProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Sets the histogram measuring the time between updates.
+	 * 
+	 * @param frameTimes
+	 *            Histogram to record to, in nanoseconds, null to stop
+	 *            measuring.
+	 */
+	public final void setFrameTimes(final LatencyHistogram frameTimes) {
+		this.frameTimes = frameTimes;
+		this.lastUpdateTime = 0;
+	}
+
+	/**
+	 * Sets the autosaver saving the game every few seconds.
+	 * 
+	 * @param autosaver
+	 *            Autosaver to use, null to stop saving.
+	 */
+	public final void setAutosaver(final Autosaver autosaver) {
+		this.autosaver = autosaver;
+	}
+
+	/**
+	 * Sets the buffer keeping the last frames of the level.
+	 * 
+	 * @param rewindBuffer
+	 *            Buffer to record to, null to stop recording.
+	 */
+	public final void setRewindBuffer(final RewindBuffer rewindBuffer) {
+		this.rewindBuffer = rewindBuffer;
+	}
+
+	/**
+	 * Sets the journal the gameplay events are written to. Only one game
+	 * may write to a journal at a time.
+	 * 
+	 * @param eventJournal
+	 *            Journal to write to, null to stop writing.
+	 */
+	public final void setEventJournal(final EventJournal eventJournal) {
+		this.eventJournal = eventJournal;
+	}
+
+	/**
+	 * Sets a saved game to resume, restored when the screen is initialized.
+	 * The screen must be created with the game state and settings of the
+	 * saved level, and no bonus life.
+	 * 
+	 * @param snapshot
+	 *            Saved game.
+	 */
+	public final void resumeFrom(final Snapshot snapshot) {
+		this.resumeState = snapshot;
+	}
+
+	/**
+	 * Saves the state of the session, the level and everything on screen.
+	 * Only copies primitives, cheap enough to do on the game thread.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to write to.
+	 */
+	public final void saveState(final Snapshot snapshot) {
+		snapshot.seed = this.random.getSeed();
+		snapshot.randomState = this.random.getState();
+		snapshot.ticks = this.clock.getTicks();
+		snapshot.fps = this.clock.getFps();
+
+		snapshot.level = this.level;
+		snapshot.score = this.score;
+		snapshot.lives = this.lives;
+		snapshot.bulletsShot = this.bulletsShot;
+		snapshot.shipsDestroyed = this.shipsDestroyed;
+		snapshot.bonusLife = this.bonusLife;
+		snapshot.levelFinished = this.levelFinished;
+		snapshot.levelElapsed = (int) (this.clock.currentTimeMillis()
+				- this.gameStartTime);
+		snapshot.inputDelayRemaining = this.inputDelay.getRemaining();
+		snapshot.screenFinishedRemaining = this.screenFinishedCooldown
+				.getRemaining();
+
+		this.ship.saveState(snapshot);
+
+		snapshot.specialPresent = this.enemyShipSpecial != null;
+		if (this.enemyShipSpecial != null) {
+			snapshot.specialDestroyed = this.enemyShipSpecial.isDestroyed();
+			snapshot.specialX = this.enemyShipSpecial.getPositionX();
+		}
+		snapshot.specialRemaining = this.enemyShipSpecialCooldown
+				.getRemaining();
+		snapshot.specialDuration = this.enemyShipSpecialCooldown
+				.getDuration();
+		snapshot.specialExplosionRemaining = this
+				.enemyShipSpecialExplosionCooldown.getRemaining();
+
+		this.enemyShipFormation.saveState(snapshot);
+
+		// In the order they were fired, as the screen updates them.
+		snapshot.bulletCount = 0;
+		for (Bullet bullet : this.bullets)
+			snapshot.addBullet(bullet.getPositionX(), bullet.getPositionY(),
+					bullet.getSpeed());
+	}
+
+	/**
+	 * Restores a saved level on a screen just initialized.
+	 * 
+	 * @param snapshot
+	 *            Snapshot to read from.
+	 */
+	private void restoreState(final Snapshot snapshot) {
+		// Time left on the cooldowns is relative to the session clock.
+		this.clock.setTicks(snapshot.ticks);
+		this.random.setState(snapshot.randomState);
+
+		this.score = snapshot.score;
+		this.lives = snapshot.lives;
+		this.bulletsShot = snapshot.bulletsShot;
+		this.shipsDestroyed = snapshot.shipsDestroyed;
+		this.bonusLife = snapshot.bonusLife;
+		this.levelFinished = snapshot.levelFinished;
+		this.gameStartTime = this.clock.currentTimeMillis()
+				- snapshot.levelElapsed;
+		this.inputDelay.restore(snapshot.inputDelayRemaining,
+				this.inputDelay.getDuration());
+		this.screenFinishedCooldown.restore(
+				snapshot.screenFinishedRemaining,
+				this.screenFinishedCooldown.getDuration());
+
+		this.ship.restoreState(snapshot);
+
+		if (snapshot.specialPresent) {
+			this.enemyShipSpecial = new EnemyShip();
+			this.enemyShipSpecial.setPositionX(snapshot.specialX);
+			if (snapshot.specialDestroyed)
+				this.enemyShipSpecial.destroy();
+		}
+		this.enemyShipSpecialCooldown.restore(snapshot.specialRemaining,
+				snapshot.specialDuration);
+		this.enemyShipSpecialExplosionCooldown.restore(
+				snapshot.specialExplosionRemaining,
+				this.enemyShipSpecialExplosionCooldown.getDuration());
+
+		this.enemyShipFormation.restoreState(snapshot);
+
+		for (int i = 0; i < snapshot.bulletCount; i++) {
+			Bullet bullet = this.context.getBulletPool().getBullet(0, 0,
+					snapshot.bulletSpeed[i]);
+			bullet.setPositionX(snapshot.bulletX[i]);
+			bullet.setPositionY(snapshot.bulletY[i]);
+			this.bullets.add(bullet);
+		}
+		this.logger.info("Resumed level " + this.level + " at frame "
+				+ snapshot.ticks + ".");
+	}
+
 	/**
 	 * Returns a GameState object representing the status of the game.
 	 * 
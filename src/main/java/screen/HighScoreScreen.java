@@ -1,10 +1,9 @@
 package screen;
 
 import java.awt.event.KeyEvent;
-import java.io.IOException;
 import java.util.List;
 
-import engine.Core;
+import engine.EngineContext;
 import engine.Score;
 
 /**
@@ -15,12 +14,14 @@ import engine.Score;
  */
 public class HighScoreScreen extends Screen {
 
-	/** List of past high scores. */
+	/** High scores of every game on the machine, read live. */
 	private List<Score> highScores;
 
 	/**
 	 * Constructor, establishes the properties of the screen.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param width
 	 *            Screen width.
 	 * @param height
@@ -28,16 +29,12 @@ public class HighScoreScreen extends Screen {
 	 * @param fps
 	 *            Frames per second, frame rate at which the game is run.
 	 */
-	public HighScoreScreen(final int width, final int height, final int fps) {
-		super(width, height, fps);
+	public HighScoreScreen(final EngineContext context,
+			final int width, final int height, final int fps) {
+		super(context, width, height, fps);
 
 		this.returnCode = 1;
-
-		try {
-			this.highScores = Core.getFileManager().loadHighScores();
-		} catch (NumberFormatException | IOException e) {
-			logger.warning("Couldn't load high scores!");
-		}
+		this.highScores = this.context.getHighScoreTable().getHighScores();
 	}
 
 	/**
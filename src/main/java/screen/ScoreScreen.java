@@ -1,13 +1,11 @@
 package screen;
 
 import java.awt.event.KeyEvent;
-import java.io.IOException;
-import java.util.Collections;
-import java.util.List;
 
 import engine.Cooldown;
-import engine.Core;
+import engine.EngineContext;
 import engine.GameState;
+import engine.Leaderboard;
 import engine.Score;
 
 /**
@@ -20,8 +18,6 @@ public class ScoreScreen extends Screen {
 
 	/** Milliseconds between changes in user selection. */
 	private static final int SELECTION_TIME = 200;
-	/** Maximum number of high scores. */
-	private static final int MAX_HIGH_SCORE_NUM = 7;
 	/** Code of first mayus character. */
 	private static final int FIRST_CHAR = 65;
 	/** Code of last mayus character. */
@@ -35,8 +31,12 @@ public class ScoreScreen extends Screen {
 	private int bulletsShot;
 	/** Total ships destroyed by the player. */
 	private int shipsDestroyed;
-	/** List of past high scores. */
-	private List<Score> highScores;
+	/** Difficulty option the score was obtained at. */
+	private int difficulty;
+	/** Rank of the score among every score of the difficulty. */
+	private int rank;
+	/** Scores of the difficulty, this one included. */
+	private int rankedScores;
 	/** Checks if current score is a new high score. */
 	private boolean isNewRecord;
 	/** Player name for record input. */
@@ -49,6 +49,8 @@ public class ScoreScreen extends Screen {
 	/**
 	 * Constructor, establishes the properties of the screen.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param width
 	 *            Screen width.
 	 * @param height
@@ -58,30 +60,25 @@ public class ScoreScreen extends Screen {
 	 * @param gameState
 	 *            Current game state.
 	 */
-	public ScoreScreen(final int width, final int height, final int fps,
+	public ScoreScreen(final EngineContext context,
+			final int width, final int height, final int fps,
 			final GameState gameState) {
-		super(width, height, fps);
+		super(context, width, height, fps);
 
 		this.score = gameState.getScore();
 		this.livesRemaining = gameState.getLivesRemaining();
 		this.bulletsShot = gameState.getBulletsShot();
 		this.shipsDestroyed = gameState.getShipsDestroyed();
-		this.isNewRecord = false;
+		this.isNewRecord = this.context.getHighScoreTable().isHighScore(
+				this.score);
+		this.difficulty = this.context.getDifficulty();
+		Leaderboard leaderboard = this.context.getLeaderboard();
+		this.rank = leaderboard.getRank(this.difficulty, this.score);
+		this.rankedScores = leaderboard.getCount(this.difficulty) + 1;
 		this.name = "AAA".toCharArray();
 		this.nameCharSelected = 0;
-		this.selectionCooldown = Core.getCooldown(SELECTION_TIME);
+		this.selectionCooldown = this.context.getCooldown(SELECTION_TIME);
 		this.selectionCooldown.reset();
-
-		try {
-			this.highScores = Core.getFileManager().loadHighScores();
-			if (highScores.size() < MAX_HIGH_SCORE_NUM
-					|| highScores.get(highScores.size() - 1).getScore()
-					< this.score)
-				this.isNewRecord = true;
-
-		} catch (IOException e) {
-			logger.warning("Couldn't load high scores!");
-		}
 	}
 
 	/**
@@ -107,14 +104,12 @@ public class ScoreScreen extends Screen {
 				// Return to main menu.
 				this.returnCode = 1;
 				this.isRunning = false;
-				if (this.isNewRecord)
-					saveScore();
+				saveScore();
 			} else if (inputManager.isKeyDown(KeyEvent.VK_SPACE)) {
 				// Play again.
 				this.returnCode = 2;
 				this.isRunning = false;
-				if (this.isNewRecord)
-					saveScore();
+				saveScore();
 			}
 
 			if (this.isNewRecord && this.selectionCooldown.checkFinished()) {
@@ -148,19 +143,14 @@ public class ScoreScreen extends Screen {
 	}
 
 	/**
-	 * Saves the score as a high score.
+	 * Adds the score to the leaderboard, and to the high scores if it is a
+	 * new record. Both are written to disk in the background.
 	 */
 	private void saveScore() {
-		highScores.add(new Score(new String(this.name), score));
-		Collections.sort(highScores);
-		if (highScores.size() > MAX_HIGH_SCORE_NUM)
-			highScores.remove(highScores.size() - 1);
-
-		try {
-			Core.getFileManager().saveHighScores(highScores);
-		} catch (IOException e) {
-			logger.warning("Couldn't load high scores!");
-		}
+		Score newScore = new Score(new String(this.name), score);
+		this.context.getLeaderboard().submit(this.difficulty, newScore);
+		if (this.isNewRecord)
+			this.context.getHighScoreTable().submit(newScore);
 	}
 
 	/**
@@ -174,6 +164,8 @@ public class ScoreScreen extends Screen {
 		drawManager.drawResults(this, this.score, this.livesRemaining,
 				this.shipsDestroyed, (float) this.shipsDestroyed
 						/ this.bulletsShot, this.isNewRecord);
+		drawManager.drawRank(this, this.rank, this.rankedScores,
+				this.isNewRecord);
 
 		if (this.isNewRecord)
 			drawManager.drawNameInput(this, this.name, this.nameCharSelected);
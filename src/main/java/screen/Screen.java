@@ -5,9 +5,12 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import engine.Cooldown;
-import engine.Core;
 import engine.DrawManager;
+import engine.EngineContext;
+import engine.FrameProfiler;
+import engine.FrameProfiler.Phase;
 import engine.InputManager;
+import engine.StallWatchdog;
 
 /**
  * Implements a generic screen.
@@ -20,6 +23,8 @@ public class Screen {
 	/** Milliseconds until the screen accepts user input. */
 	private static final int INPUT_DELAY = 1000;
 
+	/** Context of the game the screen belongs to. */
+	protected EngineContext context;
 	/** Draw Manager instance. */
 	protected DrawManager drawManager;
 	/** Input Manager instance. */
@@ -38,6 +43,12 @@ public class Screen {
 	/** Time until the screen accepts user input. */
 	protected Cooldown inputDelay;
 
+	/** If the screen waits between frames to keep the frame rate. */
+	protected boolean frameLimited;
+	/** Time spent on each phase of the frames, null when not measured. */
+	protected FrameProfiler profiler;
+	/** Watchdog of the frames, null when not watched. */
+	protected StallWatchdog watchdog;
 	/** If the screen is running. */
 	protected boolean isRunning;
 	/** What kind of screen goes next. */
@@ -46,6 +57,8 @@ public class Screen {
 	/**
 	 * Constructor, establishes the properties of the screen.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param width
 	 *            Screen width.
 	 * @param height
@@ -53,16 +66,20 @@ public class Screen {
 	 * @param fps
 	 *            Frames per second, frame rate at which the game is run.
 	 */
-	public Screen(final int width, final int height, final int fps) {
+	public Screen(final EngineContext context, final int width,
+			final int height, final int fps) {
+		this.context = context;
 		this.width = width;
 		this.height = height;
 		this.fps = fps;
 
-		this.drawManager = Core.getDrawManager();
-		this.inputManager = Core.getInputManager();
-		this.logger = Core.getLogger();
-		this.inputDelay = Core.getCooldown(INPUT_DELAY);
+		this.drawManager = context.getDrawManager();
+		this.inputManager = context.getInputManager();
+		this.watchdog = context.getStallWatchdog();
+		this.logger = context.getLogger();
+		this.inputDelay = context.getCooldown(INPUT_DELAY);
 		this.inputDelay.reset();
+		this.frameLimited = true;
 		this.returnCode = 0;
 	}
 
@@ -70,7 +87,7 @@ public class Screen {
 	 * Initializes basic screen properties.
 	 */
 	public void initialize() {
-
+		this.isRunning = true;
 	}
 
 	/**
@@ -83,28 +100,73 @@ public class Screen {
 
 		while (this.isRunning) {
 			long time = System.currentTimeMillis();
+			if (this.watchdog != null)
+				this.watchdog.beginFrame(this);
 
 			update();
 
-			time = (1000 / this.fps) - (System.currentTimeMillis() - time);
-			if (time > 0) {
+			// Tuned at runtime from the engine monitor, if set.
+			int targetFps = this.context.getTargetFps();
+			if (targetFps <= 0)
+				targetFps = this.fps;
+			time = (1000 / targetFps) - (System.currentTimeMillis() - time);
+			if (time > 0 && this.frameLimited) {
+				FrameProfiler sleepProfiler = this.profiler;
+				long sleepStart = 0;
+				if (sleepProfiler != null)
+					sleepStart = System.nanoTime();
 				try {
 					TimeUnit.MILLISECONDS.sleep(time);
 				} catch (InterruptedException e) {
-					return 0;
+					break;
 				}
+				if (sleepProfiler != null)
+					sleepProfiler.lap(Phase.SLEEP, sleepStart);
 			}
+			this.context.getFrameStats().frame(System.nanoTime());
 		}
+		if (this.watchdog != null)
+			this.watchdog.endFrames();
 
 		return 0;
 	}
 
+	/**
+	 * Runs a single update, for screens driven without a frame.
+	 * 
+	 * @return True while the screen is shown, false once it is over.
+	 */
+	public final boolean step() {
+		update();
+		return this.isRunning;
+	}
+
 	/**
 	 * Updates the elements on screen and checks for events.
 	 */
 	protected void update() {
 	}
 
+	/**
+	 * Sets if the screen waits between frames to keep the frame rate, or
+	 * runs as fast as possible.
+	 * 
+	 * @param frameLimited
+	 *            True to keep the frame rate.
+	 */
+	public final void setFrameLimited(final boolean frameLimited) {
+		this.frameLimited = frameLimited;
+	}
+
+	/**
+	 * Getter for the code of the screen shown next.
+	 * 
+	 * @return Next screen code.
+	 */
+	public final int getReturnCode() {
+		return this.returnCode;
+	}
+
 	/**
 	 * Getter for screen width.
 	 * 
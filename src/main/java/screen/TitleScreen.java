@@ -3,7 +3,7 @@ package screen;
 import java.awt.event.KeyEvent;
 
 import engine.Cooldown;
-import engine.Core;
+import engine.EngineContext;
 
 /**
  * Implements the title screen.
@@ -22,6 +22,8 @@ public class TitleScreen extends Screen {
 	/**
 	 * Constructor, establishes the properties of the screen.
 	 * 
+	 * @param context
+	 *            Context of the game.
 	 * @param width
 	 *            Screen width.
 	 * @param height
@@ -29,12 +31,13 @@ public class TitleScreen extends Screen {
 	 * @param fps
 	 *            Frames per second, frame rate at which the game is run.
 	 */
-	public TitleScreen(final int width, final int height, final int fps) {
-		super(width, height, fps);
+	public TitleScreen(final EngineContext context,
+			final int width, final int height, final int fps) {
+		super(context, width, height, fps);
 
 		// Defaults to play.
 		this.returnCode = 2;
-		this.selectionCooldown = Core.getCooldown(SELECTION_TIME);
+		this.selectionCooldown = this.context.getCooldown(SELECTION_TIME);
 		this.selectionCooldown.reset();
 	}
 
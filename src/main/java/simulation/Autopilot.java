@@ -0,0 +1,263 @@
+package simulation;
+
+import java.util.List;
+import java.util.Set;
+
+import engine.InputSource;
+import entity.Bullet;
+import entity.EnemyShip;
+import entity.Ship;
+import screen.GameScreen;
+
+/**
+ * Plays the game without a human: dodges the enemy bullets about to reach
+ * the ship, lines up under the formation shooters and shoots the bonus ship
+ * when it shows up. The threat evaluation is a single pass over the bullets
+ * on screen per decision, with no allocations, so it barely adds to the
+ * frame time being measured.
+ *
+ */
+public final class Autopilot implements InputSource {
+
+	/** Speed of the player's ship, in pixels per frame. */
+	private static final int SHIP_SPEED = 2;
+	/** Speed of the player's bullets, in pixels per frame upwards. */
+	private static final int PLAYER_BULLET_SPEED = 6;
+	/** Speed of the bonus ship, in pixels per frame. */
+	private static final int BONUS_SHIP_SPEED = 2;
+	/** Distance from the target under which a shot is taken. */
+	private static final int AIM_TOLERANCE = 6;
+
+	/**
+	 * Skill of the pilot.
+	 */
+	public enum Tier {
+		/** Sees bullets late, reacts slowly and ignores the bonus ship. */
+		EASY(12, 8, 0, false),
+		/** Average player. */
+		NORMAL(30, 3, 4, true),
+		/** Sees bullets early and decides every frame. */
+		HARD(60, 1, 8, true);
+
+		/** Frames ahead bullets are considered a threat. */
+		private final int lookahead;
+		/** Frames between decisions, the keys are held in between. */
+		private final int period;
+		/** Extra distance kept from the bullets. */
+		private final int margin;
+		/** If the pilot goes after the bonus ship. */
+		private final boolean huntsBonus;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param lookahead
+		 *            Frames ahead bullets are considered a threat.
+		 * @param period
+		 *            Frames between decisions.
+		 * @param margin
+		 *            Extra distance kept from the bullets.
+		 * @param huntsBonus
+		 *            If the pilot goes after the bonus ship.
+		 */
+		Tier(final int lookahead, final int period, final int margin,
+				final boolean huntsBonus) {
+			this.lookahead = lookahead;
+			this.period = period;
+			this.margin = margin;
+			this.huntsBonus = huntsBonus;
+		}
+	}
+
+	/** Skill of the pilot. */
+	private final Tier tier;
+	/** Screen of the level being played, null between levels. */
+	private GameScreen screen;
+	/** Keys held since the last decision. */
+	private int keys;
+	/** Frames until the next decision. */
+	private int wait;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param tier
+	 *            Skill of the pilot.
+	 */
+	public Autopilot(final Tier tier) {
+		this.tier = tier;
+	}
+
+	/**
+	 * Sets the screen of the level being played, before its first frame.
+	 *
+	 * @param screen
+	 *            Game screen to play.
+	 */
+	public void setScreen(final GameScreen screen) {
+		this.screen = screen;
+		this.keys = 0;
+		this.wait = 0;
+	}
+
+	/**
+	 * Decides the keys pressed this frame.
+	 *
+	 * @return Keys pressed, as a bit mask.
+	 */
+	@Override
+	public int pollKeys() {
+		if (this.screen == null)
+			return 0;
+		if (this.wait > 0) {
+			this.wait--;
+			return this.keys;
+		}
+		this.wait = this.tier.period - 1;
+		this.keys = decide();
+		return this.keys;
+	}
+
+	/**
+	 * Chooses between staying, moving left and moving right, avoiding the
+	 * most urgent threats first and getting closer to the target otherwise.
+	 *
+	 * @return Keys to press.
+	 */
+	private int decide() {
+		Ship ship = this.screen.getShip();
+		int shipCenter = ship.getPositionX() + ship.getWidth() / 2;
+		int target = findTarget(ship, shipCenter);
+
+		int preferred = Integer.signum(target - shipCenter);
+		if (Math.abs(target - shipCenter) < SHIP_SPEED)
+			preferred = 0;
+
+		int bestMove = preferred;
+		int bestDanger = danger(ship, shipCenter, preferred);
+		if (bestDanger > 0)
+			for (int move = -1; move <= 1; move++) {
+				if (move == preferred)
+					continue;
+				int danger = danger(ship, shipCenter, move);
+				if (danger < bestDanger) {
+					bestDanger = danger;
+					bestMove = move;
+				}
+			}
+
+		int keys = 0;
+		if (bestMove < 0)
+			keys |= KEY_LEFT;
+		else if (bestMove > 0)
+			keys |= KEY_RIGHT;
+		if (Math.abs(target - shipCenter) <= AIM_TOLERANCE)
+			keys |= KEY_SPACE;
+		return keys;
+	}
+
+	/**
+	 * Finds the position the ship should shoot from: ahead of the bonus ship
+	 * if it is being hunted, under the closest shooter otherwise.
+	 *
+	 * @param ship
+	 *            Player's ship.
+	 * @param shipCenter
+	 *            Center of the ship in the x-axis.
+	 * @return Target position in the x-axis.
+	 */
+	private int findTarget(final Ship ship, final int shipCenter) {
+		EnemyShip special = this.screen.getEnemyShipSpecial();
+		if (this.tier.huntsBonus && special != null
+				&& !special.isDestroyed()) {
+			// Where the bonus ship will be when a bullet reaches its height.
+			int flight = (ship.getPositionY() - special.getPositionY())
+					/ PLAYER_BULLET_SPEED;
+			int lead = special.getPositionX() + special.getWidth() / 2
+					+ flight * BONUS_SHIP_SPEED;
+			if (lead < this.screen.getWidth() - ship.getWidth() / 2)
+				return lead;
+		}
+
+		List<EnemyShip> shooters = this.screen.getEnemyShipFormation()
+				.getShooters();
+		int target = shipCenter;
+		int closest = Integer.MAX_VALUE;
+		for (int i = 0; i < shooters.size(); i++) {
+			EnemyShip shooter = shooters.get(i);
+			int center = shooter.getPositionX() + shooter.getWidth() / 2;
+			int distance = Math.abs(center - shipCenter);
+			if (distance < closest) {
+				closest = distance;
+				target = center;
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * Evaluates the enemy bullets that would hit the ship if it kept moving
+	 * in a direction, the sooner the hit the higher the danger.
+	 *
+	 * @param ship
+	 *            Player's ship.
+	 * @param shipCenter
+	 *            Center of the ship in the x-axis.
+	 * @param move
+	 *            Direction, -1 left, 0 still, 1 right.
+	 * @return Danger of the move, 0 if no bullet would hit.
+	 */
+	private int danger(final Ship ship, final int shipCenter, final int move) {
+		int halfWidth = ship.getWidth() / 2;
+		int minCenter = halfWidth + SHIP_SPEED;
+		int maxCenter = this.screen.getWidth() - halfWidth - SHIP_SPEED;
+		int shipCenterY = ship.getPositionY() + ship.getHeight() / 2;
+		int lookahead = this.tier.lookahead;
+
+		int danger = 0;
+		Set<Bullet> bullets = this.screen.getBullets();
+		for (Bullet bullet : bullets) {
+			int speed = bullet.getSpeed();
+			if (speed <= 0)
+				continue;
+			int reachY = bullet.getHeight() / 2 + ship.getHeight() / 2;
+			int bulletCenterY = bullet.getPositionY() + bullet.getHeight() / 2;
+			// Frames the bullet overlaps the ship vertically.
+			int last = (shipCenterY + reachY - bulletCenterY) / speed;
+			if (last < 0)
+				continue;
+			int first = Math.max(0, (shipCenterY - reachY - bulletCenterY)
+					/ speed);
+			if (first > lookahead)
+				continue;
+
+			// The ship moves steadily, so it sweeps the range between its
+			// positions at both ends of the overlap.
+			int from = clamp(shipCenter + move * SHIP_SPEED * first,
+					minCenter, maxCenter);
+			int to = clamp(shipCenter + move * SHIP_SPEED * last,
+					minCenter, maxCenter);
+			int bulletCenter = bullet.getPositionX() + bullet.getWidth() / 2;
+			int reachX = bullet.getWidth() / 2 + halfWidth + this.tier.margin;
+			if (bulletCenter > Math.min(from, to) - reachX
+					&& bulletCenter < Math.max(from, to) + reachX)
+				danger += lookahead - first + 1;
+		}
+		return danger;
+	}
+
+	/**
+	 * Limits a value to a range.
+	 *
+	 * @param value
+	 *            Value to limit.
+	 * @param min
+	 *            Lower bound.
+	 * @param max
+	 *            Upper bound.
+	 * @return Limited value.
+	 */
+	private static int clamp(final int value, final int min, final int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+}
@@ -0,0 +1,419 @@
+package simulation;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import engine.Core;
+import engine.GameSettings;
+import simulation.HeadlessGame.LevelResult;
+import telemetry.SessionStore;
+
+/**
+ * Runs many headless sessions in parallel to balance the difficulty
+ * settings of the levels. Sweeps a grid of multipliers over the default
+ * settings, plays each grid point with fixed seeds and bot policies, and
+ * reports completion rate, time to clear and score of every level.
+ * 
+ * Sessions share nothing but the logger, so throughput grows with the
+ * number of threads.
+ */
+public final class BatchSimulator {
+
+	/** Frame budget of a session, one hour of game time. */
+	private static final long MAX_TICKS = 60L * 60 * Core.FPS;
+
+	/** Grid points to simulate. */
+	private final List<Config> configs;
+	/** Sessions played on each grid point. */
+	private final int sessions;
+	/** Seed of the first session, the rest follow it. */
+	private final long baseSeed;
+	/** Threads running sessions. */
+	private final int threads;
+	/** Store the metrics of every level are appended to, null if none. */
+	private SessionStore sessionStore;
+
+	/**
+	 * Grid point: a bot policy and multipliers applied to every level.
+	 */
+	public static final class Config {
+
+		/** Player policy. */
+		private final BotPolicy policy;
+		/** Multiplier of the frames between formation movements. */
+		private final double speedScale;
+		/** Multiplier of the time between enemy shots. */
+		private final double shootingScale;
+		/** Settings of each level, scaled. */
+		private final List<GameSettings> gameSettings;
+
+		/**
+		 * Constructor, scales the default settings.
+		 * 
+		 * @param policy
+		 *            Player policy.
+		 * @param speedScale
+		 *            Multiplier of the frames between formation movements,
+		 *            above 1 is slower.
+		 * @param shootingScale
+		 *            Multiplier of the time between enemy shots, above 1
+		 *            is less shooting.
+		 */
+		public Config(final BotPolicy policy, final double speedScale,
+				final double shootingScale) {
+			this.policy = policy;
+			this.speedScale = speedScale;
+			this.shootingScale = shootingScale;
+			this.gameSettings = new ArrayList<GameSettings>();
+			for (GameSettings settings : Core.getDefaultGameSettings())
+				this.gameSettings.add(new GameSettings(
+						settings.getFormationWidth(),
+						settings.getFormationHeight(),
+						Math.max(1, (int) Math.round(settings.getBaseSpeed()
+								* speedScale)),
+						Math.max(1, (int) Math.round(settings
+								.getShootingFrecuency() * shootingScale)),
+						settings.getParallelCollisionThreshold()));
+		}
+
+		/**
+		 * Describes the grid point as CSV fields.
+		 * 
+		 * @return Policy, speed and shooting multipliers.
+		 */
+		public String label() {
+			return this.policy + "," + this.speedScale + ","
+					+ this.shootingScale;
+		}
+	}
+
+	/**
+	 * What is kept of a finished session, so the game itself, with its
+	 * screens and pools, can be collected right away.
+	 */
+	private static final class Outcome {
+
+		/** Frames simulated. */
+		private final long ticks;
+		/** Outcome of each level played. */
+		private final List<LevelResult> levelResults;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param game
+		 *            Finished session.
+		 */
+		Outcome(final HeadlessGame game) {
+			this.ticks = game.getTicks();
+			this.levelResults = new ArrayList<LevelResult>(
+					game.getLevelResults());
+		}
+	}
+
+	/**
+	 * Outcomes of every session of a grid point, per level.
+	 */
+	private static final class Stats {
+
+		/** Sessions that started each level. */
+		private final int[] reached;
+		/** Frames needed to clear each level, by the sessions that did. */
+		private final List<List<Long>> clearTicks;
+		/** Score obtained on each level. */
+		private final List<List<Long>> scores;
+		/** Frames simulated. */
+		private long ticks;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param levels
+		 *            Number of levels.
+		 */
+		Stats(final int levels) {
+			this.reached = new int[levels];
+			this.clearTicks = new ArrayList<List<Long>>();
+			this.scores = new ArrayList<List<Long>>();
+			for (int i = 0; i < levels; i++) {
+				this.clearTicks.add(new ArrayList<Long>());
+				this.scores.add(new ArrayList<Long>());
+			}
+		}
+
+		/**
+		 * Adds a session.
+		 * 
+		 * @param outcome
+		 *            Outcome of a finished session.
+		 */
+		void add(final Outcome outcome) {
+			this.ticks += outcome.ticks;
+			for (LevelResult result : outcome.levelResults) {
+				int index = result.getLevel() - 1;
+				this.reached[index]++;
+				this.scores.get(index).add((long) result.getScore());
+				if (result.isCleared())
+					this.clearTicks.get(index).add(result.getTicks());
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param configs
+	 *            Grid points to simulate.
+	 * @param sessions
+	 *            Sessions played on each grid point.
+	 * @param baseSeed
+	 *            Seed of the first session.
+	 * @param threads
+	 *            Threads running sessions.
+	 */
+	public BatchSimulator(final List<Config> configs, final int sessions,
+			final long baseSeed, final int threads) {
+		this.configs = configs;
+		this.sessions = sessions;
+		this.baseSeed = baseSeed;
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the store the metrics of every level played are appended to.
+	 * 
+	 * @param sessionStore
+	 *            Store shared by every session, null to store nothing.
+	 */
+	public void setSessionStore(final SessionStore sessionStore) {
+		this.sessionStore = sessionStore;
+	}
+
+	/**
+	 * Runs every session and writes the report.
+	 * 
+	 * @param csv
+	 *            Stream for the CSV report, one row per grid point and
+	 *            level.
+	 * @param summary
+	 *            Stream for the human readable summary.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the sessions.
+	 * @throws ExecutionException
+	 *             If a session fails.
+	 */
+	public void run(final PrintWriter csv, final PrintWriter summary)
+			throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		long start = System.nanoTime();
+		List<Stats> allStats = new ArrayList<Stats>();
+		try {
+			List<List<Future<Outcome>>> futures =
+					new ArrayList<List<Future<Outcome>>>();
+			for (final Config config : this.configs) {
+				List<Future<Outcome>> configFutures =
+						new ArrayList<Future<Outcome>>();
+				for (int i = 0; i < this.sessions; i++) {
+					final long seed = this.baseSeed + i;
+					configFutures.add(executor.submit(() -> {
+						HeadlessGame game = new HeadlessGame(
+								config.gameSettings, seed,
+								config.policy.create(seed));
+						game.setSessionStore(this.sessionStore);
+						game.run(MAX_TICKS);
+						return new Outcome(game);
+					}));
+				}
+				futures.add(configFutures);
+			}
+
+			for (int c = 0; c < this.configs.size(); c++) {
+				Stats stats = new Stats(this.configs.get(c).gameSettings
+						.size());
+				for (Future<Outcome> future : futures.get(c))
+					stats.add(future.get());
+				allStats.add(stats);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+		csv.println("policy,speed_scale,shooting_scale,level,sessions,"
+				+ "reached,cleared,completion_rate,clear_seconds_p50,"
+				+ "clear_seconds_p90,score_mean,score_p50,score_p90");
+		long totalTicks = 0;
+		for (int c = 0; c < this.configs.size(); c++) {
+			Config config = this.configs.get(c);
+			Stats stats = allStats.get(c);
+			totalTicks += stats.ticks;
+			summary.println(config.policy + " speed x" + config.speedScale
+					+ " shooting x" + config.shootingScale);
+			for (int level = 0; level < stats.reached.length; level++) {
+				long[] clear = sorted(stats.clearTicks.get(level));
+				long[] score = sorted(stats.scores.get(level));
+				double rate = stats.reached[level] == 0 ? 0
+						: clear.length / (double) stats.reached[level];
+				csv.println(String.format(Locale.ROOT,
+						"%s,%d,%d,%d,%d,%.4f,%.2f,%.2f,%.1f,%d,%d",
+						config.label(), level + 1,
+						this.sessions, stats.reached[level], clear.length,
+						rate, percentile(clear, 50) / (double) Core.FPS,
+						percentile(clear, 90) / (double) Core.FPS,
+						mean(score), percentile(score, 50),
+						percentile(score, 90)));
+				summary.println(String.format(Locale.ROOT,
+						"  level %d: reached %5d, cleared %5.1f%%,"
+						+ " clear time p50 %6.1fs,"
+						+ " score p50 %5d", level + 1, stats.reached[level],
+						rate * 100, percentile(clear, 50)
+								/ (double) Core.FPS, percentile(score, 50)));
+			}
+		}
+		int total = this.sessions * this.configs.size();
+		summary.println(String.format(Locale.ROOT,
+				"%d sessions on %d threads in %.2fs: %.0f sessions/s,"
+				+ " %.0f game s per wall s", total,
+				this.threads, wallSeconds, total / wallSeconds, totalTicks
+						/ (double) Core.FPS / wallSeconds));
+		csv.flush();
+		summary.flush();
+	}
+
+	/**
+	 * Sorts a list of values.
+	 * 
+	 * @param values
+	 *            Values to sort.
+	 * @return Sorted array.
+	 */
+	private static long[] sorted(final List<Long> values) {
+		long[] array = new long[values.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i);
+		Arrays.sort(array);
+		return array;
+	}
+
+	/**
+	 * Nearest rank percentile of sorted values.
+	 * 
+	 * @param sorted
+	 *            Sorted values.
+	 * @param percent
+	 *            Percentile, 0 to 100.
+	 * @return Value, zero if there are none.
+	 */
+	private static long percentile(final long[] sorted, final int percent) {
+		if (sorted.length == 0)
+			return 0;
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * Average of some values.
+	 * 
+	 * @param values
+	 *            Values.
+	 * @return Average, zero if there are none.
+	 */
+	private static double mean(final long[] values) {
+		if (values.length == 0)
+			return 0;
+		long sum = 0;
+		for (long value : values)
+			sum += value;
+		return sum / (double) values.length;
+	}
+
+	/**
+	 * Parses a comma separated list of numbers.
+	 * 
+	 * @param list
+	 *            List to parse.
+	 * @return Numbers.
+	 */
+	private static double[] parseList(final String list) {
+		String[] parts = list.split(",");
+		double[] values = new double[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Double.parseDouble(parts[i].trim());
+		return values;
+	}
+
+	/**
+	 * Runs a parameter sweep from the command line.
+	 * 
+	 * @param args
+	 *            --sessions n per grid point, --seed n, --threads n,
+	 *            --speed and --shooting comma separated multipliers,
+	 *            --policy comma separated policies, --csv file, --store
+	 *            session store file.
+	 * @throws Exception
+	 *             If a session fails or the report can't be written.
+	 */
+	public static void main(final String[] args) throws Exception {
+		int sessions = 1000;
+		long seed = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double[] speeds = { 1 };
+		double[] shootings = { 1 };
+		String[] policies = { BotPolicy.SWEEP.name() };
+		File csvFile = new File("balance.csv");
+		File storeFile = null;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if ("--sessions".equals(args[i]))
+				sessions = Integer.parseInt(args[++i]);
+			else if ("--seed".equals(args[i]))
+				seed = Long.parseLong(args[++i]);
+			else if ("--threads".equals(args[i]))
+				threads = Integer.parseInt(args[++i]);
+			else if ("--speed".equals(args[i]))
+				speeds = parseList(args[++i]);
+			else if ("--shooting".equals(args[i]))
+				shootings = parseList(args[++i]);
+			else if ("--policy".equals(args[i]))
+				policies = args[++i].toUpperCase().split(",");
+			else if ("--csv".equals(args[i]))
+				csvFile = new File(args[++i]);
+			else if ("--store".equals(args[i]))
+				storeFile = new File(args[++i]);
+		}
+		Core.getLogger().setLevel(Level.WARNING);
+
+		List<Config> configs = new ArrayList<Config>();
+		for (String policy : policies)
+			for (double speed : speeds)
+				for (double shooting : shootings)
+					configs.add(new Config(BotPolicy.valueOf(policy.trim()),
+							speed, shooting));
+
+		BatchSimulator simulator = new BatchSimulator(configs, sessions, seed,
+				threads);
+		SessionStore store = null;
+		if (storeFile != null) {
+			store = new SessionStore(storeFile);
+			simulator.setSessionStore(store);
+		}
+		try (PrintWriter csv = new PrintWriter(new FileWriter(csvFile))) {
+			simulator.run(csv, new PrintWriter(System.out));
+		} catch (IOException e) {
+			System.err.println("Couldn't write " + csvFile);
+		} finally {
+			if (store != null)
+				store.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package simulation;
+
+import engine.InputSource;
+
+/**
+ * Scripted players used to simulate sessions without a human.
+ */
+public enum BotPolicy {
+	/** Keeps shooting while sweeping the screen from side to side. */
+	SWEEP {
+		@Override
+		public InputSource create(final long seed) {
+			return ScriptedInput.sweeping();
+		}
+	},
+	/** Random moves and shots, fixed by the session seed. */
+	RANDOM {
+		@Override
+		public InputSource create(final long seed) {
+			return ScriptedInput.random(seed, RANDOM_SCRIPT_STEPS);
+		}
+	},
+	/** Autopilot that reacts late and ignores the bonus ship. */
+	AUTOPILOT_EASY {
+		@Override
+		public InputSource create(final long seed) {
+			return new Autopilot(Autopilot.Tier.EASY);
+		}
+	},
+	/** Autopilot playing like an average player. */
+	AUTOPILOT_NORMAL {
+		@Override
+		public InputSource create(final long seed) {
+			return new Autopilot(Autopilot.Tier.NORMAL);
+		}
+	},
+	/** Autopilot that dodges early, to reach the last levels. */
+	AUTOPILOT_HARD {
+		@Override
+		public InputSource create(final long seed) {
+			return new Autopilot(Autopilot.Tier.HARD);
+		}
+	};
+
+	/** Steps of the random scripts before they repeat. */
+	private static final int RANDOM_SCRIPT_STEPS = 256;
+
+	/**
+	 * Creates the input of a session played with this policy.
+	 * 
+	 * @param seed
+	 *            Seed of the session.
+	 * @return New input source.
+	 */
+	public abstract InputSource create(long seed);
+}
@@ -0,0 +1,242 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import engine.Core;
+import engine.GameSettings;
+import engine.GameState;
+import engine.InputSource;
+import entity.Bullet;
+import entity.EnemyShipFormation;
+import screen.GameScreen;
+
+/**
+ * Reinforcement learning style environment over a headless game session.
+ * Each step plays one frame with the keys of the action, and writes a
+ * compact observation, the score obtained as reward, and if the session is
+ * over.
+ * 
+ */
+public final class GameEnvironment implements InputSource {
+
+	/** Default number of bullets observed. */
+	public static final int DEFAULT_MAX_BULLETS = 64;
+	/**
+	 * Order of the bullets observed: lowest on screen first, closest to the
+	 * ship, then by position in the x-axis and speed. Depends only on the
+	 * game, so a seed always gives the same observations.
+	 */
+	private static final Comparator<Bullet> BULLET_ORDER =
+			new Comparator<Bullet>() {
+				@Override
+				public int compare(final Bullet a, final Bullet b) {
+					if (a.getPositionY() != b.getPositionY())
+						return Integer.compare(b.getPositionY(),
+								a.getPositionY());
+					if (a.getPositionX() != b.getPositionX())
+						return Integer.compare(a.getPositionX(),
+								b.getPositionX());
+					return Integer.compare(a.getSpeed(), b.getSpeed());
+				}
+			};
+
+	/** Difficulty settings of each level. */
+	private final List<GameSettings> gameSettings;
+	/** Words needed for the alive mask of the biggest formation. */
+	private final int maskWords;
+	/** Observation of the single environment API. */
+	private ObservationBuffer ownBuffer;
+	/** Session being played. */
+	private HeadlessGame game;
+	/** Keys of the current action. */
+	private int action;
+	/** Score before the current step. */
+	private int lastScore;
+	/** Bullets on screen being sorted, reused between steps. */
+	private Bullet[] sortedBullets;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 */
+	public GameEnvironment(final List<GameSettings> gameSettings) {
+		this.gameSettings = gameSettings;
+		this.maskWords = maskWords(gameSettings);
+	}
+
+	/**
+	 * Words needed for the alive mask of the biggest formation.
+	 * 
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @return Number of 64 bit words.
+	 */
+	public static int maskWords(final List<GameSettings> gameSettings) {
+		int ships = 1;
+		for (GameSettings settings : gameSettings)
+			ships = Math.max(ships, settings.getFormationWidth()
+					* settings.getFormationHeight());
+		return (ships + 63) / 64;
+	}
+
+	/**
+	 * Starts a new session.
+	 * 
+	 * @param seed
+	 *            Seed of the session.
+	 * @return Initial observation.
+	 */
+	public ObservationBuffer reset(final long seed) {
+		reset(seed, ownBuffer(), 0);
+		return this.ownBuffer;
+	}
+
+	/**
+	 * Plays a frame.
+	 * 
+	 * @param keys
+	 *            Keys pressed, as InputSource masks.
+	 * @return Observation, reward and done flag after the frame.
+	 */
+	public ObservationBuffer step(final int keys) {
+		step(keys, ownBuffer(), 0);
+		return this.ownBuffer;
+	}
+
+	/**
+	 * Starts a new session, writing the observation into a shared buffer.
+	 * 
+	 * @param seed
+	 *            Seed of the session.
+	 * @param buffer
+	 *            Buffer to write to.
+	 * @param slot
+	 *            Slot of this environment in the buffer.
+	 */
+	public void reset(final long seed, final ObservationBuffer buffer,
+			final int slot) {
+		this.game = new HeadlessGame(this.gameSettings, seed, this);
+		this.action = 0;
+		this.lastScore = 0;
+		buffer.reward[slot] = 0;
+		buffer.done[slot] = false;
+		// The first level starts on the first frame.
+		this.game.step();
+		observe(buffer, slot);
+	}
+
+	/**
+	 * Plays a frame, writing the outcome into a shared buffer.
+	 * 
+	 * @param keys
+	 *            Keys pressed, as InputSource masks.
+	 * @param buffer
+	 *            Buffer to write to.
+	 * @param slot
+	 *            Slot of this environment in the buffer.
+	 */
+	public void step(final int keys, final ObservationBuffer buffer,
+			final int slot) {
+		this.action = keys;
+		boolean running = this.game.step();
+		int score = this.game.getGameState().getScore();
+		buffer.reward[slot] = score - this.lastScore;
+		buffer.done[slot] = !running;
+		this.lastScore = score;
+		observe(buffer, slot);
+	}
+
+	/**
+	 * Returns the keys of the action being played.
+	 * 
+	 * @return Keys pressed this frame.
+	 */
+	@Override
+	public int pollKeys() {
+		return this.action;
+	}
+
+	/**
+	 * Getter for the session being played.
+	 * 
+	 * @return Headless session.
+	 */
+	public HeadlessGame getGame() {
+		return this.game;
+	}
+
+	/**
+	 * Writes the observation of the current frame.
+	 * 
+	 * @param buffer
+	 *            Buffer to write to.
+	 * @param slot
+	 *            Slot of this environment in the buffer.
+	 */
+	private void observe(final ObservationBuffer buffer, final int slot) {
+		GameState state = this.game.getGameState();
+		buffer.lives[slot] = state.getLivesRemaining();
+		buffer.level[slot] = state.getLevel();
+
+		int words = buffer.getMaskWords();
+		GameScreen screen = this.game.getScreen();
+		if (screen == null) {
+			// Session over, nothing left on screen.
+			for (int i = 0; i < words; i++)
+				buffer.aliveMask[slot * words + i] = 0;
+			buffer.bulletCount[slot] = 0;
+			return;
+		}
+
+		buffer.shipX[slot] = screen.getShip().getPositionX();
+		EnemyShipFormation formation = screen.getEnemyShipFormation();
+		formation.fillAliveMask(buffer.aliveMask, slot * words, words);
+		buffer.formationOffset[slot * 2] = formation.getOffsetX();
+		buffer.formationOffset[slot * 2 + 1] = formation.getOffsetY();
+
+		int maxBullets = buffer.getMaxBullets();
+		int base = slot * maxBullets;
+		int onScreen = 0;
+		if (this.sortedBullets == null
+				|| this.sortedBullets.length < screen.getBullets().size())
+			this.sortedBullets = new Bullet[Math.max(DEFAULT_MAX_BULLETS,
+					screen.getBullets().size() * 2)];
+		for (Bullet bullet : screen.getBullets())
+			this.sortedBullets[onScreen++] = bullet;
+		Arrays.sort(this.sortedBullets, 0, onScreen, BULLET_ORDER);
+
+		int count = Math.min(onScreen, maxBullets);
+		for (int i = 0; i < count; i++) {
+			Bullet bullet = this.sortedBullets[i];
+			buffer.bulletX[base + i] = bullet.getPositionX();
+			buffer.bulletY[base + i] = bullet.getPositionY();
+			buffer.bulletSpeed[base + i] = bullet.getSpeed();
+		}
+		buffer.bulletCount[slot] = count;
+	}
+
+	/**
+	 * Creates the observation buffer of the single environment API.
+	 * 
+	 * @return Buffer of one slot.
+	 */
+	private ObservationBuffer ownBuffer() {
+		if (this.ownBuffer == null)
+			this.ownBuffer = new ObservationBuffer(1, this.maskWords,
+					DEFAULT_MAX_BULLETS);
+		return this.ownBuffer;
+	}
+
+	/**
+	 * Default environment, over the levels of the game.
+	 * 
+	 * @return New environment.
+	 */
+	public static GameEnvironment createDefault() {
+		return new GameEnvironment(Core.getDefaultGameSettings());
+	}
+}
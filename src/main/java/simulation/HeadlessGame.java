@@ -0,0 +1,498 @@
+package simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import engine.Core;
+import engine.EngineContext;
+import engine.FrameProfiler;
+import engine.FrameProfiler.Phase;
+import engine.GameRandom;
+import engine.GameSettings;
+import engine.GameState;
+import engine.InputSource;
+import engine.LatencyHistogram;
+import engine.RewindBuffer;
+import engine.Snapshot;
+import engine.TickClock;
+import replay.ReplayPlayer;
+import screen.GameScreen;
+import telemetry.EventJournal;
+import telemetry.LevelMetrics;
+import telemetry.SessionStore;
+
+/**
+ * Simulates a game session without a window: no drawing, no waiting between
+ * frames, and game time taken from the session clock, so thousands of game
+ * seconds run in a wall clock second. Each game has its own engine context,
+ * so several can be simulated at once on different threads.
+ */
+public final class HeadlessGame {
+
+	/** Context of the simulated game, not shared with other games. */
+	private final EngineContext context;
+	/** Difficulty settings of each level. */
+	private final List<GameSettings> gameSettings;
+	/** Random source of the session. */
+	private final GameRandom random;
+	/** Source of the keys pressed. */
+	private final InputSource inputSource;
+	/** Clock of the session. */
+	private final TickClock clock;
+	/** Time spent on each phase of the updates, null when not measured. */
+	private FrameProfiler profiler;
+	/** Game state at the start of the current level. */
+	private GameState gameState;
+	/** Screen of the level being played, null between levels. */
+	private GameScreen screen;
+	/** Saved game to resume on the next level started, if any. */
+	private Snapshot resumeState;
+	/** Keeps the last frames to go back to, null if not kept. */
+	private RewindBuffer rewindBuffer;
+	/** Store the metrics of each level are appended to, null if none. */
+	private SessionStore sessionStore;
+	/** Journal the gameplay events are written to, null if none. */
+	private EventJournal eventJournal;
+	/** Time between the frames of the current level. */
+	private LatencyHistogram frameTimes;
+	/** Metrics of the last level, reused. */
+	private LevelMetrics levelMetrics;
+	/** Frame the current level started at. */
+	private long levelStart;
+	/** If the session is over. */
+	private boolean finished;
+	/** Wall clock time spent simulating, in nanoseconds. */
+	private long wallNanos;
+	/** Outcome of each level played. */
+	private final List<LevelResult> levelResults;
+
+	/**
+	 * Outcome of a single level of the session.
+	 */
+	public static final class LevelResult {
+
+		/** Level number. */
+		private final int level;
+		/** If the player cleared the level. */
+		private final boolean cleared;
+		/** Frames the level lasted. */
+		private final long ticks;
+		/** Score obtained during the level, life bonus included. */
+		private final int score;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param level
+		 *            Level number.
+		 * @param cleared
+		 *            If the player cleared the level.
+		 * @param ticks
+		 *            Frames the level lasted.
+		 * @param score
+		 *            Score obtained during the level.
+		 */
+		LevelResult(final int level, final boolean cleared, final long ticks,
+				final int score) {
+			this.level = level;
+			this.cleared = cleared;
+			this.ticks = ticks;
+			this.score = score;
+		}
+
+		/**
+		 * @return the level
+		 */
+		public int getLevel() {
+			return this.level;
+		}
+
+		/**
+		 * @return if the level was cleared
+		 */
+		public boolean isCleared() {
+			return this.cleared;
+		}
+
+		/**
+		 * @return the ticks
+		 */
+		public long getTicks() {
+			return this.ticks;
+		}
+
+		/**
+		 * @return the score
+		 */
+		public int getScore() {
+			return this.score;
+		}
+	}
+
+	/**
+	 * Constructor, prepares a session from the first level.
+	 * 
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @param seed
+	 *            Seed of the session.
+	 * @param inputSource
+	 *            Source of the keys pressed, scripted or recorded.
+	 */
+	public HeadlessGame(final List<GameSettings> gameSettings,
+			final long seed, final InputSource inputSource) {
+		this(gameSettings, seed, inputSource, Core.FPS);
+	}
+
+	/**
+	 * Constructor, prepares a session from the first level.
+	 * 
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @param seed
+	 *            Seed of the session.
+	 * @param inputSource
+	 *            Source of the keys pressed, scripted or recorded.
+	 * @param fps
+	 *            Frames per second of game time.
+	 */
+	public HeadlessGame(final List<GameSettings> gameSettings,
+			final long seed, final InputSource inputSource, final int fps) {
+		this(new EngineContext(), gameSettings, seed, inputSource, fps);
+	}
+
+	/**
+	 * Constructor, prepares a session from the first level on an existing
+	 * context, as the game does when sessions are played back to back. The
+	 * context reads its time from the session clock afterwards.
+	 * 
+	 * @param context
+	 *            Context of the game, not used by other running games.
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @param seed
+	 *            Seed of the session.
+	 * @param inputSource
+	 *            Source of the keys pressed, scripted or recorded.
+	 * @param fps
+	 *            Frames per second of game time.
+	 */
+	public HeadlessGame(final EngineContext context,
+			final List<GameSettings> gameSettings, final long seed,
+			final InputSource inputSource, final int fps) {
+		this.context = context;
+		this.gameSettings = gameSettings;
+		this.random = new GameRandom(seed);
+		this.inputSource = inputSource;
+		this.clock = new TickClock(fps);
+		this.context.setTimeSource(this.clock);
+		this.gameState = new GameState(1, 0, Core.MAX_LIVES, 0, 0);
+		this.levelResults = new ArrayList<LevelResult>();
+	}
+
+	/**
+	 * Simulates the session until it is over or the frame budget runs out.
+	 * 
+	 * @param maxTicks
+	 *            Maximum number of frames to simulate.
+	 * @return Game state at the end of the simulation.
+	 */
+	public GameState run(final long maxTicks) {
+		long start = System.nanoTime();
+		long firstTick = this.clock.getTicks();
+
+		boolean running = !this.finished;
+		while (running && this.clock.getTicks() - firstTick < maxTicks)
+			running = step();
+
+		this.wallNanos += System.nanoTime() - start;
+		return getGameState();
+	}
+
+	/**
+	 * Simulates a single frame, moving on to the next level when the
+	 * current one is over.
+	 * 
+	 * @return True while the session goes on, false once it is over.
+	 */
+	public boolean step() {
+		if (this.finished)
+			return false;
+		if (this.screen == null)
+			startLevel();
+
+		if (!this.screen.step())
+			finishLevel();
+		return !this.finished;
+	}
+
+	/**
+	 * Creates the screen of the next level.
+	 */
+	private void startLevel() {
+		// One extra live every few levels, already counted when resuming.
+		boolean bonusLife = this.resumeState == null
+				&& this.gameState.getLevel() % Core.EXTRA_LIFE_FRECUENCY == 0
+				&& this.gameState.getLivesRemaining() < Core.MAX_LIVES;
+
+		this.screen = new GameScreen(this.context, this.gameState,
+				this.gameSettings.get(this.gameState.getLevel() - 1),
+				bonusLife, this.random, this.clock, Core.WIDTH, Core.HEIGHT,
+				this.clock.getFps());
+		this.screen.setInputSource(this.inputSource);
+		this.screen.setHeadless(true);
+		this.screen.setProfiler(this.profiler);
+		this.screen.setRewindBuffer(this.rewindBuffer);
+		this.screen.setEventJournal(this.eventJournal);
+		if (this.sessionStore != null) {
+			this.frameTimes.reset();
+			this.screen.setFrameTimes(this.frameTimes);
+		}
+		if (this.resumeState != null)
+			this.screen.resumeFrom(this.resumeState);
+		if (this.inputSource instanceof Autopilot)
+			((Autopilot) this.inputSource).setScreen(this.screen);
+		this.screen.initialize();
+		this.levelStart = this.clock.getTicks();
+		this.resumeState = null;
+	}
+
+	/**
+	 * Resumes a saved game instead of starting from the first level. Must
+	 * be called before the first frame, on a session created with the seed
+	 * and frame rate of the saved game.
+	 * 
+	 * @param snapshot
+	 *            Saved game.
+	 */
+	public void resumeFrom(final Snapshot snapshot) {
+		this.resumeState = snapshot;
+		this.gameState = snapshot.getGameState();
+	}
+
+	/**
+	 * Sets the buffer keeping the last frames of each level, from the next
+	 * level started.
+	 * 
+	 * @param rewindBuffer
+	 *            Buffer to record to, null to stop recording.
+	 */
+	public void setRewindBuffer(final RewindBuffer rewindBuffer) {
+		this.rewindBuffer = rewindBuffer;
+	}
+
+	/**
+	 * Sets the journal the gameplay events are written to, from the next
+	 * level started. Only this session may write to it.
+	 * 
+	 * @param eventJournal
+	 *            Journal to write to, null to stop writing.
+	 */
+	public void setEventJournal(final EventJournal eventJournal) {
+		this.eventJournal = eventJournal;
+	}
+
+	/**
+	 * Sets the store the metrics of each level finished are appended to.
+	 * 
+	 * @param sessionStore
+	 *            Store to append to, null to stop storing.
+	 */
+	public void setSessionStore(final SessionStore sessionStore) {
+		this.sessionStore = sessionStore;
+		if (sessionStore != null && this.frameTimes == null) {
+			this.frameTimes = new LatencyHistogram();
+			this.levelMetrics = new LevelMetrics();
+		}
+	}
+
+	/**
+	 * Goes back to a frame of the current level kept by the rewind buffer,
+	 * and continues the session from there.
+	 * 
+	 * @param tick
+	 *            Session frame to go back to.
+	 * @return False if the frame is not kept.
+	 */
+	public boolean rewindTo(final long tick) {
+		Snapshot snapshot = new Snapshot();
+		if (this.rewindBuffer == null || this.finished
+				|| !this.rewindBuffer.rewind(tick, snapshot))
+			return false;
+		this.screen = null;
+		resumeFrom(snapshot);
+		return true;
+	}
+
+	/**
+	 * Records the outcome of the current level and checks if the session is
+	 * over.
+	 */
+	private void finishLevel() {
+		this.screen.finish();
+
+		GameState state = this.screen.getGameState();
+		if (this.sessionStore != null) {
+			this.levelMetrics.measure(this.random.getSeed(),
+					this.context.getDifficulty(), this.gameState, this.screen,
+					this.clock.getTicks() - this.levelStart, this.frameTimes);
+			this.sessionStore.append(this.levelMetrics);
+		}
+		this.levelResults.add(new LevelResult(state.getLevel(),
+				state.getLivesRemaining() > 0, this.clock.getTicks()
+						- this.levelStart, state.getScore()
+						- this.gameState.getScore()));
+		this.gameState = new GameState(state.getLevel() + 1,
+				state.getScore(), state.getLivesRemaining(),
+				state.getBulletsShot(), state.getShipsDestroyed());
+		this.screen = null;
+		this.finished = this.gameState.getLivesRemaining() <= 0
+				|| this.gameState.getLevel() > this.gameSettings.size();
+	}
+
+	/**
+	 * Getter for the screen of the level being played.
+	 * 
+	 * @return Current game screen, null between levels.
+	 */
+	public GameScreen getScreen() {
+		return this.screen;
+	}
+
+	/**
+	 * Getter for the current game state.
+	 * 
+	 * @return Game state.
+	 */
+	public GameState getGameState() {
+		if (this.screen != null)
+			return this.screen.getGameState();
+		return this.gameState;
+	}
+
+	/**
+	 * Getter for the outcome of each level played until now.
+	 * 
+	 * @return Level outcomes, in order.
+	 */
+	public List<LevelResult> getLevelResults() {
+		return this.levelResults;
+	}
+
+	/**
+	 * Checks if the session is over.
+	 * 
+	 * @return True when the player lost or cleared every level.
+	 */
+	public boolean isFinished() {
+		return this.finished;
+	}
+
+	/**
+	 * Getter for the frames simulated.
+	 * 
+	 * @return Number of frames.
+	 */
+	public long getTicks() {
+		return this.clock.getTicks();
+	}
+
+	/**
+	 * Getter for the wall clock time spent simulating.
+	 * 
+	 * @return Time in nanoseconds.
+	 */
+	public long getWallNanos() {
+		return this.wallNanos;
+	}
+
+	/**
+	 * Getter for the context of the simulated game.
+	 * 
+	 * @return Engine context.
+	 */
+	public EngineContext getContext() {
+		return this.context;
+	}
+
+	/**
+	 * Sets the profiler measuring the phases of each update.
+	 * 
+	 * @param profiler
+	 *            Profiler to use, null to stop measuring.
+	 */
+	public void setProfiler(final FrameProfiler profiler) {
+		this.profiler = profiler;
+		if (this.screen != null)
+			this.screen.setProfiler(profiler);
+	}
+
+	/**
+	 * Getter for the time spent on each phase of the updates.
+	 * 
+	 * @return Phase profiler, null when not measured.
+	 */
+	public FrameProfiler getProfiler() {
+		return this.profiler;
+	}
+
+	/**
+	 * Runs a headless session and prints a report.
+	 * 
+	 * @param args
+	 *            --seed n, --ticks n (frame budget), --autopilot tier
+	 *            (easy, normal or hard) to play with the autopilot, or
+	 *            --replay file to use a recorded session instead of the
+	 *            scripted input.
+	 * @throws IOException
+	 *             If the replay can't be loaded.
+	 */
+	public static void main(final String[] args) throws IOException {
+		long seed = 0;
+		long ticks = Long.MAX_VALUE;
+		InputSource inputSource = ScriptedInput.sweeping();
+		int fps = Core.FPS;
+		for (int i = 0; i < args.length; i++) {
+			if ("--seed".equals(args[i]) && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else if ("--ticks".equals(args[i]) && i + 1 < args.length)
+				ticks = Long.parseLong(args[++i]);
+			else if ("--autopilot".equals(args[i]) && i + 1 < args.length)
+				inputSource = new Autopilot(Autopilot.Tier.valueOf(args[++i]
+						.toUpperCase()));
+			else if ("--replay".equals(args[i]) && i + 1 < args.length) {
+				ReplayPlayer player = new ReplayPlayer(new File(args[++i]));
+				seed = player.getSeed();
+				fps = player.getFps();
+				inputSource = player;
+			}
+		}
+		Core.getLogger().setLevel(Level.WARNING);
+
+		HeadlessGame game = new HeadlessGame(Core.getDefaultGameSettings(),
+				seed, inputSource, fps);
+		game.setProfiler(new FrameProfiler());
+		GameState state = game.run(ticks);
+
+		double gameSeconds = game.getTicks() / (double) fps;
+		double wallSeconds = game.getWallNanos() / 1e9;
+		System.out.println("level " + state.getLevel() + ", score "
+				+ state.getScore() + ", lives " + state.getLivesRemaining()
+				+ ", bullets shot " + state.getBulletsShot()
+				+ ", ships destroyed " + state.getShipsDestroyed()
+				+ (game.isFinished() ? " (finished)" : " (stopped)"));
+		System.out.println(String.format(
+				"%d frames, %.1f game s in %.3f wall s, %.0fx real time",
+				game.getTicks(), gameSeconds, wallSeconds,
+				gameSeconds / wallSeconds));
+		System.out.print(game.getProfiler());
+		long total = 0;
+		for (Phase phase : Phase.values())
+			total += game.getProfiler().getTotalNanos(phase);
+		System.out.println(String.format("total %.3f us/frame",
+				total / 1000.0 / Math.max(1, game.getProfiler().getFrames())));
+	}
+}
@@ -0,0 +1,287 @@
+package simulation;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+
+import engine.Core;
+import engine.LatencyHistogram;
+import simulation.HeadlessGame.LevelResult;
+
+/**
+ * Plays the whole campaign headless and uncapped a number of times and
+ * reports how fast the engine ran, as a single JSON object to compare
+ * builds and JVM flags on the same hardware.
+ *
+ * Every iteration is a new session with the same seed and the autopilot
+ * as the player, so they all play the same frames. Frame times come from
+ * timing each frame, allocation from the bytes allocated by the thread
+ * playing and garbage collection from the collectors of the JVM, all
+ * counted over the measured iterations only: the warmup iterations before
+ * them let the JIT compile the game first.
+ */
+public final class MacroBenchmark {
+
+	/** Default iterations measured. */
+	public static final int DEFAULT_ITERATIONS = 5;
+	/** Default iterations played before measuring. */
+	public static final int DEFAULT_WARMUP = 1;
+	/** Frame budget of an iteration, in case the autopilot never loses. */
+	private static final long MAX_TICKS = 60L * 60 * Core.FPS;
+	/** Percentiles of the frame times reported. */
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	/** Seed of every session. */
+	private final long seed;
+	/** Skill of the autopilot playing. */
+	private final Autopilot.Tier tier;
+	/** Iterations measured. */
+	private final int iterations;
+	/** Iterations played before measuring. */
+	private final int warmup;
+
+	/** Time of every frame measured, in nanoseconds. */
+	private final LatencyHistogram frameTimes;
+	/** Frames per second of each iteration measured. */
+	private final double[] iterationFps;
+	/** Frames measured. */
+	private long frames;
+	/** Wall clock time of the iterations measured, in nanoseconds. */
+	private long wallNanos;
+	/** Bytes allocated by the playing thread, -1 if not measurable. */
+	private long allocatedBytes;
+	/** Collections during the iterations measured, by collector. */
+	private long[] gcCounts;
+	/** Collection time during the iterations measured, by collector. */
+	private long[] gcMillis;
+	/** Level reached by the last session. */
+	private int level;
+	/** Levels cleared by the last session. */
+	private int levelsCleared;
+	/** Score of the last session. */
+	private int score;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param seed
+	 *            Seed of every session.
+	 * @param tier
+	 *            Skill of the autopilot playing.
+	 * @param iterations
+	 *            Iterations measured, at least one.
+	 * @param warmup
+	 *            Iterations played before measuring.
+	 */
+	public MacroBenchmark(final long seed, final Autopilot.Tier tier,
+			final int iterations, final int warmup) {
+		this.seed = seed;
+		this.tier = tier;
+		this.iterations = Math.max(1, iterations);
+		this.warmup = Math.max(0, warmup);
+		this.frameTimes = new LatencyHistogram();
+		this.iterationFps = new double[this.iterations];
+	}
+
+	/**
+	 * Plays the warmup and measured iterations on the calling thread.
+	 */
+	public void run() {
+		for (int i = 0; i < this.warmup; i++)
+			play(null);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = null;
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads)
+						.isThreadAllocatedMemorySupported()) {
+			allocation = (com.sun.management.ThreadMXBean) threads;
+			allocation.setThreadAllocatedMemoryEnabled(true);
+		}
+		List<GarbageCollectorMXBean> collectors = ManagementFactory
+				.getGarbageCollectorMXBeans();
+		this.gcCounts = new long[collectors.size()];
+		this.gcMillis = new long[collectors.size()];
+		for (int i = 0; i < collectors.size(); i++) {
+			this.gcCounts[i] = -collectors.get(i).getCollectionCount();
+			this.gcMillis[i] = -collectors.get(i).getCollectionTime();
+		}
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = allocation == null ? -1
+				: allocation.getThreadAllocatedBytes(threadId);
+
+		for (int i = 0; i < this.iterations; i++) {
+			long start = System.nanoTime();
+			long frames = play(this.frameTimes);
+			long nanos = System.nanoTime() - start;
+			this.frames += frames;
+			this.wallNanos += nanos;
+			this.iterationFps[i] = frames * 1e9 / Math.max(1, nanos);
+		}
+
+		this.allocatedBytes = allocation == null ? -1
+				: allocation.getThreadAllocatedBytes(threadId)
+						- allocatedBefore;
+		for (int i = 0; i < collectors.size(); i++) {
+			this.gcCounts[i] += collectors.get(i).getCollectionCount();
+			this.gcMillis[i] += collectors.get(i).getCollectionTime();
+		}
+	}
+
+	/**
+	 * Plays a session through the campaign.
+	 *
+	 * @param frameTimes
+	 *            Counts the time of every frame, null to not time them.
+	 * @return Frames played.
+	 */
+	private long play(final LatencyHistogram frameTimes) {
+		HeadlessGame game = new HeadlessGame(Core.getDefaultGameSettings(),
+				this.seed, new Autopilot(this.tier));
+		long frames = 0;
+		boolean running = true;
+		while (running && frames < MAX_TICKS) {
+			long start = System.nanoTime();
+			running = game.step();
+			if (frameTimes != null)
+				frameTimes.record(System.nanoTime() - start);
+			frames++;
+		}
+
+		// The game state moves on to the next level once one is over, so
+		// only a session cut by the frame budget is still on its level.
+		this.level = game.getGameState().getLevel();
+		this.score = game.getGameState().getScore();
+		this.levelsCleared = 0;
+		for (LevelResult result : game.getLevelResults()) {
+			if (!running)
+				this.level = result.getLevel();
+			if (result.isCleared())
+				this.levelsCleared++;
+		}
+		return frames;
+	}
+
+	/**
+	 * Writes the results as a JSON object on a single line.
+	 *
+	 * @return Results, once run.
+	 */
+	public String toJson() {
+		double seconds = this.wallNanos / 1e9;
+		StringBuilder json = new StringBuilder(1024);
+		json.append("{\"seed\":").append(this.seed);
+		json.append(",\"autopilot\":");
+		quote(json, this.tier.name().toLowerCase());
+		json.append(",\"iterations\":").append(this.iterations);
+		json.append(",\"warmup\":").append(this.warmup);
+		json.append(",\"levels\":").append(Core.NUM_LEVELS);
+		json.append(",\"levelsCleared\":").append(this.levelsCleared);
+		json.append(",\"levelReached\":").append(this.level);
+		json.append(",\"score\":").append(this.score);
+		json.append(",\"frames\":").append(this.frames);
+		json.append(",\"seconds\":").append(number(seconds));
+		json.append(",\"fps\":").append(number(this.frames
+				/ Math.max(seconds, 1e-9)));
+
+		json.append(",\"iterationFps\":[");
+		for (int i = 0; i < this.iterationFps.length; i++)
+			json.append(i > 0 ? "," : "").append(number(
+					this.iterationFps[i]));
+		json.append(']');
+
+		json.append(",\"frameTimeMicros\":{");
+		for (double percentile : PERCENTILES)
+			json.append("\"p").append(number(percentile).replace(".", ""))
+					.append("\":").append(number(this.frameTimes
+							.getPercentile(percentile) / 1000.0))
+					.append(',');
+		json.append("\"max\":").append(number(this.frameTimes.getMax()
+				/ 1000.0)).append('}');
+
+		json.append(",\"allocatedBytes\":").append(this.allocatedBytes);
+		if (this.allocatedBytes >= 0) {
+			json.append(",\"allocationMBPerSecond\":").append(number(
+					this.allocatedBytes / (1024.0 * 1024.0)
+							/ Math.max(seconds, 1e-9)));
+			json.append(",\"allocatedBytesPerFrame\":").append(number(
+					this.allocatedBytes / (double) Math.max(1,
+							this.frames)));
+		}
+
+		long gcCount = 0;
+		long gcMillis = 0;
+		StringBuilder collectors = new StringBuilder();
+		List<GarbageCollectorMXBean> beans = ManagementFactory
+				.getGarbageCollectorMXBeans();
+		for (int i = 0; i < this.gcCounts.length; i++) {
+			gcCount += this.gcCounts[i];
+			gcMillis += this.gcMillis[i];
+			collectors.append(i > 0 ? "," : "");
+			quote(collectors, beans.get(i).getName());
+			collectors.append(":{\"count\":").append(this.gcCounts[i])
+					.append(",\"timeMillis\":").append(this.gcMillis[i])
+					.append('}');
+		}
+		json.append(",\"gc\":{\"count\":").append(gcCount)
+				.append(",\"timeMillis\":").append(gcMillis)
+				.append(",\"collectors\":{").append(collectors).append("}}");
+
+		RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+		json.append(",\"jvm\":{\"version\":");
+		quote(json, System.getProperty("java.version"));
+		json.append(",\"vm\":");
+		quote(json, runtime.getVmName() + " " + runtime.getVmVersion());
+		json.append(",\"processors\":").append(Runtime.getRuntime()
+				.availableProcessors());
+		json.append(",\"arguments\":[");
+		List<String> arguments = runtime.getInputArguments();
+		for (int i = 0; i < arguments.size(); i++) {
+			json.append(i > 0 ? "," : "");
+			quote(json, arguments.get(i));
+		}
+		json.append("]}}");
+		return json.toString();
+	}
+
+	/**
+	 * Formats a number for JSON, with three decimals at most.
+	 *
+	 * @param value
+	 *            Number to format.
+	 * @return Number, without trailing zeros.
+	 */
+	private static String number(final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return "null";
+		String text = String.format(Locale.ROOT, "%.3f", value);
+		text = text.replaceAll("0+$", "");
+		return text.endsWith(".") ? text.substring(0, text.length() - 1)
+				: text;
+	}
+
+	/**
+	 * Appends a string as a JSON string.
+	 *
+	 * @param json
+	 *            JSON being written.
+	 * @param value
+	 *            String to quote.
+	 */
+	private static void quote(final StringBuilder json, final String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		json.append('"');
+	}
+}
@@ -0,0 +1,92 @@
+package simulation;
+
+/**
+ * Preallocated observations, rewards and done flags of a group of
+ * environments, as flat primitive arrays. Environment i writes slot i, so
+ * environments stepped on different threads never share an element.
+ * 
+ */
+public final class ObservationBuffer {
+
+	/** Number of environments. */
+	private final int size;
+	/** Words of the formation alive mask of each environment. */
+	private final int maskWords;
+	/**
+	 * Bullets kept per environment, the lowest on screen first; the rest are
+	 * not observed.
+	 */
+	private final int maxBullets;
+
+	/** Position in the x-axis of the player's ship. */
+	public final int[] shipX;
+	/** Lives remaining. */
+	public final int[] lives;
+	/** Current level. */
+	public final int[] level;
+	/** Formation ships alive, maskWords words per environment. */
+	public final long[] aliveMask;
+	/** Formation offset since the level started, x and y per environment. */
+	public final int[] formationOffset;
+	/** Bullets observed per environment. */
+	public final int[] bulletCount;
+	/** Position in the x-axis of the bullets, maxBullets per environment. */
+	public final int[] bulletX;
+	/** Position in the y-axis of the bullets, maxBullets per environment. */
+	public final int[] bulletY;
+	/** Speed of the bullets, positive when shot by enemies. */
+	public final int[] bulletSpeed;
+	/** Score obtained on the last step. */
+	public final float[] reward;
+	/** If the session ended on the last step. */
+	public final boolean[] done;
+
+	/**
+	 * Constructor, allocates every array.
+	 * 
+	 * @param size
+	 *            Number of environments.
+	 * @param maskWords
+	 *            Words of the formation alive mask, 64 ships per word.
+	 * @param maxBullets
+	 *            Bullets kept per environment.
+	 */
+	public ObservationBuffer(final int size, final int maskWords,
+			final int maxBullets) {
+		this.size = size;
+		this.maskWords = maskWords;
+		this.maxBullets = maxBullets;
+		this.shipX = new int[size];
+		this.lives = new int[size];
+		this.level = new int[size];
+		this.aliveMask = new long[size * maskWords];
+		this.formationOffset = new int[size * 2];
+		this.bulletCount = new int[size];
+		this.bulletX = new int[size * maxBullets];
+		this.bulletY = new int[size * maxBullets];
+		this.bulletSpeed = new int[size * maxBullets];
+		this.reward = new float[size];
+		this.done = new boolean[size];
+	}
+
+	/**
+	 * @return the number of environments
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the words of the alive mask per environment
+	 */
+	public int getMaskWords() {
+		return this.maskWords;
+	}
+
+	/**
+	 * @return the bullets kept per environment
+	 */
+	public int getMaxBullets() {
+		return this.maxBullets;
+	}
+}
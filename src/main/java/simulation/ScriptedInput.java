@@ -0,0 +1,87 @@
+package simulation;
+
+import engine.GameRandom;
+import engine.InputSource;
+
+/**
+ * Plays a fixed sequence of key presses, repeated in a loop.
+ */
+public final class ScriptedInput implements InputSource {
+
+	/** Frames the default script spends moving in each direction. */
+	private static final int SWEEP_FRAMES = 200;
+
+	/** Keys pressed on each step of the script. */
+	private final int[] masks;
+	/** Frames each step of the script lasts. */
+	private final int[] frames;
+	/** Current step of the script. */
+	private int step;
+	/** Frames played of the current step. */
+	private int played;
+
+	/**
+	 * Constructor, establishes the script.
+	 * 
+	 * @param masks
+	 *            Keys pressed on each step, as InputSource masks.
+	 * @param frames
+	 *            Frames each step lasts.
+	 */
+	public ScriptedInput(final int[] masks, final int[] frames) {
+		if (masks.length == 0 || masks.length != frames.length)
+			throw new IllegalArgumentException("Invalid script.");
+		this.masks = masks.clone();
+		this.frames = frames.clone();
+	}
+
+	/**
+	 * Creates a script that keeps shooting while sweeping the screen from
+	 * side to side.
+	 * 
+	 * @return New script.
+	 */
+	public static ScriptedInput sweeping() {
+		return new ScriptedInput(
+				new int[] { KEY_SPACE | KEY_RIGHT, KEY_SPACE | KEY_LEFT },
+				new int[] { SWEEP_FRAMES / 2, SWEEP_FRAMES });
+	}
+
+	/**
+	 * Creates a script of random moves, always the same for a given seed.
+	 * 
+	 * @param seed
+	 *            Seed of the script.
+	 * @param steps
+	 *            Number of steps before the script repeats.
+	 * @return New script.
+	 */
+	public static ScriptedInput random(final long seed, final int steps) {
+		GameRandom random = new GameRandom(seed);
+		int[] masks = new int[steps];
+		int[] frames = new int[steps];
+		for (int i = 0; i < steps; i++) {
+			int move = random.nextInt(3);
+			masks[i] = move == 0 ? KEY_LEFT : move == 1 ? KEY_RIGHT : 0;
+			if (random.nextInt(4) != 0)
+				masks[i] |= KEY_SPACE;
+			frames[i] = 1 + random.nextInt(SWEEP_FRAMES / 2);
+		}
+		return new ScriptedInput(masks, frames);
+	}
+
+	/**
+	 * Returns the keys of the current step and advances the script.
+	 * 
+	 * @return Keys pressed this frame.
+	 */
+	@Override
+	public int pollKeys() {
+		int mask = this.masks[this.step];
+		if (++this.played >= this.frames[this.step]) {
+			this.played = 0;
+			this.step = (this.step + 1) % this.masks.length;
+		}
+		return mask;
+	}
+}
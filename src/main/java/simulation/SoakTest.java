@@ -0,0 +1,422 @@
+package simulation;
+
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import engine.Core;
+import engine.EngineContext;
+import engine.GameRandom;
+import engine.GameSettings;
+import engine.GameState;
+import engine.MinimalFormatter;
+import engine.TickClock;
+import entity.EnemyShip;
+import entity.EnemyShipFormation;
+import screen.GameScreen;
+import screen.ScoreScreen;
+import screen.Screen;
+import screen.TitleScreen;
+
+/**
+ * Plays the title, game and score screens back to back on a single engine
+ * context, as the game does on a machine left running for days, with the
+ * autopilot playing every session. The game invariants are checked every
+ * frame, and the heap after a collection, the live threads, the bullet pool
+ * and the log output are sampled periodically to catch slow leaks. Failures
+ * report the seed and frame of the session, to replay it.
+ *
+ */
+public final class SoakTest {
+
+	/** Most bullets expected on screen, or kept in the pool, at once. */
+	private static final int MAX_BULLETS = 64;
+	/** Most frames a menu screen is expected to be shown. */
+	private static final int MAX_MENU_TICKS = 10 * Core.FPS;
+	/** Default seconds between samples. */
+	private static final int DEFAULT_SAMPLE_SECONDS = 10;
+	/** Default heap growth allowed over the first sample, in megabytes. */
+	private static final int DEFAULT_HEAP_GROWTH_MB = 32;
+	/** Threads allowed over the first sample. */
+	private static final int MAX_THREAD_GROWTH = 4;
+	/** Bytes per megabyte. */
+	private static final long MEGABYTE = 1024 * 1024;
+
+	/** Context shared by every screen, as in the game. */
+	private final EngineContext context;
+	/** Difficulty settings of each level. */
+	private final List<GameSettings> gameSettings;
+	/** Skill of the autopilot. */
+	private final Autopilot.Tier tier;
+	/** Source of the seed of each session. */
+	private final GameRandom seeds;
+	/** Clock of the menu screens. */
+	private final TickClock menuClock;
+	/** Counts the log output, as written to the log file. */
+	private final LogCounter logCounter;
+	/** Heap usage. */
+	private final MemoryMXBean memoryBean;
+	/** Thread counts. */
+	private final ThreadMXBean threadBean;
+	/** Heap growth allowed over the first sample, in bytes. */
+	private final long heapGrowth;
+
+	/** Cycles completed. */
+	private long cycles;
+	/** Frames played in every session. */
+	private long totalTicks;
+	/** Seed of the session being played. */
+	private long sessionSeed;
+	/** Frame of the session being played. */
+	private long sessionTick;
+	/** Heap used after a collection on the first sample, -1 before it. */
+	private long baselineHeap;
+	/** Live threads on the first sample. */
+	private int baselineThreads;
+
+	/**
+	 * Failed invariant, with the session it failed on.
+	 */
+	public static final class SoakFailure extends RuntimeException {
+
+		/** Serial version. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param message
+		 *            Invariant that failed, with its session and frame.
+		 */
+		SoakFailure(final String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Counts the records and bytes the log file would receive.
+	 */
+	private static final class LogCounter extends Handler {
+
+		/** Records published. */
+		private long records;
+		/** Bytes of the formatted records. */
+		private long bytes;
+
+		/**
+		 * Constructor, formats like the log file.
+		 */
+		LogCounter() {
+			setFormatter(new MinimalFormatter());
+		}
+
+		@Override
+		public void publish(final LogRecord record) {
+			if (!isLoggable(record))
+				return;
+			this.records++;
+			this.bytes += getFormatter().format(record).length();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @param seed
+	 *            Seed the session seeds are derived from.
+	 * @param tier
+	 *            Skill of the autopilot.
+	 * @param heapGrowthMb
+	 *            Heap growth allowed over the first sample, in megabytes.
+	 * @param scoresFile
+	 *            File for the high scores of the simulated players.
+	 */
+	public SoakTest(final List<GameSettings> gameSettings, final long seed,
+			final Autopilot.Tier tier, final int heapGrowthMb,
+			final File scoresFile) {
+		this.gameSettings = gameSettings;
+		this.tier = tier;
+		this.seeds = new GameRandom(seed);
+		this.menuClock = new TickClock(Core.FPS);
+		this.logCounter = new LogCounter();
+		this.memoryBean = ManagementFactory.getMemoryMXBean();
+		this.threadBean = ManagementFactory.getThreadMXBean();
+		this.heapGrowth = heapGrowthMb * MEGABYTE;
+		this.baselineHeap = -1;
+
+		Logger logger = Core.getLogger();
+		logger.setUseParentHandlers(false);
+		logger.addHandler(this.logCounter);
+		logger.setLevel(Level.ALL);
+
+		this.context = new EngineContext();
+		this.context.getFileManager().setScoresFile(scoresFile);
+	}
+
+	/**
+	 * Plays cycles until the time or cycle budget runs out.
+	 *
+	 * @param durationMillis
+	 *            Wall clock time to run for.
+	 * @param maxCycles
+	 *            Maximum number of cycles.
+	 * @param sampleMillis
+	 *            Wall clock time between samples.
+	 * @throws SoakFailure
+	 *             When an invariant fails.
+	 */
+	public void run(final long durationMillis, final long maxCycles,
+			final long sampleMillis) {
+		long start = System.currentTimeMillis();
+		long nextSample = start;
+		while (this.cycles < maxCycles
+				&& System.currentTimeMillis() - start < durationMillis) {
+			playCycle();
+			this.cycles++;
+			if (System.currentTimeMillis() >= nextSample) {
+				sample(System.currentTimeMillis() - start);
+				nextSample = System.currentTimeMillis() + sampleMillis;
+			}
+		}
+		sample(System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Plays the title screen, a whole session and the score screen.
+	 */
+	private void playCycle() {
+		this.sessionSeed = 0;
+		this.sessionTick = 0;
+
+		this.context.setTimeSource(this.menuClock);
+		int returnCode = playMenu(new TitleScreen(this.context, Core.WIDTH,
+				Core.HEIGHT, Core.FPS), KeyEvent.VK_SPACE);
+		check(returnCode == 2, "title screen returned " + returnCode);
+
+		this.sessionSeed = this.seeds.nextLong();
+		HeadlessGame game = new HeadlessGame(this.context, this.gameSettings,
+				this.sessionSeed, new Autopilot(this.tier), Core.FPS);
+		boolean running = true;
+		while (running) {
+			running = game.step();
+			this.sessionTick = game.getTicks();
+			checkInvariants(game);
+		}
+		this.totalTicks += game.getTicks();
+		GameState gameState = game.getGameState();
+
+		this.context.setTimeSource(this.menuClock);
+		returnCode = playMenu(new ScoreScreen(this.context, Core.WIDTH,
+				Core.HEIGHT, Core.FPS, gameState), KeyEvent.VK_ESCAPE);
+		check(returnCode == 1, "score screen returned " + returnCode);
+	}
+
+	/**
+	 * Shows a menu screen holding a key until it closes.
+	 *
+	 * @param screen
+	 *            Screen to show.
+	 * @param keyCode
+	 *            Key held.
+	 * @return Next screen code.
+	 */
+	private int playMenu(final Screen screen, final int keyCode) {
+		screen.setFrameLimited(false);
+		screen.initialize();
+		this.context.getInputManager().setKeyDown(keyCode, true);
+		int ticks = 0;
+		while (screen.step()) {
+			this.menuClock.tick();
+			check(++ticks <= MAX_MENU_TICKS, "menu screen never closed");
+		}
+		this.context.getInputManager().setKeyDown(keyCode, false);
+		return screen.getReturnCode();
+	}
+
+	/**
+	 * Checks the invariants of the session after a frame.
+	 *
+	 * @param game
+	 *            Session being played.
+	 */
+	private void checkInvariants(final HeadlessGame game) {
+		GameState state = game.getGameState();
+		check(state.getLivesRemaining() >= 0, "negative lives "
+				+ state.getLivesRemaining());
+		check(state.getScore() >= 0, "negative score " + state.getScore());
+		check(this.context.getBulletPool().size() <= MAX_BULLETS,
+				"bullet pool grew to " + this.context.getBulletPool().size());
+
+		GameScreen screen = game.getScreen();
+		if (screen == null)
+			return;
+		check(screen.getBullets().size() <= MAX_BULLETS, "bullet count "
+				+ screen.getBullets().size());
+
+		EnemyShipFormation formation = screen.getEnemyShipFormation();
+		int alive = 0;
+		for (EnemyShip enemyShip : formation)
+			if (!enemyShip.isDestroyed())
+				alive++;
+		check(alive == formation.getShipCount(), "formation counts "
+				+ formation.getShipCount() + " ships, " + alive + " alive");
+	}
+
+	/**
+	 * Samples the heap after a collection and the live threads, and checks
+	 * they stay close to the first sample.
+	 *
+	 * @param elapsed
+	 *            Wall clock time since the start, in milliseconds.
+	 */
+	private void sample(final long elapsed) {
+		System.gc();
+		long heap = this.memoryBean.getHeapMemoryUsage().getUsed();
+		int threads = this.threadBean.getThreadCount();
+		double hours = elapsed / 3600000.0;
+		double gameHours = this.totalTicks / (double) Core.FPS / 3600.0;
+
+		System.out.println(String.format("%8.1f s, %d cycles, %d frames, "
+				+ "heap %.1f MB, %d threads, pool %d bullets, "
+				+ "log %d records, %.1f KB per game hour", elapsed / 1000.0,
+				this.cycles, this.totalTicks, heap / (double) MEGABYTE,
+				threads, this.context.getBulletPool().size(),
+				this.logCounter.records, gameHours > 0 ? this.logCounter.bytes
+						/ 1024.0 / gameHours : 0));
+
+		if (this.baselineHeap < 0) {
+			this.baselineHeap = heap;
+			this.baselineThreads = threads;
+			return;
+		}
+		check(heap - this.baselineHeap <= this.heapGrowth, String.format(
+				"heap grew %.1f MB in %.2f h", (heap - this.baselineHeap)
+						/ (double) MEGABYTE, hours));
+		check(threads - this.baselineThreads <= MAX_THREAD_GROWTH,
+				"threads grew from " + this.baselineThreads + " to "
+						+ threads);
+	}
+
+	/**
+	 * Fails the soak test if a condition is false.
+	 *
+	 * @param condition
+	 *            Condition to check.
+	 * @param message
+	 *            Description of the failure.
+	 */
+	private void check(final boolean condition, final String message) {
+		if (!condition)
+			throw new SoakFailure(message + " (cycle " + this.cycles
+					+ ", seed " + this.sessionSeed + ", tick "
+					+ this.sessionTick + ")");
+	}
+
+	/**
+	 * Getter for the seed of the session being played.
+	 *
+	 * @return Session seed, 0 outside sessions.
+	 */
+	public long getSessionSeed() {
+		return this.sessionSeed;
+	}
+
+	/**
+	 * Getter for the frame of the session being played.
+	 *
+	 * @return Session frame.
+	 */
+	public long getSessionTick() {
+		return this.sessionTick;
+	}
+
+	/**
+	 * Runs the soak test, exits with status 1 on failure.
+	 *
+	 * @param args
+	 *            --minutes n (default 60), --cycles n, --seed n, --autopilot
+	 *            tier (easy, normal or hard), --sample-seconds n,
+	 *            --heap-growth-mb n.
+	 * @throws IOException
+	 *             If the temporary directory can't be created.
+	 */
+	public static void main(final String[] args) throws IOException {
+		long minutes = 60;
+		long maxCycles = Long.MAX_VALUE;
+		long seed = GameRandom.newSeed();
+		Autopilot.Tier tier = Autopilot.Tier.HARD;
+		int sampleSeconds = DEFAULT_SAMPLE_SECONDS;
+		int heapGrowthMb = DEFAULT_HEAP_GROWTH_MB;
+		for (int i = 0; i < args.length; i++) {
+			if ("--minutes".equals(args[i]) && i + 1 < args.length)
+				minutes = Long.parseLong(args[++i]);
+			else if ("--cycles".equals(args[i]) && i + 1 < args.length)
+				maxCycles = Long.parseLong(args[++i]);
+			else if ("--seed".equals(args[i]) && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else if ("--autopilot".equals(args[i]) && i + 1 < args.length)
+				tier = Autopilot.Tier.valueOf(args[++i].toUpperCase());
+			else if ("--sample-seconds".equals(args[i])
+					&& i + 1 < args.length)
+				sampleSeconds = Integer.parseInt(args[++i]);
+			else if ("--heap-growth-mb".equals(args[i])
+					&& i + 1 < args.length)
+				heapGrowthMb = Integer.parseInt(args[++i]);
+		}
+
+		// The file manager keeps more files next to the scores file, so the
+		// whole directory is removed on exit.
+		final File directory = Files.createTempDirectory("soak").toFile();
+		Runtime.getRuntime().addShutdownHook(new Thread(
+				() -> deleteDirectory(directory), "soak-cleanup"));
+		File scoresFile = new File(directory, "scores");
+
+		System.out.println("Soak test with seed " + seed + ", autopilot "
+				+ tier + ", " + minutes + " minutes.");
+		SoakTest soakTest = new SoakTest(Core.getDefaultGameSettings(), seed,
+				tier, heapGrowthMb, scoresFile);
+		try {
+			soakTest.run(minutes * 60000, maxCycles, sampleSeconds * 1000L);
+		} catch (SoakFailure e) {
+			System.out.println("FAILED: " + e.getMessage());
+			System.out.println("Replay with: --seed " + soakTest.getSessionSeed()
+					+ " --autopilot " + tier + " --ticks "
+					+ soakTest.getSessionTick());
+			System.exit(1);
+		}
+		System.out.println("Passed.");
+	}
+
+	/**
+	 * Deletes a directory of files.
+	 *
+	 * @param directory
+	 *            Directory, without subdirectories.
+	 */
+	private static void deleteDirectory(final File directory) {
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		directory.delete();
+	}
+}
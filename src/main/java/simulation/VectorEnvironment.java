@@ -0,0 +1,219 @@
+package simulation;
+
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import engine.GameRandom;
+import engine.GameSettings;
+
+/**
+ * Group of game environments stepped in lock-step. Each worker thread owns
+ * a contiguous slice of the environments and writes only their slots of the
+ * shared observation buffer, so a step needs no locks, just two barrier
+ * waits. Environments that finished on a step start a new
+ * session on the next one, with a seed derived from the group seed.
+ *
+ * A worker that fails still reaches the end of the step, and the step
+ * throws its failure; the group can't be stepped afterwards.
+ * 
+ */
+public final class VectorEnvironment {
+
+	/** Environments of the group. */
+	private final GameEnvironment[] environments;
+	/** Seed source of each environment, for automatic resets. */
+	private final GameRandom[] seeds;
+	/** Observations of every environment. */
+	private final ObservationBuffer buffer;
+	/** Actions of the current step, one per environment. */
+	private final int[] actions;
+	/** Workers stepping the environments. */
+	private final Thread[] workers;
+	/** Releases the workers at the start of a step. */
+	private final CyclicBarrier start;
+	/** Waits for the workers at the end of a step. */
+	private final CyclicBarrier end;
+	/** Set when the group is closed, read by the workers after a barrier. */
+	private volatile boolean closed;
+	/** If the environments were reset, and can be stepped. */
+	private boolean started;
+	/** First failure of a worker, null if none failed. */
+	private volatile Throwable failure;
+
+	/**
+	 * Constructor, creates the environments and starts the workers.
+	 * 
+	 * @param gameSettings
+	 *            Difficulty settings of each level.
+	 * @param size
+	 *            Number of environments.
+	 * @param threads
+	 *            Number of worker threads.
+	 */
+	public VectorEnvironment(final List<GameSettings> gameSettings,
+			final int size, final int threads) {
+		this.environments = new GameEnvironment[size];
+		this.seeds = new GameRandom[size];
+		for (int i = 0; i < size; i++)
+			this.environments[i] = new GameEnvironment(gameSettings);
+		this.buffer = new ObservationBuffer(size,
+				GameEnvironment.maskWords(gameSettings),
+				GameEnvironment.DEFAULT_MAX_BULLETS);
+		this.actions = new int[size];
+
+		int workerCount = Math.max(1, Math.min(threads, size));
+		this.start = new CyclicBarrier(workerCount + 1);
+		this.end = new CyclicBarrier(workerCount + 1);
+		this.workers = new Thread[workerCount];
+		for (int t = 0; t < workerCount; t++) {
+			final int from = (int) ((long) size * t / workerCount);
+			final int to = (int) ((long) size * (t + 1) / workerCount);
+			this.workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work(from, to);
+				}
+			}, "environment-" + t);
+			this.workers[t].setDaemon(true);
+			this.workers[t].start();
+		}
+	}
+
+	/**
+	 * Starts a new session on every environment.
+	 * 
+	 * @param seed
+	 *            Seed of the group, each environment derives its own.
+	 * @return Initial observations.
+	 */
+	public ObservationBuffer reset(final long seed) {
+		GameRandom random = new GameRandom(seed);
+		for (int i = 0; i < this.environments.length; i++) {
+			this.seeds[i] = random.split();
+			this.environments[i].reset(this.seeds[i].nextLong(), this.buffer,
+					i);
+		}
+		this.started = true;
+		return this.buffer;
+	}
+
+	/**
+	 * Plays a frame on every environment.
+	 * 
+	 * @param keys
+	 *            Keys pressed on each environment, as InputSource masks.
+	 * @return Observations, rewards and done flags after the frame.
+	 * @throws IllegalStateException
+	 *             If the group wasn't reset, is closed, or an environment
+	 *             failed.
+	 */
+	public ObservationBuffer step(final int[] keys) {
+		if (this.closed)
+			throw new IllegalStateException("Environment group closed.");
+		if (!this.started)
+			throw new IllegalStateException("Environment group not reset.");
+		checkFailure();
+		System.arraycopy(keys, 0, this.actions, 0, this.actions.length);
+		await(this.start);
+		await(this.end);
+		checkFailure();
+		return this.buffer;
+	}
+
+	/**
+	 * Throws the failure of a worker, if any failed.
+	 */
+	private void checkFailure() {
+		Throwable cause = this.failure;
+		if (cause != null)
+			throw new IllegalStateException("Environment worker failed.",
+					cause);
+	}
+
+	/**
+	 * Stops the workers. The group can't be stepped afterwards.
+	 */
+	public void close() {
+		if (this.closed)
+			return;
+		this.closed = true;
+		await(this.start);
+	}
+
+	/**
+	 * Getter for the observations of every environment.
+	 * 
+	 * @return Shared observation buffer.
+	 */
+	public ObservationBuffer getBuffer() {
+		return this.buffer;
+	}
+
+	/**
+	 * Getter for the number of environments.
+	 * 
+	 * @return Size of the group.
+	 */
+	public int getSize() {
+		return this.environments.length;
+	}
+
+	/**
+	 * Worker loop, steps a slice of the environments on each step.
+	 * 
+	 * @param from
+	 *            First environment of the slice.
+	 * @param to
+	 *            Environment after the last one of the slice.
+	 */
+	private void work(final int from, final int to) {
+		while (true) {
+			await(this.start);
+			if (this.closed)
+				return;
+			try {
+				for (int i = from; i < to; i++) {
+					if (this.buffer.done[i])
+						this.environments[i].reset(this.seeds[i].nextLong(),
+								this.buffer, i);
+					else
+						this.environments[i].step(this.actions[i],
+								this.buffer, i);
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+			// Reached even after a failure, so the step doesn't wait forever.
+			await(this.end);
+		}
+	}
+
+	/**
+	 * Keeps the first failure of a worker, to be thrown by the step.
+	 * 
+	 * @param cause
+	 *            Failure of the worker.
+	 */
+	private synchronized void fail(final Throwable cause) {
+		if (this.failure == null)
+			this.failure = cause;
+	}
+
+	/**
+	 * Waits on a barrier.
+	 * 
+	 * @param barrier
+	 *            Barrier to wait on.
+	 */
+	private static void await(final CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while stepping.", e);
+		} catch (BrokenBarrierException e) {
+			throw new IllegalStateException("Environment worker failed.", e);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the collision checks of a game frame.
+ */
+@Name("invaders.Collisions")
+@Label("Collision Batch")
+@Category({ "Invaders", "Game" })
+@Description("Collision checks between the bullets and ships of a frame.")
+@StackTrace(false)
+public final class CollisionEvent extends jdk.jfr.Event {
+
+	/** Bullets checked. */
+	@Label("Bullets")
+	public int bullets;
+
+	/** Enemy ships checked. */
+	@Label("Enemies")
+	public int enemies;
+
+	/** Ships hit, the player's included. */
+	@Label("Hits")
+	public int hits;
+
+	/** If the formation was checked in parallel. */
+	@Label("Parallel")
+	public boolean parallel;
+}
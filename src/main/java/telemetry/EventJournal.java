@@ -0,0 +1,240 @@
+package telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Journal of gameplay events in a memory mapped ring file, for tools
+ * following a live session or analyzing it afterwards.
+ *
+ * The file is a header followed by a ring of fixed size records: frame,
+ * event type, entity, position and value. A single thread writes the
+ * events, without locks or allocation: it announces the record it starts,
+ * fills its slot and publishes it. Once the ring is full the oldest records
+ * are overwritten; readers detect it from the records started since they
+ * read a slot. See {@link JournalReader}.
+ *
+ * The writer holds a lock on the file while the journal is open, so a
+ * second game can't reset or write the same ring; it has to journal to a
+ * file of its own.
+ */
+public final class EventJournal {
+
+	/** Identifies event journal files. */
+	static final int MAGIC = 0x45564A52;
+	/** Version of the file format. */
+	static final int VERSION = 1;
+	/** Position of the magic number. */
+	static final int MAGIC_OFFSET = 0;
+	/** Position of the version. */
+	static final int VERSION_OFFSET = 4;
+	/** Position of the size of a record. */
+	static final int RECORD_SIZE_OFFSET = 8;
+	/** Position of the number of records of the ring. */
+	static final int CAPACITY_OFFSET = 12;
+	/** Position of the time the journal was created, new on each open. */
+	static final int EPOCH_OFFSET = 16;
+	/** Position of the number of records started. */
+	static final int STARTED_OFFSET = 24;
+	/** Position of the number of records published. */
+	static final int PUBLISHED_OFFSET = 32;
+	/** Size of the header, records start after it. */
+	static final int HEADER_SIZE = 64;
+	/** Size of a record. */
+	static final int RECORD_SIZE = 32;
+	/** Position of the frame in a record. */
+	static final int TICK_OFFSET = 0;
+	/** Position of the event type in a record. */
+	static final int TYPE_OFFSET = 8;
+	/** Position of the entity in a record. */
+	static final int ENTITY_OFFSET = 12;
+	/** Position of the x coordinate in a record. */
+	static final int X_OFFSET = 16;
+	/** Position of the y coordinate in a record. */
+	static final int Y_OFFSET = 20;
+	/** Position of the value in a record. */
+	static final int VALUE_OFFSET = 24;
+	/** Default records of the ring, 2 MB of events. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/** Ordered access to the counters of the header. */
+	static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(
+			long[].class, ByteOrder.BIG_ENDIAN);
+
+	/**
+	 * Types of the events, stored by ordinal: new types go at the end.
+	 */
+	public enum EventType {
+		/** A game session starts, value is its seed. */
+		SESSION_START,
+		/** A level starts, entity is its number, value the score so far. */
+		LEVEL_START,
+		/** A level ends, entity is its number, value the score so far. */
+		LEVEL_END,
+		/** An enemy ship is destroyed, value is its points. */
+		SHIP_DESTROYED,
+		/** The player ship is hit, value is the lives remaining. */
+		PLAYER_HIT,
+		/** The bonus ship appears. */
+		BONUS_SHIP_SPAWNED,
+		/** The bonus ship leaves the screen without being destroyed. */
+		BONUS_SHIP_ESCAPED,
+		/** The bonus ship is destroyed, value is its points. */
+		BONUS_SHIP_DESTROYED;
+
+		/** Types, by ordinal. */
+		private static final EventType[] VALUES = values();
+
+		/**
+		 * Returns the type stored as a number.
+		 *
+		 * @param ordinal
+		 *            Stored number.
+		 * @return Event type, null if unknown.
+		 */
+		public static EventType of(final int ordinal) {
+			return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal]
+					: null;
+		}
+	}
+
+	/** Channel of the file. */
+	private final FileChannel channel;
+	/** Lock of the file, held while the journal is open. */
+	private final FileLock lock;
+	/** Mapping of the whole file. */
+	private final MappedByteBuffer buffer;
+	/** Mask of the slot of a record number. */
+	private final long mask;
+	/** Records written, only changed by the writing thread. */
+	private long written;
+
+	/**
+	 * Constructor, maps an open file.
+	 *
+	 * @param channel
+	 *            Channel of the file.
+	 * @param lock
+	 *            Lock of the file.
+	 * @param buffer
+	 *            Mapping of the whole file.
+	 * @param capacity
+	 *            Records of the ring.
+	 */
+	private EventJournal(final FileChannel channel, final FileLock lock,
+			final MappedByteBuffer buffer, final int capacity) {
+		this.channel = channel;
+		this.lock = lock;
+		this.buffer = buffer;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Creates a journal, replacing the events of a previous one.
+	 *
+	 * @param file
+	 *            Journal file.
+	 * @param capacity
+	 *            Records of the ring, rounded up to a power of two.
+	 * @return Journal, empty.
+	 * @throws IOException
+	 *             In case the file can't be mapped, or another journal
+	 *             holds it.
+	 */
+	public static EventJournal open(final File file, final int capacity)
+			throws IOException {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				lock = null;
+			}
+			if (lock == null)
+				throw new IOException(file + " is in use by another game.");
+			// Mapping grows the file; it never shrinks under a reader.
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE
+							+ (long) size * RECORD_SIZE);
+			// Readers of the old journal see the new epoch and start over.
+			LONGS.setRelease(buffer, PUBLISHED_OFFSET, 0L);
+			LONGS.setRelease(buffer, STARTED_OFFSET, 0L);
+			buffer.putInt(MAGIC_OFFSET, MAGIC);
+			buffer.putInt(VERSION_OFFSET, VERSION);
+			buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+			buffer.putInt(CAPACITY_OFFSET, size);
+			LONGS.setRelease(buffer, EPOCH_OFFSET,
+					System.currentTimeMillis());
+			return new EventJournal(channel, lock, buffer, size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends an event. Only one thread may write to a journal.
+	 *
+	 * @param tick
+	 *            Frame of the game session the event happened in.
+	 * @param type
+	 *            Type of the event.
+	 * @param entity
+	 *            Entity involved, meaning depends on the type.
+	 * @param x
+	 *            Position of the event in the x axis.
+	 * @param y
+	 *            Position of the event in the y axis.
+	 * @param value
+	 *            Value of the event, meaning depends on the type.
+	 */
+	public void write(final long tick, final EventType type, final int entity,
+			final int x, final int y, final long value) {
+		long record = this.written;
+		int position = HEADER_SIZE + (int) (record & this.mask) * RECORD_SIZE;
+		// Readers of this slot must see it as overwritten before it changes.
+		LONGS.setOpaque(this.buffer, STARTED_OFFSET, record + 1);
+		VarHandle.storeStoreFence();
+		this.buffer.putLong(position + TICK_OFFSET, tick);
+		this.buffer.putInt(position + TYPE_OFFSET, type.ordinal());
+		this.buffer.putInt(position + ENTITY_OFFSET, entity);
+		this.buffer.putInt(position + X_OFFSET, x);
+		this.buffer.putInt(position + Y_OFFSET, y);
+		this.buffer.putLong(position + VALUE_OFFSET, value);
+		this.written = record + 1;
+		LONGS.setRelease(this.buffer, PUBLISHED_OFFSET, this.written);
+	}
+
+	/**
+	 * Getter for the records written.
+	 *
+	 * @return Events written since the journal was created.
+	 */
+	public long getWritten() {
+		return this.written;
+	}
+
+	/**
+	 * Writes the journal to disk, releases and closes its file. Events
+	 * already published stay readable through the mapping.
+	 *
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	public void close() throws IOException {
+		this.buffer.force();
+		this.lock.release();
+		this.channel.close();
+	}
+}
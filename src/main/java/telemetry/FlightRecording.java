@@ -0,0 +1,72 @@
+package telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * Flight recording of the game with the settings bundled with it,
+ * invaders.jfc, written to a file when stopped or when the JVM exits.
+ */
+public final class FlightRecording {
+
+	/** Settings of the recording, in the resources of the game. */
+	private static final String SETTINGS = "invaders.jfc";
+
+	/** Recording running. */
+	private final Recording recording;
+
+	/**
+	 * Constructor, starts recording.
+	 *
+	 * @param destination
+	 *            File the recording is written to.
+	 * @throws IOException
+	 *             In case the settings can't be read or the flight recorder
+	 *             isn't available.
+	 */
+	public FlightRecording(final File destination) throws IOException {
+		if (!FlightRecorder.isAvailable())
+			throw new IOException("Flight recorder not available.");
+		InputStream input = FlightRecording.class.getClassLoader()
+				.getResourceAsStream(SETTINGS);
+		if (input == null)
+			throw new IOException("Missing " + SETTINGS + ".");
+		Configuration configuration;
+		try (Reader reader = new InputStreamReader(input,
+				Charset.forName("UTF-8"))) {
+			configuration = Configuration.create(reader);
+		} catch (ParseException e) {
+			throw new IOException("Invalid " + SETTINGS + ".", e);
+		}
+
+		FlightRecorder.register(FrameEvent.class);
+		FlightRecorder.register(PhaseEvent.class);
+		FlightRecorder.register(CollisionEvent.class);
+		FlightRecorder.register(ScreenEvent.class);
+		FlightRecorder.register(ResourceEvent.class);
+
+		this.recording = new Recording(configuration);
+		this.recording.setName("Invaders");
+		this.recording.setToDisk(true);
+		this.recording.setDestination(destination.toPath());
+		this.recording.setDumpOnExit(true);
+		this.recording.start();
+	}
+
+	/**
+	 * Stops recording and writes the recording to its file.
+	 */
+	public void stop() {
+		this.recording.stop();
+		this.recording.close();
+	}
+}
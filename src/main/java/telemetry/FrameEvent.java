@@ -0,0 +1,35 @@
+package telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the update of a game frame, so frames
+ * line up with garbage collections and safepoints in a recording.
+ */
+@Name("invaders.Frame")
+@Label("Game Frame")
+@Category({ "Invaders", "Game" })
+@Description("Update of a game frame, drawing included.")
+@StackTrace(false)
+public final class FrameEvent extends jdk.jfr.Event {
+
+	/** Frame of the game session. */
+	@Label("Tick")
+	public long tick;
+
+	/** Level being played. */
+	@Label("Level")
+	public int level;
+
+	/** Bullets on screen at the end of the frame. */
+	@Label("Bullets")
+	public int bullets;
+
+	/** Enemy ships on screen at the end of the frame. */
+	@Label("Enemies")
+	public int enemies;
+}
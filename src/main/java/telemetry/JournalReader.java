@@ -0,0 +1,219 @@
+package telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import telemetry.EventJournal.EventType;
+
+/**
+ * Follows an event journal, possibly while a game is writing it, from this
+ * or another process. Reads take no locks: a record is copied from the
+ * mapping and kept only if the writer didn't start overwriting its slot
+ * meanwhile. Records overwritten before being read are skipped and
+ * counted.
+ */
+public final class JournalReader {
+
+	/** Time to wait for new events when following a journal. */
+	private static final long POLL_MILLIS = 10;
+
+	/**
+	 * Event read from a journal. Fields are public and reused between
+	 * reads, so reading allocates nothing.
+	 */
+	public static final class Event {
+
+		/** Frame of the game session the event happened in. */
+		public long tick;
+		/** Type of the event, null if written by a newer version. */
+		public EventType type;
+		/** Entity involved. */
+		public int entity;
+		/** Position of the event in the x axis. */
+		public int x;
+		/** Position of the event in the y axis. */
+		public int y;
+		/** Value of the event. */
+		public long value;
+
+		@Override
+		public String toString() {
+			return this.tick + " " + this.type + " entity=" + this.entity
+					+ " x=" + this.x + " y=" + this.y + " value=" + this.value;
+		}
+	}
+
+	/** Channel of the file. */
+	private final FileChannel channel;
+	/** Mapping of the whole file. */
+	private MappedByteBuffer buffer;
+	/** Records of the ring. */
+	private long capacity;
+	/** Epoch of the journal mapped, changes when a game recreates it. */
+	private long epoch;
+	/** Number of the next record to read. */
+	private long position;
+	/** Records overwritten before being read. */
+	private long lost;
+
+	/**
+	 * Constructor, maps a journal to read it from its oldest record.
+	 *
+	 * @param file
+	 *            Journal file.
+	 * @throws IOException
+	 *             In case the file can't be mapped or isn't a journal.
+	 */
+	public JournalReader(final File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			map();
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps the journal as it is now and reads it from its oldest record.
+	 *
+	 * @throws IOException
+	 *             In case the file can't be mapped or isn't a journal.
+	 */
+	private void map() throws IOException {
+		if (this.channel.size() < EventJournal.HEADER_SIZE)
+			throw new IOException("Not an event journal.");
+		MappedByteBuffer header = this.channel.map(
+				FileChannel.MapMode.READ_ONLY, 0, EventJournal.HEADER_SIZE);
+		this.epoch = (long) EventJournal.LONGS.getAcquire(header,
+				EventJournal.EPOCH_OFFSET);
+		if (header.getInt(EventJournal.MAGIC_OFFSET) != EventJournal.MAGIC
+				|| header.getInt(EventJournal.VERSION_OFFSET)
+						!= EventJournal.VERSION
+				|| header.getInt(EventJournal.RECORD_SIZE_OFFSET)
+						!= EventJournal.RECORD_SIZE)
+			throw new IOException("Not an event journal of this version.");
+		this.capacity = header.getInt(EventJournal.CAPACITY_OFFSET);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				EventJournal.HEADER_SIZE + this.capacity
+						* EventJournal.RECORD_SIZE);
+		this.position = Math.max(0, published() - this.capacity);
+	}
+
+	/**
+	 * Reads the next event, if there is one.
+	 *
+	 * @param event
+	 *            Filled with the event read.
+	 * @return If an event was read, false if every event published was.
+	 * @throws IOException
+	 *             In case the journal was recreated and can't be mapped.
+	 */
+	public boolean next(final Event event) throws IOException {
+		while (true) {
+			if ((long) EventJournal.LONGS.getAcquire(this.buffer,
+					EventJournal.EPOCH_OFFSET) != this.epoch)
+				map();
+			long published = published();
+			if (this.position >= published)
+				return false;
+			if (published - this.position > this.capacity) {
+				this.lost += published - this.capacity - this.position;
+				this.position = published - this.capacity;
+			}
+
+			int offset = EventJournal.HEADER_SIZE + (int) (this.position
+					& (this.capacity - 1)) * EventJournal.RECORD_SIZE;
+			event.tick = this.buffer.getLong(offset
+					+ EventJournal.TICK_OFFSET);
+			event.type = EventType.of(this.buffer.getInt(offset
+					+ EventJournal.TYPE_OFFSET));
+			event.entity = this.buffer.getInt(offset
+					+ EventJournal.ENTITY_OFFSET);
+			event.x = this.buffer.getInt(offset + EventJournal.X_OFFSET);
+			event.y = this.buffer.getInt(offset + EventJournal.Y_OFFSET);
+			event.value = this.buffer.getLong(offset
+					+ EventJournal.VALUE_OFFSET);
+
+			// Kept only if the writer didn't start on this slot meanwhile.
+			VarHandle.loadLoadFence();
+			long started = (long) EventJournal.LONGS.getAcquire(this.buffer,
+					EventJournal.STARTED_OFFSET);
+			if (started <= this.position + this.capacity) {
+				this.position++;
+				return true;
+			}
+			this.lost += started - this.capacity - this.position;
+			this.position = started - this.capacity;
+		}
+	}
+
+	/**
+	 * Getter for the records overwritten before being read.
+	 *
+	 * @return Events lost.
+	 */
+	public long getLost() {
+		return this.lost;
+	}
+
+	/**
+	 * Skips every event published so far, to follow only new ones.
+	 */
+	public void seekToEnd() {
+		this.position = published();
+	}
+
+	/**
+	 * Closes the journal file.
+	 *
+	 * @throws IOException
+	 *             In case of closing problems.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Reads the number of records published.
+	 *
+	 * @return Records published since the journal was created.
+	 */
+	private long published() {
+		return (long) EventJournal.LONGS.getAcquire(this.buffer,
+				EventJournal.PUBLISHED_OFFSET);
+	}
+
+	/**
+	 * Prints the events of a journal as they are written.
+	 *
+	 * @param args
+	 *            Journal file, events by default.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for events.
+	 */
+	public static void main(final String[] args) throws IOException,
+			InterruptedException {
+		JournalReader reader = new JournalReader(new File(
+				args.length > 0 ? args[0] : "events"));
+		Event event = new Event();
+		long lost = 0;
+		while (true) {
+			while (reader.next(event))
+				System.out.println(event);
+			if (reader.getLost() != lost) {
+				System.out.println((reader.getLost() - lost)
+						+ " events overwritten before being read.");
+				lost = reader.getLost();
+			}
+			Thread.sleep(POLL_MILLIS);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package telemetry;
+
+import engine.GameState;
+import engine.LatencyHistogram;
+import screen.GameScreen;
+
+/**
+ * Metrics of a single level played, one row of the session store. Fields
+ * are public and reused between levels, so recording allocates nothing.
+ */
+public final class LevelMetrics {
+
+	/** Session the level belongs to, its seed. */
+	public long session;
+	/** Difficulty option selected. */
+	public int difficulty;
+	/** Level number. */
+	public int level;
+	/** If the player cleared the level. */
+	public boolean cleared;
+	/** Frames the level lasted. */
+	public int clearTicks;
+	/** Score obtained during the level, life bonus included. */
+	public int score;
+	/** Bullets shot during the level. */
+	public int bulletsShot;
+	/** Ships destroyed during the level, bonus ships included. */
+	public int shipsDestroyed;
+	/** Lives lost during the level. */
+	public int deaths;
+	/** Bonus ships destroyed during the level. */
+	public int bonusShips;
+	/** Median time between frames, in microseconds. */
+	public int frameP50;
+	/** 99th percentile of the time between frames, in microseconds. */
+	public int frameP99;
+
+	/**
+	 * Fills the metrics of a level once its screen is over.
+	 *
+	 * @param session
+	 *            Session the level belongs to.
+	 * @param difficulty
+	 *            Difficulty option selected.
+	 * @param start
+	 *            Game state at the start of the level.
+	 * @param screen
+	 *            Game screen of the level, finished.
+	 * @param ticks
+	 *            Frames the level lasted.
+	 * @param frameTimes
+	 *            Time between the frames of the level, in nanoseconds.
+	 */
+	public void measure(final long session, final int difficulty,
+			final GameState start, final GameScreen screen, final long ticks,
+			final LatencyHistogram frameTimes) {
+		GameState end = screen.getGameState();
+		this.session = session;
+		this.difficulty = difficulty;
+		this.level = end.getLevel();
+		this.cleared = end.getLivesRemaining() > 0;
+		this.clearTicks = (int) Math.min(Integer.MAX_VALUE, ticks);
+		this.score = end.getScore() - start.getScore();
+		this.bulletsShot = end.getBulletsShot() - start.getBulletsShot();
+		this.shipsDestroyed = end.getShipsDestroyed()
+				- start.getShipsDestroyed();
+		this.deaths = screen.getLivesLost();
+		this.bonusShips = screen.getBonusShipsDestroyed();
+		this.frameP50 = (int) (frameTimes.getPercentile(50) / 1000);
+		this.frameP99 = (int) (frameTimes.getPercentile(99) / 1000);
+	}
+}
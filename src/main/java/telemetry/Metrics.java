@@ -0,0 +1,350 @@
+package telemetry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of a game, served in the Prometheus text format
+ * by {@link MetricsServer}. Each engine context has its own, so only the
+ * game played is served; simulated and benchmarked games count apart.
+ *
+ * Updates only add to striped {@link LongAdder}s, so the game thread never
+ * locks or waits, however many games or scrapes run at once. A scrape reads
+ * the adders as they are: a histogram may be a few samples behind its
+ * buckets, but its count is always the sum of its buckets.
+ */
+public final class Metrics {
+
+	/** Bounds of the frame time buckets, in seconds. */
+	private static final double[] FRAME_BUCKETS = { 0.005, 0.01, 0.0167,
+			0.025, 0.0334, 0.05, 0.1, 0.25 };
+	/** Bounds of the file latency buckets, in seconds. */
+	private static final double[] IO_BUCKETS = { 0.0001, 0.0005, 0.001,
+			0.005, 0.01, 0.05, 0.1, 0.5, 1 };
+	/** Nanoseconds in a second. */
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	/** Frames rendered by the screens shown. */
+	private final Counter frames;
+	/** Time between frames of the screens shown. */
+	private final Histogram frameTime;
+	/** Bullet and ship pairs checked for collisions. */
+	private final Counter collisionChecks;
+	/** Bullets fired, new or taken from a pool. */
+	private final Counter bulletsSpawned;
+	/** Bullets returned to a pool. */
+	private final Counter bulletsRecycled;
+	/** Enemy ships destroyed, bonus ships included. */
+	private final Counter shipsDestroyed;
+	/** High score saves written. */
+	private final Counter scoreSaves;
+	/** Time taken to open or load the high scores. */
+	private final Histogram scoreLoadTime;
+	/** Time taken to write the high scores. */
+	private final Histogram scoreSaveTime;
+
+	/** Counters served, in order. */
+	private final Counter[] counters;
+	/** Histograms served, in order. */
+	private final Histogram[] histograms;
+
+	/**
+	 * Monotonic count of something that happened.
+	 */
+	public static final class Counter {
+
+		/** Name of the metric. */
+		private final String name;
+		/** Description of the metric. */
+		private final String help;
+		/** Count so far. */
+		private final LongAdder count;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name
+		 *            Name of the metric.
+		 * @param help
+		 *            Description of the metric.
+		 */
+		private Counter(final String name, final String help) {
+			this.name = name;
+			this.help = help;
+			this.count = new LongAdder();
+		}
+
+		/**
+		 * Counts one more.
+		 */
+		public void increment() {
+			this.count.increment();
+		}
+
+		/**
+		 * Counts several more.
+		 *
+		 * @param amount
+		 *            Amount to add, not negative.
+		 */
+		public void add(final long amount) {
+			this.count.add(amount);
+		}
+
+		/**
+		 * Getter for the count.
+		 *
+		 * @return Count so far.
+		 */
+		public long get() {
+			return this.count.sum();
+		}
+
+		/**
+		 * Writes the counter in the Prometheus text format.
+		 *
+		 * @param out
+		 *            Destination of the text.
+		 */
+		private void write(final StringBuilder out) {
+			header(out, this.name, this.help, "counter");
+			out.append(this.name).append(' ').append(get()).append('\n');
+		}
+	}
+
+	/**
+	 * Distribution of durations, counted in fixed buckets.
+	 */
+	public static final class Histogram {
+
+		/** Name of the metric. */
+		private final String name;
+		/** Description of the metric. */
+		private final String help;
+		/** Upper bounds of the buckets, in seconds, ascending. */
+		private final double[] bounds;
+		/** Upper bounds of the buckets, in nanoseconds. */
+		private final long[] boundNanos;
+		/** Samples of each bucket, the last one above every bound. */
+		private final LongAdder[] buckets;
+		/** Sum of the samples, in nanoseconds. */
+		private final LongAdder sumNanos;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name
+		 *            Name of the metric.
+		 * @param help
+		 *            Description of the metric.
+		 * @param bounds
+		 *            Upper bounds of the buckets, in seconds, ascending.
+		 */
+		private Histogram(final String name, final String help,
+				final double[] bounds) {
+			this.name = name;
+			this.help = help;
+			this.bounds = bounds;
+			this.boundNanos = new long[bounds.length];
+			for (int i = 0; i < bounds.length; i++)
+				this.boundNanos[i] = (long) (bounds[i] * NANOS_PER_SECOND);
+			this.buckets = new LongAdder[bounds.length + 1];
+			for (int i = 0; i < this.buckets.length; i++)
+				this.buckets[i] = new LongAdder();
+			this.sumNanos = new LongAdder();
+		}
+
+		/**
+		 * Records a duration.
+		 *
+		 * @param nanos
+		 *            Duration, in nanoseconds.
+		 */
+		public void observeNanos(final long nanos) {
+			int bucket = 0;
+			while (bucket < this.boundNanos.length
+					&& nanos > this.boundNanos[bucket])
+				bucket++;
+			this.buckets[bucket].increment();
+			this.sumNanos.add(nanos);
+		}
+
+		/**
+		 * Getter for the samples recorded.
+		 *
+		 * @return Number of durations recorded.
+		 */
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : this.buckets)
+				count += bucket.sum();
+			return count;
+		}
+
+		/**
+		 * Writes the histogram in the Prometheus text format, with
+		 * cumulative buckets.
+		 *
+		 * @param out
+		 *            Destination of the text.
+		 */
+		private void write(final StringBuilder out) {
+			header(out, this.name, this.help, "histogram");
+			long cumulative = 0;
+			for (int i = 0; i < this.buckets.length; i++) {
+				cumulative += this.buckets[i].sum();
+				out.append(this.name).append("_bucket{le=\"")
+						.append(i < this.bounds.length ? Double
+								.toString(this.bounds[i]) : "+Inf")
+						.append("\"} ").append(cumulative).append('\n');
+			}
+			out.append(this.name).append("_sum ")
+					.append(this.sumNanos.sum() / NANOS_PER_SECOND)
+					.append('\n');
+			out.append(this.name).append("_count ").append(cumulative)
+					.append('\n');
+		}
+	}
+
+	/**
+	 * Constructor, starts every metric at zero.
+	 */
+	public Metrics() {
+		this.frames = new Counter("invaders_frames_total",
+				"Frames rendered by the screens shown.");
+		this.frameTime = new Histogram("invaders_frame_seconds",
+				"Time between frames of the screens shown.", FRAME_BUCKETS);
+		this.collisionChecks = new Counter("invaders_collision_checks_total",
+				"Bullet and ship pairs checked for collisions.");
+		this.bulletsSpawned = new Counter("invaders_bullets_spawned_total",
+				"Bullets fired, new or taken from a pool.");
+		this.bulletsRecycled = new Counter("invaders_bullets_recycled_total",
+				"Bullets returned to a pool.");
+		this.shipsDestroyed = new Counter("invaders_ships_destroyed_total",
+				"Enemy ships destroyed, bonus ships included.");
+		this.scoreSaves = new Counter("invaders_score_saves_total",
+				"High score saves written.");
+		this.scoreLoadTime = new Histogram("invaders_score_load_seconds",
+				"Time taken to open or load the high scores.", IO_BUCKETS);
+		this.scoreSaveTime = new Histogram("invaders_score_save_seconds",
+				"Time taken to write the high scores.", IO_BUCKETS);
+		this.counters = new Counter[] { this.frames, this.collisionChecks,
+				this.bulletsSpawned, this.bulletsRecycled,
+				this.shipsDestroyed, this.scoreSaves };
+		this.histograms = new Histogram[] { this.frameTime,
+				this.scoreLoadTime, this.scoreSaveTime };
+	}
+
+	/**
+	 * Getter for the frames rendered by the screens shown.
+	 *
+	 * @return Frames rendered by the screens shown.
+	 */
+	public Counter getFrames() {
+		return this.frames;
+	}
+
+	/**
+	 * Getter for the time between frames of the screens shown.
+	 *
+	 * @return Time between frames of the screens shown.
+	 */
+	public Histogram getFrameTime() {
+		return this.frameTime;
+	}
+
+	/**
+	 * Getter for the bullet and ship pairs checked for collisions.
+	 *
+	 * @return Bullet and ship pairs checked for collisions.
+	 */
+	public Counter getCollisionChecks() {
+		return this.collisionChecks;
+	}
+
+	/**
+	 * Getter for the bullets fired, new or taken from a pool.
+	 *
+	 * @return Bullets fired, new or taken from a pool.
+	 */
+	public Counter getBulletsSpawned() {
+		return this.bulletsSpawned;
+	}
+
+	/**
+	 * Getter for the bullets returned to a pool.
+	 *
+	 * @return Bullets returned to a pool.
+	 */
+	public Counter getBulletsRecycled() {
+		return this.bulletsRecycled;
+	}
+
+	/**
+	 * Getter for the enemy ships destroyed, bonus ships included.
+	 *
+	 * @return Enemy ships destroyed, bonus ships included.
+	 */
+	public Counter getShipsDestroyed() {
+		return this.shipsDestroyed;
+	}
+
+	/**
+	 * Getter for the high score saves written.
+	 *
+	 * @return High score saves written.
+	 */
+	public Counter getScoreSaves() {
+		return this.scoreSaves;
+	}
+
+	/**
+	 * Getter for the time taken to open or load the high scores.
+	 *
+	 * @return Time taken to open or load the high scores.
+	 */
+	public Histogram getScoreLoadTime() {
+		return this.scoreLoadTime;
+	}
+
+	/**
+	 * Getter for the time taken to write the high scores.
+	 *
+	 * @return Time taken to write the high scores.
+	 */
+	public Histogram getScoreSaveTime() {
+		return this.scoreSaveTime;
+	}
+
+	/**
+	 * Writes every metric in the Prometheus text format.
+	 *
+	 * @param out
+	 *            Destination of the text.
+	 */
+	public void write(final StringBuilder out) {
+		for (Counter counter : this.counters)
+			counter.write(out);
+		for (Histogram histogram : this.histograms)
+			histogram.write(out);
+	}
+
+	/**
+	 * Writes the help and type lines of a metric.
+	 *
+	 * @param out
+	 *            Destination of the text.
+	 * @param name
+	 *            Name of the metric.
+	 * @param help
+	 *            Description of the metric.
+	 * @param type
+	 *            Prometheus type of the metric.
+	 */
+	private static void header(final StringBuilder out, final String name,
+			final String help, final String type) {
+		out.append("# HELP ").append(name).append(' ').append(help)
+				.append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type)
+				.append('\n');
+	}
+}
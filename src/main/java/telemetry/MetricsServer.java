@@ -0,0 +1,107 @@
+package telemetry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the {@link Metrics} of a game in the Prometheus text format on
+ * localhost, at /metrics. Scrapes are answered by a single thread of their
+ * own that only reads the metrics, so they never stall the game.
+ */
+public final class MetricsServer {
+
+	/** Path the metrics are served at. */
+	private static final String PATH = "/metrics";
+	/** Content type of the Prometheus text format. */
+	private static final String CONTENT_TYPE =
+			"text/plain; version=0.0.4; charset=utf-8";
+	/** Encoding of the text. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/** Seconds to wait for scrapes in progress when stopping. */
+	private static final int STOP_DELAY = 1;
+
+	/** Metrics served. */
+	private final Metrics metrics;
+	/** Server answering the scrapes. */
+	private final HttpServer server;
+	/** Thread answering the scrapes. */
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor, starts serving.
+	 *
+	 * @param port
+	 *            Port listened on, on the loopback address; 0 for any free
+	 *            one.
+	 * @param metrics
+	 *            Metrics served, those of the game played.
+	 * @throws IOException
+	 *             In case the port can't be bound.
+	 */
+	public MetricsServer(final int port, final Metrics metrics)
+			throws IOException {
+		this.metrics = metrics;
+		this.server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		this.server.createContext(PATH, this::scrape);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	/**
+	 * Getter for the port listened on.
+	 *
+	 * @return Port of the server.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving.
+	 */
+	public void stop() {
+		this.server.stop(STOP_DELAY);
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Answers a scrape with every metric.
+	 *
+	 * @param exchange
+	 *            Request and response.
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	private void scrape(final HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			StringBuilder text = new StringBuilder();
+			this.metrics.write(text);
+			byte[] body = text.toString().getBytes(UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for a phase of a game frame, committed by the
+ * frame profiler as the phase ends. Its time stamp marks the end of the
+ * phase, its length is a field.
+ */
+@Name("invaders.FramePhase")
+@Label("Game Frame Phase")
+@Category({ "Invaders", "Game" })
+@Description("Time spent on a phase of a game frame.")
+@StackTrace(false)
+public final class PhaseEvent extends jdk.jfr.Event {
+
+	/** Phase measured. */
+	@Label("Phase")
+	public String phase;
+
+	/** Time spent on the phase. */
+	@Label("Phase Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	public long phaseDuration;
+}
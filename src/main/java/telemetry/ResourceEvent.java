@@ -0,0 +1,33 @@
+package telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning the loading or saving of a game resource,
+ * sprites, fonts or scores.
+ */
+@Name("invaders.ResourceIO")
+@Label("Resource I/O")
+@Category({ "Invaders", "I/O" })
+@Description("Loading or saving of a game resource.")
+public final class ResourceEvent extends jdk.jfr.Event {
+
+	/** Operation, the file manager method. */
+	@Label("Operation")
+	public String operation;
+
+	/** Resource or file read or written. */
+	@Label("Resource")
+	public String resource;
+
+	/** Items read or written: sprites, scores. */
+	@Label("Items")
+	public int items;
+
+	/** If the operation finished without errors. */
+	@Label("Succeeded")
+	public boolean succeeded;
+}
@@ -0,0 +1,27 @@
+package telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the time a screen is shown, from its
+ * initialization until it returns the next screen.
+ */
+@Name("invaders.Screen")
+@Label("Screen Shown")
+@Category({ "Invaders", "Screens" })
+@Description("Screen shown on the game frame.")
+@StackTrace(false)
+public final class ScreenEvent extends jdk.jfr.Event {
+
+	/** Class of the screen. */
+	@Label("Screen")
+	public String screen;
+
+	/** Code of the screen shown next. */
+	@Label("Return Code")
+	public int returnCode;
+}
@@ -0,0 +1,330 @@
+package telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import engine.Core;
+import telemetry.SessionStore.Column;
+
+/**
+ * Computes aggregates over a session store, grouped by one of its columns.
+ * Only the columns an aggregate needs are read from each block, so a query
+ * over millions of levels reads a fraction of the file.
+ */
+public final class SessionQuery {
+
+	/**
+	 * Receives the values of the columns read, a block at a time.
+	 */
+	public interface BlockVisitor {
+
+		/**
+		 * Called for every block of the store.
+		 *
+		 * @param values
+		 *            Values of the block, one array per column read, in the
+		 *            order requested.
+		 * @param rows
+		 *            Rows of the block.
+		 */
+		void visit(long[][] values, int rows);
+	}
+
+	/** Store file. */
+	private final File file;
+	/** Position of each whole block. */
+	private final List<Long> blockOffsets;
+	/** Rows of each whole block. */
+	private final List<Integer> blockRows;
+	/** Rows of the store. */
+	private long rowCount;
+
+	/**
+	 * Constructor, finds the blocks of the store.
+	 *
+	 * @param file
+	 *            Store file.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public SessionQuery(final File file) throws IOException {
+		this.file = file;
+		this.blockOffsets = new ArrayList<Long>();
+		this.blockRows = new ArrayList<Integer>();
+
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			long validLength = SessionStore.findValidLength(input);
+			if (validLength < 0)
+				throw new IOException("Not a session store: " + file);
+			int rowWidth = 0;
+			for (Column column : SessionStore.COLUMNS)
+				rowWidth += column.getWidth();
+			long position = SessionStore.HEADER_SIZE;
+			while (position < validLength) {
+				input.seek(position);
+				int rows = input.readInt();
+				this.blockOffsets.add(position);
+				this.blockRows.add(rows);
+				this.rowCount += rows;
+				position += 4 + (long) rows * rowWidth;
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Getter for the rows of the store.
+	 *
+	 * @return Number of levels stored.
+	 */
+	public long getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Reads some columns of every block.
+	 *
+	 * @param columns
+	 *            Columns to read.
+	 * @param visitor
+	 *            Receives the values of each block.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public void scan(final Column[] columns, final BlockVisitor visitor)
+			throws IOException {
+		long[][] values = new long[columns.length][];
+		ByteBuffer buffer = ByteBuffer.allocate(0);
+		RandomAccessFile input = new RandomAccessFile(this.file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			for (int b = 0; b < this.blockOffsets.size(); b++) {
+				int rows = this.blockRows.get(b);
+				for (int c = 0; c < columns.length; c++) {
+					int read = Arrays.asList(columns).indexOf(columns[c]);
+					if (read < c) {
+						values[c] = values[read];
+						continue;
+					}
+					// Columns before this one, in file order.
+					long offset = this.blockOffsets.get(b) + 4;
+					for (Column column : SessionStore.COLUMNS) {
+						if (column == columns[c])
+							break;
+						offset += (long) column.getWidth() * rows;
+					}
+					int width = columns[c].getWidth();
+					int size = width * rows;
+					if (buffer.capacity() < size)
+						buffer = ByteBuffer.allocate(size);
+					buffer.clear().limit(size);
+					while (buffer.hasRemaining())
+						if (channel.read(buffer, offset
+								+ buffer.position()) < 0)
+							throw new IOException("Truncated session store.");
+					buffer.flip();
+
+					if (values[c] == null || values[c].length < rows)
+						values[c] = new long[rows];
+					for (int i = 0; i < rows; i++) {
+						if (width == 1)
+							values[c][i] = buffer.get() & 0xFF;
+						else if (width == 4)
+							values[c][i] = buffer.getInt();
+						else
+							values[c][i] = buffer.getLong();
+					}
+				}
+				visitor.visit(values, rows);
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Divides the sum of a column by the sum of another, by group, for
+	 * example the accuracy by level.
+	 *
+	 * @param group
+	 *            Column to group by.
+	 * @param numerator
+	 *            Column summed above.
+	 * @param denominator
+	 *            Column summed below.
+	 * @param where
+	 *            Only rows where this column isn't 0 count, null for all.
+	 * @return Ratio of each group, by group value.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public Map<Long, Double> ratioBy(final Column group,
+			final Column numerator, final Column denominator,
+			final Column where) throws IOException {
+		final Map<Long, double[]> sums = new TreeMap<Long, double[]>();
+		final boolean all = where == null;
+		scan(columns(group, where, numerator, denominator), (values, rows) -> {
+			for (int i = 0; i < rows; i++)
+				if (all || values[1][i] != 0) {
+					double[] sum = sums.computeIfAbsent(values[0][i],
+							key -> new double[2]);
+					sum[0] += values[2][i];
+					sum[1] += values[3][i];
+				}
+		});
+		Map<Long, Double> ratios = new TreeMap<Long, Double>();
+		for (Map.Entry<Long, double[]> entry : sums.entrySet())
+			ratios.put(entry.getKey(), entry.getValue()[1] == 0 ? 0
+					: entry.getValue()[0] / entry.getValue()[1]);
+		return ratios;
+	}
+
+	/**
+	 * Averages a column by group.
+	 *
+	 * @param group
+	 *            Column to group by.
+	 * @param value
+	 *            Column averaged.
+	 * @param where
+	 *            Only rows where this column isn't 0 count, null for all.
+	 * @return Mean of each group, by group value.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public Map<Long, Double> meanBy(final Column group, final Column value,
+			final Column where) throws IOException {
+		final Map<Long, double[]> sums = new TreeMap<Long, double[]>();
+		final boolean all = where == null;
+		scan(columns(group, where, value), (values, rows) -> {
+			for (int i = 0; i < rows; i++)
+				if (all || values[1][i] != 0) {
+					double[] sum = sums.computeIfAbsent(values[0][i],
+							key -> new double[2]);
+					sum[0] += values[2][i];
+					sum[1]++;
+				}
+		});
+		Map<Long, Double> means = new TreeMap<Long, Double>();
+		for (Map.Entry<Long, double[]> entry : sums.entrySet())
+			means.put(entry.getKey(), entry.getValue()[0]
+					/ entry.getValue()[1]);
+		return means;
+	}
+
+	/**
+	 * Finds a percentile of a column by group, for example the median clear
+	 * time by difficulty.
+	 *
+	 * @param group
+	 *            Column to group by.
+	 * @param value
+	 *            Column measured.
+	 * @param percent
+	 *            Percentile, from 0 to 100.
+	 * @param where
+	 *            Only rows where this column isn't 0 count, null for all.
+	 * @return Percentile of each group, by group value.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public Map<Long, Long> percentileBy(final Column group,
+			final Column value, final double percent, final Column where)
+			throws IOException {
+		final Map<Long, long[]> lists = new TreeMap<Long, long[]>();
+		final Map<Long, Integer> sizes = new TreeMap<Long, Integer>();
+		final boolean all = where == null;
+		scan(columns(group, where, value), (values, rows) -> {
+			for (int i = 0; i < rows; i++)
+				if (all || values[1][i] != 0) {
+					long key = values[0][i];
+					long[] list = lists.get(key);
+					int size = sizes.getOrDefault(key, 0);
+					if (list == null || list.length == size) {
+						list = list == null ? new long[64] : Arrays.copyOf(
+								list, size * 2);
+						lists.put(key, list);
+					}
+					list[size] = values[2][i];
+					sizes.put(key, size + 1);
+				}
+		});
+		Map<Long, Long> percentiles = new TreeMap<Long, Long>();
+		for (Map.Entry<Long, long[]> entry : lists.entrySet()) {
+			int size = sizes.get(entry.getKey());
+			long[] list = entry.getValue();
+			Arrays.sort(list, 0, size);
+			int index = (int) Math.ceil(size * percent / 100) - 1;
+			percentiles.put(entry.getKey(), list[Math.max(0,
+					Math.min(size - 1, index))]);
+		}
+		return percentiles;
+	}
+
+	/**
+	 * Lists the columns of an aggregate: the group, the filter, the group
+	 * again when there is none, and the values.
+	 *
+	 * @param group
+	 *            Column to group by.
+	 * @param where
+	 *            Filter column, null for all rows.
+	 * @param values
+	 *            Columns aggregated.
+	 * @return Columns to scan.
+	 */
+	private static Column[] columns(final Column group, final Column where,
+			final Column... values) {
+		Column[] columns = new Column[values.length + 2];
+		columns[0] = group;
+		columns[1] = where != null ? where : group;
+		System.arraycopy(values, 0, columns, 2, values.length);
+		return columns;
+	}
+
+	/**
+	 * Prints a summary of a session store.
+	 *
+	 * @param args
+	 *            Store file, sessions by default.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	public static void main(final String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : "sessions");
+		long start = System.nanoTime();
+		SessionQuery query = new SessionQuery(file);
+		System.out.println(query.getRowCount() + " levels in " + file);
+
+		Map<Long, Double> accuracy = query.ratioBy(Column.LEVEL,
+				Column.SHIPS_DESTROYED, Column.BULLETS_SHOT, null);
+		Map<Long, Double> deaths = query.meanBy(Column.LEVEL, Column.DEATHS,
+				null);
+		Map<Long, Long> frames = query.percentileBy(Column.LEVEL,
+				Column.FRAME_P99, 50, null);
+		for (Map.Entry<Long, Double> entry : accuracy.entrySet())
+			System.out.println(String.format("  level %d: accuracy %5.1f%%,"
+					+ " deaths %.2f, frame p99 %d us", entry.getKey(),
+					entry.getValue() * 100, deaths.get(entry.getKey()),
+					frames.get(entry.getKey())));
+
+		Map<Long, Long> clear = query.percentileBy(Column.DIFFICULTY,
+				Column.CLEAR_TICKS, 50, Column.CLEARED);
+		for (Map.Entry<Long, Long> entry : clear.entrySet())
+			System.out.println(String.format("  difficulty %d: median clear"
+					+ " time %.1fs", entry.getKey(), entry.getValue()
+					/ (double) Core.FPS));
+		System.out.println(String.format("Queried in %.1f ms.",
+				(System.nanoTime() - start) / 1e6));
+	}
+}
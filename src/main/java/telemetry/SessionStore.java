@@ -0,0 +1,376 @@
+package telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import engine.Core;
+
+/**
+ * Appends the metrics of every level played to a columnar file.
+ *
+ * Levels are buffered in memory, one array per column, and written in
+ * blocks by a background thread: a block is its number of rows followed by
+ * every value of the first column, then every value of the second, and so
+ * on, each column with a fixed width. Queries read only the columns they
+ * need, skipping the rest of each block. Blocks are only appended; a block
+ * cut by a crash is dropped and overwritten by the next one. Rows are
+ * written once a block is full and when the store is closed, and the
+ * buffers of written blocks are reused, so appending allocates nothing.
+ *
+ * A file that isn't a session store of this version is never overwritten:
+ * it is renamed aside, with a .bak suffix, and a new store started. Games
+ * sharing the file append in turns, each under a lock of the file and
+ * after the last whole block it then holds, so none drops the blocks of
+ * another.
+ */
+public final class SessionStore {
+
+	/** Identifies session store files. */
+	static final int MAGIC = 0x53455353;
+	/** Version of the file format. */
+	static final int VERSION = 1;
+	/** Rows buffered before a block is written. */
+	private static final int BLOCK_ROWS = 4096;
+	/** Seconds to wait for pending writes when closing. */
+	private static final int CLOSE_TIMEOUT = 5;
+	/** Suffix of a file renamed aside because it isn't a store. */
+	private static final String BACKUP_SUFFIX = ".bak";
+
+	/**
+	 * Columns of the store, in file order.
+	 */
+	public enum Column {
+		/** Session the level belongs to, its seed. */
+		SESSION(8),
+		/** Difficulty option selected. */
+		DIFFICULTY(1),
+		/** Level number. */
+		LEVEL(1),
+		/** 1 if the player cleared the level, 0 otherwise. */
+		CLEARED(1),
+		/** Frames the level lasted. */
+		CLEAR_TICKS(4),
+		/** Score obtained during the level. */
+		SCORE(4),
+		/** Bullets shot during the level. */
+		BULLETS_SHOT(4),
+		/** Ships destroyed during the level. */
+		SHIPS_DESTROYED(4),
+		/** Lives lost during the level. */
+		DEATHS(1),
+		/** Bonus ships destroyed during the level. */
+		BONUS_SHIPS(1),
+		/** Median time between frames, in microseconds. */
+		FRAME_P50(4),
+		/** 99th percentile of the time between frames, in microseconds. */
+		FRAME_P99(4);
+
+		/** Bytes per value, 1 (unsigned), 4 or 8. */
+		private final int width;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param width
+		 *            Bytes per value.
+		 */
+		Column(final int width) {
+			this.width = width;
+		}
+
+		/**
+		 * Getter for the bytes per value.
+		 *
+		 * @return Width of the column.
+		 */
+		public int getWidth() {
+			return this.width;
+		}
+	}
+
+	/** Columns of the store, in file order. */
+	static final Column[] COLUMNS = Column.values();
+	/** Size of the file header: magic, version, columns and their widths. */
+	static final int HEADER_SIZE = 12 + COLUMNS.length;
+
+	/** Store file. */
+	private final File file;
+	/** Application logger. */
+	private final Logger logger;
+	/** Thread writing the blocks. */
+	private final ExecutorService writer;
+	/** Values of the rows buffered, one array per column. */
+	private long[][] rows;
+	/** Buffers of a block already written, null while in use. */
+	private long[][] spareRows;
+	/** Rows buffered. */
+	private int size;
+	/** If the file was checked to be a store, or renamed aside. */
+	private boolean checked;
+	/** Bytes of the block being written, only used by the writer. */
+	private ByteBuffer blockBuffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            Store file, created with the first block if missing.
+	 */
+	public SessionStore(final File file) {
+		this.file = file;
+		this.logger = Core.getLogger();
+		this.rows = new long[COLUMNS.length][BLOCK_ROWS];
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "session-store-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Buffers the metrics of a level, writing a block once enough are
+	 * buffered. Safe to call from several games at once.
+	 *
+	 * @param metrics
+	 *            Metrics of the level.
+	 */
+	public synchronized void append(final LevelMetrics metrics) {
+		int row = this.size;
+		this.rows[Column.SESSION.ordinal()][row] = metrics.session;
+		this.rows[Column.DIFFICULTY.ordinal()][row] = metrics.difficulty;
+		this.rows[Column.LEVEL.ordinal()][row] = metrics.level;
+		this.rows[Column.CLEARED.ordinal()][row] = metrics.cleared ? 1 : 0;
+		this.rows[Column.CLEAR_TICKS.ordinal()][row] = metrics.clearTicks;
+		this.rows[Column.SCORE.ordinal()][row] = metrics.score;
+		this.rows[Column.BULLETS_SHOT.ordinal()][row] = metrics.bulletsShot;
+		this.rows[Column.SHIPS_DESTROYED.ordinal()][row] =
+				metrics.shipsDestroyed;
+		this.rows[Column.DEATHS.ordinal()][row] = metrics.deaths;
+		this.rows[Column.BONUS_SHIPS.ordinal()][row] = metrics.bonusShips;
+		this.rows[Column.FRAME_P50.ordinal()][row] = metrics.frameP50;
+		this.rows[Column.FRAME_P99.ordinal()][row] = metrics.frameP99;
+		if (++this.size == BLOCK_ROWS)
+			flush();
+	}
+
+	/**
+	 * Queues the buffered rows to be written as a block, without waiting.
+	 * Only called with a full block, or when closing, so blocks stay large.
+	 */
+	private synchronized void flush() {
+		if (this.size == 0)
+			return;
+		final long[][] block = this.rows;
+		final int blockRows = this.size;
+		// A new buffer is only needed when the writer is a block behind.
+		this.rows = this.spareRows != null ? this.spareRows
+				: new long[COLUMNS.length][BLOCK_ROWS];
+		this.spareRows = null;
+		this.size = 0;
+		this.writer.execute(() -> {
+			write(block, blockRows);
+			synchronized (this) {
+				this.spareRows = block;
+			}
+		});
+	}
+
+	/**
+	 * Writes the buffered rows, waits for the pending writes and stops the
+	 * writer thread.
+	 */
+	public void close() {
+		flush();
+		this.writer.shutdown();
+		try {
+			if (!this.writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+				this.logger.warning("Session metrics not fully written.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Appends a block to the file and forces it to disk, on the writer
+	 * thread.
+	 *
+	 * @param block
+	 *            Values of the rows, one array per column.
+	 * @param blockRows
+	 *            Rows of the block.
+	 */
+	private void write(final long[][] block, final int blockRows) {
+		int blockSize = 4;
+		for (Column column : COLUMNS)
+			blockSize += column.width * blockRows;
+		if (this.blockBuffer == null)
+			this.blockBuffer = ByteBuffer.allocate(4 + rowWidth()
+					* BLOCK_ROWS);
+		ByteBuffer buffer = this.blockBuffer;
+		buffer.clear();
+		buffer.putInt(blockRows);
+		for (Column column : COLUMNS) {
+			long[] values = block[column.ordinal()];
+			for (int i = 0; i < blockRows; i++) {
+				if (column.width == 1)
+					buffer.put((byte) values[i]);
+				else if (column.width == 4)
+					buffer.putInt((int) values[i]);
+				else
+					buffer.putLong(values[i]);
+			}
+		}
+
+		try {
+			if (!this.checked) {
+				checkFile();
+				this.checked = true;
+			}
+			// File locks are held by the process: its stores take turns.
+			synchronized (SessionStore.class) {
+				append(buffer.array(), blockSize);
+			}
+		} catch (IOException e) {
+			this.logger.warning("Couldn't write session metrics!");
+		}
+	}
+
+	/**
+	 * Appends a block after the last whole block of the file, under a lock
+	 * of the file so other games wait to append meanwhile, and forces it to
+	 * disk. A block cut by a crash is overwritten.
+	 *
+	 * @param block
+	 *            Bytes of the block.
+	 * @param blockSize
+	 *            Length of the block.
+	 * @throws IOException
+	 *             In case of writing problems, or if the file isn't a
+	 *             session store of this version.
+	 */
+	private void append(final byte[] block, final int blockSize)
+			throws IOException {
+		RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+		try {
+			// Released when the file is closed.
+			output.getChannel().lock();
+			long valid = findValidLength(output);
+			if (valid < 0)
+				throw new IOException(this.file
+						+ " isn't a session store of this version.");
+			if (valid < HEADER_SIZE) {
+				output.setLength(0);
+				writeHeader(output);
+				valid = HEADER_SIZE;
+			}
+			output.setLength(valid);
+			output.seek(valid);
+			output.write(block, 0, blockSize);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Renames the file aside if it isn't a session store of this version.
+	 *
+	 * @throws IOException
+	 *             In case of reading problems, or if the file can't be
+	 *             renamed.
+	 */
+	private void checkFile() throws IOException {
+		if (this.file.length() == 0)
+			return;
+		long valid;
+		RandomAccessFile input = new RandomAccessFile(this.file, "r");
+		try {
+			valid = findValidLength(input);
+		} finally {
+			input.close();
+		}
+		if (valid >= 0)
+			return;
+
+		File backup = new File(this.file.getPath() + BACKUP_SUFFIX);
+		for (int i = 1; backup.exists(); i++)
+			backup = new File(this.file.getPath() + BACKUP_SUFFIX + "." + i);
+		Files.move(this.file.toPath(), backup.toPath());
+		this.logger.warning(this.file + " isn't a session store of this"
+				+ " version, moved to " + backup + ".");
+	}
+
+	/**
+	 * Adds the widths of every column.
+	 *
+	 * @return Bytes of a row.
+	 */
+	private static int rowWidth() {
+		int rowWidth = 0;
+		for (Column column : COLUMNS)
+			rowWidth += column.width;
+		return rowWidth;
+	}
+
+	/**
+	 * Writes the file header.
+	 *
+	 * @param output
+	 *            Empty file.
+	 * @throws IOException
+	 *             In case of writing problems.
+	 */
+	private static void writeHeader(final RandomAccessFile output)
+			throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(COLUMNS.length);
+		for (Column column : COLUMNS)
+			output.writeByte(column.width);
+	}
+
+	/**
+	 * Finds the end of the last whole block of the file, reading only the
+	 * header and the row count of each block.
+	 *
+	 * @param input
+	 *            Store file.
+	 * @return Length of the valid part, 0 if the file is empty, -1 if it
+	 *         isn't a session store of this version.
+	 * @throws IOException
+	 *             In case of reading problems.
+	 */
+	static long findValidLength(final RandomAccessFile input)
+			throws IOException {
+		long length = input.length();
+		if (length == 0)
+			return 0;
+		if (length < HEADER_SIZE)
+			return -1;
+		input.seek(0);
+		if (input.readInt() != MAGIC || input.readInt() != VERSION
+				|| input.readInt() != COLUMNS.length)
+			return -1;
+		for (Column column : COLUMNS)
+			if (input.readByte() != column.width)
+				return -1;
+
+		int rowWidth = rowWidth();
+		long position = HEADER_SIZE;
+		while (position + 4 <= length) {
+			input.seek(position);
+			long end = position + 4 + (long) input.readInt() * rowWidth;
+			if (end > length)
+				break;
+			position = end;
+		}
+		return position;
+	}
+}